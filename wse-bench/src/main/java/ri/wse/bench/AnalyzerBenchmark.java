@@ -0,0 +1,93 @@
+package ri.wse.bench;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ri.wse.analysis.Analyzer;
+import ri.wse.analysis.StopWords;
+import ri.wse.indexerBuild.HTMLParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Velocidad con la que se obtienen los términos de los documentos:
+ * -{@link #analyze}: solo el {@link Analyzer} sobre el texto ya extraído del html.
+ * -{@link #parseFile}: el parseo completo de {@link HTMLParser#parseFile(String, String)}, que detecta la
+ * codificación, lee el html con Jsoup y cuenta los términos.
+ * Cada operación procesa un documento; el contador "bytes" da el rendimiento en bytes de html por segundo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+
+    @Param({"MEDIUM"})
+    public SyntheticCorpus.Size size;
+
+    private Path directory;
+    private String collectionDirectory;
+    private String[] texts;
+    private int[] lengths;
+    private Analyzer analyzer;
+    private HTMLParser htmlParser;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+
+        public long bytes;
+
+        private int document;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-bench-analyzer");
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        corpus.write(this.directory, this.size.getDocuments());
+        this.collectionDirectory = this.directory.resolve("Coleccion").toString() + "/";
+
+        this.texts = new String[this.size.getDocuments()];
+        this.lengths = new int[this.texts.length];
+        for (int document = 0; document < this.texts.length; document++) {
+            String html = corpus.document(document);
+            this.texts[document] = Jsoup.parse(html).text();
+            this.lengths[document] = html.getBytes(StandardCharsets.UTF_8).length;
+        }
+        String stopWordsFile = this.directory.resolve("stopwords.txt").toString();
+        this.analyzer = new Analyzer(StopWords.load(stopWordsFile));
+        this.htmlParser = new HTMLParser(stopWordsFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(this.directory);
+    }
+
+    @Benchmark
+    public void analyze(Bytes bytes, Blackhole blackhole) {
+        int document = bytes.document++ % this.texts.length;
+        this.analyzer.analyze(this.texts[document], blackhole::consume);
+        bytes.bytes += this.lengths[document];
+    }
+
+    @Benchmark
+    public Map<String, Double> parseFile(Bytes bytes) {
+        int document = bytes.document++ % this.texts.length;
+        bytes.bytes += this.lengths[document];
+        return this.htmlParser.parseFile(SyntheticCorpus.fileName(document), this.collectionDirectory);
+    }
+}
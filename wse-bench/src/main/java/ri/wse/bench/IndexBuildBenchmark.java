@@ -0,0 +1,82 @@
+package ri.wse.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ri.wse.indexerBuild.IndexerController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de generar el índice completo de una colección con {@link IndexerController}: parseo, inversión de las
+ * listas de postings y escritura del segmento. El contador "megabytes" da el tiempo por megabyte de html, que
+ * permite comparar colecciones de distinto tamaño.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBuildBenchmark {
+
+    @Param({"SMALL", "MEDIUM"})
+    public SyntheticCorpus.Size size;
+
+    /**
+     * Hilos del indexador.
+     */
+    @Param({"1"})
+    public int threads;
+
+    /**
+     * Memoria para invertir las listas de postings, en megabytes.
+     */
+    @Param({"64"})
+    public int memoryBudget;
+
+    private Path directory;
+    private double megabytes;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Megabytes {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-bench-index");
+        long bytes = new SyntheticCorpus().write(this.directory, this.size.getDocuments());
+        this.megabytes = bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Cada operación genera el índice desde cero.
+     */
+    @Setup(Level.Invocation)
+    public void deleteIndex() throws IOException {
+        SyntheticCorpus.delete(this.directory.resolve("Results"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(this.directory);
+    }
+
+    @Benchmark
+    public void index(Megabytes megabytes) {
+        new IndexerController(this.directory.resolve("Coleccion").toString() + "/",
+                this.directory.resolve("Results").toString(), this.directory.resolve("URLS.txt").toString(),
+                this.directory.resolve("stopwords.txt").toString(), this.threads,
+                this.memoryBudget * 1024L * 1024L).index();
+        megabytes.megabytes += this.megabytes;
+    }
+}
@@ -0,0 +1,101 @@
+package ri.wse.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ri.wse.indexerBuild.IndexerController;
+import ri.wse.model.ResultEntry;
+import ri.wse.queryProcessor.IndexSearcher;
+import ri.wse.queryProcessor.ParallelScorer;
+import ri.wse.queryProcessor.QueryProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia de una consulta en {@link QueryProcessor}: análisis de la consulta, cálculo de la similitud con las
+ * listas de postings y obtención de la primera página de resultados. Las consultas tienen 1, 3 o 10 términos y se
+ * responden en orden de una lista fija, sin caché de resultados. Con ranges mayor a 1 las consultas pesadas se
+ * reparten en esa cantidad de rangos de documentos con un {@link ParallelScorer}.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"MEDIUM"})
+    public SyntheticCorpus.Size size;
+
+    @Param({"1", "3", "10"})
+    public int terms;
+
+    @Param({"10"})
+    public int limit;
+
+    /**
+     * Indica si se usa la poda MaxScore o el cálculo exhaustivo.
+     */
+    @Param({"true"})
+    public boolean pruning;
+
+    /**
+     * Cantidad máxima de rangos por consulta; 1 calcula todas las consultas en un solo hilo.
+     */
+    @Param({"1"})
+    public int ranges;
+
+    /**
+     * Cantidad mínima de postings por rango para repartir una consulta.
+     */
+    @Param({"65536"})
+    public long minPostingsPerRange;
+
+    private Path directory;
+    private IndexSearcher indexSearcher;
+    private ParallelScorer parallelScorer;
+    private String[] queries;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int query;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-bench-query");
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        corpus.write(this.directory, this.size.getDocuments());
+        new IndexerController(this.directory.resolve("Coleccion").toString() + "/",
+                this.directory.resolve("Results").toString(), this.directory.resolve("URLS.txt").toString(),
+                this.directory.resolve("stopwords.txt").toString(), Runtime.getRuntime().availableProcessors(),
+                64L * 1024 * 1024).index();
+        this.indexSearcher = new IndexSearcher(this.directory.toString() + File.separator);
+        this.queries = corpus.queries(QUERIES, this.terms).toArray(new String[0]);
+        this.parallelScorer = new ParallelScorer(0);
+        this.parallelScorer.setMaxRangesPerQuery(this.ranges);
+        this.parallelScorer.setMinPostingsPerRange(this.minPostingsPerRange);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.parallelScorer.destroy();
+        SyntheticCorpus.delete(this.directory);
+    }
+
+    @Benchmark
+    public List<ResultEntry> query(Cursor cursor) {
+        QueryProcessor queryProcessor = new QueryProcessor(this.queries[cursor.query++ % QUERIES],
+                this.indexSearcher);
+        queryProcessor.setPruning(this.pruning);
+        queryProcessor.setParallelScorer(this.parallelScorer);
+        return queryProcessor.manageQuery(0, this.limit);
+    }
+}
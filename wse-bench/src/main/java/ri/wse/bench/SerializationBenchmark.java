@@ -0,0 +1,65 @@
+package ri.wse.bench;
+
+import flexjson.JSONSerializer;
+import org.openjdk.jmh.annotations.*;
+import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+import ri.wse.support.json.QueryResultWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tiempo de convertir una página de resultados a JSON: con flexjson por reflexión, como lo hacía el servicio web, y
+ * con el {@link QueryResultWriter} que usa ahora, sin comprimir y con gzip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"10", "50", "100"})
+    public int results;
+
+    private QueryResult queryResult;
+    private ByteArrayOutputStream output;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<ResultEntry> queryResults = new ArrayList<>(this.results);
+        for (int document = 0; document < this.results; document++) {
+            queryResults.add(new ResultEntry(SyntheticCorpus.fileName(document).replace(".html", ""),
+                    SyntheticCorpus.url(document), 1.0 / (document + 1)));
+        }
+        this.queryResult = new QueryResult(queryResults, this.results * 20, true, 0, this.results, false);
+        this.output = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return new JSONSerializer().include("queryResults").serialize(this.queryResult);
+    }
+
+    @Benchmark
+    public int stream() throws IOException {
+        this.output.reset();
+        new QueryResultWriter(this.output).write(this.queryResult);
+        return this.output.size();
+    }
+
+    @Benchmark
+    public int streamGzip() throws IOException {
+        this.output.reset();
+        GZIPOutputStream gzip = new GZIPOutputStream(this.output);
+        new QueryResultWriter(gzip).write(this.queryResult);
+        gzip.finish();
+        return this.output.size();
+    }
+}
@@ -0,0 +1,276 @@
+package ri.wse.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Genera una colección sintética de documentos html para los benchmarks, de modo que los resultados se puedan
+ * reproducir sin la colección real. Con la misma semilla siempre se generan los mismos documentos y las mismas
+ * consultas.
+ * Las palabras de los documentos se escogen de un vocabulario inventado siguiendo una distribución de Zipf, como en
+ * el texto real: unas pocas palabras aparecen en casi todos los documentos y la mayoría aparece en muy pocos. Los
+ * documentos también tienen "stopwords", números, enlaces y entidades html, para que el parseo y el analizador
+ * hagan el mismo trabajo que con la colección real.
+ * La colección se escribe con la misma estructura que espera el índice:
+ * <ul>
+ * <li>Coleccion/: los documentos html.</li>
+ * <li>URLS.txt: el nombre del archivo y el url de cada documento.</li>
+ * <li>stopwords.txt: los "stopwords" de la colección.</li>
+ * <li>Results/: el índice, que se genera con {@link ri.wse.indexerBuild.IndexerController}.</li>
+ * </ul>
+ */
+public class SyntheticCorpus {
+
+    /**
+     * Tamaños de colección que usan los benchmarks.
+     */
+    public enum Size {
+        SMALL(200), MEDIUM(1000), LARGE(5000);
+
+        private final int documents;
+
+        Size(int documents) {
+            this.documents = documents;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+    }
+
+    public static final long DEFAULT_SEED = 20180601L;
+
+    private static final int VOCABULARY_SIZE = 20000;
+
+    private static final String[] STOP_WORDS = {"de", "la", "que", "el", "en", "los", "del", "las", "por", "con",
+            "una", "para", "como", "pero", "sus", "este", "entre", "cuando", "muy", "sin", "sobre", "también"};
+
+    private static final String[] CONSONANTS = {"b", "c", "d", "f", "g", "l", "m", "n", "p", "r", "s", "t", "v", "z",
+            "ch", "ñ"};
+
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u"};
+
+    private static final String[] ENTITIES = {"&aacute;", "&eacute;", "&nbsp;", "&amp;", "&iacute;", "&oacute;"};
+
+    private final long seed;
+    private final String[] vocabulary;
+    private final double[] cumulativeProbabilities;
+
+    public SyntheticCorpus() {
+        this(DEFAULT_SEED);
+    }
+
+    public SyntheticCorpus(long seed) {
+        this.seed = seed;
+        this.vocabulary = new String[VOCABULARY_SIZE];
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            this.vocabulary[rank] = word(rank);
+        }
+        this.cumulativeProbabilities = zipf(VOCABULARY_SIZE);
+    }
+
+    /**
+     * Probabilidades acumuladas de una distribución de Zipf (la probabilidad del lugar k es proporcional a 1/k).
+     */
+    private static double[] zipf(int size) {
+        double[] cumulativeProbabilities = new double[size];
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1.0 / (rank + 1);
+            cumulativeProbabilities[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulativeProbabilities[rank] /= total;
+        }
+        return cumulativeProbabilities;
+    }
+
+    /**
+     * Escoge un lugar siguiendo las probabilidades acumuladas.
+     */
+    private static int sample(double[] cumulativeProbabilities, Random random) {
+        int rank = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        return rank >= 0 ? rank : Math.min(-rank - 1, cumulativeProbabilities.length - 1);
+    }
+
+    /**
+     * Forma la palabra de un lugar del vocabulario con sílabas de una consonante y una vocal, escribiendo el número
+     * en base a la cantidad de sílabas. Como cada sílaba se puede separar sin ambigüedad, todas las palabras son
+     * distintas, y todas tienen al menos dos sílabas para que el analizador no las descarte.
+     */
+    private static String word(int rank) {
+        int syllables = CONSONANTS.length * VOWELS.length;
+        StringBuilder word = new StringBuilder();
+        for (int value = rank + syllables; value > 0; value /= syllables) {
+            int syllable = value % syllables;
+            word.append(CONSONANTS[syllable / VOWELS.length]).append(VOWELS[syllable % VOWELS.length]);
+        }
+        return word.toString();
+    }
+
+    private String randomWord(Random random) {
+        return this.vocabulary[sample(this.cumulativeProbabilities, random)];
+    }
+
+    public static String fileName(int document) {
+        return String.format("doc_%05d.html", document);
+    }
+
+    public static String url(int document) {
+        return "http://www.ejemplo.com/documentos/" + document;
+    }
+
+    /**
+     * Genera el html de un documento, de entre 100 y 700 palabras.
+     */
+    public String document(int document) {
+        Random random = new Random(this.seed * 31 + document);
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>");
+        for (int i = 0; i < 4; i++) {
+            html.append(this.randomWord(random)).append(' ');
+        }
+        html.append("</title>\n<script>var pagina = ").append(document).append(";</script>\n</head>\n<body>\n<h1>");
+        html.append(this.randomWord(random)).append(' ').append(this.randomWord(random)).append("</h1>\n<p>");
+
+        int words = 100 + random.nextInt(600);
+        for (int i = 0; i < words; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 25) {
+                html.append(STOP_WORDS[random.nextInt(STOP_WORDS.length)]);
+            } else if (kind < 28) {
+                html.append(random.nextInt(10000));
+            } else if (kind < 30) {
+                html.append("<a href=\"").append(url(random.nextInt(100000))).append("\">")
+                        .append(this.randomWord(random)).append("</a>");
+            } else if (kind < 31) {
+                html.append(ENTITIES[random.nextInt(ENTITIES.length)]);
+            } else if (kind < 33) {
+                String word = this.randomWord(random);
+                html.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                html.append(this.randomWord(random));
+            }
+            if (random.nextInt(15) == 0) {
+                html.append(random.nextBoolean() ? ".</p>\n<p>" : ", ");
+            } else {
+                html.append(' ');
+            }
+        }
+        html.append("</p>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    /**
+     * Genera consultas con la sintaxis del servicio (términos separados por '-'). Los términos siguen la misma
+     * distribución que los documentos, así que la mayoría de las consultas incluye algún término frecuente con una
+     * lista de postings larga.
+     *
+     * @param count cantidad de consultas
+     * @param terms cantidad de términos de cada consulta
+     */
+    public List<String> queries(int count, int terms) {
+        Random random = new Random(this.seed * 17 + terms);
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int term = 0; term < terms; term++) {
+                if (term > 0) {
+                    query.append('-');
+                }
+                query.append(this.randomWord(random));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Genera una secuencia de consultas como la de un registro real: se escoge un conjunto de consultas distintas de
+     * 1 a 3 términos y cada consulta de la secuencia se toma de ese conjunto siguiendo una distribución de Zipf, así
+     * que las consultas populares se repiten muchas veces y la mayoría aparece pocas veces.
+     *
+     * @param count           cantidad de consultas de la secuencia
+     * @param distinctQueries cantidad de consultas distintas
+     */
+    public List<String> workload(int count, int distinctQueries) {
+        List<String> pool = new ArrayList<>(distinctQueries);
+        for (int terms = 1; terms <= 3; terms++) {
+            pool.addAll(this.queries((distinctQueries + 3 - terms) / 3, terms));
+        }
+        Collections.shuffle(pool, new Random(this.seed * 13));
+        double[] cumulativeProbabilities = zipf(pool.size());
+        Random random = new Random(this.seed * 7 + count);
+        List<String> workload = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            workload.add(pool.get(sample(cumulativeProbabilities, random)));
+        }
+        return workload;
+    }
+
+    /**
+     * Escribe la colección en un directorio.
+     *
+     * @param directory directorio base de la colección
+     * @param documents cantidad de documentos
+     * @return cantidad de bytes de los documentos
+     */
+    public long write(Path directory, int documents) throws IOException {
+        Path collection = directory.resolve("Coleccion");
+        Files.createDirectories(collection);
+        long bytes = 0;
+        try (Writer urls = Files.newBufferedWriter(directory.resolve("URLS.txt"), StandardCharsets.UTF_8)) {
+            for (int document = 0; document < documents; document++) {
+                byte[] html = this.document(document).getBytes(StandardCharsets.UTF_8);
+                Files.write(collection.resolve(fileName(document)), html);
+                bytes += html.length;
+                urls.write(fileName(document) + " " + url(document) + "\n");
+            }
+        }
+        Files.write(directory.resolve("stopwords.txt"), Arrays.asList(STOP_WORDS), StandardCharsets.UTF_8);
+        return bytes;
+    }
+
+    /**
+     * Borra un directorio con todo su contenido.
+     */
+    public static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Escribe una colección para usarla fuera de los benchmarks.
+     *
+     * @param args directorio de la colección, y opcionalmente el tamaño (SMALL, MEDIUM o LARGE, por defecto MEDIUM)
+     *             y la semilla
+     */
+    public static void main(String[] args) throws IOException {
+        Size size = args.length > 1 ? Size.valueOf(args[1]) : Size.MEDIUM;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        long bytes = new SyntheticCorpus(seed).write(Paths.get(args[0]), size.getDocuments());
+        System.out.println("Documentos: " + size.getDocuments() + ", bytes: " + bytes);
+    }
+}
@@ -0,0 +1,82 @@
+package ri.wse.bench.load;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import ri.wse.bench.SyntheticCorpus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Levanta el servicio web (wse-ws) en un Tomcat embebido, con el mismo web.xml con el que se despliega. Las clases
+ * del servicio y de wse-core se cargan del classpath de wse-bench. El índice que usa el servicio se escoge con la
+ * propiedad del sistema wse.index.path antes de iniciar el servidor.
+ */
+public class EmbeddedServer implements Closeable {
+
+    private final Tomcat tomcat;
+    private final File baseDirectory;
+
+    /**
+     * @param port            puerto del servidor, 0 para usar cualquier puerto libre
+     * @param webappDirectory directorio de la aplicación web de wse-ws (src/main/webapp)
+     */
+    public EmbeddedServer(int port, String webappDirectory) throws IOException {
+        this.baseDirectory = Files.createTempDirectory("wse-tomcat").toFile();
+        this.tomcat = new Tomcat();
+        this.tomcat.setBaseDir(this.baseDirectory.getAbsolutePath());
+        this.tomcat.setPort(port);
+        this.tomcat.getConnector();
+
+        Context context = this.tomcat.addContext("", new File(webappDirectory).getAbsolutePath());
+        ContextConfig contextConfig = new ContextConfig();
+        contextConfig.setDefaultWebXml(this.tomcat.noDefaultWebXmlPath());
+        context.addLifecycleListener(contextConfig);
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+    }
+
+    public void start() throws LifecycleException {
+        this.tomcat.start();
+    }
+
+    /**
+     * Levanta el servicio y espera hasta que se detenga el proceso; lo usa {@link ShardCluster} para servir un shard
+     * en otra JVM. El índice se escoge con la propiedad del sistema wse.index.path.
+     *
+     * @param args el puerto y el directorio de la aplicación web de wse-ws
+     */
+    public static void main(String[] args) throws Exception {
+        EmbeddedServer server = new EmbeddedServer(Integer.parseInt(args[0]), args[1]);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        server.start();
+        System.out.println("Índice " + System.getProperty("wse.index.path") + " servido en el puerto "
+                + server.getPort());
+        server.tomcat.getServer().await();
+    }
+
+    public int getPort() {
+        return this.tomcat.getConnector().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.tomcat.stop();
+            this.tomcat.destroy();
+        } catch (LifecycleException e) {
+            throw new IOException("No se pudo detener el servidor embebido.", e);
+        }
+        SyntheticCorpus.delete(this.baseDirectory.toPath());
+    }
+}
@@ -0,0 +1,239 @@
+package ri.wse.bench.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Envía las consultas de una secuencia a un endpoint de búsqueda (/ws/query/result o /ws/query/async) con varios
+ * hilos a la vez y registra la latencia de cada solicitud exitosa en un histograma HDR, en microsegundos. Las
+ * solicitudes rechazadas por el control de admisión (503) y las que vencieron (504) se cuentan aparte de los errores.
+ * Sin una tasa objetivo cada hilo envía la siguiente solicitud en cuanto recibe la respuesta (modelo cerrado). Con
+ * una tasa objetivo cada hilo programa sus solicitudes a intervalos fijos y la latencia se mide desde el momento en
+ * que la solicitud debió enviarse, de modo que las esperas del servidor no se ocultan al enviar menos solicitudes
+ * (omisión coordinada).
+ */
+public class LoadGenerator {
+
+    private final String url;
+    private final List<String> queries;
+    private boolean gzip;
+
+    /**
+     * Resultado de una corrida con una cantidad de hilos.
+     */
+    public static class Result {
+
+        private final int concurrency;
+        private final Histogram histogram;
+        private final long errors;
+        private final long rejected;
+        private final long timeouts;
+        private final long elapsedNanos;
+
+        Result(int concurrency, Histogram histogram, long errors, long rejected, long timeouts, long elapsedNanos) {
+            this.concurrency = concurrency;
+            this.histogram = histogram;
+            this.errors = errors;
+            this.rejected = rejected;
+            this.timeouts = timeouts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Latencias de las solicitudes exitosas, en microsegundos.
+         */
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        public long getRequests() {
+            return histogram.getTotalCount();
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Solicitudes rechazadas por el servidor con 503.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Solicitudes que superaron su tiempo límite en el servidor (504).
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Solicitudes exitosas por segundo.
+         */
+        public double getThroughput() {
+            return histogram.getTotalCount() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Latencia de un percentil, en milisegundos.
+         */
+        public double getLatency(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    /**
+     * @param baseUrl  dirección del servidor, por ejemplo http://localhost:8080
+     * @param endpoint ruta del endpoint, por ejemplo /ws/query/result
+     * @param queries  consultas que se envían, en orden
+     * @param limit    cantidad de resultados que se piden por consulta
+     * @param timeout  tiempo límite que se pide para cada consulta en milisegundos, o 0 para no pedirlo
+     * @param budget   presupuesto de tiempo que se pide para cada consulta en milisegundos, o 0 para no pedirlo
+     */
+    public LoadGenerator(String baseUrl, String endpoint, List<String> queries, int limit, long timeout,
+                         long budget) {
+        this.url = baseUrl + endpoint + "?limit=" + limit + (timeout > 0 ? "&timeout=" + timeout : "")
+                + (budget > 0 ? "&budget=" + budget : "") + "&query=";
+        this.queries = queries;
+    }
+
+    /**
+     * Indica si se piden las respuestas comprimidas con gzip.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Envía solicitudes durante un tiempo. Cada hilo recorre la secuencia de consultas desde una posición distinta.
+     *
+     * @param concurrency cantidad de hilos
+     * @param duration    duración en segundos
+     * @param rate        solicitudes por segundo entre todos los hilos, o 0 para enviarlas sin esperar
+     */
+    public Result run(int concurrency, int duration, double rate) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(duration);
+        long interval = rate > 0 ? (long) (concurrency * 1e9 / rate) : 0;
+
+        List<Worker> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i * this.queries.size() / concurrency, start, end, interval);
+            worker.setName("wse-load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        Histogram histogram = new Histogram(3);
+        long errors = 0;
+        long rejected = 0;
+        long timeouts = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            histogram.add(worker.histogram);
+            errors += worker.errors;
+            rejected += worker.rejected;
+            timeouts += worker.timeouts;
+        }
+        return new Result(concurrency, histogram, errors, rejected, timeouts, System.nanoTime() - start);
+    }
+
+    private class Worker extends Thread {
+
+        private final Histogram histogram = new Histogram(3);
+        private final long start;
+        private final long end;
+        private final long interval;
+        private int query;
+        private long errors;
+        private long rejected;
+        private long timeouts;
+
+        Worker(int query, long start, long end, long interval) {
+            this.query = query;
+            this.start = start;
+            this.end = end;
+            this.interval = interval;
+        }
+
+        @Override
+        public void run() {
+            long scheduled = this.start;
+            while (true) {
+                if (this.interval > 0) {
+                    scheduled += this.interval;
+                    long wait = scheduled - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    scheduled = System.nanoTime();
+                }
+                if (scheduled >= this.end) {
+                    return;
+                }
+                String query = queries.get(this.query++ % queries.size());
+                int status = send(query);
+                long latency = System.nanoTime() - scheduled;
+                if (status == HttpURLConnection.HTTP_OK) {
+                    this.histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(latency));
+                } else if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                    this.rejected++;
+                } else if (status == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) {
+                    this.timeouts++;
+                } else {
+                    this.errors++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Envía una consulta y lee la respuesta completa, para que la conexión se pueda reutilizar.
+     *
+     * @return el código de la respuesta, o -1 si no se pudo enviar
+     */
+    private int send(String query) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(this.url + encode(query)).openConnection();
+            if (this.gzip) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                byte[] buffer = new byte[8192];
+                try (InputStream input = body) {
+                    while (input.read(buffer) >= 0) {
+                        // Se descarta el contenido.
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return -1;
+        }
+    }
+
+    private static String encode(String query) throws UnsupportedEncodingException {
+        return URLEncoder.encode(query, "UTF-8");
+    }
+}
@@ -0,0 +1,233 @@
+package ri.wse.bench.load;
+
+import ri.wse.bench.SyntheticCorpus;
+import ri.wse.indexerBuild.IndexerController;
+import ri.wse.queryProcessor.ShardedSearcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * Prueba de carga de los endpoints de búsqueda. Levanta el servicio en un servidor embebido (o usa uno que ya esté
+ * corriendo), le envía una secuencia de consultas con distintas cantidades de hilos y reporta para cada una el
+ * rendimiento y los percentiles p50, p95, p99 y p99.9 de la latencia.
+ * Opciones, todas opcionales:
+ * <ul>
+ * <li>--corpus SMALL|MEDIUM|LARGE: genera e indexa una colección sintética de ese tamaño (por defecto MEDIUM).</li>
+ * <li>--index DIRECTORIO: usa el índice de ese directorio base (con stopwords.txt y Results) en lugar de la
+ * colección sintética.</li>
+ * <li>--queries ARCHIVO: registro de consultas, una por línea, que se repite en orden; por defecto se usa una
+ * secuencia sintética con distribución de Zipf.</li>
+ * <li>--url DIRECCION: servidor que ya está corriendo, por ejemplo http://localhost:8080; no se levanta el
+ * embebido.</li>
+ * <li>--webapp DIRECTORIO: aplicación web de wse-ws (por defecto ../wse-ws/src/main/webapp).</li>
+ * <li>--concurrency 1,4,16,64: cantidades de hilos que se prueban.</li>
+ * <li>--warmup SEGUNDOS y --duration SEGUNDOS: calentamiento y duración de cada cantidad de hilos (5 y 30).</li>
+ * <li>--rate SOLICITUDES: solicitudes por segundo entre todos los hilos; por defecto se envían sin esperar.</li>
+ * <li>--limit N: resultados por consulta (10).</li>
+ * <li>--endpoint RUTA: endpoint que se prueba, /ws/query/result (por defecto) o /ws/query/async.</li>
+ * <li>--timeout MILISEGUNDOS: tiempo límite que se pide para cada consulta asíncrona.</li>
+ * <li>--gzip true: pide las respuestas comprimidas con gzip.</li>
+ * <li>--budget MILISEGUNDOS: presupuesto de tiempo que se pide para cada consulta; al agotarse el servidor responde
+ * resultados parciales (se cuentan en el contador query.partial de /ws/admin/metrics).</li>
+ * <li>--search-threads N y --search-queue N: consultas asíncronas que el servidor embebido calcula a la vez y que
+ * deja en espera antes de rechazar las nuevas con 503.</li>
+ * <li>--cache-entries N: tamaño del caché de resultados del servidor embebido, 0 para desactivarlo.</li>
+ * <li>--shards N: reparte el índice en N shards (con --index, el índice ya debe estar repartido en
+ * Results/shard-k). El servidor embebido sirve el primero y reparte las consultas entre todos.</li>
+ * <li>--shard-mode remote|local: con remote (por defecto) los demás shards se sirven en otras JVM (ver
+ * {@link ShardCluster}); con local se abren en el mismo proceso (ver {@link ShardedSearcher}).</li>
+ * <li>--output DIRECTORIO: escribe la distribución de percentiles de cada corrida (formato .hgrm).</li>
+ * <li>--slo-p99 MILISEGUNDOS: termina con código 1 si el p99 de alguna corrida supera ese valor, o si hubo
+ * errores. Las solicitudes rechazadas (503) o vencidas (504) no cuentan como errores ni entran en los
+ * percentiles.</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final int SYNTHETIC_QUERIES = 100000;
+    private static final int SYNTHETIC_DISTINCT_QUERIES = 10000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        List<LoadGenerator.Result> results = run(options);
+        double sloP99 = Double.parseDouble(options.getOrDefault("slo-p99", "0"));
+        if (!report(System.out, results, sloP99)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Corre la prueba de carga con las opciones de {@link #main(String[])}.
+     *
+     * @return el resultado de cada cantidad de hilos, en el orden de --concurrency
+     */
+    static List<LoadGenerator.Result> run(Map<String, String> options) throws Exception {
+        List<Integer> concurrencies = new ArrayList<>();
+        for (String concurrency : options.getOrDefault("concurrency", "1,4,16,64").split(",")) {
+            concurrencies.add(Integer.parseInt(concurrency.trim()));
+        }
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "10"));
+        String endpoint = options.getOrDefault("endpoint", "/ws/query/result");
+        long timeout = Long.parseLong(options.getOrDefault("timeout", "0"));
+        long budget = Long.parseLong(options.getOrDefault("budget", "0"));
+        int shards = Integer.parseInt(options.getOrDefault("shards", "1"));
+        boolean remoteShards = !options.getOrDefault("shard-mode", "remote").equals("local");
+        String webapp = options.getOrDefault("webapp", "../wse-ws/src/main/webapp");
+
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        List<String> queries;
+        if (options.containsKey("queries")) {
+            queries = Files.readAllLines(Paths.get(options.get("queries")), StandardCharsets.UTF_8).stream()
+                    .map(String::trim).filter(query -> !query.isEmpty()).collect(Collectors.toList());
+        } else {
+            queries = corpus.workload(SYNTHETIC_QUERIES, SYNTHETIC_DISTINCT_QUERIES);
+        }
+
+        Path corpusDirectory = null;
+        EmbeddedServer server = null;
+        ShardCluster shardCluster = null;
+        try {
+            String baseUrl = options.get("url");
+            if (baseUrl == null) {
+                String indexPath = options.get("index");
+                if (indexPath == null) {
+                    SyntheticCorpus.Size size = SyntheticCorpus.Size.valueOf(
+                            options.getOrDefault("corpus", "MEDIUM"));
+                    corpusDirectory = Files.createTempDirectory("wse-load");
+                    System.out.println("Generando e indexando la colección sintética " + size + "...");
+                    corpus.write(corpusDirectory, size.getDocuments());
+                    new IndexerController(corpusDirectory.resolve("Coleccion").toString() + "/",
+                            corpusDirectory.resolve("Results").toString(),
+                            corpusDirectory.resolve("URLS.txt").toString(),
+                            corpusDirectory.resolve("stopwords.txt").toString(),
+                            Runtime.getRuntime().availableProcessors(), 64L * 1024 * 1024, shards).index();
+                    indexPath = corpusDirectory.toString();
+                }
+                if (shards > 1) {
+                    StringJoiner shardList = new StringJoiner(",").add("local");
+                    if (remoteShards) {
+                        shardCluster = new ShardCluster(webapp);
+                    }
+                    for (int shard = 1; shard < shards; shard++) {
+                        String shardPath = Paths.get(indexPath, "Results", "shard-" + shard).toString();
+                        if (remoteShards) {
+                            System.out.println("Iniciando el shard " + shard + " en otra JVM...");
+                            shardList.add(shardCluster.start(shardPath));
+                        } else {
+                            shardList.add(shardPath);
+                        }
+                    }
+                    System.setProperty("wse.shards", shardList.toString());
+                    indexPath = Paths.get(indexPath, "Results", "shard-0").toString();
+                }
+                System.setProperty("wse.index.path", indexPath + File.separator);
+                if (options.containsKey("cache-entries")) {
+                    System.setProperty("wse.cache.entries", options.get("cache-entries"));
+                }
+                if (options.containsKey("search-threads")) {
+                    System.setProperty("wse.search.threads", options.get("search-threads"));
+                }
+                if (options.containsKey("search-queue")) {
+                    System.setProperty("wse.search.queue", options.get("search-queue"));
+                }
+                server = new EmbeddedServer(0, webapp);
+                server.start();
+                baseUrl = "http://localhost:" + server.getPort();
+            }
+
+            LoadGenerator loadGenerator = new LoadGenerator(baseUrl, endpoint, queries, limit, timeout, budget);
+            loadGenerator.setGzip(Boolean.parseBoolean(options.getOrDefault("gzip", "false")));
+            List<LoadGenerator.Result> results = new ArrayList<>();
+            for (int concurrency : concurrencies) {
+                System.out.println("Concurrencia " + concurrency + ": calentamiento de " + warmup
+                        + " s y medición de " + duration + " s...");
+                if (warmup > 0) {
+                    loadGenerator.run(concurrency, warmup, rate);
+                }
+                LoadGenerator.Result result = loadGenerator.run(concurrency, duration, rate);
+                results.add(result);
+                if (options.containsKey("output")) {
+                    writeHistogram(Paths.get(options.get("output")), result);
+                }
+            }
+
+            return results;
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            if (shardCluster != null) {
+                shardCluster.close();
+            }
+            if (corpusDirectory != null) {
+                SyntheticCorpus.delete(corpusDirectory);
+            }
+        }
+    }
+
+    /**
+     * Lee las opciones de la forma --nombre valor.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Opción inválida: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * Imprime una fila por cada cantidad de hilos y revisa el objetivo de latencia.
+     *
+     * @return true si todas las corridas cumplen el objetivo y no tuvieron errores
+     */
+    static boolean report(PrintStream output, List<LoadGenerator.Result> results, double sloP99) {
+        output.println();
+        output.println(String.format("%12s %11s %8s %10s %8s %13s %9s %9s %9s %9s %9s", "Concurrencia",
+                "Solicitudes", "Errores", "Rechazadas", "Vencidas", "Solicitudes/s", "p50 ms", "p95 ms", "p99 ms",
+                "p99.9 ms", "max ms"));
+        boolean passed = true;
+        for (LoadGenerator.Result result : results) {
+            output.println(String.format("%12d %11d %8d %10d %8d %13.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    result.getConcurrency(), result.getRequests(), result.getErrors(), result.getRejected(),
+                    result.getTimeouts(), result.getThroughput(),
+                    result.getLatency(50), result.getLatency(95), result.getLatency(99), result.getLatency(99.9),
+                    result.getHistogram().getMaxValue() / 1000.0));
+            if (sloP99 > 0 && (result.getLatency(99) > sloP99 || result.getErrors() > 0)) {
+                passed = false;
+            }
+        }
+        if (sloP99 > 0) {
+            output.println(passed ? "Objetivo de p99 <= " + sloP99 + " ms: cumplido"
+                    : "Objetivo de p99 <= " + sloP99 + " ms: NO cumplido");
+        }
+        return passed;
+    }
+
+    private static void writeHistogram(Path directory, LoadGenerator.Result result) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream output = new PrintStream(Files.newOutputStream(
+                directory.resolve("concurrencia-" + result.getConcurrency() + ".hgrm")), false, "UTF-8")) {
+            // Los valores se guardan en microsegundos y el archivo se escribe en milisegundos.
+            result.getHistogram().outputPercentileDistribution(output, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ri.wse.bench.load;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Levanta shards del índice como instancias del servicio web en otras JVM de la misma máquina, cada una con un
+ * {@link EmbeddedServer} que sirve el directorio base de su shard. Permite probar el modo de varios nodos sin
+ * desplegar el servicio: la instancia que reparte las consultas recibe las direcciones de los shards en la
+ * propiedad wse.shards.
+ */
+public class ShardCluster implements Closeable {
+
+    /**
+     * Tiempo máximo que se espera a que un shard empiece a responder, en segundos.
+     */
+    private static final int STARTUP_TIMEOUT = 120;
+
+    private final String webappDirectory;
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * @param webappDirectory directorio de la aplicación web de wse-ws (src/main/webapp)
+     */
+    public ShardCluster(String webappDirectory) {
+        this.webappDirectory = webappDirectory;
+    }
+
+    /**
+     * Inicia una JVM que sirve un shard y espera a que responda.
+     *
+     * @param shardBasePath directorio base del shard, con stopwords.txt y Results
+     * @return la dirección de la instancia, por ejemplo http://localhost:8081
+     */
+    public String start(String shardBasePath) throws IOException, InterruptedException {
+        int port = freePort();
+        ProcessBuilder processBuilder = new ProcessBuilder(
+                javaExecutable(), "-cp", System.getProperty("java.class.path"),
+                "-Dwse.index.path=" + shardBasePath + File.separator,
+                "-Dwse.cache.entries=0",
+                EmbeddedServer.class.getName(), Integer.toString(port), this.webappDirectory);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.appendTo(
+                new File(shardBasePath, "shard-server.log")));
+        Process process = processBuilder.start();
+        this.processes.add(process);
+
+        String url = "http://localhost:" + port;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STARTUP_TIMEOUT);
+        while (!isReady(url)) {
+            if (!process.isAlive()) {
+                throw new IOException("El shard " + shardBasePath + " terminó al iniciar, ver shard-server.log");
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("El shard " + shardBasePath + " no respondió en " + STARTUP_TIMEOUT + " s");
+            }
+            Thread.sleep(200);
+        }
+        return url;
+    }
+
+    private static boolean isReady(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url + "/ws/admin/index").openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(5000);
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            return status == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String javaExecutable() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Detiene todas las JVM de los shards.
+     */
+    @Override
+    public void close() {
+        for (Process process : this.processes) {
+            process.destroy();
+        }
+        for (Process process : this.processes) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ri.wse.bench;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Con la misma semilla la colección sintética es siempre la misma, y se escribe con la estructura que espera el
+ * indexador.
+ */
+public class SyntheticCorpusTest {
+
+    private static final int DOCUMENTS = 20;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-corpus");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(this.directory);
+    }
+
+    @Test
+    public void sameSeedSameCorpus() {
+        SyntheticCorpus corpus = new SyntheticCorpus(7);
+        SyntheticCorpus same = new SyntheticCorpus(7);
+        SyntheticCorpus other = new SyntheticCorpus(8);
+        for (int document = 0; document < DOCUMENTS; document++) {
+            assertEquals(corpus.document(document), same.document(document));
+            assertNotEquals(corpus.document(document), other.document(document));
+        }
+        assertEquals(corpus.queries(50, 2), same.queries(50, 2));
+        assertEquals(corpus.workload(200, 30), same.workload(200, 30));
+        for (String query : corpus.queries(50, 3)) {
+            assertEquals(query, 3, query.split("-").length);
+        }
+    }
+
+    @Test
+    public void writesTheCollection() throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        long bytes = corpus.write(this.directory, DOCUMENTS);
+
+        long written = 0;
+        for (int document = 0; document < DOCUMENTS; document++) {
+            Path file = this.directory.resolve("Coleccion").resolve(SyntheticCorpus.fileName(document));
+            assertEquals(corpus.document(document), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            written += Files.size(file);
+        }
+        assertEquals(written, bytes);
+        List<String> urls = Files.readAllLines(this.directory.resolve("URLS.txt"), StandardCharsets.UTF_8);
+        assertEquals(DOCUMENTS, urls.size());
+        assertEquals(SyntheticCorpus.fileName(3) + " " + SyntheticCorpus.url(3), urls.get(3));
+        assertTrue(Files.readAllLines(this.directory.resolve("stopwords.txt"), StandardCharsets.UTF_8)
+                .contains("de"));
+    }
+}
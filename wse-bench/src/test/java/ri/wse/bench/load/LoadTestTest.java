@@ -0,0 +1,37 @@
+package ri.wse.bench.load;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Prueba mínima de la prueba de carga: genera e indexa la colección sintética más pequeña, levanta el servicio
+ * embebido y envía una sola consulta.
+ */
+public class LoadTestTest {
+
+    @After
+    public void tearDown() {
+        System.clearProperty("wse.index.path");
+    }
+
+    @Test
+    public void oneRequest() throws Exception {
+        // Una solicitud por segundo durante dos segundos: la primera se envía al segundo y la segunda ya no se envía.
+        Map<String, String> options = LoadTest.parseOptions(new String[]{"--corpus", "SMALL", "--concurrency", "1",
+                "--warmup", "0", "--duration", "2", "--rate", "1", "--webapp", "../wse-ws/src/main/webapp"});
+        List<LoadGenerator.Result> results = LoadTest.run(options);
+
+        assertEquals(1, results.size());
+        LoadGenerator.Result result = results.get(0);
+        assertEquals(1, result.getConcurrency());
+        assertEquals(1, result.getRequests());
+        assertEquals(0, result.getErrors());
+        assertEquals(0, result.getRejected());
+        assertEquals(0, result.getTimeouts());
+    }
+}
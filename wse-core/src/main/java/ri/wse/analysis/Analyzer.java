@@ -0,0 +1,94 @@
+package ri.wse.analysis;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Convierte texto en los términos que se guardan en el índice. Lo usan tanto el indexador para los documentos como
+ * el procesador de consultas, de modo que una consulta se normaliza con las mismas reglas que los documentos:
+ * <ul>
+ * <li>El texto se separa y normaliza con el {@link Tokenizer}.</li>
+ * <li>Se descartan los términos de más de {@link #MAX_TERM_LENGTH} caracteres y los "stopwords".</li>
+ * <li>Se descartan los términos de 1 o 2 caracteres, excepto si son números.</li>
+ * </ul>
+ * Cada hilo reutiliza su propio {@link Tokenizer}, así que una misma instancia puede ser usada por varios hilos a
+ * la vez.
+ */
+public class Analyzer {
+
+    /**
+     * Largo máximo de un término del índice.
+     */
+    public static final int MAX_TERM_LENGTH = 30;
+
+    private final Set<String> stopWords;
+
+    private final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+
+    /**
+     * @param stopWords "stopwords" que se descartan, ver {@link StopWords#load(String)}
+     */
+    public Analyzer(Set<String> stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Obtiene los términos de un texto.
+     *
+     * @param text     texto de un documento o de una consulta
+     * @param consumer recibe cada término válido en el orden en que aparece
+     */
+    public void analyze(String text, Consumer<String> consumer) {
+        this.tokenizers.get().tokenize(text, term -> {
+            if (this.isIndexable(term)) {
+                consumer.accept(term);
+            }
+        });
+    }
+
+    /**
+     * Obtiene los términos de una consulta, en la que los términos vienen separados por '-'. Como el '-' no es
+     * parte de ningún término, la consulta se analiza igual que un documento.
+     *
+     * @param query    consulta
+     * @param consumer recibe cada término válido en el orden en que aparece
+     */
+    public void analyzeQuery(String query, Consumer<String> consumer) {
+        this.analyze(query, consumer);
+    }
+
+    public boolean isStopWord(String term) {
+        return this.stopWords.contains(term);
+    }
+
+    private boolean isIndexable(String term) {
+        return term.length() <= MAX_TERM_LENGTH && !this.stopWords.contains(term) && !isSmallWord(term);
+    }
+
+    /**
+     * Verifica si una palabra tiene menos de 3 caracteres para no incluirla como parte del vocabulario,
+     * pero si tiene 1 o 2 caracteres y es un número, entonces sí se incluye.
+     */
+    static boolean isSmallWord(String word) {
+        if (word.length() > 2) {
+            return false;
+        }
+        return !isNumber(word);
+    }
+
+    /**
+     * Verifica, sin crear excepciones, si todos los caracteres de la palabra son dígitos.
+     */
+    private static boolean isNumber(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char character = word.charAt(i);
+            if (character < '0' || character > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
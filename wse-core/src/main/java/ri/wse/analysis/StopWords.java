@@ -0,0 +1,43 @@
+package ri.wse.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Carga los archivos de "stopwords". Cada archivo se lee una sola vez y el conjunto resultante, que es de solo
+ * lectura, se comparte entre todos los que lo pidan.
+ */
+public final class StopWords {
+
+    private static final Map<String, Set<String>> CACHE = new ConcurrentHashMap<>();
+
+    private StopWords() {
+    }
+
+    /**
+     * Obtiene los "stopwords" de un archivo, con una palabra por línea.
+     *
+     * @param filePath dirección del archivo
+     * @return conjunto de solo lectura con los "stopwords"
+     */
+    public static Set<String> load(String filePath) {
+        return CACHE.computeIfAbsent(filePath, StopWords::read);
+    }
+
+    private static Set<String> read(String filePath) {
+        Set<String> stopWords = new HashSet<>();
+        try (Stream<String> stream = Files.lines(Paths.get(filePath))) {
+            stream.forEach(stopWords::add);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return Collections.unmodifiableSet(stopWords);
+    }
+}
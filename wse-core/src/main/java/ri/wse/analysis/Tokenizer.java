@@ -0,0 +1,263 @@
+package ri.wse.analysis;
+
+import java.util.function.Consumer;
+
+/**
+ * Separa el texto de un documento en términos aplicando las reglas de normalización del indexador en una sola pasada
+ * sobre el texto, sin crear copias intermedias. Equivale a aplicar, en orden, sobre el texto en minúsculas:
+ * <ol>
+ * <li>Eliminar los urls (http, https y ftp).</li>
+ * <li>Cambiar por un espacio los códigos de espacio (&amp;nbsp;, &amp;#160;, &amp;#32; y &amp;#x20).</li>
+ * <li>Cambiar los códigos de las vocales tildadas y la ñ (&amp;#225, &amp;#193, ...) por la letra.</li>
+ * <li>Eliminar el código del signo de exclamación invertido (&amp;#161;).</li>
+ * <li>Cambiar los cambios de línea y todos los símbolos que no sean letras (a-z, ñ y vocales tildadas), dígitos o
+ * espacios en blanco por un espacio.</li>
+ * <li>Eliminar las palabras que mezclan letras y números.</li>
+ * <li>Separar el texto por espacios y quitar los espacios en blanco al inicio y al final de cada término.</li>
+ * </ol>
+ * El texto pasa por tres etapas encadenadas: la primera salta los urls, la segunda es una máquina de estados que
+ * reconoce los códigos de caracteres y la tercera clasifica cada carácter y arma los términos en un buffer que se
+ * reutiliza. Una instancia guarda el estado de la pasada, así que no debe ser usada por varios hilos a la vez.
+ */
+public class Tokenizer {
+
+    /**
+     * Códigos de caracteres reconocidos y el carácter por el que se cambian; un carácter nulo indica que el código se
+     * elimina.
+     */
+    private static final String[] CODES = {"&nbsp;", "&#160;", "&#32;", "&#x20", "&#225", "&#193", "&#233", "&#201",
+            "&#237", "&#205", "&#243", "&#211", "&#250", "&#218", "&#241", "&#209", "&#161;"};
+    private static final char[] REPLACEMENTS = {' ', ' ', ' ', ' ', 'á', 'á', 'é', 'é', 'í', 'í', 'ó', 'ó', 'ú', 'ú',
+            'ñ', 'ñ', '\0'};
+    private static final int MAX_CODE_LENGTH = 6;
+
+    private final char[] code = new char[MAX_CODE_LENGTH];
+    private int codeLength;
+
+    private char[] term = new char[64];
+    private int termLength;
+    private int segmentStart = -1;
+    private boolean segmentHasLetter;
+    private boolean segmentHasDigit;
+
+    private Consumer<String> consumer;
+
+    /**
+     * Separa el texto en términos.
+     *
+     * @param text     texto del documento
+     * @param consumer recibe cada término en el orden en que aparece
+     */
+    public void tokenize(String text, Consumer<String> consumer) {
+        this.consumer = consumer;
+        this.codeLength = 0;
+        this.termLength = 0;
+        this.segmentStart = -1;
+
+        String lowerCaseText = text.toLowerCase();
+        int length = lowerCaseText.length();
+        int position = 0;
+        while (position < length) {
+            char current = lowerCaseText.charAt(position);
+            if (current == 'h' || current == 'f') {
+                int urlEnd = urlEnd(lowerCaseText, position);
+                if (urlEnd > 0) {
+                    position = urlEnd;
+                    continue;
+                }
+            }
+            this.decodeCharacter(current);
+            position++;
+        }
+
+        for (int i = 0; i < this.codeLength; i++) {
+            this.addCharacter(this.code[i]);
+        }
+        this.codeLength = 0;
+        this.endTerm();
+        this.consumer = null;
+    }
+
+    /**
+     * Busca un url que empiece en la posición dada.
+     *
+     * @return posición donde termina el url, o -1 si no empieza un url en la posición
+     */
+    private static int urlEnd(String text, int start) {
+        int position;
+        if (text.startsWith("http://", start)) {
+            position = start + 7;
+        } else if (text.startsWith("ftp://", start)) {
+            position = start + 6;
+        } else if (text.startsWith("https://", start)) {
+            position = start + 8;
+        } else {
+            return -1;
+        }
+
+        // Nombre del servidor: al menos dos partes separadas por puntos.
+        int length = text.length();
+        int hostStart = position;
+        while (position < length && isHostCharacter(text.charAt(position))) {
+            position++;
+        }
+        if (position == hostStart) {
+            return -1;
+        }
+        boolean hasDomain = false;
+        while (position + 1 < length && text.charAt(position) == '.' && isHostCharacter(text.charAt(position + 1))) {
+            position += 2;
+            while (position < length && isHostCharacter(text.charAt(position))) {
+                position++;
+            }
+            hasDomain = true;
+        }
+        if (!hasDomain) {
+            return -1;
+        }
+
+        // Ruta: termina en el último carácter válido que no sea un punto, una coma o dos puntos.
+        int end = position;
+        while (position < length && isPathCharacter(text.charAt(position))) {
+            char current = text.charAt(position);
+            position++;
+            if (current != '.' && current != ',' && current != ':') {
+                end = position;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isWordCharacter(char character) {
+        return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z')
+                || (character >= '0' && character <= '9') || character == '_';
+    }
+
+    private static boolean isHostCharacter(char character) {
+        return isWordCharacter(character) || character == '-';
+    }
+
+    private static boolean isPathCharacter(char character) {
+        return isHostCharacter(character) || ".,@?^=%&:/~+#".indexOf(character) >= 0;
+    }
+
+    /**
+     * Reconoce los códigos de caracteres. Los caracteres que pueden ser parte de un código se guardan hasta saber si
+     * lo completan; si no, pasan tal cual a la siguiente etapa.
+     */
+    private void decodeCharacter(char character) {
+        if (this.codeLength == 0) {
+            if (character == '&') {
+                this.code[this.codeLength++] = character;
+            } else {
+                this.addCharacter(character);
+            }
+            return;
+        }
+
+        this.code[this.codeLength++] = character;
+        boolean isPrefix = false;
+        for (int i = 0; i < CODES.length; i++) {
+            String candidate = CODES[i];
+            if (candidate.length() < this.codeLength || !this.codeStartsWith(candidate)) {
+                continue;
+            }
+            if (candidate.length() == this.codeLength) {
+                this.codeLength = 0;
+                if (REPLACEMENTS[i] != '\0') {
+                    this.addCharacter(REPLACEMENTS[i]);
+                }
+                return;
+            }
+            isPrefix = true;
+        }
+        if (isPrefix) {
+            return;
+        }
+
+        // Los códigos solo tienen '&' al inicio, así que el único carácter que puede empezar otro código es el último.
+        int pending = this.codeLength;
+        this.codeLength = 0;
+        for (int i = 0; i < pending - 1; i++) {
+            this.addCharacter(this.code[i]);
+        }
+        this.decodeCharacter(character);
+    }
+
+    private boolean codeStartsWith(String candidate) {
+        for (int i = 0; i < this.codeLength; i++) {
+            if (candidate.charAt(i) != this.code[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clasifica un carácter ya decodificado y lo agrega al término actual, o termina el término si es un separador.
+     */
+    private void addCharacter(char character) {
+        if (character == ' ' || !isTermCharacter(character)) {
+            this.endTerm();
+            return;
+        }
+
+        if ((character >= 'a' && character <= 'z') || (character >= '0' && character <= '9')) {
+            if (this.segmentStart < 0) {
+                this.segmentStart = this.termLength;
+            }
+            if (character <= '9') {
+                this.segmentHasDigit = true;
+            } else {
+                this.segmentHasLetter = true;
+            }
+        } else {
+            this.endSegment();
+        }
+
+        if (this.termLength == this.term.length) {
+            char[] larger = new char[this.term.length * 2];
+            System.arraycopy(this.term, 0, larger, 0, this.termLength);
+            this.term = larger;
+        }
+        this.term[this.termLength++] = character;
+    }
+
+    /**
+     * Letras, dígitos y los espacios en blanco distintos del espacio y los cambios de línea, que no separan términos
+     * pero se quitan de los extremos de cada término.
+     */
+    private static boolean isTermCharacter(char character) {
+        return (character >= 'a' && character <= 'z') || (character >= '0' && character <= '9')
+                || character == 'ñ' || character == 'á' || character == 'é' || character == 'í' || character == 'ó'
+                || character == 'ú' || character == '\t' || character == '\u000B' || character == '\f';
+    }
+
+    /**
+     * Termina la secuencia actual de letras y dígitos sin tilde, y la elimina del término si mezcla letras y números.
+     */
+    private void endSegment() {
+        if (this.segmentStart >= 0 && this.segmentHasLetter && this.segmentHasDigit) {
+            this.termLength = this.segmentStart;
+        }
+        this.segmentStart = -1;
+        this.segmentHasLetter = false;
+        this.segmentHasDigit = false;
+    }
+
+    private void endTerm() {
+        this.endSegment();
+        int start = 0;
+        int end = this.termLength;
+        while (start < end && this.term[start] <= ' ') {
+            start++;
+        }
+        while (end > start && this.term[end - 1] <= ' ') {
+            end--;
+        }
+        if (end > start) {
+            this.consumer.accept(new String(this.term, start, end - start));
+        }
+        this.termLength = 0;
+    }
+}
@@ -0,0 +1,12 @@
+package ri.wse.core.index.service;
+
+import ri.wse.model.PostingCacheStatistics;
+
+public interface IndexService {
+
+    long getGeneration();
+
+    boolean refresh();
+
+    PostingCacheStatistics getPostingCacheStatistics();
+}
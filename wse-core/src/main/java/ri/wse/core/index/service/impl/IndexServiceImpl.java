@@ -0,0 +1,45 @@
+package ri.wse.core.index.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ri.wse.core.index.service.IndexService;
+import ri.wse.indexStorage.PostingBlockCache;
+import ri.wse.model.PostingCacheStatistics;
+import ri.wse.queryProcessor.SearcherManager;
+import ri.wse.queryProcessor.ShardedSearcher;
+
+@Service("indexService")
+public class IndexServiceImpl implements IndexService {
+
+    @Autowired
+    private SearcherManager searcherManager;
+
+    @Autowired
+    private PostingBlockCache postingBlockCache;
+
+    @Autowired
+    private ShardedSearcher shardedSearcher;
+
+    @Override
+    public long getGeneration() {
+        return this.searcherManager.getGeneration();
+    }
+
+    @Override
+    public boolean refresh() {
+        boolean refreshed = this.searcherManager.maybeRefresh();
+        if (this.shardedSearcher.isSharded()) {
+            // La generación del índice repartido solo se revisa cada tanto; se actualiza ahora con este índice.
+            refreshed |= this.shardedSearcher.refreshGeneration();
+        }
+        return refreshed;
+    }
+
+    @Override
+    public PostingCacheStatistics getPostingCacheStatistics() {
+        return new PostingCacheStatistics(this.postingBlockCache.getHits(), this.postingBlockCache.getMisses(),
+                this.postingBlockCache.getEvictions(), this.postingBlockCache.getResidentBlocks(),
+                this.postingBlockCache.getResidentBytes(), this.postingBlockCache.getCapacityBytes());
+    }
+
+}
@@ -0,0 +1,15 @@
+package ri.wse.core.metrics.service;
+
+import ri.wse.model.TimerStatistics;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MetricsService {
+
+    List<TimerStatistics> getTimers();
+
+    Map<String, Long> getCounters();
+
+    void reset();
+}
@@ -0,0 +1,43 @@
+package ri.wse.core.metrics.service.impl;
+
+import org.springframework.stereotype.Service;
+import ri.wse.core.metrics.service.MetricsService;
+import ri.wse.model.TimerStatistics;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Service("metricsService")
+public class MetricsServiceImpl implements MetricsService {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    @Override
+    public List<TimerStatistics> getTimers() {
+        List<TimerStatistics> timers = new ArrayList<>();
+        for (Timer timer : Metrics.getTimers().values()) {
+            timers.add(new TimerStatistics(timer.getName(), timer.getCount(),
+                    timer.getMean() / NANOS_PER_MILLI,
+                    timer.getPercentile(50) / NANOS_PER_MILLI,
+                    timer.getPercentile(95) / NANOS_PER_MILLI,
+                    timer.getPercentile(99) / NANOS_PER_MILLI,
+                    timer.getMax() / NANOS_PER_MILLI,
+                    timer.getTotal() / NANOS_PER_MILLI));
+        }
+        return timers;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return Metrics.getCounters();
+    }
+
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+
+}
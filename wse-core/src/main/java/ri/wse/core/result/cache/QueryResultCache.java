@@ -0,0 +1,187 @@
+package ri.wse.core.result.cache;
+
+import ri.wse.model.CacheStatistics;
+import ri.wse.model.QueryResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotado de resultados de consultas. La llave es la consulta normalizada (sus términos en orden con su
+ * frecuencia, ver {@link ri.wse.queryProcessor.QueryProcessor#getNormalizedQuery()}) junto con la página pedida, así
+ * que "roger-federer" y "federer-roger" comparten la entrada.
+ * Las entradas se reparten en varias particiones, cada una con su propio candado y ordenada por acceso, para que
+ * las consultas concurrentes no compitan por un solo candado; cuando una partición se llena se saca la entrada
+ * usada hace más tiempo (LRU). Las entradas vencen después del tiempo de vida y se descartan todas cuando cambia la
+ * generación del índice.
+ * Los resultados guardados se comparten entre las consultas, así que no se deben modificar.
+ */
+public class QueryResultCache {
+
+    private static final int SHARDS = 16;
+
+    private static class CachedResult {
+
+        private final QueryResult queryResult;
+        private final long generation;
+        private final long created;
+
+        CachedResult(QueryResult queryResult, long generation, long created) {
+            this.queryResult = queryResult;
+            this.generation = generation;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Partición del caché, ordenada por acceso, que saca la entrada usada hace más tiempo cuando se llena.
+     */
+    private static class Shard extends LinkedHashMap<String, CachedResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final transient LongAdder evictions;
+
+        Shard(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > this.capacity) {
+                this.evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final int maxEntries;
+    private final long timeToLive;
+    private final Shard[] shards;
+
+    private volatile long generation = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries cantidad máxima de resultados guardados; 0 desactiva el caché
+     * @param timeToLive segundos que dura una entrada; 0 para que no venzan
+     */
+    public QueryResultCache(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = TimeUnit.SECONDS.toNanos(timeToLive);
+        this.shards = new Shard[SHARDS];
+        int shardCapacity = Math.max(1, (maxEntries + SHARDS - 1) / SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            this.shards[i] = new Shard(shardCapacity, this.evictions);
+        }
+    }
+
+    /**
+     * Busca los resultados de una página de una consulta.
+     *
+     * @param normalizedQuery consulta normalizada
+     * @param generation      generación del índice con la que se responde la consulta
+     * @return los resultados, o null si no están en el caché
+     */
+    public QueryResult get(String normalizedQuery, int offset, int limit, long generation) {
+        if (this.maxEntries <= 0) {
+            return null;
+        }
+        this.checkGeneration(generation);
+        String key = key(normalizedQuery, offset, limit);
+        Map<String, CachedResult> shard = this.shard(key);
+        synchronized (shard) {
+            CachedResult cachedResult = shard.get(key);
+            if (cachedResult != null && cachedResult.generation == generation) {
+                if (this.timeToLive <= 0 || System.nanoTime() - cachedResult.created < this.timeToLive) {
+                    this.hits.increment();
+                    return cachedResult.queryResult;
+                }
+                shard.remove(key);
+                this.expirations.increment();
+            }
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * Guarda los resultados de una página de una consulta. Los resultados de una generación anterior a la actual no
+     * se guardan.
+     */
+    public void put(String normalizedQuery, int offset, int limit, long generation, QueryResult queryResult) {
+        if (this.maxEntries <= 0) {
+            return;
+        }
+        this.checkGeneration(generation);
+        if (generation != this.generation) {
+            return;
+        }
+        String key = key(normalizedQuery, offset, limit);
+        Map<String, CachedResult> shard = this.shard(key);
+        synchronized (shard) {
+            shard.put(key, new CachedResult(queryResult, generation, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Descarta todas las entradas si la consulta usa una generación más nueva que la del caché.
+     */
+    private void checkGeneration(long generation) {
+        if (generation <= this.generation) {
+            return;
+        }
+        synchronized (this) {
+            if (generation > this.generation) {
+                if (this.generation >= 0) {
+                    this.invalidations.increment();
+                }
+                this.generation = generation;
+                this.clear();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Map<String, CachedResult> shard : this.shards) {
+            synchronized (shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, CachedResult> shard : this.shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(this.size(), this.maxEntries, this.hits.sum(), this.misses.sum(),
+                this.evictions.sum(), this.expirations.sum(), this.invalidations.sum());
+    }
+
+    private Map<String, CachedResult> shard(String key) {
+        int hash = key.hashCode();
+        return this.shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    private static String key(String normalizedQuery, int offset, int limit) {
+        return normalizedQuery + '|' + offset + '|' + limit;
+    }
+}
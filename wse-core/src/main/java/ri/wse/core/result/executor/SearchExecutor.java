@@ -0,0 +1,175 @@
+package ri.wse.core.result.executor;
+
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta las consultas asíncronas en una cantidad fija de hilos, separados de los hilos del servidor web, y
+ * controla cuántas se admiten: a lo sumo {@link #getThreads()} consultas se calculan a la vez y a lo sumo
+ * {@link #getMaxQueued()} esperan su turno. Cuando la cola está llena la consulta se rechaza de inmediato (se
+ * descarta carga) en vez de esperar, así que en una sobrecarga la latencia de las consultas admitidas queda acotada
+ * por el largo de la cola.
+ * Cada consulta tiene un {@link Deadline}: si es estricto y vence mientras espera en la cola ya no se calcula, y si
+ * vence durante el cálculo de la similaridad el cálculo se detiene.
+ * Se crea como un bean único.
+ */
+public class SearchExecutor {
+
+    private static final Timer QUEUE_TIMER = Metrics.timer("query.async.queue");
+    private static final Timer SERVICE_TIMER = Metrics.timer("query.async.service");
+    private static final LongAdder REJECTED = Metrics.counter("query.async.rejected");
+    private static final LongAdder EXPIRED = Metrics.counter("query.async.expired");
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int maxQueued;
+
+    /**
+     * Tiempo límite de las consultas que no piden uno, en milisegundos.
+     */
+    private long timeout = 2000;
+
+    /**
+     * Tiempo límite máximo que puede pedir una consulta, en milisegundos.
+     */
+    private long maxTimeout = 10000;
+
+    /**
+     * @param threads   cantidad de consultas que se calculan a la vez; 0 para una por procesador
+     * @param maxQueued cantidad máxima de consultas en espera; 0 para rechazar las que no encuentran un hilo libre
+     */
+    public SearchExecutor(int threads, int maxQueued) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxQueued = Math.max(0, maxQueued);
+        BlockingQueue<Runnable> queue = this.maxQueued > 0 ? new ArrayBlockingQueue<>(this.maxQueued)
+                : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "wse-search-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Tiempo límite de una consulta a partir del momento actual.
+     *
+     * @param requestedTimeout tiempo pedido en milisegundos; 0 o menos para usar el tiempo por defecto
+     */
+    public Deadline getDeadline(long requestedTimeout) {
+        long timeout = requestedTimeout > 0 ? Math.min(requestedTimeout, this.maxTimeout) : this.timeout;
+        return Deadline.after(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presupuesto de tiempo de una consulta a partir del momento actual, acotado por el tiempo límite máximo.
+     *
+     * @param requestedBudget tiempo pedido en milisegundos
+     */
+    public Deadline getBudget(long requestedBudget) {
+        return Deadline.budget(Math.min(requestedBudget, this.maxTimeout), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pone una consulta en la cola. Si la consulta se completa o cancela antes de salir de la cola, ya no se calcula.
+     *
+     * @param deadline tiempo límite de la consulta; si es estricto y vence en la cola, la consulta falla con una
+     *                 {@link QueryTimeoutException}
+     * @return el resultado de la consulta, que se completa en uno de los hilos del ejecutor
+     * @throws RejectedExecutionException si la cola está llena
+     */
+    public <T> CompletableFuture<T> submit(Deadline deadline, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            this.executor.execute(() -> {
+                long start = QUEUE_TIMER.recordSince(submitted);
+                if (future.isDone()) {
+                    return;
+                }
+                if (deadline.isExpired() && !deadline.allowsPartialResults()) {
+                    EXPIRED.increment();
+                    future.completeExceptionally(new QueryTimeoutException("La consulta venció en la cola."));
+                    return;
+                }
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    SERVICE_TIMER.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Segundos recomendados para reintentar una consulta rechazada: lo que tardarían los hilos en atender las
+     * consultas en curso y en espera con el tiempo promedio de cálculo medido hasta ahora, al menos 1.
+     */
+    public int getRetryAfter() {
+        long pending = (long) this.executor.getActiveCount() + this.executor.getQueue().size();
+        double seconds = pending * SERVICE_TIMER.getMean() / this.threads / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(seconds)));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Cantidad de consultas que esperan un hilo.
+     */
+    public int getQueued() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Cantidad de consultas que se están calculando.
+     */
+    public int getActive() {
+        return this.executor.getActiveCount();
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public void setMaxTimeout(long maxTimeout) {
+        this.maxTimeout = maxTimeout;
+    }
+}
@@ -1,8 +1,14 @@
 package ri.wse.core.result.service;
 
+import ri.wse.model.CacheStatistics;
 import ri.wse.model.QueryResult;
+import ri.wse.queryProcessor.Deadline;
 
 public interface ResultService {
 
-    QueryResult getResults(String query);
+    QueryResult getResults(String query, int offset, int limit);
+
+    QueryResult getResults(String query, int offset, int limit, Deadline deadline);
+
+    CacheStatistics getCacheStatistics();
 }
@@ -1,18 +1,128 @@
 package ri.wse.core.result.service.impl;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ri.wse.core.result.cache.QueryResultCache;
 import ri.wse.core.result.service.ResultService;
+import ri.wse.model.CacheStatistics;
 import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.queryProcessor.IndexSearcher;
+import ri.wse.queryProcessor.ParallelScorer;
 import ri.wse.queryProcessor.QueryProcessor;
+import ri.wse.queryProcessor.SearcherManager;
+import ri.wse.queryProcessor.ShardedQueryProcessor;
+import ri.wse.queryProcessor.ShardedSearcher;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service("resultService")
 public class ResultServiceImpl implements ResultService {
 
+    private static final Timer QUERY_TIMER = Metrics.timer("query.total");
+    private static final LongAdder TIMEOUTS = Metrics.counter("query.timeouts");
+    private static final LongAdder PARTIAL_RESULTS = Metrics.counter("query.partial");
+
+    @Autowired
+    private SearcherManager searcherManager;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private ShardedSearcher shardedSearcher;
+
+    @Autowired
+    private ParallelScorer parallelScorer;
+
+    @Override
+    public QueryResult getResults(String query, int offset, int limit) {
+        return this.getResults(query, offset, limit, Deadline.NONE);
+    }
+
+    /**
+     * Resuelve la consulta deteniendo el cálculo si pasa el tiempo límite. Las páginas que ya están en la caché se
+     * devuelven aunque el límite haya pasado. Con un presupuesto de tiempo ({@link Deadline#budget}) se devuelven
+     * los mejores documentos encontrados al agotarlo, marcados con {@link QueryResult#isPartial()}; los resultados
+     * parciales no se guardan en la caché.
+     *
+     * @throws QueryTimeoutException si pasa un tiempo límite estricto antes de obtener los resultados
+     */
+    @Override
+    public QueryResult getResults(String query, int offset, int limit, Deadline deadline) {
+        try {
+            if (this.shardedSearcher.isSharded()) {
+                return this.getShardedResults(query, offset, limit, deadline);
+            }
+            return this.getLocalResults(query, offset, limit, deadline);
+        } catch (QueryTimeoutException e) {
+            TIMEOUTS.increment();
+            throw e;
+        }
+    }
+
+    private QueryResult getLocalResults(String query, int offset, int limit, Deadline deadline) {
+        long start = System.nanoTime();
+        IndexSearcher indexSearcher = this.searcherManager.acquire();
+        try {
+            QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+            queryProcessor.setParallelScorer(this.parallelScorer);
+            queryProcessor.setDeadline(deadline);
+            String normalizedQuery = queryProcessor.getNormalizedQuery();
+            long generation = indexSearcher.getGeneration();
+            QueryResult queryResult = this.queryResultCache.get(normalizedQuery, offset, limit, generation);
+            if (queryResult == null) {
+                List<ResultEntry> results = queryProcessor.manageQuery(offset, limit);
+                queryResult = new QueryResult(results, queryProcessor.getTotalHits(), queryProcessor.isTotalHitsExact(),
+                        offset, limit, queryProcessor.isPartial());
+                if (queryResult.isPartial()) {
+                    PARTIAL_RESULTS.increment();
+                } else {
+                    this.queryResultCache.put(normalizedQuery, offset, limit, generation, queryResult);
+                }
+            }
+            return queryResult;
+        } finally {
+            this.searcherManager.release(indexSearcher);
+            QUERY_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Resuelve la consulta repartiéndola entre los shards del índice.
+     */
+    private QueryResult getShardedResults(String query, int offset, int limit, Deadline deadline) {
+        long start = System.nanoTime();
+        try {
+            ShardedQueryProcessor queryProcessor = new ShardedQueryProcessor(query, this.shardedSearcher);
+            queryProcessor.setDeadline(deadline);
+            String normalizedQuery = queryProcessor.getNormalizedQuery();
+            long generation = this.shardedSearcher.getGeneration();
+            QueryResult queryResult = this.queryResultCache.get(normalizedQuery, offset, limit, generation);
+            if (queryResult == null) {
+                List<ResultEntry> results = queryProcessor.manageQuery(offset, limit);
+                queryResult = new QueryResult(results, queryProcessor.getTotalHits(), queryProcessor.isTotalHitsExact(),
+                        offset, limit, queryProcessor.isPartial());
+                if (queryResult.isPartial()) {
+                    PARTIAL_RESULTS.increment();
+                } else {
+                    this.queryResultCache.put(normalizedQuery, offset, limit, generation, queryResult);
+                }
+            }
+            return queryResult;
+        } finally {
+            QUERY_TIMER.recordSince(start);
+        }
+    }
 
     @Override
-    public QueryResult getResults(String query) {
-        QueryProcessor queryProcessor = new QueryProcessor(query);
-        return new QueryResult(queryProcessor.manageQuery());
+    public CacheStatistics getCacheStatistics() {
+        return this.queryResultCache.getStatistics();
     }
 
 }
@@ -0,0 +1,15 @@
+package ri.wse.core.shard.service;
+
+import ri.wse.queryProcessor.ShardResult;
+import ri.wse.queryProcessor.ShardStatistics;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ShardService {
+
+    ShardStatistics getStatistics(Collection<String> terms);
+
+    ShardResult search(String query, Map<String, Double> inverseFrequencies, int k, long timeout,
+                       boolean partialResults);
+}
@@ -0,0 +1,38 @@
+package ri.wse.core.shard.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ri.wse.core.shard.service.ShardService;
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.queryProcessor.LocalShard;
+import ri.wse.queryProcessor.SearcherManager;
+import ri.wse.queryProcessor.ShardResult;
+import ri.wse.queryProcessor.ShardStatistics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Responde como un shard con el índice de esta instancia, para las instancias que reparten las consultas.
+ */
+@Service("shardService")
+public class ShardServiceImpl implements ShardService {
+
+    @Autowired
+    private SearcherManager searcherManager;
+
+    @Override
+    public ShardStatistics getStatistics(Collection<String> terms) {
+        return new LocalShard(this.searcherManager).getStatistics(terms);
+    }
+
+    @Override
+    public ShardResult search(String query, Map<String, Double> inverseFrequencies, int k, long timeout,
+                              boolean partialResults) {
+        Deadline deadline = timeout <= 0 ? Deadline.NONE : partialResults
+                ? Deadline.budget(timeout, TimeUnit.MILLISECONDS) : Deadline.after(timeout, TimeUnit.MILLISECONDS);
+        return new LocalShard(this.searcherManager).search(query, inverseFrequencies, k, deadline);
+    }
+
+}
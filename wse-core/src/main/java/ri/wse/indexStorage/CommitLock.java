@@ -0,0 +1,113 @@
+package ri.wse.indexStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reserva de un archivo de confirmación por los lectores que la tienen abierta. Cada {@link IndexReader} toma un
+ * candado compartido sobre el archivo de su confirmación mientras está abierto, y el {@link IndexWriter} solo borra
+ * una confirmación vieja (y los segmentos que solo ella usa) si logra un candado exclusivo sobre el archivo. Así los
+ * segmentos que un buscador tiene mapeados no se borran mientras lo use, sin importar si el buscador y el indexador
+ * están en el mismo proceso o en procesos distintos, y en cualquier sistema operativo. El sistema operativo libera
+ * los candados si el proceso termina, así que un lector que falla no deja confirmaciones reservadas.
+ * Los candados de archivo son del proceso completo, por lo que las reservas de un mismo archivo dentro del proceso
+ * se cuentan y comparten un solo candado.
+ */
+final class CommitLock implements Closeable {
+
+    /**
+     * Reservas de este proceso, por archivo.
+     */
+    private static final Map<Path, CommitLock> HELD = new HashMap<>();
+
+    private final Path path;
+    private final FileChannel channel;
+    private int references = 1;
+
+    private CommitLock(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Reserva una confirmación para un lector.
+     *
+     * @throws NoSuchFileException si la confirmación ya fue borrada; se debe leer de nuevo la última
+     */
+    static CommitLock acquire(Path path) throws IOException {
+        path = path.toAbsolutePath();
+        synchronized (HELD) {
+            CommitLock commitLock = HELD.get(path);
+            if (commitLock != null) {
+                commitLock.references++;
+                return commitLock;
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                // Espera si el indexador tiene el candado exclusivo, y luego verifica que no borró el archivo.
+                channel.lock(0, Long.MAX_VALUE, true);
+                if (!Files.exists(path)) {
+                    throw new NoSuchFileException(path.toString());
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            commitLock = new CommitLock(path, channel);
+            HELD.put(path, commitLock);
+            return commitLock;
+        }
+    }
+
+    /**
+     * Borra un archivo de confirmación si ningún lector lo tiene reservado.
+     *
+     * @return false si algún lector, de este o de otro proceso, todavía usa la confirmación
+     */
+    static boolean deleteIfUnused(Path path) throws IOException {
+        path = path.toAbsolutePath();
+        synchronized (HELD) {
+            if (HELD.containsKey(path)) {
+                return false;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    return false;
+                }
+                if (lock == null) {
+                    return false;
+                }
+                Files.delete(path);
+                return true;
+            } catch (NoSuchFileException e) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Quita una reserva; con la última se libera el candado.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (HELD) {
+            if (--this.references > 0) {
+                return;
+            }
+            HELD.remove(this.path);
+            this.channel.close();
+        }
+    }
+}
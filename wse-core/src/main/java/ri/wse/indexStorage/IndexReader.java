@@ -0,0 +1,294 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee una confirmación del índice (ver {@link SegmentInfos}) y presenta todos sus segmentos como un solo índice.
+ * Los documentos de cada segmento reciben identificadores globales consecutivos a partir de la base del segmento,
+ * las listas de postings recorren todos los segmentos y se saltan los documentos borrados, y el idf de un término se
+ * calcula con la suma de sus df en todos los segmentos sin contar los documentos borrados.
+ * Con un solo segmento sin borrados se usan el idf, los pesos máximos y las normas guardados en el segmento; si no,
+ * se calculan al abrir el lector con las estadísticas de los documentos vivos (ver {@link IndexStatistics}), así que
+ * los resultados no dependen de cómo se repartan los documentos entre segmentos ni de si ya se fusionaron.
+ * Una instancia ve siempre la misma confirmación; para ver los cambios posteriores se usa {@link #openIfChanged()},
+ * que reutiliza los segmentos que no cambiaron. Solo se usan lecturas absolutas sobre los segmentos, así que puede
+ * ser usada por varios hilos a la vez.
+ * Si se abre con un {@link PostingBlockCache}, todos los segmentos, incluidos los que se abren después con
+ * {@link #openIfChanged()}, lo comparten.
+ * Mientras está abierto reserva su confirmación con un {@link CommitLock}, así que el {@link IndexWriter} no borra
+ * sus segmentos aunque confirme generaciones nuevas. Los segmentos que comparte con los lectores abiertos con
+ * {@link #openIfChanged()} se cuentan por referencias y se cierran con {@link #close()} del último lector que los
+ * usa.
+ */
+public class IndexReader {
+
+    private final String directory;
+    private final SegmentInfos segmentInfos;
+    private final SegmentReader[] segmentReaders;
+    private final BitSet[] deletions;
+    private final int[] bases;
+    private final int documentCount;
+    private final int liveDocumentCount;
+    private final PostingBlockCache postingBlockCache;
+    private final CommitLock commitLock;
+
+    /**
+     * Estadísticas de los documentos vivos, o null si se usan las guardadas en el único segmento.
+     */
+    private final IndexStatistics statistics;
+
+    /**
+     * @param commitLock  reserva de la confirmación, que el lector libera al cerrarse; null si el índice está vacío
+     * @param openReaders segmentos abiertos por otro lector que se pueden reutilizar
+     */
+    private IndexReader(String directory, SegmentInfos segmentInfos, CommitLock commitLock,
+                        Map<String, SegmentReader> openReaders, PostingBlockCache postingBlockCache)
+            throws IOException {
+        this.directory = directory;
+        this.postingBlockCache = postingBlockCache;
+        this.segmentInfos = segmentInfos;
+        this.commitLock = commitLock;
+        List<SegmentInfo> segments = segmentInfos.getSegments();
+        this.segmentReaders = new SegmentReader[segments.size()];
+        this.deletions = new BitSet[segments.size()];
+        this.bases = new int[segments.size()];
+        int base = 0;
+        int liveDocumentCount = 0;
+        boolean hasDeletions = false;
+        for (int i = 0; i < segments.size(); i++) {
+            SegmentInfo segment = segments.get(i);
+            SegmentReader segmentReader = openReaders.get(segment.getName());
+            if (segmentReader != null) {
+                segmentReader.incRef();
+                this.segmentReaders[i] = segmentReader;
+            } else {
+                try {
+                    this.segmentReaders[i] = new SegmentReader(Paths.get(directory, segment.getName()).toString(),
+                            postingBlockCache);
+                } catch (IOException | RuntimeException e) {
+                    this.releaseSegments(i);
+                    throw e;
+                }
+            }
+            this.deletions[i] = segment.getDeletions();
+            this.bases[i] = base;
+            base += segment.getDocumentCount();
+            liveDocumentCount += segment.getLiveCount();
+            hasDeletions |= segment.getDeletedCount() > 0;
+        }
+        this.documentCount = base;
+        this.liveDocumentCount = liveDocumentCount;
+        if (segments.size() == 1 && !hasDeletions) {
+            this.statistics = null;
+        } else {
+            try {
+                this.statistics = new IndexStatistics(this.segmentReaders, this.deletions, this.bases, base,
+                        liveDocumentCount);
+            } catch (IOException | RuntimeException e) {
+                this.releaseSegments(segments.size());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Abre la última confirmación del índice en un directorio.
+     */
+    public static IndexReader open(String directory) throws IOException {
+        return open(directory, (PostingBlockCache) null);
+    }
+
+    /**
+     * Abre la última confirmación del índice en un directorio guardando en un caché los bloques de postings que
+     * decodifican las consultas.
+     *
+     * @param postingBlockCache caché de bloques decodificados, o null para no usar caché
+     */
+    public static IndexReader open(String directory, PostingBlockCache postingBlockCache) throws IOException {
+        return open(directory, new HashMap<>(), postingBlockCache);
+    }
+
+    private static IndexReader open(String directory, Map<String, SegmentReader> openReaders,
+                                    PostingBlockCache postingBlockCache) throws IOException {
+        while (true) {
+            long generation = SegmentInfos.findLatestGeneration(directory);
+            if (generation == 0) {
+                return new IndexReader(directory, new SegmentInfos(0, 0, new ArrayList<>()), null, openReaders,
+                        postingBlockCache);
+            }
+            Path file = Paths.get(directory, SegmentInfos.fileName(generation));
+            CommitLock commitLock;
+            try {
+                commitLock = CommitLock.acquire(file);
+            } catch (NoSuchFileException e) {
+                // Una fusión confirmó una generación nueva y borró esta antes de que se pudiera reservar.
+                continue;
+            }
+            try {
+                return new IndexReader(directory, SegmentInfos.read(file), commitLock, openReaders,
+                        postingBlockCache);
+            } catch (IOException | RuntimeException e) {
+                commitLock.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Abre la última confirmación del índice si es distinta a la de este lector, reutilizando los segmentos que ya
+     * están abiertos.
+     *
+     * @return el nuevo lector, o null si no hay una confirmación nueva
+     */
+    public IndexReader openIfChanged() throws IOException {
+        if (SegmentInfos.findLatestGeneration(this.directory) == this.segmentInfos.getGeneration()) {
+            return null;
+        }
+        Map<String, SegmentReader> openReaders = new HashMap<>();
+        List<SegmentInfo> segments = this.segmentInfos.getSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            openReaders.put(segments.get(i).getName(), this.segmentReaders[i]);
+        }
+        return open(this.directory, openReaders, this.postingBlockCache);
+    }
+
+    public long getGeneration() {
+        return segmentInfos.getGeneration();
+    }
+
+    /**
+     * Libera la reserva de la confirmación y los segmentos; cada segmento se cierra cuando ningún otro lector lo
+     * comparte. El lector no se debe usar después de cerrarlo.
+     */
+    public void close() throws IOException {
+        this.releaseSegments(this.segmentReaders.length);
+        if (this.commitLock != null) {
+            this.commitLock.close();
+        }
+    }
+
+    private void releaseSegments(int count) {
+        for (int i = 0; i < count; i++) {
+            this.segmentReaders[i].decRef();
+        }
+    }
+
+    public int getSegmentCount() {
+        return segmentReaders.length;
+    }
+
+    SegmentReader getSegmentReader(int segment) {
+        return segmentReaders[segment];
+    }
+
+    /**
+     * Cantidad de documentos del índice, incluidos los borrados; los identificadores globales van de 0 a este valor.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Cantidad de documentos del índice sin los borrados.
+     */
+    public int getLiveDocumentCount() {
+        return liveDocumentCount;
+    }
+
+    public boolean isDeleted(int document) {
+        int segment = this.segment(document);
+        return this.deletions[segment].get(document - this.bases[segment]);
+    }
+
+    /**
+     * Cantidad de documentos vivos en los que aparece el término en todos los segmentos.
+     */
+    public int getDocumentFrequency(String term) {
+        if (this.statistics == null) {
+            int ordinal = this.segmentReaders[0].findTerm(term);
+            return ordinal < 0 ? 0 : this.segmentReaders[0].getDocumentFrequency(ordinal);
+        }
+        for (int i = 0; i < this.segmentReaders.length; i++) {
+            int ordinal = this.segmentReaders[i].findTerm(term);
+            if (ordinal >= 0) {
+                return this.statistics.getDocumentFrequency(i, ordinal);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Frecuencia inversa del término en todo el índice, sin contar los documentos borrados.
+     *
+     * @return el idf, o null si el término no está en ningún documento vivo del índice
+     */
+    public Double getIdf(String term) {
+        int documentFrequency = this.getDocumentFrequency(term);
+        return documentFrequency == 0 ? null : Math.log10((double) this.liveDocumentCount / documentFrequency);
+    }
+
+    /**
+     * Obtiene un cursor nuevo sobre la lista de postings del término en todos los segmentos.
+     *
+     * @return el cursor, o null si el término no está en ningún documento vivo del índice
+     */
+    public PostingList getPostingList(String term) {
+        if (this.statistics == null) {
+            int ordinal = this.segmentReaders[0].findTerm(term);
+            return ordinal < 0 ? null : this.segmentReaders[0].getPostingList(ordinal);
+        }
+        PostingList[] postingLists = new PostingList[this.segmentReaders.length];
+        boolean found = false;
+        for (int i = 0; i < this.segmentReaders.length; i++) {
+            int ordinal = this.segmentReaders[i].findTerm(term);
+            if (ordinal >= 0 && this.statistics.getDocumentFrequency(i, ordinal) > 0) {
+                postingLists[i] = this.segmentReaders[i].getPostingList(ordinal, this.statistics.getIdf(i, ordinal),
+                        this.statistics.getMaxWeight(i, ordinal));
+                found = true;
+            }
+        }
+        return found ? new MultiPostingList(postingLists, this.bases, this.deletions) : null;
+    }
+
+    public double getNorm(int document) {
+        if (this.statistics != null) {
+            return this.statistics.getNorm(document);
+        }
+        return this.segmentReaders[0].getNorm(document);
+    }
+
+    public String getDocumentName(int document) {
+        int segment = this.segment(document);
+        return this.segmentReaders[segment].getDocumentName(document - this.bases[segment]);
+    }
+
+    public String getUrl(int document) {
+        int segment = this.segment(document);
+        return this.segmentReaders[segment].getUrl(document - this.bases[segment]);
+    }
+
+    /**
+     * Busca el segmento que contiene un documento.
+     */
+    private int segment(int document) {
+        int low = 0;
+        int high = this.bases.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.bases[middle] <= document) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,133 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Estadísticas de los documentos vivos de una confirmación del índice con varios segmentos o con documentos borrados.
+ * Cada segmento guarda el idf, los pesos normalizados máximos y las normas calculados cuando se escribió, que dejan de
+ * valer en cuanto se agregan o se borran documentos en otros segmentos. Estas estadísticas se calculan de nuevo a
+ * partir de las frecuencias normalizadas guardadas, con la cantidad de documentos vivos y el df de cada término sin
+ * los documentos borrados, así que las similaridades son las mismas que daría el índice reconstruido desde cero
+ * (salvo por la cuantización de las frecuencias, cuya escala es distinta en cada segmento).
+ * Se calculan al abrir el {@link IndexReader}, recorriendo las listas de postings de todos los segmentos:
+ * -El df vivo de cada término, contando los documentos no borrados de las listas de los segmentos con borrados.
+ * -La norma de cada documento, con los pesos que calcula {@link SegmentPostingList} con el idf nuevo.
+ * -El mayor peso normalizado de la lista de cada término en cada segmento, que usa la poda de las consultas.
+ */
+final class IndexStatistics {
+
+    private final int liveDocumentCount;
+
+    /**
+     * df vivo de cada término en todo el índice, por segmento e identificador del término en el segmento; 0 si el
+     * término solo aparece en documentos borrados.
+     */
+    private final int[][] documentFrequencies;
+    private final double[][] maxWeights;
+
+    /**
+     * Norma de cada documento, según su identificador global.
+     */
+    private final double[] norms;
+
+    IndexStatistics(SegmentReader[] segmentReaders, BitSet[] deletions, int[] bases, int documentCount,
+                    int liveDocumentCount) throws IOException {
+        this.liveDocumentCount = liveDocumentCount;
+        this.documentFrequencies = new int[segmentReaders.length][];
+        this.maxWeights = new double[segmentReaders.length][];
+        for (int i = 0; i < segmentReaders.length; i++) {
+            this.documentFrequencies[i] = new int[segmentReaders[i].getTermCount()];
+            this.maxWeights[i] = new double[segmentReaders[i].getTermCount()];
+        }
+        this.norms = new double[documentCount];
+
+        SegmentTerms.forEachTerm(segmentReaders, (term, segments, ordinals, count) -> {
+            int documentFrequency = 0;
+            for (int i = 0; i < count; i++) {
+                documentFrequency += liveDocumentFrequency(segmentReaders[segments[i]], deletions[segments[i]],
+                        ordinals[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                this.documentFrequencies[segments[i]][ordinals[i]] = documentFrequency;
+            }
+        });
+
+        for (int segment = 0; segment < segmentReaders.length; segment++) {
+            SegmentReader segmentReader = segmentReaders[segment];
+            for (int ordinal = 0; ordinal < segmentReader.getTermCount(); ordinal++) {
+                double idf = this.getIdf(segment, ordinal);
+                PostingList postingList = segmentReader.getNormalizedFrequencies(ordinal);
+                for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+                     document = postingList.next()) {
+                    if (!deletions[segment].get(document)) {
+                        double weight = postingList.weight() * idf;
+                        this.norms[bases[segment] + document] += weight * weight;
+                    }
+                }
+            }
+        }
+        for (int document = 0; document < documentCount; document++) {
+            this.norms[document] = Math.sqrt(this.norms[document]);
+        }
+
+        for (int segment = 0; segment < segmentReaders.length; segment++) {
+            SegmentReader segmentReader = segmentReaders[segment];
+            for (int ordinal = 0; ordinal < segmentReader.getTermCount(); ordinal++) {
+                double idf = this.getIdf(segment, ordinal);
+                double maxWeight = 0;
+                PostingList postingList = segmentReader.getNormalizedFrequencies(ordinal);
+                for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+                     document = postingList.next()) {
+                    double norm = this.norms[bases[segment] + document];
+                    if (!deletions[segment].get(document) && norm > 0) {
+                        maxWeight = Math.max(maxWeight, postingList.weight() * idf / norm);
+                    }
+                }
+                this.maxWeights[segment][ordinal] = maxWeight;
+            }
+        }
+    }
+
+    private static int liveDocumentFrequency(SegmentReader segmentReader, BitSet deletions, int ordinal) {
+        if (deletions.isEmpty()) {
+            return segmentReader.getDocumentFrequency(ordinal);
+        }
+        int documentFrequency = 0;
+        PostingList postingList = segmentReader.getNormalizedFrequencies(ordinal);
+        for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+             document = postingList.next()) {
+            if (!deletions.get(document)) {
+                documentFrequency++;
+            }
+        }
+        return documentFrequency;
+    }
+
+    /**
+     * Cantidad de documentos vivos en los que aparece un término de un segmento, en todo el índice.
+     */
+    int getDocumentFrequency(int segment, int ordinal) {
+        return documentFrequencies[segment][ordinal];
+    }
+
+    /**
+     * Frecuencia inversa de un término de un segmento en todo el índice, o 0 si solo aparece en documentos
+     * borrados.
+     */
+    double getIdf(int segment, int ordinal) {
+        int documentFrequency = this.documentFrequencies[segment][ordinal];
+        return documentFrequency == 0 ? 0 : Math.log10((double) this.liveDocumentCount / documentFrequency);
+    }
+
+    /**
+     * Mayor peso normalizado de los documentos vivos en la lista de un término de un segmento.
+     */
+    double getMaxWeight(int segment, int ordinal) {
+        return maxWeights[segment][ordinal];
+    }
+
+    double getNorm(int document) {
+        return norms[document];
+    }
+}
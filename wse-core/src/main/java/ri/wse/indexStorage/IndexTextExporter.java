@@ -0,0 +1,95 @@
+package ri.wse.indexStorage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+
+/**
+ * Herramienta de depuración que exporta un segmento binario a los archivos de texto de columnas fijas que generaba
+ * el indexador antes del formato binario: Vocabulario.txt, Indice.txt, Postings.txt y Normas.txt. Si se da un
+ * prefijo, solo se exportan los términos que empiezan con él, que el diccionario encuentra como un rango continuo.
+ * Uso: IndexTextExporter [directorio del segmento] [directorio de salida] [prefijo]
+ */
+public class IndexTextExporter {
+
+    /**
+     * Directorio por defecto del segmento: el primer segmento del índice que escribe el indexador.
+     */
+    private static final String DEFAULT_DIRECTORY = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/Results/_0";
+
+    private final SegmentReader segmentReader;
+
+    public IndexTextExporter(SegmentReader segmentReader) {
+        this.segmentReader = segmentReader;
+    }
+
+    /**
+     * Completa un valor con espacios hasta el tamaño de la columna, o lo corta si es más largo.
+     */
+    private static String column(String value, int size) {
+        if (value.length() >= size) {
+            return value.substring(0, size);
+        }
+        StringBuilder builder = new StringBuilder(size).append(value);
+        while (builder.length() < size) {
+            builder.append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static PrintWriter openWriter(String directory, String fileName) throws FileNotFoundException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(Paths.get(directory, fileName).toFile()), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Escribe los archivos de texto en el directorio dado.
+     */
+    public void export(String directory) throws IOException {
+        this.export(directory, "");
+    }
+
+    /**
+     * Escribe los archivos de texto en el directorio dado, con los términos que empiezan con un prefijo.
+     */
+    public void export(String directory, String prefix) throws IOException {
+        int[] range = this.segmentReader.getTermDictionary().findPrefixRange(prefix);
+        DecimalFormat df = new DecimalFormat("#.##################");
+        try (PrintWriter vocabularyWriter = openWriter(directory, "Vocabulario.txt");
+             PrintWriter indexWriter = openWriter(directory, "Indice.txt");
+             PrintWriter postingsWriter = openWriter(directory, "Postings.txt")) {
+            long lineCount = 1;
+            for (int ordinal = range[0]; ordinal < range[1]; ordinal++) {
+                String term = column(this.segmentReader.getTerm(ordinal), 30);
+                PostingList postingList = this.segmentReader.getPostingList(ordinal);
+
+                vocabularyWriter.println(term + " " + column(Double.toString(this.segmentReader.getDocumentFrequency(ordinal)), 12)
+                        + " " + column(Double.toString(this.segmentReader.getIdf(ordinal)), 20));
+                indexWriter.println(term + " " + column(Long.toString(lineCount), 12) + " "
+                        + column(Integer.toString(postingList.size()), 12) + " "
+                        + column(Double.toString(postingList.getMaxWeight()), 20));
+                for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+                     document = postingList.next()) {
+                    postingsWriter.println(term + " " + column(this.segmentReader.getDocumentName(document), 31)
+                            + " " + column(df.format(postingList.weight()), 20));
+                }
+                lineCount += postingList.size();
+            }
+        }
+
+        try (PrintWriter normsWriter = openWriter(directory, "Normas.txt")) {
+            for (int document = 0; document < this.segmentReader.getDocumentCount(); document++) {
+                normsWriter.println(column(this.segmentReader.getDocumentName(document), 31) + " "
+                        + column(Double.toString(this.segmentReader.getNorm(document)), 20));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String directory = args.length > 0 ? args[0] : DEFAULT_DIRECTORY;
+        String outputDirectory = args.length > 1 ? args[1] : directory;
+        String prefix = args.length > 2 ? args[2] : "";
+        new IndexTextExporter(new SegmentReader(directory)).export(outputDirectory, prefix);
+    }
+}
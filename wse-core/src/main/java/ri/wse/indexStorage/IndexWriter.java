@@ -0,0 +1,380 @@
+package ri.wse.indexStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Modifica un índice formado por segmentos (ver {@link SegmentInfos}): agrega segmentos nuevos, marca documentos
+ * como borrados y confirma los cambios escribiendo una nueva generación. Los cambios no son visibles para los
+ * lectores hasta que se llama a {@link #commit()}.
+ * Las fusiones de segmentos que decide la {@link MergePolicy} se hacen en un hilo de fondo mientras se siguen
+ * haciendo cambios; al terminar una fusión los borrados que se hicieron mientras tanto sobre los segmentos fusionados
+ * se pasan al segmento nuevo. Los segmentos y confirmaciones que ya no se usan se borran después de cada
+ * confirmación.
+ */
+public class IndexWriter implements Closeable {
+
+    private static final String SEGMENT_NAME_PREFIX = "_";
+
+    private final String directory;
+    private final MergePolicy mergePolicy;
+    private final ExecutorService mergeExecutor;
+
+    private final Map<String, SegmentReader> segmentReaders = new HashMap<>();
+    private final Set<String> pendingSegments = new HashSet<>();
+    private final Set<String> merging = new HashSet<>();
+    private final List<Future<?>> merges = new ArrayList<>();
+
+    private SegmentInfos committed;
+    private List<SegmentInfo> segments;
+    private int segmentCounter;
+    private boolean changed;
+
+    public IndexWriter(String directory) throws IOException {
+        this(directory, new MergePolicy());
+    }
+
+    public IndexWriter(String directory, MergePolicy mergePolicy) throws IOException {
+        Files.createDirectories(Paths.get(directory));
+        this.directory = directory;
+        this.mergePolicy = mergePolicy;
+        this.committed = SegmentInfos.readLatest(directory);
+        this.segments = this.committed.copySegments();
+        this.segmentCounter = this.committed.getSegmentCounter();
+        this.mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wse-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reserva el nombre de un segmento nuevo. Su directorio no se borra hasta que el segmento se agregue con
+     * {@link #addSegment(String, int)}.
+     */
+    public synchronized String newSegmentName() {
+        String name = SEGMENT_NAME_PREFIX + Integer.toString(this.segmentCounter++, Character.MAX_RADIX);
+        this.pendingSegments.add(name);
+        return name;
+    }
+
+    /**
+     * Crea el directorio de un segmento.
+     *
+     * @return la dirección del directorio
+     */
+    public String getSegmentDirectory(String name) throws IOException {
+        Path path = Paths.get(this.directory, name);
+        Files.createDirectories(path);
+        return path.toString();
+    }
+
+    /**
+     * Agrega al índice un segmento ya escrito con {@link SegmentWriter}.
+     */
+    public synchronized void addSegment(String name, int documentCount) {
+        this.pendingSegments.remove(name);
+        this.segments.add(new SegmentInfo(name, documentCount));
+        this.changed = true;
+    }
+
+    /**
+     * Quita todos los segmentos del índice, para reconstruirlo completo.
+     */
+    public synchronized void deleteAll() {
+        this.segments.clear();
+        this.changed = true;
+    }
+
+    /**
+     * Marca un documento de un segmento como borrado.
+     *
+     * @return true si el documento no estaba borrado
+     */
+    public synchronized boolean deleteDocument(String segmentName, int document) {
+        for (SegmentInfo segment : this.segments) {
+            if (segment.getName().equals(segmentName) && segment.delete(document)) {
+                this.changed = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Segmentos actuales del índice, incluidos los cambios que todavía no se confirmaron.
+     */
+    public synchronized SegmentInfos getSegmentInfos() {
+        return new SegmentInfos(this.committed.getGeneration(), this.segmentCounter, this.copySegments());
+    }
+
+    /**
+     * Obtiene el lector de un segmento, abriéndolo la primera vez.
+     */
+    public synchronized SegmentReader getSegmentReader(String name) throws IOException {
+        SegmentReader segmentReader = this.segmentReaders.get(name);
+        if (segmentReader == null) {
+            segmentReader = new SegmentReader(Paths.get(this.directory, name).toString());
+            this.segmentReaders.put(name, segmentReader);
+        }
+        return segmentReader;
+    }
+
+    /**
+     * Cantidad de documentos en los que aparece el término en los segmentos actuales, incluidos los borrados.
+     */
+    public synchronized int getDocumentFrequency(String term) throws IOException {
+        int documentFrequency = 0;
+        for (SegmentInfo segment : this.segments) {
+            SegmentReader segmentReader = this.getSegmentReader(segment.getName());
+            int ordinal = segmentReader.findTerm(term);
+            if (ordinal >= 0) {
+                documentFrequency += segmentReader.getDocumentFrequency(ordinal);
+            }
+        }
+        return documentFrequency;
+    }
+
+    /**
+     * Confirma los cambios escribiendo una nueva generación del archivo de confirmación.
+     */
+    public synchronized void commit() throws IOException {
+        this.committed = new SegmentInfos(this.committed.getGeneration(), this.segmentCounter, this.copySegments())
+                .write(this.directory, this.segmentCounter);
+        this.changed = false;
+        this.deleteUnusedFiles();
+    }
+
+    /**
+     * Busca con la política de fusión los segmentos que conviene fusionar y, si hay, los fusiona en el hilo de
+     * fondo. Al terminar una fusión se vuelve a revisar la política.
+     */
+    public synchronized void maybeMerge() {
+        SegmentInfos current = new SegmentInfos(this.committed.getGeneration(), this.segmentCounter, this.segments);
+        List<SegmentInfo> merge = this.mergePolicy.findMerge(current, this.merging);
+        if (merge.isEmpty()) {
+            return;
+        }
+
+        SegmentInfo[] sources = new SegmentInfo[merge.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = merge.get(i).copy();
+            this.merging.add(sources[i].getName());
+        }
+        String name = this.newSegmentName();
+        this.merges.add(this.mergeExecutor.submit(() -> this.merge(sources, name)));
+    }
+
+    private void merge(SegmentInfo[] sources, String name) {
+        boolean committedMerge = false;
+        try {
+            SegmentMerger segmentMerger = this.createMerger(sources);
+            segmentMerger.merge(this.getSegmentDirectory(name));
+            committedMerge = this.commitMerge(sources, name, segmentMerger);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                for (SegmentInfo source : sources) {
+                    this.merging.remove(source.getName());
+                }
+                if (!committedMerge) {
+                    this.pendingSegments.remove(name);
+                    deleteDirectory(Paths.get(this.directory, name));
+                }
+            }
+        }
+        if (committedMerge) {
+            this.maybeMerge();
+        }
+    }
+
+    /**
+     * Prepara la fusión con las estadísticas del índice en el momento en que empieza: la cantidad de documentos que
+     * va a tener el índice sin los borrados de los segmentos fusionados y el df de los términos en los demás
+     * segmentos.
+     */
+    synchronized SegmentMerger createMerger(SegmentInfo[] sources) throws IOException {
+        Set<String> sourceNames = new HashSet<>();
+        SegmentReader[] sourceReaders = new SegmentReader[sources.length];
+        int indexDocumentCount = 0;
+        for (int i = 0; i < sources.length; i++) {
+            sourceNames.add(sources[i].getName());
+            sourceReaders[i] = this.getSegmentReader(sources[i].getName());
+            indexDocumentCount += sources[i].getLiveCount();
+        }
+        List<SegmentReader> otherReaders = new ArrayList<>();
+        for (SegmentInfo segment : this.segments) {
+            if (!sourceNames.contains(segment.getName())) {
+                otherReaders.add(this.getSegmentReader(segment.getName()));
+                indexDocumentCount += segment.getDocumentCount();
+            }
+        }
+
+        return new SegmentMerger(sourceReaders, sources, indexDocumentCount, term -> {
+            int documentFrequency = 0;
+            for (SegmentReader segmentReader : otherReaders) {
+                int ordinal = segmentReader.findTerm(term);
+                if (ordinal >= 0) {
+                    documentFrequency += segmentReader.getDocumentFrequency(ordinal);
+                }
+            }
+            return documentFrequency;
+        });
+    }
+
+    /**
+     * Cambia los segmentos fusionados por el segmento nuevo y confirma el cambio.
+     *
+     * @return false si alguno de los segmentos fusionados ya no está en el índice
+     */
+    synchronized boolean commitMerge(SegmentInfo[] sources, String name, SegmentMerger segmentMerger)
+            throws IOException {
+        SegmentInfo mergedSegment = new SegmentInfo(name, segmentMerger.getDocumentCount());
+        int[][] documentMaps = segmentMerger.getDocumentMaps();
+        int position = -1;
+        for (int i = 0; i < sources.length; i++) {
+            int current = this.indexOf(sources[i].getName());
+            if (current < 0) {
+                return false;
+            }
+            position = position < 0 ? current : Math.min(position, current);
+            // Documentos borrados mientras se hacía la fusión.
+            SegmentInfo segment = this.segments.get(current);
+            for (int document = 0; document < documentMaps[i].length; document++) {
+                if (documentMaps[i][document] >= 0 && segment.isDeleted(document)) {
+                    mergedSegment.delete(documentMaps[i][document]);
+                }
+            }
+        }
+
+        for (SegmentInfo source : sources) {
+            this.segments.remove(this.indexOf(source.getName()));
+            this.merging.remove(source.getName());
+        }
+        this.segments.add(Math.min(position, this.segments.size()), mergedSegment);
+        this.pendingSegments.remove(name);
+        this.commit();
+        return true;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < this.segments.size(); i++) {
+            if (this.segments.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<SegmentInfo> copySegments() {
+        List<SegmentInfo> copy = new ArrayList<>(this.segments.size());
+        for (SegmentInfo segment : this.segments) {
+            copy.add(segment.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Borra las confirmaciones anteriores y los directorios de los segmentos que ya no están en el índice. Las
+     * confirmaciones que algún lector todavía tiene abiertas (ver {@link CommitLock}) se conservan junto con sus
+     * segmentos, y se intenta borrarlas de nuevo en la siguiente confirmación. Si un archivo no se puede borrar (por
+     * ejemplo, porque el indexador todavía lo tiene mapeado en Windows) también se intenta de nuevo.
+     */
+    private void deleteUnusedFiles() throws IOException {
+        Set<String> live = new HashSet<>(this.pendingSegments);
+        live.addAll(this.merging);
+        for (SegmentInfo segment : this.segments) {
+            live.add(segment.getName());
+        }
+
+        List<Path> segmentDirectories = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(this.directory))) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(SEGMENT_NAME_PREFIX) && Files.isDirectory(file)) {
+                    segmentDirectories.add(file);
+                } else if (fileName.startsWith(SegmentFormat.SEGMENTS_FILE_PREFIX)
+                        && !fileName.equals(SegmentInfos.fileName(this.committed.getGeneration()))) {
+                    try {
+                        if (!CommitLock.deleteIfUnused(file)) {
+                            for (SegmentInfo segment : SegmentInfos.read(file).getSegments()) {
+                                live.add(segment.getName());
+                            }
+                        }
+                    } catch (IOException e) {
+                        // Sin saber qué segmentos usa la confirmación no se borra ninguno hasta la siguiente.
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }
+        }
+
+        for (Path segmentDirectory : segmentDirectories) {
+            String name = segmentDirectory.getFileName().toString();
+            if (!live.contains(name)) {
+                this.segmentReaders.remove(name);
+                deleteDirectory(segmentDirectory);
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Espera a que terminen las fusiones pendientes, incluidas las que se encadenen.
+     */
+    public void waitForMerges() {
+        while (true) {
+            Future<?> merge;
+            synchronized (this) {
+                this.merges.removeIf(Future::isDone);
+                if (this.merges.isEmpty()) {
+                    break;
+                }
+                merge = this.merges.get(0);
+            }
+            try {
+                merge.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Espera a que terminen las fusiones pendientes y confirma los cambios que falten.
+     */
+    @Override
+    public void close() throws IOException {
+        this.waitForMerges();
+        this.mergeExecutor.shutdown();
+        synchronized (this) {
+            if (this.changed) {
+                this.commit();
+            }
+        }
+    }
+}
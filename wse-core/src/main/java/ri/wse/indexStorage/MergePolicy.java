@@ -0,0 +1,83 @@
+package ri.wse.indexStorage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decide qué segmentos se fusionan para que el índice no acumule muchos segmentos pequeños ni documentos borrados:
+ * <ul>
+ * <li>Un segmento con al menos {@link #getDeletedRatio()} de sus documentos borrados se reescribe solo, para
+ * eliminarlos.</li>
+ * <li>Si hay más de {@link #getMaxSegments()} segmentos, se fusionan los {@link #getMergeFactor()} con menos
+ * documentos vivos.</li>
+ * </ul>
+ */
+public class MergePolicy {
+
+    private final int maxSegments;
+    private final int mergeFactor;
+    private final double deletedRatio;
+
+    public MergePolicy() {
+        this(10, 4, 0.3);
+    }
+
+    /**
+     * @param maxSegments  cantidad de segmentos a partir de la cual se fusionan
+     * @param mergeFactor  cantidad de segmentos que se fusionan a la vez
+     * @param deletedRatio proporción de documentos borrados a partir de la cual se reescribe un segmento
+     */
+    public MergePolicy(int maxSegments, int mergeFactor, double deletedRatio) {
+        if (maxSegments < 1 || mergeFactor < 2) {
+            throw new IllegalArgumentException("Se necesita al menos 1 segmento y fusionar al menos 2 a la vez.");
+        }
+        this.maxSegments = maxSegments;
+        this.mergeFactor = mergeFactor;
+        this.deletedRatio = deletedRatio;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    public double getDeletedRatio() {
+        return deletedRatio;
+    }
+
+    /**
+     * Busca la siguiente fusión.
+     *
+     * @param segmentInfos segmentos vivos del índice
+     * @param merging      nombres de los segmentos que ya se están fusionando
+     * @return los segmentos a fusionar, o una lista vacía si no hace falta fusionar
+     */
+    public List<SegmentInfo> findMerge(SegmentInfos segmentInfos, Set<String> merging) {
+        List<SegmentInfo> candidates = new ArrayList<>();
+        for (SegmentInfo segment : segmentInfos.getSegments()) {
+            if (!merging.contains(segment.getName())) {
+                candidates.add(segment);
+            }
+        }
+
+        List<SegmentInfo> merge = new ArrayList<>();
+        for (SegmentInfo segment : candidates) {
+            if (segment.getDeletedCount() > 0
+                    && segment.getDeletedCount() >= this.deletedRatio * segment.getDocumentCount()) {
+                merge.add(segment);
+                return merge;
+            }
+        }
+
+        if (segmentInfos.getSegments().size() > this.maxSegments && candidates.size() >= 2) {
+            candidates.sort(Comparator.comparingInt(SegmentInfo::getLiveCount));
+            merge.addAll(candidates.subList(0, Math.min(this.mergeFactor, candidates.size())));
+        }
+        return merge;
+    }
+}
@@ -0,0 +1,107 @@
+package ri.wse.indexStorage;
+
+import java.util.BitSet;
+
+/**
+ * Lista de postings de un término en todo el índice: recorre una tras otra las listas del término en cada segmento,
+ * sumando a cada documento el identificador base de su segmento, y se salta los documentos borrados. Como los
+ * segmentos ocupan rangos consecutivos de identificadores, los documentos siguen saliendo en orden creciente.
+ */
+class MultiPostingList extends PostingList {
+
+    private final PostingList[] postingLists;
+    private final int[] bases;
+    private final BitSet[] deletions;
+    private final int size;
+    private final double maxWeight;
+
+    private int current;
+    private int document = -1;
+
+    /**
+     * @param postingLists lista del término en cada segmento, o null si el segmento no tiene el término
+     * @param bases        identificador base de cada segmento
+     * @param deletions    documentos borrados de cada segmento
+     */
+    MultiPostingList(PostingList[] postingLists, int[] bases, BitSet[] deletions) {
+        this.postingLists = postingLists;
+        this.bases = bases;
+        this.deletions = deletions;
+        int size = 0;
+        double maxWeight = 0;
+        for (PostingList postingList : postingLists) {
+            if (postingList != null) {
+                size += postingList.size();
+                maxWeight = Math.max(maxWeight, postingList.getMaxWeight());
+            }
+        }
+        this.size = size;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Cantidad de documentos de la lista, incluidos los borrados.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public int document() {
+        return document;
+    }
+
+    @Override
+    public double weight() {
+        return this.postingLists[this.current].weight();
+    }
+
+    @Override
+    public int next() {
+        while (this.current < this.postingLists.length) {
+            PostingList postingList = this.postingLists[this.current];
+            if (postingList != null) {
+                int local = postingList.next();
+                while (local != NO_MORE_DOCUMENTS && this.deletions[this.current].get(local)) {
+                    local = postingList.next();
+                }
+                if (local != NO_MORE_DOCUMENTS) {
+                    this.document = this.bases[this.current] + local;
+                    return this.document;
+                }
+            }
+            this.current++;
+        }
+        this.document = NO_MORE_DOCUMENTS;
+        return this.document;
+    }
+
+    @Override
+    public int advance(int target) {
+        if (this.document >= target) {
+            return this.document;
+        }
+        while (this.current + 1 < this.postingLists.length && this.bases[this.current + 1] <= target) {
+            this.current++;
+        }
+        PostingList postingList = this.postingLists[this.current];
+        if (postingList != null) {
+            int local = postingList.advance(target - this.bases[this.current]);
+            while (local != NO_MORE_DOCUMENTS && this.deletions[this.current].get(local)) {
+                local = postingList.next();
+            }
+            if (local != NO_MORE_DOCUMENTS) {
+                this.document = this.bases[this.current] + local;
+                return this.document;
+            }
+        }
+        this.current++;
+        return this.next();
+    }
+}
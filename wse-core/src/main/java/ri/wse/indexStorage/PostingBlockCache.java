@@ -0,0 +1,266 @@
+package ri.wse.indexStorage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de bloques de postings ya decodificados (ver {@link PostingsCodec}), para que las listas de los términos más
+ * consultados no se decodifiquen de nuevo en cada consulta. Un bloque se identifica por el segmento, el
+ * identificador del término dentro del segmento y el número de bloque en la lista.
+ * Los bloques guardan las frecuencias normalizadas y no los pesos, así que no dependen del idf de los términos y
+ * los comparten todas las generaciones del índice que tienen el segmento.
+ * El caché se divide en particiones, cada una con su propio candado. Cada partición reserva al crearse arreglos
+ * primitivos para una cantidad fija de bloques (los documentos y las frecuencias de todos sus bloques en un solo
+ * arreglo de cada tipo, y una tabla hash de direccionamiento abierto para buscarlos), así que guardar y sacar
+ * bloques no crea objetos. El tamaño total de los arreglos no pasa del presupuesto en bytes.
+ * Para escoger el bloque que se saca se usa el algoritmo del reloj con contadores de uso (GCLOCK): cada acierto
+ * aumenta el contador del bloque hasta un máximo, y la manecilla recorre los bloques restando uno a cada contador
+ * hasta encontrar uno en cero. Así los bloques usados con frecuencia sobreviven a los recorridos de listas largas que
+ * se leen una sola vez.
+ */
+public class PostingBlockCache {
+
+    private static final int SHARDS = 16;
+
+    /**
+     * Valor máximo del contador de uso de un bloque.
+     */
+    private static final int MAX_FREQUENCY = 3;
+
+    /**
+     * Bytes que ocupa un bloque en el caché: documentos, frecuencias, llave, largo, contador y dos entradas de la
+     * tabla.
+     */
+    private static final int BLOCK_BYTES = PostingsCodec.BLOCK_SIZE * (Integer.BYTES + Float.BYTES)
+            + Long.BYTES + 2 * Integer.BYTES + 1 + 2 * Integer.BYTES;
+
+    private final long capacityBytes;
+    private final Shard[] shards;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacityBytes tamaño máximo de los bloques guardados, en bytes
+     */
+    public PostingBlockCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+        int blocksPerShard = (int) Math.min(Integer.MAX_VALUE / PostingsCodec.BLOCK_SIZE,
+                Math.max(1, capacityBytes / SHARDS / BLOCK_BYTES));
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            this.shards[i] = new Shard(blocksPerShard);
+        }
+    }
+
+    /**
+     * Llave de la lista de un término: el segmento en los 32 bits altos y el identificador del término en los bajos.
+     */
+    static long termKey(int segment, int ordinal) {
+        return ((long) segment << 32) | (ordinal & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Copia un bloque del caché en los arreglos del cursor.
+     *
+     * @return la cantidad de entradas del bloque, o -1 si el bloque no está en el caché
+     */
+    int get(long termKey, int block, int[] documents, float[] normalizedFrequencies) {
+        int hash = hash(termKey, block);
+        Shard shard = this.shards[hash >>> 28];
+        int length;
+        synchronized (shard) {
+            int slot = shard.find(termKey, block, hash);
+            if (slot < 0) {
+                length = -1;
+            } else {
+                length = shard.lengths[slot];
+                if (shard.frequencies[slot] < MAX_FREQUENCY) {
+                    shard.frequencies[slot]++;
+                }
+                System.arraycopy(shard.documents, slot * PostingsCodec.BLOCK_SIZE, documents, 0, length);
+                System.arraycopy(shard.normalizedFrequencies, slot * PostingsCodec.BLOCK_SIZE, normalizedFrequencies,
+                        0, length);
+            }
+        }
+        if (length < 0) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return length;
+    }
+
+    /**
+     * Guarda un bloque recién decodificado, sacando otro si la partición está llena.
+     */
+    void put(long termKey, int block, int[] documents, float[] normalizedFrequencies, int length) {
+        int hash = hash(termKey, block);
+        Shard shard = this.shards[hash >>> 28];
+        synchronized (shard) {
+            if (shard.find(termKey, block, hash) >= 0) {
+                // Otra consulta decodificó el mismo bloque al mismo tiempo.
+                return;
+            }
+            int slot;
+            if (shard.used < shard.terms.length) {
+                slot = shard.used++;
+            } else {
+                slot = shard.evict();
+                this.evictions.increment();
+            }
+            shard.terms[slot] = termKey;
+            shard.blocks[slot] = block;
+            shard.lengths[slot] = length;
+            shard.frequencies[slot] = 1;
+            System.arraycopy(documents, 0, shard.documents, slot * PostingsCodec.BLOCK_SIZE, length);
+            System.arraycopy(normalizedFrequencies, 0, shard.normalizedFrequencies, slot * PostingsCodec.BLOCK_SIZE,
+                    length);
+            shard.insert(slot, hash);
+            shard.residentBytes += (long) length * (Integer.BYTES + Float.BYTES);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * Cantidad de bloques guardados.
+     */
+    public int getResidentBlocks() {
+        int residentBlocks = 0;
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                residentBlocks += shard.used;
+            }
+        }
+        return residentBlocks;
+    }
+
+    /**
+     * Bytes que ocupan los documentos y las frecuencias de los bloques guardados.
+     */
+    public long getResidentBytes() {
+        long residentBytes = 0;
+        for (Shard shard : this.shards) {
+            synchronized (shard) {
+                residentBytes += shard.residentBytes;
+            }
+        }
+        return residentBytes;
+    }
+
+    private static int hash(long termKey, int block) {
+        long hash = (termKey * 0x9E3779B97F4A7C15L) ^ block;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * Partición del caché. Los bloques ocupan posiciones fijas en los arreglos; la tabla guarda la posición más uno
+     * de cada bloque (0 para las entradas vacías) y resuelve las colisiones con sondeo lineal.
+     */
+    private static final class Shard {
+
+        private final long[] terms;
+        private final int[] blocks;
+        private final int[] lengths;
+        private final byte[] frequencies;
+        private final int[] documents;
+        private final float[] normalizedFrequencies;
+        private final int[] table;
+
+        private int used;
+        private int hand;
+        private long residentBytes;
+
+        Shard(int capacity) {
+            this.terms = new long[capacity];
+            this.blocks = new int[capacity];
+            this.lengths = new int[capacity];
+            this.frequencies = new byte[capacity];
+            this.documents = new int[capacity * PostingsCodec.BLOCK_SIZE];
+            this.normalizedFrequencies = new float[capacity * PostingsCodec.BLOCK_SIZE];
+            this.table = new int[Integer.highestOneBit(Math.max(1, capacity - 1)) << 2];
+        }
+
+        int find(long termKey, int block, int hash) {
+            int mask = this.table.length - 1;
+            for (int i = hash & mask; this.table[i] != 0; i = (i + 1) & mask) {
+                int slot = this.table[i] - 1;
+                if (this.terms[slot] == termKey && this.blocks[slot] == block) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void insert(int slot, int hash) {
+            int mask = this.table.length - 1;
+            int i = hash & mask;
+            while (this.table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            this.table[i] = slot + 1;
+        }
+
+        /**
+         * Avanza la manecilla del reloj hasta un bloque con el contador en cero y lo saca de la tabla.
+         *
+         * @return la posición liberada
+         */
+        int evict() {
+            while (this.frequencies[this.hand] > 0) {
+                this.frequencies[this.hand]--;
+                this.hand = (this.hand + 1) % this.terms.length;
+            }
+            int slot = this.hand;
+            this.hand = (this.hand + 1) % this.terms.length;
+            this.remove(slot);
+            this.residentBytes -= (long) this.lengths[slot] * (Integer.BYTES + Float.BYTES);
+            return slot;
+        }
+
+        /**
+         * Quita un bloque de la tabla y mueve hacia atrás las entradas siguientes del mismo grupo de colisiones, para
+         * que las búsquedas no se detengan en el espacio vacío.
+         */
+        private void remove(int slot) {
+            int mask = this.table.length - 1;
+            int i = hash(this.terms[slot], this.blocks[slot]) & mask;
+            while (this.table[i] != slot + 1) {
+                i = (i + 1) & mask;
+            }
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (this.table[j] == 0) {
+                    break;
+                }
+                int moved = this.table[j] - 1;
+                int home = hash(this.terms[moved], this.blocks[moved]) & mask;
+                boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!between) {
+                    this.table[i] = this.table[j];
+                    i = j;
+                }
+            }
+            this.table[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ri.wse.indexStorage;
+
+/**
+ * Cursor sobre la lista de postings de un término: recorre en orden los documentos en los que aparece el término y
+ * el peso del término en cada uno de ellos. También guarda el mayor peso normalizado (wij / |dj|) de la lista, que
+ * se usa como cota superior para podar documentos.
+ * Cada consulta obtiene su propio cursor, ya que guarda la posición del recorrido.
+ */
+public abstract class PostingList {
+
+    /**
+     * Valor de {@link #document()} cuando el cursor ya recorrió toda la lista.
+     */
+    public static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+
+    /**
+     * Cantidad de documentos de la lista.
+     */
+    public abstract int size();
+
+    public abstract double getMaxWeight();
+
+    /**
+     * Documento en el que está el cursor: -1 antes de la primera llamada a {@link #next()} y
+     * {@link #NO_MORE_DOCUMENTS} al terminar la lista.
+     */
+    public abstract int document();
+
+    /**
+     * Peso del término en el documento actual.
+     */
+    public abstract double weight();
+
+    /**
+     * Avanza al siguiente documento de la lista.
+     *
+     * @return el nuevo documento actual, o {@link #NO_MORE_DOCUMENTS}
+     */
+    public abstract int next();
+
+    /**
+     * Avanza hasta el primer documento mayor o igual al documento buscado.
+     *
+     * @param target documento buscado
+     * @return el nuevo documento actual, o {@link #NO_MORE_DOCUMENTS}
+     */
+    public abstract int advance(int target);
+}
@@ -0,0 +1,99 @@
+package ri.wse.indexStorage;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Codificación comprimida de las listas de postings. Cada lista se divide en bloques de {@link #BLOCK_SIZE}
+ * entradas. Por cada bloque se guarda una entrada de salto (último documento del bloque y posición del bloque) que
+ * permite saltar bloques completos sin decodificarlos. Dentro de un bloque los identificadores de documentos se
+ * guardan como diferencias con el documento anterior en bytes variables (7 bits por byte, el bit más alto indica que
+ * el número continúa), seguidos de la frecuencia normalizada de cada entrada cuantizada a un byte en relación con la
+ * frecuencia normalizada máxima de la lista. Como todas las entradas de una lista tienen el mismo idf, el peso de una
+ * entrada es la frecuencia decuantizada por el idf.
+ */
+final class PostingsCodec {
+
+    static final int BLOCK_SIZE = 128;
+
+    /**
+     * Tamaño en bytes de una entrada de salto: último documento del bloque (int) y posición del bloque (int).
+     */
+    static final int SKIP_ENTRY_BYTES = 2 * Integer.BYTES;
+
+    private static final int QUANTIZATION_LEVELS = 255;
+
+    private PostingsCodec() {
+    }
+
+    static int blockCount(int size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    static void writeVInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    /**
+     * Cuantiza un valor a un número entre 1 y 255 en relación con el valor máximo de la lista; un valor positivo
+     * nunca se cuantiza a cero.
+     */
+    static int quantize(float weight, float scale) {
+        if (scale <= 0) {
+            return 0;
+        }
+        int quantized = Math.round(weight / scale * QUANTIZATION_LEVELS);
+        return Math.max(weight > 0 ? 1 : 0, Math.min(QUANTIZATION_LEVELS, quantized));
+    }
+
+    static float dequantize(int quantized, float scale) {
+        return quantized * scale / QUANTIZATION_LEVELS;
+    }
+
+    /**
+     * Codifica una lista de postings completa: la tabla de saltos seguida de los bloques.
+     *
+     * @param documents identificadores de los documentos, en orden creciente
+     * @param weights   frecuencia normalizada cuantizada de cada entrada
+     * @return bytes de la lista codificada
+     */
+    static byte[] encode(int[] documents, int[] weights) {
+        int blocks = blockCount(documents.length);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] lastDocuments = new int[blocks];
+        int[] blockOffsets = new int[blocks];
+        int previous = 0;
+        for (int block = 0; block < blocks; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, documents.length);
+            blockOffsets[block] = data.size();
+            for (int i = start; i < end; i++) {
+                writeVInt(data, documents[i] - previous);
+                previous = documents[i];
+            }
+            for (int i = start; i < end; i++) {
+                data.write(weights[i]);
+            }
+            lastDocuments[block] = previous;
+        }
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(blocks * SKIP_ENTRY_BYTES + data.size());
+        for (int block = 0; block < blocks; block++) {
+            writeInt(encoded, lastDocuments[block]);
+            writeInt(encoded, blockOffsets[block]);
+        }
+        byte[] dataBytes = data.toByteArray();
+        encoded.write(dataBytes, 0, dataBytes.length);
+        return encoded.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+}
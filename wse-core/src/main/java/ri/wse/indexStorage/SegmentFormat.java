@@ -0,0 +1,59 @@
+package ri.wse.indexStorage;
+
+/**
+ * Describe el formato binario de un segmento del índice. Un segmento está formado por tres archivos:
+ * <ul>
+ * <li>Terminos.dic: diccionario de términos ordenado (ver {@link TermDictionary}). Cabecera (magic, versión,
+ * cantidad de términos, cantidad de bloques, largo máximo de un término), una tabla con la posición de cada bloque
+ * de términos, una tabla de tamaño fijo con los datos de cada término: df (int), idf (double), peso normalizado
+ * máximo (double), frecuencia normalizada máxima (float, escala de la cuantización), posición de los postings (long)
+ * y cantidad de postings (int), y por último los bloques de términos codificados por prefijos. En cada bloque el
+ * primer término se guarda como largo (vbyte) y bytes UTF-8, y los siguientes como largo del prefijo compartido
+ * con el término anterior (vbyte), largo del resto (vbyte) y bytes del resto.</li>
+ * <li>Postings.pst: cabecera (magic, versión, tamaño de los pedazos) y, por cada término, su lista de postings
+ * comprimida por bloques con entradas de salto, como se describe en {@link PostingsCodec}. El archivo se divide en
+ * pedazos de {@link #POSTINGS_CHUNK_SIZE} bytes y ninguna lista cruza el límite de un pedazo: si una lista no cabe
+ * en lo que queda del pedazo, se escribe al inicio del siguiente después de bytes de relleno. Así el archivo puede
+ * pasar de 2 GB aunque cada pedazo se lea con posiciones de tipo int.</li>
+ * <li>Documentos.tbl: tabla de documentos. Cabecera (magic, versión, cantidad de documentos), una tabla con la
+ * posición de cada entrada y las entradas: norma del documento (double), fecha de modificación del archivo del
+ * documento (long), largo del nombre (short), bytes UTF-8 del nombre, largo del url (short) y bytes UTF-8 del url.
+ * El identificador de un documento es su posición en la tabla.</li>
+ * </ul>
+ * Los df, idf, pesos y normas de un segmento se calculan con las estadísticas de todo el índice en el momento en que
+ * se escribe el segmento, así que solo son exactos mientras el índice tiene ese único segmento sin documentos
+ * borrados; si no, {@link IndexReader} los calcula de nuevo a partir de las frecuencias normalizadas.
+ * <p>
+ * Un índice está formado por varios segmentos, cada uno en un subdirectorio, y por archivos de confirmación
+ * Segmentos_&lt;generación&gt; que indican los segmentos vivos y los documentos borrados de cada uno (ver
+ * {@link SegmentInfos}). Los segmentos no cambian después de escritos; agregar, borrar o fusionar documentos escribe
+ * segmentos nuevos y una nueva generación del archivo de confirmación.
+ * <p>
+ * Todos los valores se escriben en big-endian.
+ */
+public final class SegmentFormat {
+
+    public static final String DICTIONARY_FILE = "Terminos.dic";
+    public static final String POSTINGS_FILE = "Postings.pst";
+    public static final String DOCUMENTS_FILE = "Documentos.tbl";
+
+    static final int DICTIONARY_MAGIC = 0x57534544;
+    static final int POSTINGS_MAGIC = 0x57534550;
+    static final int DOCUMENTS_MAGIC = 0x57534554;
+    static final int VERSION = 5;
+
+    /**
+     * Prefijo de los archivos de confirmación, seguido del número de generación.
+     */
+    public static final String SEGMENTS_FILE_PREFIX = "Segmentos_";
+
+    static final int SEGMENTS_MAGIC = 0x57534553;
+
+    /**
+     * Tamaño de los pedazos del archivo de postings, que {@link SegmentReader} mapea por separado.
+     */
+    static final int POSTINGS_CHUNK_SIZE = 1 << 30;
+
+    private SegmentFormat() {
+    }
+}
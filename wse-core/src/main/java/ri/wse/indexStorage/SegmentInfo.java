@@ -0,0 +1,71 @@
+package ri.wse.indexStorage;
+
+import java.util.BitSet;
+
+/**
+ * Datos de un segmento dentro de un archivo de confirmación: su nombre (el del subdirectorio donde están sus
+ * archivos), la cantidad de documentos que tiene y el conjunto de bits con los documentos borrados.
+ */
+public class SegmentInfo {
+
+    private final String name;
+    private final int documentCount;
+    private final BitSet deletions;
+
+    public SegmentInfo(String name, int documentCount) {
+        this(name, documentCount, new BitSet(documentCount));
+    }
+
+    SegmentInfo(String name, int documentCount, BitSet deletions) {
+        this.name = name;
+        this.documentCount = documentCount;
+        this.deletions = deletions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Cantidad de documentos del segmento, incluidos los borrados.
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public int getDeletedCount() {
+        return deletions.cardinality();
+    }
+
+    public int getLiveCount() {
+        return documentCount - deletions.cardinality();
+    }
+
+    public boolean isDeleted(int document) {
+        return deletions.get(document);
+    }
+
+    /**
+     * Marca un documento como borrado.
+     *
+     * @return true si el documento no estaba borrado
+     */
+    boolean delete(int document) {
+        if (deletions.get(document)) {
+            return false;
+        }
+        deletions.set(document);
+        return true;
+    }
+
+    /**
+     * Conjunto de documentos borrados; no debe modificarse.
+     */
+    BitSet getDeletions() {
+        return deletions;
+    }
+
+    SegmentInfo copy() {
+        return new SegmentInfo(name, documentCount, (BitSet) deletions.clone());
+    }
+}
@@ -0,0 +1,162 @@
+package ri.wse.indexStorage;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contenido de un archivo de confirmación Segmentos_&lt;generación&gt;: la lista ordenada de segmentos vivos del
+ * índice con sus documentos borrados. Los identificadores globales de los documentos se asignan recorriendo los
+ * segmentos en este orden.
+ * Cada confirmación escribe un archivo nuevo con la siguiente generación (primero a un archivo temporal que luego se
+ * renombra), así que quien lee el índice siempre ve una confirmación completa.
+ * Formato: magic, versión, generación (long), contador para nombrar segmentos (int), cantidad de segmentos (int) y
+ * por cada segmento: nombre (UTF), cantidad de documentos (int), cantidad de longs del conjunto de borrados (int) y
+ * los longs.
+ */
+public class SegmentInfos {
+
+    private final long generation;
+    private final int segmentCounter;
+    private final List<SegmentInfo> segments;
+
+    SegmentInfos(long generation, int segmentCounter, List<SegmentInfo> segments) {
+        this.generation = generation;
+        this.segmentCounter = segmentCounter;
+        this.segments = segments;
+    }
+
+    /**
+     * Generación de la confirmación; 0 si el índice todavía no tiene ninguna.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    int getSegmentCounter() {
+        return segmentCounter;
+    }
+
+    public List<SegmentInfo> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Cantidad de documentos de todos los segmentos, incluidos los borrados.
+     */
+    public int getDocumentCount() {
+        int documentCount = 0;
+        for (SegmentInfo segment : segments) {
+            documentCount += segment.getDocumentCount();
+        }
+        return documentCount;
+    }
+
+    /**
+     * Busca la última generación de confirmación en un directorio.
+     *
+     * @return la generación, o 0 si no hay ninguna
+     */
+    public static long findLatestGeneration(String directory) throws IOException {
+        long latest = 0;
+        Path path = Paths.get(directory);
+        if (!Files.isDirectory(path)) {
+            return latest;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, SegmentFormat.SEGMENTS_FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(SegmentFormat.SEGMENTS_FILE_PREFIX.length());
+                try {
+                    latest = Math.max(latest, Long.parseLong(suffix));
+                } catch (NumberFormatException e) {
+                    // Archivo temporal de una confirmación en curso.
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Lee la última confirmación del índice; si no hay ninguna devuelve una confirmación vacía de generación 0.
+     */
+    public static SegmentInfos readLatest(String directory) throws IOException {
+        long generation = findLatestGeneration(directory);
+        if (generation == 0) {
+            return new SegmentInfos(0, 0, new ArrayList<>());
+        }
+        return read(Paths.get(directory, fileName(generation)));
+    }
+
+    /**
+     * Lee un archivo de confirmación.
+     */
+    static SegmentInfos read(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != SegmentFormat.SEGMENTS_MAGIC || input.readInt() != SegmentFormat.VERSION) {
+                throw new IOException("El archivo " + file.getFileName() + " no tiene un formato válido.");
+            }
+            long storedGeneration = input.readLong();
+            int segmentCounter = input.readInt();
+            int segmentCount = input.readInt();
+            List<SegmentInfo> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                String name = input.readUTF();
+                int documentCount = input.readInt();
+                long[] words = new long[input.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = input.readLong();
+                }
+                segments.add(new SegmentInfo(name, documentCount, BitSet.valueOf(words)));
+            }
+            return new SegmentInfos(storedGeneration, segmentCounter, segments);
+        }
+    }
+
+    /**
+     * Escribe estos segmentos como la siguiente generación de confirmación.
+     *
+     * @return la confirmación escrita
+     */
+    SegmentInfos write(String directory, int segmentCounter) throws IOException {
+        long nextGeneration = this.generation + 1;
+        Path temporary = Paths.get(directory, fileName(nextGeneration) + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)))) {
+            output.writeInt(SegmentFormat.SEGMENTS_MAGIC);
+            output.writeInt(SegmentFormat.VERSION);
+            output.writeLong(nextGeneration);
+            output.writeInt(segmentCounter);
+            output.writeInt(this.segments.size());
+            for (SegmentInfo segment : this.segments) {
+                output.writeUTF(segment.getName());
+                output.writeInt(segment.getDocumentCount());
+                long[] words = segment.getDeletions().toLongArray();
+                output.writeInt(words.length);
+                for (long word : words) {
+                    output.writeLong(word);
+                }
+            }
+        }
+        Files.move(temporary, Paths.get(directory, fileName(nextGeneration)), StandardCopyOption.ATOMIC_MOVE);
+        return new SegmentInfos(nextGeneration, segmentCounter, this.copySegments());
+    }
+
+    /**
+     * Copia la lista de segmentos con sus conjuntos de borrados, para poder modificarla sin afectar esta
+     * confirmación.
+     */
+    List<SegmentInfo> copySegments() {
+        List<SegmentInfo> copy = new ArrayList<>(this.segments.size());
+        for (SegmentInfo segment : this.segments) {
+            copy.add(segment.copy());
+        }
+        return copy;
+    }
+
+    static String fileName(long generation) {
+        return SegmentFormat.SEGMENTS_FILE_PREFIX + generation;
+    }
+}
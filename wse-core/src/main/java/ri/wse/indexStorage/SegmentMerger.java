@@ -0,0 +1,147 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fusiona varios segmentos en uno nuevo sin los documentos borrados. Los documentos vivos reciben identificadores
+ * nuevos en el orden de los segmentos, y los pesos y normas se recalculan a partir de las frecuencias normalizadas
+ * guardadas, con el idf que tiene cada término en el índice después de la fusión.
+ * Los términos se recorren en orden mezclando los diccionarios de los segmentos (ver {@link SegmentTerms}); se hacen
+ * dos recorridos, el primero para calcular las normas de los documentos y el segundo para escribir las listas de
+ * postings.
+ */
+final class SegmentMerger {
+
+    private final SegmentReader[] readers;
+    private final SegmentInfo[] segments;
+    private final int indexDocumentCount;
+    private final ToIntFunction<String> otherDocumentFrequency;
+
+    private final int[][] documentMaps;
+    private final int documentCount;
+
+    private int[] mergedDocuments = new int[16];
+    private float[] mergedFrequencies = new float[16];
+    private int mergedSize;
+
+    /**
+     * @param readers                lectores de los segmentos a fusionar
+     * @param segments               datos de los segmentos a fusionar, con los documentos borrados
+     * @param indexDocumentCount     cantidad de documentos del índice después de la fusión
+     * @param otherDocumentFrequency df de cada término en los segmentos del índice que no se fusionan
+     */
+    SegmentMerger(SegmentReader[] readers, SegmentInfo[] segments, int indexDocumentCount,
+                  ToIntFunction<String> otherDocumentFrequency) {
+        this.readers = readers;
+        this.segments = segments;
+        this.indexDocumentCount = indexDocumentCount;
+        this.otherDocumentFrequency = otherDocumentFrequency;
+
+        this.documentMaps = new int[segments.length][];
+        int next = 0;
+        for (int i = 0; i < segments.length; i++) {
+            this.documentMaps[i] = new int[segments[i].getDocumentCount()];
+            for (int document = 0; document < this.documentMaps[i].length; document++) {
+                this.documentMaps[i][document] = segments[i].isDeleted(document) ? -1 : next++;
+            }
+        }
+        this.documentCount = next;
+    }
+
+    /**
+     * Cantidad de documentos del segmento fusionado.
+     */
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Identificadores nuevos de los documentos de cada segmento fusionado; -1 para los documentos borrados.
+     */
+    int[][] getDocumentMaps() {
+        return documentMaps;
+    }
+
+    /**
+     * Escribe el segmento fusionado.
+     *
+     * @param directory directorio del segmento nuevo
+     */
+    void merge(String directory) throws IOException {
+        String[] names = new String[this.documentCount];
+        String[] urls = new String[this.documentCount];
+        long[] lastModified = new long[this.documentCount];
+        for (int i = 0; i < this.segments.length; i++) {
+            for (int document = 0; document < this.documentMaps[i].length; document++) {
+                int merged = this.documentMaps[i][document];
+                if (merged >= 0) {
+                    names[merged] = this.readers[i].getDocumentName(document);
+                    urls[merged] = this.readers[i].getUrl(document);
+                    lastModified[merged] = this.readers[i].getLastModified(document);
+                }
+            }
+        }
+
+        double[] squaredWeights = new double[this.documentCount];
+        this.forEachTerm((term, idf) -> {
+            for (int i = 0; i < this.mergedSize; i++) {
+                float weight = (float) (this.mergedFrequencies[i] * idf);
+                squaredWeights[this.mergedDocuments[i]] += Math.pow(weight, 2);
+            }
+        });
+        double[] norms = new double[this.documentCount];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = Math.sqrt(squaredWeights[i]);
+        }
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(directory)) {
+            segmentWriter.writeDocuments(names, urls, lastModified, norms);
+            this.forEachTerm((term, idf) -> segmentWriter.addTerm(term, this.mergedSize, idf,
+                    Arrays.copyOf(this.mergedDocuments, this.mergedSize),
+                    Arrays.copyOf(this.mergedFrequencies, this.mergedSize)));
+        }
+    }
+
+    private interface TermConsumer {
+        void accept(String term, double idf) throws IOException;
+    }
+
+    /**
+     * Recorre en orden los términos de todos los segmentos que aparecen en algún documento vivo. Antes de llamar al
+     * consumidor deja en los arreglos de postings fusionados los documentos nuevos y sus frecuencias normalizadas.
+     */
+    private void forEachTerm(TermConsumer consumer) throws IOException {
+        SegmentTerms.forEachTerm(this.readers, (term, segments, ordinals, count) -> {
+            // Los segmentos llegan en orden, así que los documentos nuevos quedan ordenados.
+            this.mergedSize = 0;
+            for (int i = 0; i < count; i++) {
+                this.addPostings(segments[i], ordinals[i]);
+            }
+            if (this.mergedSize > 0) {
+                double idf = Math.log10((double) this.indexDocumentCount
+                        / (this.otherDocumentFrequency.applyAsInt(term) + this.mergedSize));
+                consumer.accept(term, idf);
+            }
+        });
+    }
+
+    private void addPostings(int segment, int ordinal) {
+        PostingList postingList = this.readers[segment].getNormalizedFrequencies(ordinal);
+        for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+             document = postingList.next()) {
+            int merged = this.documentMaps[segment][document];
+            if (merged < 0) {
+                continue;
+            }
+            if (this.mergedSize == this.mergedDocuments.length) {
+                this.mergedDocuments = Arrays.copyOf(this.mergedDocuments, this.mergedSize * 2);
+                this.mergedFrequencies = Arrays.copyOf(this.mergedFrequencies, this.mergedSize * 2);
+            }
+            this.mergedDocuments[this.mergedSize] = merged;
+            this.mergedFrequencies[this.mergedSize] = (float) postingList.weight();
+            this.mergedSize++;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ri.wse.indexStorage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lista de postings de un término dentro de un segmento. Decodifica la lista bloque por bloque (ver
+ * {@link PostingsCodec}) directamente del buffer mapeado del archivo de postings, y usa las entradas de salto para no
+ * decodificar los bloques que {@link #advance(int)} se salta. Si tiene un {@link PostingBlockCache}, busca ahí cada
+ * bloque antes de decodificarlo y guarda los que decodifica.
+ * Los bloques guardan las frecuencias normalizadas decuantizadas y el peso se calcula al leerlo con el idf que recibe
+ * la lista, así que los bloques del caché sirven aunque el idf del término cambie entre generaciones del índice.
+ */
+class SegmentPostingList extends PostingList {
+
+    private final ByteBuffer buffer;
+    private final int skipOffset;
+    private final int dataOffset;
+    private final int size;
+    private final int blockCount;
+    private final float frequencyScale;
+    private final double idf;
+    private final double maxWeight;
+    private final PostingBlockCache postingBlockCache;
+    private final long termKey;
+
+    private final int[] documents;
+    private final float[] frequencies;
+    private int block = -1;
+    private int blockLength;
+    private int index;
+    private int document = -1;
+
+    /**
+     * @param buffer            buffer con el contenido del archivo de postings
+     * @param offset            posición de la lista codificada dentro del buffer
+     * @param size              cantidad de documentos de la lista
+     * @param frequencyScale    frecuencia normalizada máxima de la lista, usada para decuantizar las frecuencias
+     * @param idf               frecuencia inversa del término, que multiplica las frecuencias normalizadas
+     * @param maxWeight         mayor peso normalizado de la lista con ese idf
+     * @param postingBlockCache caché de bloques decodificados, o null
+     * @param termKey           llave de la lista en el caché
+     */
+    SegmentPostingList(ByteBuffer buffer, int offset, int size, float frequencyScale, double idf, double maxWeight,
+                       PostingBlockCache postingBlockCache, long termKey) {
+        this.buffer = buffer;
+        this.size = size;
+        this.blockCount = PostingsCodec.blockCount(size);
+        this.skipOffset = offset;
+        this.dataOffset = offset + this.blockCount * PostingsCodec.SKIP_ENTRY_BYTES;
+        this.frequencyScale = frequencyScale;
+        this.idf = idf;
+        this.maxWeight = maxWeight;
+        this.postingBlockCache = postingBlockCache;
+        this.termKey = termKey;
+        this.documents = new int[Math.min(PostingsCodec.BLOCK_SIZE, size)];
+        this.frequencies = new float[this.documents.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public int document() {
+        return document;
+    }
+
+    @Override
+    public double weight() {
+        return frequencies[index] * idf;
+    }
+
+    @Override
+    public int next() {
+        if (this.document == NO_MORE_DOCUMENTS) {
+            // advance() pudo terminar la lista sin llegar al final del bloque actual.
+            return this.document;
+        }
+        if (this.index + 1 < this.blockLength) {
+            this.index++;
+            this.document = this.documents[this.index];
+        } else if (this.block + 1 < this.blockCount) {
+            this.loadBlock(this.block + 1);
+            this.document = this.documents[0];
+        } else {
+            this.document = NO_MORE_DOCUMENTS;
+        }
+        return this.document;
+    }
+
+    /**
+     * Salta sin decodificar los bloques cuyo último documento es menor al documento buscado.
+     */
+    @Override
+    public int advance(int target) {
+        if (this.document >= target) {
+            return this.document;
+        }
+        int targetBlock = Math.max(this.block, 0);
+        while (targetBlock < this.blockCount && this.lastDocument(targetBlock) < target) {
+            targetBlock++;
+        }
+        if (targetBlock == this.blockCount) {
+            this.document = NO_MORE_DOCUMENTS;
+            return this.document;
+        }
+        if (targetBlock != this.block) {
+            this.loadBlock(targetBlock);
+        }
+        while (this.documents[this.index] < target) {
+            this.index++;
+        }
+        this.document = this.documents[this.index];
+        return this.document;
+    }
+
+    private int lastDocument(int block) {
+        return this.buffer.getInt(this.skipOffset + block * PostingsCodec.SKIP_ENTRY_BYTES);
+    }
+
+    /**
+     * Decodifica un bloque completo y deja el cursor en su primera entrada.
+     */
+    private void loadBlock(int block) {
+        this.block = block;
+        this.index = 0;
+        if (this.postingBlockCache != null) {
+            this.blockLength = this.postingBlockCache.get(this.termKey, block, this.documents, this.frequencies);
+            if (this.blockLength >= 0) {
+                return;
+            }
+        }
+
+        int position = this.dataOffset
+                + this.buffer.getInt(this.skipOffset + block * PostingsCodec.SKIP_ENTRY_BYTES + Integer.BYTES);
+        int previous = block == 0 ? 0 : this.lastDocument(block - 1);
+        this.blockLength = Math.min(PostingsCodec.BLOCK_SIZE, this.size - block * PostingsCodec.BLOCK_SIZE);
+
+        for (int i = 0; i < this.blockLength; i++) {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = this.buffer.get(position++);
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            previous += value;
+            this.documents[i] = previous;
+        }
+        for (int i = 0; i < this.blockLength; i++) {
+            this.frequencies[i] = PostingsCodec.dequantize(this.buffer.get(position++) & 0xFF, this.frequencyScale);
+        }
+
+        if (this.postingBlockCache != null) {
+            this.postingBlockCache.put(this.termKey, block, this.documents, this.frequencies, this.blockLength);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lee un segmento del índice escrito por {@link SegmentWriter}. Los archivos se mapean a memoria con
+ * {@link FileChannel#map}, así que abrir el segmento es casi instantáneo y el contenido lo mantiene el caché de
+ * páginas del sistema operativo en lugar del heap. Un buffer mapeado no puede pasar de 2 GB, así que el archivo de
+ * postings se mapea por pedazos (ver {@link SegmentFormat}); cada lista está completa dentro de un pedazo. Solo se
+ * usan lecturas absolutas sobre los buffers, por lo que una misma instancia puede ser usada por varios hilos a la
+ * vez.
+ * Si se abre con un {@link PostingBlockCache}, las listas de postings de las consultas guardan en él los bloques que
+ * decodifican.
+ * Los {@link IndexReader} de varias generaciones comparten los segmentos que no cambiaron, así que el segmento cuenta
+ * sus referencias y libera los mapeos cuando se quita la última. No se debe usar después de eso.
+ */
+public class SegmentReader {
+
+    /**
+     * Genera el identificador de cada segmento abierto, que lo distingue en el caché de bloques.
+     */
+    private static final AtomicInteger SEGMENT_IDS = new AtomicInteger();
+
+    private final TermDictionary termDictionary;
+    private final MappedByteBuffer dictionary;
+    private final MappedByteBuffer[] postings;
+    private final int postingsChunkSize;
+    private final MappedByteBuffer documents;
+
+    private final int documentCount;
+    private final int documentEntriesStart;
+
+    private final int id = SEGMENT_IDS.getAndIncrement();
+    private final PostingBlockCache postingBlockCache;
+
+    /**
+     * Referencias al segmento: la del lector que lo abrió y una por cada lector que lo reutiliza.
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    public SegmentReader(String directory) throws IOException {
+        this(directory, null);
+    }
+
+    /**
+     * @param postingBlockCache caché de bloques decodificados, o null para decodificar siempre del archivo
+     */
+    public SegmentReader(String directory, PostingBlockCache postingBlockCache) throws IOException {
+        this.postingBlockCache = postingBlockCache;
+        this.dictionary = map(Paths.get(directory, SegmentFormat.DICTIONARY_FILE), SegmentFormat.DICTIONARY_MAGIC);
+        this.termDictionary = new TermDictionary(this.dictionary);
+        this.postings = mapChunks(Paths.get(directory, SegmentFormat.POSTINGS_FILE), SegmentFormat.POSTINGS_MAGIC);
+        this.postingsChunkSize = this.postings[0].getInt(8);
+        this.documents = map(Paths.get(directory, SegmentFormat.DOCUMENTS_FILE), SegmentFormat.DOCUMENTS_MAGIC);
+
+        this.documentCount = this.documents.getInt(8);
+        this.documentEntriesStart = 12 + this.documentCount * Integer.BYTES;
+    }
+
+    /**
+     * Mapea un archivo completo a memoria en modo de solo lectura y verifica su cabecera.
+     */
+    private static MappedByteBuffer map(Path path, int magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != magic || buffer.getInt(4) != SegmentFormat.VERSION) {
+                throw new IOException("El archivo " + path + " no tiene un formato de segmento válido.");
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Mapea un archivo a memoria por pedazos, con el tamaño de pedazo que indica su cabecera después de la versión.
+     */
+    private static MappedByteBuffer[] mapChunks(Path path, int magic) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+            int chunkSize = header.getInt(8);
+            if (header.hasRemaining() || header.getInt(0) != magic || header.getInt(4) != SegmentFormat.VERSION
+                    || chunkSize < header.capacity()) {
+                throw new IOException("El archivo " + path + " no tiene un formato de segmento válido.");
+            }
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * Agrega una referencia al segmento para otro lector.
+     */
+    void incRef() {
+        int count;
+        do {
+            count = this.refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("El segmento ya fue cerrado.");
+            }
+        } while (!this.refCount.compareAndSet(count, count + 1));
+    }
+
+    /**
+     * Quita una referencia al segmento; con la última se liberan los mapeos de sus archivos.
+     */
+    void decRef() {
+        int count = this.refCount.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("El segmento ya fue cerrado.");
+        }
+        if (count == 0) {
+            unmap(this.dictionary);
+            for (MappedByteBuffer chunk : this.postings) {
+                unmap(chunk);
+            }
+            unmap(this.documents);
+        }
+    }
+
+    /**
+     * Cantidad de referencias al segmento; 0 si ya fue cerrado.
+     */
+    int getRefCount() {
+        return refCount.get();
+    }
+
+    /**
+     * Libera el mapeo de un archivo sin esperar al recolector de basura, para que la memoria virtual se libere de
+     * inmediato y, en Windows, el archivo se pueda borrar. Java no tiene una forma pública de hacerlo: se usa
+     * Unsafe.invokeCleaner desde Java 9 o el limpiador interno del buffer en Java 8. Si ninguno está disponible, el
+     * mapeo se libera cuando el recolector elimina el buffer.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // El mapeo se libera con el recolector de basura.
+        }
+    }
+
+    public int getTermCount() {
+        return termDictionary.size();
+    }
+
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    /**
+     * Busca un término en el diccionario.
+     *
+     * @param term término buscado
+     * @return identificador del término, o -1 si no está
+     */
+    public int findTerm(String term) {
+        return this.termDictionary.find(term);
+    }
+
+    public String getTerm(int ordinal) {
+        return this.termDictionary.getTerm(ordinal);
+    }
+
+    public int getDocumentFrequency(int ordinal) {
+        return this.termDictionary.getDocumentFrequency(ordinal);
+    }
+
+    public double getIdf(int ordinal) {
+        return this.termDictionary.getIdf(ordinal);
+    }
+
+    public double getMaxWeight(int ordinal) {
+        return this.termDictionary.getMaxWeight(ordinal);
+    }
+
+    /**
+     * Obtiene la lista de postings de un término con los pesos calculados con el idf guardado en el segmento.
+     */
+    public PostingList getPostingList(int ordinal) {
+        return this.getPostingList(ordinal, this.getIdf(ordinal), this.getMaxWeight(ordinal));
+    }
+
+    /**
+     * Obtiene la lista de postings de un término con los pesos calculados con otro idf, como el que tiene el término
+     * en una confirmación del índice con varios segmentos (ver {@link IndexReader}).
+     *
+     * @param idf       frecuencia inversa del término
+     * @param maxWeight mayor peso normalizado de la lista con ese idf
+     */
+    PostingList getPostingList(int ordinal, double idf, double maxWeight) {
+        long offset = this.termDictionary.getPostingsOffset(ordinal);
+        return new SegmentPostingList(this.postingsChunk(offset), this.postingsPosition(offset),
+                this.termDictionary.getPostingsCount(ordinal), this.termDictionary.getFrequencyScale(ordinal), idf,
+                maxWeight, this.postingBlockCache, PostingBlockCache.termKey(this.id, ordinal));
+    }
+
+    /**
+     * Obtiene la lista de postings de un término con las frecuencias normalizadas en lugar de los pesos, que se usa
+     * para recalcular los pesos con otro idf al fusionar segmentos o al abrir una confirmación con varios segmentos.
+     */
+    public PostingList getNormalizedFrequencies(int ordinal) {
+        long offset = this.termDictionary.getPostingsOffset(ordinal);
+        return new SegmentPostingList(this.postingsChunk(offset), this.postingsPosition(offset),
+                this.termDictionary.getPostingsCount(ordinal), this.termDictionary.getFrequencyScale(ordinal), 1,
+                this.termDictionary.getFrequencyScale(ordinal), null, 0);
+    }
+
+    /**
+     * Pedazo del archivo de postings que contiene la lista que empieza en una posición del archivo.
+     */
+    private ByteBuffer postingsChunk(long offset) {
+        return this.postings[(int) (offset / this.postingsChunkSize)];
+    }
+
+    /**
+     * Posición dentro de su pedazo de una lista que empieza en una posición del archivo de postings.
+     */
+    private int postingsPosition(long offset) {
+        return (int) (offset % this.postingsChunkSize);
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    private int documentEntry(int document) {
+        return this.documentEntriesStart + this.documents.getInt(12 + document * Integer.BYTES);
+    }
+
+    public double getNorm(int document) {
+        return this.documents.getDouble(this.documentEntry(document));
+    }
+
+    /**
+     * Fecha de modificación del archivo del documento cuando se indexó, en milisegundos.
+     */
+    public long getLastModified(int document) {
+        return this.documents.getLong(this.documentEntry(document) + 8);
+    }
+
+    public String getDocumentName(int document) {
+        return this.readString(this.documentEntry(document) + 16);
+    }
+
+    public String getUrl(int document) {
+        int nameEntry = this.documentEntry(document) + 16;
+        return this.readString(nameEntry + 2 + this.documents.getShort(nameEntry));
+    }
+
+    /**
+     * Lee de la tabla de documentos una hilera precedida por su largo.
+     */
+    private String readString(int position) {
+        byte[] value = new byte[this.documents.getShort(position)];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = this.documents.get(position + 2 + i);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
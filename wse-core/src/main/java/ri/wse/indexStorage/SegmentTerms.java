@@ -0,0 +1,94 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.PriorityQueue;
+
+/**
+ * Recorre en orden los términos de varios segmentos mezclando sus diccionarios, que están ordenados según los bytes
+ * UTF-8 de los términos (ver {@link SegmentWriter#addTerm}).
+ */
+final class SegmentTerms {
+
+    interface TermConsumer {
+        /**
+         * @param term     término
+         * @param segments segmentos que tienen el término, en orden creciente
+         * @param ordinals identificador del término en cada uno de esos segmentos
+         * @param count    cantidad de segmentos que tienen el término
+         */
+        void accept(String term, int[] segments, int[] ordinals, int count) throws IOException;
+    }
+
+    private SegmentTerms() {
+    }
+
+    /**
+     * Llama al consumidor una vez por cada término distinto de los segmentos, en orden. Los arreglos que recibe el
+     * consumidor se reutilizan entre llamadas.
+     */
+    static void forEachTerm(SegmentReader[] readers, TermConsumer consumer) throws IOException {
+        PriorityQueue<TermCursor> queue = new PriorityQueue<>();
+        for (int i = 0; i < readers.length; i++) {
+            TermCursor cursor = new TermCursor(readers[i], i);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+
+        TermCursor[] matching = new TermCursor[readers.length];
+        int[] segments = new int[readers.length];
+        int[] ordinals = new int[readers.length];
+        while (!queue.isEmpty()) {
+            int matchingCount = 0;
+            byte[] term = queue.peek().term;
+            // Los empates salen en el orden de los segmentos.
+            while (!queue.isEmpty() && SegmentWriter.compare(queue.peek().term, term) == 0) {
+                TermCursor cursor = queue.poll();
+                matching[matchingCount] = cursor;
+                segments[matchingCount] = cursor.segment;
+                ordinals[matchingCount] = cursor.ordinal;
+                matchingCount++;
+            }
+
+            consumer.accept(readers[segments[0]].getTerm(ordinals[0]), segments, ordinals, matchingCount);
+
+            for (int i = 0; i < matchingCount; i++) {
+                if (matching[i].next()) {
+                    queue.add(matching[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Posición en el diccionario de términos de un segmento.
+     */
+    private static class TermCursor implements Comparable<TermCursor> {
+
+        private final SegmentReader reader;
+        private final int segment;
+        private int ordinal = -1;
+        private byte[] term;
+
+        TermCursor(SegmentReader reader, int segment) {
+            this.reader = reader;
+            this.segment = segment;
+        }
+
+        boolean next() {
+            this.ordinal++;
+            if (this.ordinal >= this.reader.getTermCount()) {
+                return false;
+            }
+            this.term = this.reader.getTerm(this.ordinal).getBytes(StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(TermCursor other) {
+            int comparison = SegmentWriter.compare(this.term, other.term);
+            return comparison != 0 ? comparison : this.segment - other.segment;
+        }
+    }
+}
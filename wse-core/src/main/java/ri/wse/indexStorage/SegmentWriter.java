@@ -0,0 +1,222 @@
+package ri.wse.indexStorage;
+
+import ri.wse.support.exceptions.IndexException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Escribe un segmento del índice en el formato descrito en {@link SegmentFormat}. Primero se escribe la tabla de
+ * documentos y luego se agregan los términos en orden, cada uno con su lista de postings completa; los postings se
+ * escriben en disco a medida que llegan y el diccionario se completa al cerrar el segmento.
+ */
+public class SegmentWriter implements Closeable {
+
+    private final String directory;
+    private final int postingsChunkSize;
+    private final DataOutputStream postingsOutput;
+    private final ByteArrayOutputStream termData;
+    private final DataOutputStream termDataOutput;
+    private final ByteArrayOutputStream termBlocks;
+    private final ByteArrayOutputStream blockOffsets;
+    private final DataOutputStream blockOffsetsOutput;
+
+    private double[] norms;
+    private long postingsOffset;
+    private int termCount;
+    private byte[] lastTerm;
+    private int maxTermLength;
+
+    public SegmentWriter(String directory) throws IOException {
+        this(directory, SegmentFormat.POSTINGS_CHUNK_SIZE);
+    }
+
+    /**
+     * @param postingsChunkSize tamaño de los pedazos del archivo de postings; las pruebas usan pedazos pequeños
+     */
+    SegmentWriter(String directory, int postingsChunkSize) throws IOException {
+        this.directory = directory;
+        this.postingsChunkSize = postingsChunkSize;
+        this.postingsOutput = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(Paths.get(directory, SegmentFormat.POSTINGS_FILE).toFile())));
+        this.postingsOutput.writeInt(SegmentFormat.POSTINGS_MAGIC);
+        this.postingsOutput.writeInt(SegmentFormat.VERSION);
+        this.postingsOutput.writeInt(postingsChunkSize);
+        this.postingsOffset = 3 * Integer.BYTES;
+        this.termData = new ByteArrayOutputStream();
+        this.termDataOutput = new DataOutputStream(this.termData);
+        this.termBlocks = new ByteArrayOutputStream();
+        this.blockOffsets = new ByteArrayOutputStream();
+        this.blockOffsetsOutput = new DataOutputStream(this.blockOffsets);
+    }
+
+    /**
+     * Escribe la tabla de documentos. Debe llamarse antes de agregar términos, ya que las normas se usan para
+     * calcular el peso normalizado máximo de cada término.
+     *
+     * @param names         nombres de los documentos, la posición es el identificador del documento
+     * @param urls          url de cada documento
+     * @param lastModified  fecha de modificación del archivo de cada documento
+     * @param norms         norma del vector de pesos de cada documento
+     */
+    public void writeDocuments(String[] names, String[] urls, long[] lastModified, double[] norms)
+            throws IOException {
+        this.norms = norms;
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entriesOutput = new DataOutputStream(entries);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(Paths.get(this.directory, SegmentFormat.DOCUMENTS_FILE).toFile())))) {
+            output.writeInt(SegmentFormat.DOCUMENTS_MAGIC);
+            output.writeInt(SegmentFormat.VERSION);
+            output.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                output.writeInt(entriesOutput.size());
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                byte[] url = urls[i].getBytes(StandardCharsets.UTF_8);
+                entriesOutput.writeDouble(norms[i]);
+                entriesOutput.writeLong(lastModified[i]);
+                entriesOutput.writeShort(name.length);
+                entriesOutput.write(name);
+                entriesOutput.writeShort(url.length);
+                entriesOutput.write(url);
+            }
+            entries.writeTo(output);
+        }
+    }
+
+    /**
+     * Agrega un término con su lista de postings. Los términos deben llegar ordenados según sus bytes UTF-8 (para
+     * términos sin caracteres fuera del plano básico es el mismo orden de {@link String#compareTo}).
+     *
+     * @param term                  término
+     * @param documentFrequency       cantidad de documentos del segmento en los que aparece el término
+     * @param idf                     frecuencia inversa del término
+     * @param documents               identificadores de los documentos, en orden creciente
+     * @param normalizedFrequencies   frecuencia normalizada del término en cada documento, se guarda cuantizada; el
+     *                                peso del término en el documento es la frecuencia normalizada por el idf
+     */
+    public void addTerm(String term, int documentFrequency, double idf, int[] documents,
+                        float[] normalizedFrequencies) throws IOException {
+        float frequencyScale = 0;
+        for (float normalizedFrequency : normalizedFrequencies) {
+            frequencyScale = Math.max(frequencyScale, normalizedFrequency);
+        }
+        this.addTerm(term, documentFrequency, idf, documents, normalizedFrequencies, frequencyScale);
+    }
+
+    /**
+     * Agrega un término cuantizando las frecuencias con una escala dada en lugar de la mayor frecuencia de la lista.
+     * Los shards de un índice usan la mayor frecuencia del término en toda la colección, para que los pesos
+     * decuantizados sean los mismos que en el índice sin repartir.
+     *
+     * @param frequencyScale frecuencia normalizada que corresponde al mayor valor cuantizado; debe ser mayor o igual
+     *                       a todas las frecuencias de la lista
+     */
+    public void addTerm(String term, int documentFrequency, double idf, int[] documents,
+                        float[] normalizedFrequencies, float frequencyScale) throws IOException {
+        byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+        if (this.lastTerm != null && compare(this.lastTerm, termBytes) >= 0) {
+            throw new IllegalArgumentException("Los términos deben agregarse en orden: " + term);
+        }
+
+        int[] quantizedFrequencies = new int[normalizedFrequencies.length];
+        double maxWeight = 0;
+        for (int i = 0; i < documents.length; i++) {
+            quantizedFrequencies[i] = PostingsCodec.quantize(normalizedFrequencies[i], frequencyScale);
+            if (this.norms[documents[i]] > 0) {
+                // El mismo cálculo del peso que hace SegmentPostingList al leerlo.
+                double weight = PostingsCodec.dequantize(quantizedFrequencies[i], frequencyScale) * idf;
+                maxWeight = Math.max(maxWeight, weight / this.norms[documents[i]]);
+            }
+        }
+        byte[] encoded = PostingsCodec.encode(documents, quantizedFrequencies);
+        this.alignPostings(term, encoded.length);
+        this.postingsOutput.write(encoded);
+
+        this.writeTermBytes(termBytes);
+        this.termDataOutput.writeInt(documentFrequency);
+        this.termDataOutput.writeDouble(idf);
+        this.termDataOutput.writeDouble(maxWeight);
+        this.termDataOutput.writeFloat(frequencyScale);
+        this.termDataOutput.writeLong(this.postingsOffset);
+        this.termDataOutput.writeInt(documents.length);
+
+        this.postingsOffset += encoded.length;
+        this.termCount++;
+    }
+
+    /**
+     * Si la lista no cabe en lo que queda del pedazo actual del archivo de postings, rellena el pedazo para que la
+     * lista empiece en el siguiente.
+     *
+     * @throws IndexException si la lista es más grande que un pedazo
+     */
+    private void alignPostings(String term, int length) throws IOException {
+        if (length > this.postingsChunkSize) {
+            throw new IndexException("La lista de postings de \"" + term + "\" ocupa " + length
+                    + " bytes y no cabe en un pedazo del archivo de postings.");
+        }
+        long chunkEnd = (this.postingsOffset / this.postingsChunkSize + 1) * this.postingsChunkSize;
+        if (this.postingsOffset + length > chunkEnd) {
+            while (this.postingsOffset < chunkEnd) {
+                this.postingsOutput.write(0);
+                this.postingsOffset++;
+            }
+        }
+    }
+
+    /**
+     * Agrega el término a los bloques del diccionario: completo si empieza un bloque y, si no, solo el largo del
+     * prefijo compartido con el término anterior y el resto de los bytes.
+     */
+    private void writeTermBytes(byte[] termBytes) throws IOException {
+        int prefixLength = 0;
+        if (this.termCount % TermDictionary.BLOCK_SIZE == 0) {
+            this.blockOffsetsOutput.writeInt(this.termBlocks.size());
+        } else {
+            int common = Math.min(this.lastTerm.length, termBytes.length);
+            while (prefixLength < common && this.lastTerm[prefixLength] == termBytes[prefixLength]) {
+                prefixLength++;
+            }
+            PostingsCodec.writeVInt(this.termBlocks, prefixLength);
+        }
+        PostingsCodec.writeVInt(this.termBlocks, termBytes.length - prefixLength);
+        this.termBlocks.write(termBytes, prefixLength, termBytes.length - prefixLength);
+        this.lastTerm = termBytes;
+        this.maxTermLength = Math.max(this.maxTermLength, termBytes.length);
+    }
+
+    /**
+     * Termina de escribir los postings y escribe el diccionario de términos.
+     */
+    @Override
+    public void close() throws IOException {
+        this.postingsOutput.close();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(Paths.get(this.directory, SegmentFormat.DICTIONARY_FILE).toFile())))) {
+            output.writeInt(SegmentFormat.DICTIONARY_MAGIC);
+            output.writeInt(SegmentFormat.VERSION);
+            output.writeInt(this.termCount);
+            output.writeInt(this.blockOffsets.size() / Integer.BYTES);
+            output.writeInt(this.maxTermLength);
+            this.blockOffsets.writeTo(output);
+            this.termData.writeTo(output);
+            this.termBlocks.writeTo(output);
+        }
+    }
+
+    /**
+     * Compara dos arreglos de bytes como enteros sin signo, en orden lexicográfico.
+     */
+    static int compare(byte[] first, byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+}
@@ -0,0 +1,257 @@
+package ri.wse.indexStorage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Diccionario de términos inmutable sobre el archivo mapeado Terminos.dic. Los términos están ordenados según sus
+ * bytes UTF-8 y guardados con codificación por prefijos (front coding) en bloques de {@link #BLOCK_SIZE}: el primer
+ * término de cada bloque se guarda completo y los demás solo guardan el largo del prefijo que comparten con el
+ * término anterior y el resto de sus bytes. Una tabla con la posición de cada bloque permite hacer búsqueda binaria
+ * sobre los primeros términos de los bloques y luego recorrer un solo bloque.
+ * El identificador de un término es su número de orden en el diccionario, y sus datos (df, idf, pesos y posición
+ * de los postings) están en una tabla de tamaño fijo indexada por ese identificador.
+ * Como los términos están ordenados, todos los que comparten un prefijo forman un rango continuo de identificadores
+ * (ver {@link #findPrefixRange(String)}).
+ * Solo se usan lecturas absolutas sobre el buffer, así que puede ser usado por varios hilos a la vez.
+ */
+public class TermDictionary {
+
+    /**
+     * Cantidad de términos por bloque de la codificación por prefijos.
+     */
+    static final int BLOCK_SIZE = 16;
+
+    /**
+     * Tamaño de los datos de cada término: df (int), idf (double), peso normalizado máximo (double), frecuencia
+     * normalizada máxima (float, escala de la cuantización), posición de los postings (long) y cantidad de
+     * postings (int).
+     */
+    static final int TERM_DATA_BYTES = 36;
+
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int blockCount;
+    private final int maxTermLength;
+    private final int termDataStart;
+    private final int blocksStart;
+
+    TermDictionary(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.termCount = buffer.getInt(8);
+        this.blockCount = buffer.getInt(12);
+        this.maxTermLength = buffer.getInt(16);
+        this.termDataStart = HEADER_BYTES + this.blockCount * Integer.BYTES;
+        this.blocksStart = this.termDataStart + this.termCount * TERM_DATA_BYTES;
+    }
+
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Busca un término exacto.
+     *
+     * @param term término buscado
+     * @return identificador del término, o -1 si no está
+     */
+    public int find(String term) {
+        byte[] target = term.getBytes(StandardCharsets.UTF_8);
+        int ordinal = this.ceiling(target);
+        if (ordinal < this.termCount && SegmentWriter.compare(this.termBytes(ordinal), target) == 0) {
+            return ordinal;
+        }
+        return -1;
+    }
+
+    /**
+     * Busca el rango de términos que empiezan con un prefijo.
+     *
+     * @param prefix prefijo buscado
+     * @return arreglo {desde, hasta} con los identificadores de los términos del rango, sin incluir "hasta"; el rango
+     * está vacío si ningún término empieza con el prefijo
+     */
+    public int[] findPrefixRange(String prefix) {
+        return this.findPrefixRange(prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Busca el rango de términos cuyos bytes UTF-8 empiezan con los bytes dados.
+     */
+    int[] findPrefixRange(byte[] target) {
+        int from = this.ceiling(target);
+
+        // El rango termina en el primer término mayor o igual al menor arreglo de bytes que ya no tiene el prefijo.
+        int end = target.length;
+        while (end > 0 && target[end - 1] == (byte) 0xFF) {
+            end--;
+        }
+        if (end == 0) {
+            return new int[]{from, this.termCount};
+        }
+        byte[] next = new byte[end];
+        System.arraycopy(target, 0, next, 0, end);
+        next[end - 1]++;
+        return new int[]{from, this.ceiling(next)};
+    }
+
+    public String getTerm(int ordinal) {
+        return new String(this.termBytes(ordinal), StandardCharsets.UTF_8);
+    }
+
+    public int getDocumentFrequency(int ordinal) {
+        return this.buffer.getInt(this.termData(ordinal));
+    }
+
+    public double getIdf(int ordinal) {
+        return this.buffer.getDouble(this.termData(ordinal) + 4);
+    }
+
+    public double getMaxWeight(int ordinal) {
+        return this.buffer.getDouble(this.termData(ordinal) + 12);
+    }
+
+    float getFrequencyScale(int ordinal) {
+        return this.buffer.getFloat(this.termData(ordinal) + 20);
+    }
+
+    long getPostingsOffset(int ordinal) {
+        return this.buffer.getLong(this.termData(ordinal) + 24);
+    }
+
+    int getPostingsCount(int ordinal) {
+        return this.buffer.getInt(this.termData(ordinal) + 32);
+    }
+
+    private int termData(int ordinal) {
+        return this.termDataStart + ordinal * TERM_DATA_BYTES;
+    }
+
+    private int blockStart(int block) {
+        return this.blocksStart + this.buffer.getInt(HEADER_BYTES + block * Integer.BYTES);
+    }
+
+    /**
+     * Busca el primer término mayor o igual a los bytes dados.
+     *
+     * @return identificador del término, o la cantidad de términos si todos son menores
+     */
+    private int ceiling(byte[] target) {
+        if (this.termCount == 0) {
+            return 0;
+        }
+        // Último bloque cuyo primer término es menor o igual al buscado.
+        int low = 0;
+        int high = this.blockCount - 1;
+        int block = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.compareFirstTerm(middle, target) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        byte[] term = new byte[this.maxTermLength];
+        int position = this.blockStart(block);
+        int ordinal = block * BLOCK_SIZE;
+        int end = Math.min(ordinal + BLOCK_SIZE, this.termCount);
+        for (; ordinal < end; ordinal++) {
+            int prefixLength = 0;
+            if (ordinal % BLOCK_SIZE != 0) {
+                prefixLength = this.readVInt(position);
+                position += vIntSize(prefixLength);
+            }
+            int suffixLength = this.readVInt(position);
+            position += vIntSize(suffixLength);
+            for (int i = 0; i < suffixLength; i++) {
+                term[prefixLength + i] = this.buffer.get(position + i);
+            }
+            position += suffixLength;
+            if (compare(term, prefixLength + suffixLength, target) >= 0) {
+                return ordinal;
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Compara el primer término de un bloque, que está guardado completo, con los bytes dados.
+     */
+    private int compareFirstTerm(int block, byte[] target) {
+        int position = this.blockStart(block);
+        int length = this.readVInt(position);
+        position += vIntSize(length);
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (this.buffer.get(position + i) & 0xFF) - (target[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - target.length;
+    }
+
+    /**
+     * Decodifica los bytes de un término recorriendo su bloque desde el inicio.
+     */
+    private byte[] termBytes(int ordinal) {
+        byte[] term = new byte[this.maxTermLength];
+        int block = ordinal / BLOCK_SIZE;
+        int position = this.blockStart(block);
+        int length = 0;
+        for (int current = block * BLOCK_SIZE; current <= ordinal; current++) {
+            int prefixLength = 0;
+            if (current % BLOCK_SIZE != 0) {
+                prefixLength = this.readVInt(position);
+                position += vIntSize(prefixLength);
+            }
+            int suffixLength = this.readVInt(position);
+            position += vIntSize(suffixLength);
+            for (int i = 0; i < suffixLength; i++) {
+                term[prefixLength + i] = this.buffer.get(position + i);
+            }
+            position += suffixLength;
+            length = prefixLength + suffixLength;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(term, 0, result, 0, length);
+        return result;
+    }
+
+    private int readVInt(int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = this.buffer.get(position++);
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    static int vIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int compare(byte[] term, int length, byte[] target) {
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (term[i] & 0xFF) - (target[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - target.length;
+    }
+}
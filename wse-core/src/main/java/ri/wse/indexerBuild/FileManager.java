@@ -1,33 +1,120 @@
 package ri.wse.indexerBuild;
 
-import javafx.util.Pair;
+import ri.wse.indexStorage.SegmentFormat;
+import ri.wse.indexStorage.SegmentWriter;
+import ri.wse.support.exceptions.IndexException;
+import ri.wse.support.metrics.Metrics;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.DecimalFormat;
 import java.util.*;
-import java.util.stream.Stream;
 
 /**
- * Contiene la lógica relacionada a la generación de los archivos resultados de correr el programa y generar los
- * cálculos necesarios para indexar la colección de documentos.
+ * Contiene la lógica relacionada a la generación del segmento del índice y de los cálculos necesarios para indexar
+ * la colección de documentos. Los términos de cada documento se invierten en cuanto se parsea el documento y las
+ * frecuencias normalizadas y los pesos se calculan sobre las listas de postings invertidas, sin archivos
+ * intermedios. Opcionalmente exporta los archivos de depuración de cada documento (.tok y .wtd).
+ * Si se reciben varios directorios de segmento, los documentos se reparten entre ellos (uno por shard) según su
+ * identificador: el documento d queda en el shard d % shards con el identificador d / shards. El idf y las normas se
+ * calculan con toda la colección, así que los pesos de todos los shards son comparables.
  */
-public class FileManager {
+public class FileManager implements Closeable {
 
     /**
-     * Contiene el path donde se debe almacenar los resultados.
+     * Tamaño estimado en memoria de cada término con su peso al generar los archivos .wtd, en bytes.
      */
-    private static final String RESULTS_DIRECTORY = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/Results";
+    private static final int WTD_ENTRY_SIZE = 16;
 
-    private Map<String, Map<String, Double>> documents;
+    /**
+     * Directorio del índice, donde se exportan los archivos .tok y .wtd.
+     */
+    private String resultsDirectory;
 
     private Map<String, Double> vocabulary;
 
-    public FileManager(Map<String, Map<String, Double>> documents, Map<String, Double> vocabulary) {
-        this.documents = documents;
+    /**
+     * Nombre (alias sin la extensión .html) de cada documento, según su identificador.
+     */
+    private String[] documentNames;
+
+    /**
+     * Url de cada documento, según su identificador.
+     */
+    private String[] urls;
+
+    /**
+     * Fecha de modificación del archivo de cada documento, según su identificador.
+     */
+    private long[] lastModified;
+
+    /**
+     * Contiene cada palabra del vocabulario con su frecuencia inversa.
+     */
+    private Map<String, Double> inverseFrequencies;
+
+    /**
+     * Directorio del segmento que se genera en cada shard; las listas temporales de la inversión se escriben en el
+     * primero.
+     */
+    private String[] segmentDirectories;
+
+    /**
+     * Listas de postings con las frecuencias normalizadas de los documentos agregados.
+     */
+    private PostingsInverter postingsInverter;
+
+    /**
+     * Hilos que generan los archivos de cada documento.
+     */
+    private WorkerPool workerPool;
+
+    /**
+     * Indica si se escriben los archivos .tok y .wtd de cada documento.
+     */
+    private boolean exportDocumentFiles;
+
+    /**
+     * Cantidad de términos de cada documento, según su identificador; solo se guarda si se exportan los archivos de
+     * los documentos.
+     */
+    private int[] documentTermCounts;
+
+    /**
+     * Memoria que se usa para invertir las listas de postings y para generar los archivos .wtd, en bytes.
+     */
+    private long memoryBudget;
+
+    public FileManager(Map<String, Double> vocabulary, String[] documentNames, String[] urls, long[] lastModified,
+                       String segmentDirectory) {
+        this(vocabulary, documentNames, urls, lastModified, IndexerController.RESULTS_DIRECTORY,
+                new String[]{segmentDirectory}, new WorkerPool(1), PostingsInverter.DEFAULT_MEMORY_BUDGET, false);
+    }
+
+    /**
+     * @param resultsDirectory    directorio del índice; los archivos .tok y .wtd se escriben en sus subdirectorios
+     *                            tok y wtd, que deben existir
+     * @param segmentDirectories  directorio del segmento de cada shard; el primero también se usa para las listas
+     *                            temporales de la inversión
+     * @param memoryBudget        memoria que se usa para invertir las listas de postings antes de escribirlas en
+     *                            archivos temporales, en bytes
+     * @param exportDocumentFiles indica si se escriben los archivos .tok y .wtd de cada documento
+     */
+    FileManager(Map<String, Double> vocabulary, String[] documentNames, String[] urls, long[] lastModified,
+                String resultsDirectory, String[] segmentDirectories, WorkerPool workerPool, long memoryBudget,
+                boolean exportDocumentFiles) {
         this.vocabulary = vocabulary;
+        this.documentNames = documentNames;
+        this.urls = urls;
+        this.lastModified = lastModified;
+        this.resultsDirectory = resultsDirectory;
+        this.segmentDirectories = segmentDirectories;
+        this.postingsInverter = new PostingsInverter(segmentDirectories[0], memoryBudget);
+        this.workerPool = workerPool;
+        this.memoryBudget = memoryBudget;
+        this.exportDocumentFiles = exportDocumentFiles;
+        if (exportDocumentFiles) {
+            this.documentTermCounts = new int[documentNames.length];
+        }
     }
 
     /**
@@ -99,57 +186,60 @@ public class FileManager {
     }
 
     /**
-     * Genera los archivos .tok que contienen:
+     * Agrega los términos de un documento a las listas de postings con su frecuencia normalizada y, si se exportan
+     * los archivos de los documentos, escribe su archivo .tok. Se llama desde los hilos que parsean, en cuanto se
+     * parsea el documento, así que los términos de los documentos no se guardan en memoria.
+     * @param document identificador del documento
+     * @param words    palabras del documento con la cantidad de veces que aparece cada una
+     */
+    public void addDocument(int document, Map<String, Double> words) {
+        String[] terms = new String[words.size()];
+        float[] normalizedFrequencies = new float[words.size()];
+        double max = words.isEmpty() ? 1 : Collections.max(words.values());
+        int i = 0;
+        for (Map.Entry<String, Double> word : words.entrySet()) {
+            terms[i] = word.getKey();
+            normalizedFrequencies[i] = (float) (word.getValue() / max);
+            i++;
+        }
+        try {
+            this.postingsInverter.add(document, terms, normalizedFrequencies);
+        } catch (IOException e) {
+            throw new IndexException("No se pudieron escribir las listas de postings temporales.", e);
+        }
+
+        if (this.exportDocumentFiles) {
+            this.documentTermCounts[document] = terms.length;
+            this.generateTokFile(document, words);
+        }
+    }
+
+    /**
+     * Genera el archivo .tok de un documento que contiene:
      * -Palabra.
      * -Número de veces que aparece el término en el documento.
      * -Frecuencia normalizada.
-     * y manda a escribir en ellos.
+     * y manda a escribir en él.
+     * @param document identificador del documento
+     * @param words    palabras del documento con la cantidad de veces que aparece cada una
      */
-    public void generateTokFiles() {
+    private void generateTokFile(int document, Map<String, Double> words) {
         double max;
         PrintWriter writer;
+        try {
+            writer = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(this.resultsDirectory + "/tok/" + this.documentNames[document] + ".tok"),
+                    StandardCharsets.UTF_8));
 
-        for (Map.Entry<String, Map<String, Double>> entry : this.documents.entrySet()) {
-            try {
-                writer = new PrintWriter(new OutputStreamWriter(
-                        new FileOutputStream(RESULTS_DIRECTORY+ "/tok/" + entry.getKey().replace(".html", ".tok")),
-                        StandardCharsets.UTF_8));                
-
-                if (entry.getValue().entrySet().size() != 0) {
-                    max = entry.getValue().entrySet().stream().max(Map.Entry.comparingByValue()).get().getValue();
+            if (words.size() != 0) {
+                max = words.entrySet().stream().max(Map.Entry.comparingByValue()).get().getValue();
 
-                    for (Map.Entry<String, Double> word : entry.getValue().entrySet()) {
-                        this.writeToFile(writer, 0, word.getKey(), false);
-                        this.writeToFile(writer, 1, word.getValue().toString(), false);
-                        this.writeToFile(writer, 2, Double.toString(word.getValue() / max), false);
+                for (Map.Entry<String, Double> word : words.entrySet()) {
+                    this.writeToFile(writer, 0, word.getKey(), false);
+                    this.writeToFile(writer, 1, word.getValue().toString(), false);
+                    this.writeToFile(writer, 2, Double.toString(word.getValue() / max), false);
 
-                    }
                 }
-
-                writer.flush();
-                writer.close();
-
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
-
-        }
-    }
-
-    /**
-     * Genera un archivo con el vocabulario, que contiene la cantidad de documentos en los
-     * que aparece cada parabra y el idf.
-     *
-     * @param totalCollectionFiles
-     */
-    public void generateVocabularyFile(double totalCollectionFiles) {
-        try {
-            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(RESULTS_DIRECTORY + "/Vocabulario.txt"), StandardCharsets.UTF_8));
-
-            for (Map.Entry<String, Double> word : this.vocabulary.entrySet()) {
-                this.writeToFile(writer, 0, word.getKey(), false);
-                this.writeToFile(writer, 1, Double.toString(word.getValue()), false);
-                this.writeToFile(writer, 2, Double.toString(Math.log10(totalCollectionFiles / word.getValue())), false);
             }
 
             writer.flush();
@@ -158,154 +248,201 @@ public class FileManager {
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
-
     }
 
     /**
-     * Carga los términos del archivo Vocabulary en un mapa junto con su frecuencia inversa
+     * Calcula la frecuencia inversa (idf) de cada palabra del vocabulario a partir de la cantidad de documentos en
+     * los que aparece.
      *
-     * @return vocabulary Mapa que contiene el vocabulario
+     * @param totalCollectionFiles
      */
-    private Map<String, Double> loadVocabularyFile() {
-        Map<String, Double> vocabulary = new TreeMap<>();
-
-        try (Stream<String> stream = Files.lines(Paths.get(FileManager.RESULTS_DIRECTORY + "/Vocabulario.txt"))) {
-            stream.forEach(line -> {
-                vocabulary.put(line.substring(0, 30).trim(), Double.parseDouble(line.substring(43, line.length() - 1).trim()));
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void calculateInverseFrequencies(double totalCollectionFiles) {
+        this.inverseFrequencies = new TreeMap<>();
+        for (Map.Entry<String, Double> word : this.vocabulary.entrySet()) {
+            this.inverseFrequencies.put(word.getKey(), Math.log10(totalCollectionFiles / word.getValue()));
         }
-
-        return vocabulary;
     }
 
     /**
-     * Encuentra cuáles son cada uno de los archivos .tok que se deben recorrer, y almacena sus nombre en un array.
-     *
-     * @return tokFiles Arreglo con todos los nombres de los archivos de extensión .tok
+     * Genera el segmento binario del índice (ver {@link SegmentFormat}) de cada shard, que contiene:
+     * -La tabla de documentos con el nombre, el url, la fecha de modificación y la norma de cada documento.
+     * -El diccionario de términos con df (del shard), idf (de toda la colección) y peso normalizado máximo.
+     * -Las listas de postings con los identificadores de documentos y las frecuencias normalizadas.
+     * Las listas invertidas se recorren dos veces: la primera suma los pesos (frecuencia normalizada * frecuencia
+     * inversa) al cuadrado de cada documento para calcular las normas y la segunda reparte las listas entre los
+     * shards y las escribe.
+     * @throws IOException
      */
-    private String[] findTokFiles() {
-        File file = new File(FileManager.RESULTS_DIRECTORY + "/tok");
-        FilenameFilter filter = (dir, fileName) -> fileName.endsWith(".tok");
-        String[] tokFiles = file.list(filter);
-
-        if (tokFiles == null) {
-            System.err.println("No se encontraron archivos.");
+    public void generateSegments() throws IOException {
+        long start = System.nanoTime();
+        double[] squaredWeights = new double[this.documentNames.length];
+        this.postingsInverter.forEachTerm((term, documents, normalizedFrequencies) -> {
+            double idf = this.inverseFrequencies.get(term);
+            for (int i = 0; i < documents.length; i++) {
+                float weight = (float) (idf * normalizedFrequencies[i]);
+                squaredWeights[documents[i]] += Math.pow(weight, 2);
+            }
+        });
+        double[] norms = new double[squaredWeights.length];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = Math.sqrt(squaredWeights[i]);
         }
 
-        return tokFiles;
-    }
-
-    /**
-     * Genera el archivo Postings que contiene:
-     * -Palabra.
-     * -Alias del docuemnto en el que aparece.
-     * -Peso (wij).
-     * @param postingsValues Mapa con los términos y una lista formada por pares que corresponden al alias del
-     *                       documento y el peso
-     */
-    private void generatePostingsFile(Map<String, ArrayList<Pair<String, Double>>> postingsValues) {
+        int shards = this.segmentDirectories.length;
+        SegmentWriter[] segmentWriters = new SegmentWriter[shards];
         try {
-            final PrintWriter postingsWriter = new PrintWriter(RESULTS_DIRECTORY + "/Postings.txt");
-            DecimalFormat df = new DecimalFormat("#.##################");
-
-            postingsValues.forEach((term, pairsList) -> {
-                pairsList.forEach(aliasWeightPair -> {
-                    this.writeToFile(postingsWriter, 0, term, false);
-                    this.writeToFile(postingsWriter, 3, aliasWeightPair.getKey().trim(), false);
-                    this.writeToFile(postingsWriter, 2, df.format(aliasWeightPair.getValue()), false);
-                });
+            for (int shard = 0; shard < shards; shard++) {
+                segmentWriters[shard] = new SegmentWriter(this.segmentDirectories[shard]);
+                segmentWriters[shard].writeDocuments(shardValues(this.documentNames, shard, shards),
+                        shardValues(this.urls, shard, shards), shardValues(this.lastModified, shard, shards),
+                        shardValues(norms, shard, shards));
+            }
+            int[][] shardDocuments = new int[shards][];
+            float[][] shardFrequencies = new float[shards][];
+            this.postingsInverter.forEachTerm((term, documents, normalizedFrequencies) -> {
+                if (shards == 1) {
+                    segmentWriters[0].addTerm(term, documents.length, this.inverseFrequencies.get(term), documents,
+                            normalizedFrequencies);
+                    return;
+                }
+                int[] sizes = new int[shards];
+                float frequencyScale = 0;
+                for (int i = 0; i < documents.length; i++) {
+                    sizes[documents[i] % shards]++;
+                    frequencyScale = Math.max(frequencyScale, normalizedFrequencies[i]);
+                }
+                for (int shard = 0; shard < shards; shard++) {
+                    shardDocuments[shard] = new int[sizes[shard]];
+                    shardFrequencies[shard] = new float[sizes[shard]];
+                }
+                Arrays.fill(sizes, 0);
+                for (int i = 0; i < documents.length; i++) {
+                    int shard = documents[i] % shards;
+                    shardDocuments[shard][sizes[shard]] = documents[i] / shards;
+                    shardFrequencies[shard][sizes[shard]++] = normalizedFrequencies[i];
+                }
+                for (int shard = 0; shard < shards; shard++) {
+                    if (sizes[shard] > 0) {
+                        segmentWriters[shard].addTerm(term, sizes[shard], this.inverseFrequencies.get(term),
+                                shardDocuments[shard], shardFrequencies[shard], frequencyScale);
+                    }
+                }
             });
-
-            postingsWriter.flush();
-            postingsWriter.close();
-
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        } finally {
+            for (SegmentWriter segmentWriter : segmentWriters) {
+                if (segmentWriter != null) {
+                    segmentWriter.close();
+                }
+            }
         }
+        Metrics.timer("index.writing").recordSince(start);
     }
 
     /**
-     * Genera el archivo Indice que contiene:
-     * -Palabra.
-     * -Número de línea que corresponde a la primera aparición en el archivo Postings.
-     * -Cantidad de veces que aparece en este archivo.
-     * @param postingsValues Mapa con los términos y la cantidad de veces que aparece ese término en el archivo postings
+     * Cantidad de documentos que quedan en un shard.
      */
-    private void generateIndexFile(Map<String, Integer> postingsValues) {
-        try {
-            final PrintWriter indexWriter = new PrintWriter(RESULTS_DIRECTORY + "/Indice.txt");
-            final int[] lineCount = {1};
-
-            postingsValues.forEach((term, value) -> {
-                this.writeToFile(indexWriter, 0, term, false);
-                this.writeToFile(indexWriter, 1, Integer.toString(lineCount[0]), false);
-                this.writeToFile(indexWriter, 1, Integer.toString(value), true);
-                lineCount[0] += value;
-            });
+    static int shardDocumentCount(int documents, int shard, int shards) {
+        return (documents - shard + shards - 1) / shards;
+    }
 
-            indexWriter.flush();
-            indexWriter.close();
+    private static String[] shardValues(String[] values, int shard, int shards) {
+        String[] shardValues = new String[shardDocumentCount(values.length, shard, shards)];
+        for (int i = 0; i < shardValues.length; i++) {
+            shardValues[i] = values[i * shards + shard];
+        }
+        return shardValues;
+    }
 
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    private static long[] shardValues(long[] values, int shard, int shards) {
+        long[] shardValues = new long[shardDocumentCount(values.length, shard, shards)];
+        for (int i = 0; i < shardValues.length; i++) {
+            shardValues[i] = values[i * shards + shard];
         }
+        return shardValues;
+    }
+
+    private static double[] shardValues(double[] values, int shard, int shards) {
+        double[] shardValues = new double[shardDocumentCount(values.length, shard, shards)];
+        for (int i = 0; i < shardValues.length; i++) {
+            shardValues[i] = values[i * shards + shard];
+        }
+        return shardValues;
     }
 
     /**
-     * Genera los archivos .wtd que contienen:
+     * Genera los archivos .wtd de los documentos, que contienen:
      * -Palabra
-     * -Peso (frecuencia normalizada * frecuncia inversa)
-     * Y va llenando el mapa que se utiliza para generar después el archivo Postings y el Indice.
-     * @throws FileNotFoundException
+     * -Peso (frecuencia normalizada * frecuencia inversa)
+     * Los pesos se calculan sobre las listas de postings invertidas. Como las listas están ordenadas por término, los
+     * documentos se exportan por tandas cuyos términos caben en el presupuesto de memoria: en cada tanda se recorren
+     * las listas, se guardan los términos y pesos de los documentos de la tanda y se escriben sus archivos en
+     * paralelo. Solo se usa para exportar los archivos de depuración de los documentos.
+     * @throws IOException
      */
-    public void generateWtdPostingsIndexFiles() throws FileNotFoundException {
-        Map<String, Double> vocabulary = this.loadVocabularyFile();
-        Map<String, Integer> postingsValuesForIndex = new TreeMap<>();
-        Map<String, ArrayList<Pair<String, Double>>> postingsValues = new TreeMap<>();
-        String[] tokFiles = this.findTokFiles();
-
-        Arrays.stream(tokFiles).forEach(tokFileName -> {
-            try (Stream<String> stream = Files.lines(Paths.get(FileManager.RESULTS_DIRECTORY + "/tok/" + tokFileName))) {
-                PrintWriter wtdWriter = new PrintWriter(RESULTS_DIRECTORY + "/wtd/" + tokFileName.replace(".tok", ".wtd"));
-                stream.forEach(line -> {
-                    String term = line.substring(0, 30).trim();
-                    double normalizedFrequency = Double.parseDouble(line.substring(44, line.length() - 1).trim());
-                    this.writeToFile(wtdWriter, 0, term, false);
-                    this.writeToFile(wtdWriter, 2, Double.toString(vocabulary.get(term) * normalizedFrequency), false);
-
-                    if (postingsValues.containsKey(term)) {
-                        postingsValues.get(term).add(new Pair<>(tokFileName.substring(0, tokFileName.length() - 4), vocabulary.get(term) * normalizedFrequency));
-                    } else {
-                        postingsValues.put(term, new ArrayList<>(Collections.singletonList(new Pair<>(tokFileName.substring(0, tokFileName.length() - 4), vocabulary.get(term) * normalizedFrequency))));
-                    }
+    public void generateWtdFiles() throws IOException {
+        long batchEntries = Math.max(1, this.memoryBudget / WTD_ENTRY_SIZE);
+        int first = 0;
+        while (first < this.documentNames.length) {
+            // Cada tanda tiene al menos un documento, aunque sus términos no quepan en el presupuesto.
+            int last = first;
+            long entries = 0;
+            do {
+                entries += this.documentTermCounts[last++];
+            } while (last < this.documentNames.length && entries + this.documentTermCounts[last] <= batchEntries);
+            this.generateWtdFiles(first, last);
+            first = last;
+        }
+    }
 
-                    if (postingsValuesForIndex.containsKey(term)) {
-                        postingsValuesForIndex.put(term, postingsValuesForIndex.get(term) + 1);
-                    } else {
-                        postingsValuesForIndex.put(term, 1);
-                    }
-                });
+    /**
+     * Genera los archivos .wtd de los documentos first..last-1.
+     */
+    private void generateWtdFiles(int first, int last) throws IOException {
+        int[] offsets = new int[last - first + 1];
+        for (int document = first; document < last; document++) {
+            offsets[document - first + 1] = offsets[document - first] + this.documentTermCounts[document];
+        }
+        String[] terms = new String[offsets[last - first]];
+        double[] weights = new double[terms.length];
+        int[] sizes = new int[last - first];
+        this.postingsInverter.forEachTerm((term, documents, normalizedFrequencies) -> {
+            double idf = this.inverseFrequencies.get(term);
+            int i = Arrays.binarySearch(documents, first);
+            for (i = i < 0 ? -i - 1 : i; i < documents.length && documents[i] < last; i++) {
+                int index = documents[i] - first;
+                int entry = offsets[index] + sizes[index]++;
+                terms[entry] = term;
+                weights[entry] = idf * normalizedFrequencies[i];
+            }
+        });
 
-                wtdWriter.flush();
-                wtdWriter.close();
-            } catch (IOException e) {
+        this.workerPool.forEachDocument(last - first, () -> null, (state, index) -> {
+            String alias = this.documentNames[first + index];
+            try (PrintWriter wtdWriter = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(this.resultsDirectory + "/wtd/" + alias + ".wtd"), StandardCharsets.UTF_8))) {
+                for (int entry = offsets[index]; entry < offsets[index + 1]; entry++) {
+                    this.writeToFile(wtdWriter, 0, terms[entry], false);
+                    this.writeToFile(wtdWriter, 2, Double.toString(weights[entry]), false);
+                }
+            } catch (FileNotFoundException e) {
                 e.printStackTrace();
             }
         });
-
-        this.generatePostingsFile(postingsValues);
-        this.generateIndexFile(postingsValuesForIndex);
-
     }
 
-    public Map<String, Map<String, Double>> getDocuments() {
-        return documents;
+    /**
+     * Indica si se exportan los archivos .tok y .wtd de cada documento.
+     */
+    public boolean isExportDocumentFiles() {
+        return exportDocumentFiles;
     }
 
-    public void setDocuments(Map<String, Map<String, Double>> documents) {
-        this.documents = documents;
+    /**
+     * Borra las listas temporales de la inversión.
+     */
+    @Override
+    public void close() throws IOException {
+        this.postingsInverter.close();
     }
 
     public Map<String, Double> getVocabulary() {
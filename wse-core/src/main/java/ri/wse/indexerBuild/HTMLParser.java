@@ -4,77 +4,57 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Entities;
 import org.mozilla.universalchardet.UniversalDetector;
+import ri.wse.analysis.Analyzer;
+import ri.wse.analysis.StopWords;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Contiene la lógica relacionada al parseo de los documentos y la aplicación de las reglas del indexador para
- * reducir el contenido de los archivos a los términos relevantes.
+ * reducir el contenido de los archivos a los términos relevantes. Después de construido no modifica su estado, así
+ * que varios hilos pueden parsear documentos con la misma instancia.
+ * Registra en {@link Metrics} el tiempo de detectar la codificación, leer el html y obtener los términos de cada
+ * documento.
  */
 public class HTMLParser {
 
-    /**
-     * Dirección del archivo que contiene los "stopwords".
-     */
-    private static final String STOPWORDS_FILE_PATH = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/stopwords.txt";
+    private static final Timer CHARSET_TIMER = Metrics.timer("index.charset");
+    private static final Timer PARSING_TIMER = Metrics.timer("index.parsing");
+    private static final Timer TOKENIZATION_TIMER = Metrics.timer("index.tokenization");
+    private static final LongAdder DOCUMENTS = Metrics.counter("index.documents");
+    private static final LongAdder BYTES = Metrics.counter("index.bytes");
 
     /**
-     * Expresiones regulares que permiten excluir contenido de los htmls.
+     * Dirección del archivo que contiene los "stopwords".
      */
-    private static final String URLS_REGEX = "(http|ftp|https)://([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:/~+#\\-]*[\\w@?^=%&/~+#\\-])?";
-    private static final String NUMBERS_WORDS_REGEX = "([a-z]+[\\d]+[\\w@]*|[\\d]+[a-z]+[\\w@]*)";
-    private static final String SPECIAL_SYMBOLS_REGEX = "[^a-z0-9ñáéíóú\\s]";
-    private static final String ACCUTE_LETER_A_REGEX = "&#225|&#193";
-    private static final String ACCUTE_LETER_E_REGEX = "&#233|&#201";
-    private static final String ACCUTE_LETER_I_REGEX = "&#237|&#205";
-    private static final String ACCUTE_LETER_O_REGEX = "&#243|&#211";
-    private static final String ACCUTE_LETER_U_REGEX = "&#250|&#218";
-    private static final String ACCUTE_LETER_N_REGEX = "&#241|&#209";
-    private static final String INVERTED_EXCLAMATION_MARK_REGEX = "&#161;";
-    private static final String SPACE_CODE_REGEX = "&nbsp;|&#160;|&#32;|&#x20";
-    private static final String SPECIAL_SPACES_REGEX = "[\n\r]";
-
-    private Map<String, Map<String, Double>> documents;
-    private Map<String, Double> vocabulary;
+    static final String STOPWORDS_FILE_PATH = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/stopwords.txt";
 
     /**
-     * Contiene una lista de los "stopwords" que se recuperaron del archivo.
+     * Analizador que aplica las reglas del indexador al texto de los documentos.
      */
-    private List<String> stopWords;
-
-    HTMLParser(Map<String, Map<String, Double>> documents, Map<String, Double> vocabulary) {
-        this.documents = documents;
-        this.vocabulary = vocabulary;
-        this.stopWords = new LinkedList<>();
-        this.loadStopWords();
-
-    }
+    private Analyzer analyzer;
 
     /**
-     * Carga los "stopwords" del archivo correspondiente y los mete en una lista enlazada.
+     * @param stopWordsFile archivo con los "stopwords", uno por línea
      */
-    private void loadStopWords() {
-        try (Stream<String> stream = Files.lines(Paths.get(HTMLParser.STOPWORDS_FILE_PATH))) {
-            stream.forEach(this.stopWords::add);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public HTMLParser(String stopWordsFile) {
+        this.analyzer = new Analyzer(StopWords.load(stopWordsFile));
     }
 
     /**
      * Parsea cada uno de los htmls con Jsoup, y tomando cada uno de los términos:
-     * -Los "filtra" con los regex para que estén de acuerdo a las reglas establecidas.
-     * -Los añade al HashMap de "vocabulary" que posee la palabra y la cantidad de documentos en las que aparece.
-     * -Los añade al HashMap "documents" que posee el nombre del documento y
-     * las palabras del documento con la cantidad de veces que aparece dicha palabra en el documento.
+     * -Los "filtra" con el {@link Analyzer} para que estén de acuerdo a las reglas establecidas.
+     * -Cuenta la cantidad de veces que aparece cada palabra en el documento.
      * @param fileName
      * @param filePath
+     * @return mapa con las palabras del documento y la cantidad de veces que aparece cada una
      */
-    public void parseFile(String fileName, String filePath) {
+    public Map<String, Double> parseFile(String fileName, String filePath) {
+        long start = System.nanoTime();
         File inputFile = new File(filePath + fileName);
         String charset = "UTF-8";
 
@@ -100,6 +80,8 @@ public class HTMLParser {
             e.printStackTrace();
         }
 
+        start = CHARSET_TIMER.recordSince(start);
+
         String doc = "";
         try {
             Document document = Jsoup.parse(inputFile, charset);
@@ -109,74 +91,20 @@ public class HTMLParser {
             e.printStackTrace();
         }
 
-        doc = doc.toLowerCase();
-        doc = doc.replaceAll(HTMLParser.URLS_REGEX, "");
-        doc = doc.replaceAll(HTMLParser.SPACE_CODE_REGEX, " ");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_A_REGEX, "á");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_E_REGEX, "é");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_I_REGEX, "í");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_O_REGEX, "ó");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_U_REGEX, "ú");
-        doc = doc.replaceAll(HTMLParser.ACCUTE_LETER_N_REGEX, "ñ");
-        doc = doc.replaceAll(HTMLParser.INVERTED_EXCLAMATION_MARK_REGEX, "");
-        doc = doc.replaceAll(HTMLParser.SPECIAL_SPACES_REGEX, " ");
-        doc = doc.replaceAll(HTMLParser.SPECIAL_SYMBOLS_REGEX, " ");
-        doc = doc.replaceAll(HTMLParser.NUMBERS_WORDS_REGEX, "");
-
-        String[] text = doc.split(" ");
+        start = PARSING_TIMER.recordSince(start);
+
         Map<String, Double> words = new TreeMap<String, Double>();
-        for (String term : text) {
-            term = term.trim();
-            if (!term.equals("") && !term.equals(" ") && term.length() <= 30 && !this.stopWords.contains(term)
-                    && !this.isSmallWord(term)) {
-
-                if (!words.containsKey(term)) {
-                    words.put(term, 1.0);
-                    if (!vocabulary.containsKey(term)) {
-                        vocabulary.put(term, 1.0);
-                    } else {
-                        vocabulary.put(term, vocabulary.get(term) + 1);
-                    }
-                } else {
-                    words.put(term, words.get(term) + 1);
-                }
+        this.analyzer.analyze(doc, term -> {
+            if (!words.containsKey(term)) {
+                words.put(term, 1.0);
+            } else {
+                words.put(term, words.get(term) + 1);
             }
-        }
-        this.documents.putIfAbsent(fileName, words);
-    }
-
-    /**
-     * Verifica si una palabra tiene menos de 3 caracteres para no incluila como parte del vocabulario,
-     * pero si tiene 1 o 2 caracteres y es un número, entoces sí se incluyen.
-     * @param word
-     * @return
-     */
-    private boolean isSmallWord(String word) {
-        if (word.length() > 2) {
-            return false;
-        }
-        try {
-            Integer.parseInt(word);
-            return false;
-        } catch (NumberFormatException e) {
-            return true;
-        }
-    }
-
-    public Map<String, Map<String, Double>> getDocuments() {
-        return documents;
-    }
-
-    public void setDocuments(Map<String, Map<String, Double>> documents) {
-        this.documents = documents;
-    }
-
-    public Map<String, Double> getVocabulary() {
-        return vocabulary;
-    }
-
-    public void setVocabulary(Map<String, Double> vocabulary) {
-        this.vocabulary = vocabulary;
+        });
+        TOKENIZATION_TIMER.recordSince(start);
+        DOCUMENTS.increment();
+        BYTES.add(inputFile.length());
+        return words;
     }
 
 }
@@ -0,0 +1,236 @@
+package ri.wse.indexerBuild;
+
+import ri.wse.indexStorage.IndexWriter;
+import ri.wse.indexStorage.SegmentInfo;
+import ri.wse.indexStorage.SegmentReader;
+import ri.wse.indexStorage.SegmentWriter;
+import ri.wse.support.exceptions.IndexException;
+import ri.wse.support.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Actualiza el índice con los cambios de la colección sin reconstruirlo completo:
+ * -Los documentos cuyos archivos ya no existen se marcan como borrados.
+ * -Los documentos cuyos archivos cambiaron (según la fecha de modificación) se borran y se vuelven a indexar.
+ * -Los archivos nuevos y los cambiados se indexan en un segmento nuevo.
+ * El segmento nuevo guarda las frecuencias normalizadas de los términos; el lector del índice calcula el idf, los
+ * pesos y las normas de todos los segmentos con los documentos vivos (ver {@link ri.wse.indexStorage.IndexReader}),
+ * así que las consultas dan los mismos resultados que con el índice reconstruido, antes y después de las fusiones.
+ * Solo actualiza índices de un único shard: el indexador reparte los documentos entre los shards por su posición en
+ * la colección, que cambia al agregar o borrar archivos, así que un índice repartido se debe reconstruir completo.
+ */
+public class IncrementalIndexer implements Closeable {
+
+    /**
+     * Ubicación de un documento indexado.
+     */
+    private static class IndexedDocument {
+
+        private final String segmentName;
+        private final int document;
+        private final long lastModified;
+
+        IndexedDocument(String segmentName, int document, long lastModified) {
+            this.segmentName = segmentName;
+            this.document = document;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private IndexWriter indexWriter;
+
+    private HTMLParser htmlParser;
+
+    private WorkerPool workerPool;
+
+    private long memoryBudget;
+
+    private String collectionDirectory;
+
+    private String urlsFile;
+
+    public IncrementalIndexer() throws IOException {
+        this(Runtime.getRuntime().availableProcessors(), PostingsInverter.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param threads      cantidad de hilos que se usan para parsear los documentos nuevos
+     * @param memoryBudget memoria que se usa para invertir las listas de postings del segmento nuevo, en bytes
+     */
+    public IncrementalIndexer(int threads, long memoryBudget) throws IOException {
+        this(IndexerController.BASE_DIRECTORY, IndexerController.RESULTS_DIRECTORY, IndexerController.URLS_FILE_PATH,
+                HTMLParser.STOPWORDS_FILE_PATH, threads, memoryBudget);
+    }
+
+    /**
+     * Actualiza el índice de una colección que no está en los directorios por defecto.
+     *
+     * @param collectionDirectory directorio con los archivos html de la colección, terminado en '/'
+     * @param resultsDirectory    directorio del índice
+     * @param urlsFile            archivo con el url de cada documento
+     * @param stopWordsFile       archivo con los "stopwords"
+     * @param threads             cantidad de hilos que se usan para parsear los documentos nuevos
+     * @param memoryBudget        memoria que se usa para invertir las listas de postings del segmento nuevo, en bytes
+     * @throws IndexException si el índice está repartido en shards
+     */
+    public IncrementalIndexer(String collectionDirectory, String resultsDirectory, String urlsFile,
+                              String stopWordsFile, int threads, long memoryBudget) throws IOException {
+        if (IndexerController.isSharded(resultsDirectory)) {
+            throw new IndexException("El índice en " + resultsDirectory + " está repartido en shards; no se puede "
+                    + "actualizar por partes y se debe reconstruir completo.");
+        }
+        this.indexWriter = new IndexWriter(resultsDirectory);
+        this.htmlParser = new HTMLParser(stopWordsFile);
+        this.workerPool = new WorkerPool(threads);
+        this.memoryBudget = memoryBudget;
+        this.collectionDirectory = collectionDirectory;
+        this.urlsFile = urlsFile;
+    }
+
+    /**
+     * Compara la colección con el índice, aplica los cambios y los confirma. Después revisa si hay segmentos para
+     * fusionar; las fusiones se hacen en el fondo y terminan antes de la siguiente actualización.
+     */
+    public void update() throws IOException {
+        this.indexWriter.waitForMerges();
+
+        long start = System.nanoTime();
+        Map<String, IndexedDocument> indexed = new HashMap<>();
+        for (SegmentInfo segment : this.indexWriter.getSegmentInfos().getSegments()) {
+            SegmentReader segmentReader = this.indexWriter.getSegmentReader(segment.getName());
+            for (int document = 0; document < segment.getDocumentCount(); document++) {
+                if (!segment.isDeleted(document)) {
+                    indexed.put(segmentReader.getDocumentName(document) + ".html", new IndexedDocument(
+                            segment.getName(), document, segmentReader.getLastModified(document)));
+                }
+            }
+        }
+
+        String[] textfiles = new File(this.collectionDirectory).list((dir, fileName) -> fileName.endsWith(".html"));
+        if (textfiles == null) {
+            textfiles = new String[0];
+        }
+        Arrays.sort(textfiles);
+
+        List<String> changedFiles = new ArrayList<>();
+        List<Long> changedLastModified = new ArrayList<>();
+        for (String textfile : textfiles) {
+            long lastModified = new File(this.collectionDirectory, textfile).lastModified();
+            IndexedDocument indexedDocument = indexed.remove(textfile);
+            if (indexedDocument == null || indexedDocument.lastModified != lastModified) {
+                if (indexedDocument != null) {
+                    this.indexWriter.deleteDocument(indexedDocument.segmentName, indexedDocument.document);
+                }
+                changedFiles.add(textfile);
+                changedLastModified.add(lastModified);
+            }
+        }
+        for (IndexedDocument removed : indexed.values()) {
+            this.indexWriter.deleteDocument(removed.segmentName, removed.document);
+        }
+        Metrics.timer("index.discovery").recordSince(start);
+
+        Metrics.counter("index.changed").add(changedFiles.size());
+        Metrics.counter("index.deleted").add(indexed.size());
+        if (!changedFiles.isEmpty()) {
+            long[] lastModified = new long[changedLastModified.size()];
+            for (int i = 0; i < lastModified.length; i++) {
+                lastModified[i] = changedLastModified.get(i);
+            }
+            this.addSegment(changedFiles.toArray(new String[0]), lastModified);
+        }
+        this.indexWriter.commit();
+        this.indexWriter.maybeMerge();
+    }
+
+    /**
+     * Parsea los archivos y escribe con ellos un segmento nuevo. Los términos se invierten con el presupuesto de
+     * memoria y las listas se recorren dos veces: primero para calcular las normas y después para escribirlas.
+     */
+    private void addSegment(String[] textfiles, long[] lastModified) throws IOException {
+        String segmentName = this.indexWriter.newSegmentName();
+        String segmentDirectory = this.indexWriter.getSegmentDirectory(segmentName);
+        String[] documentNames = new String[textfiles.length];
+        for (int document = 0; document < textfiles.length; document++) {
+            documentNames[document] = textfiles[document].replace(".html", "");
+        }
+
+        try (PostingsInverter postingsInverter = new PostingsInverter(segmentDirectory, this.memoryBudget)) {
+            this.workerPool.forEachDocument(textfiles.length, () -> null, (state, document) -> {
+                Map<String, Double> words = this.htmlParser.parseFile(textfiles[document],
+                        this.collectionDirectory);
+                String[] terms = new String[words.size()];
+                float[] normalizedFrequencies = new float[words.size()];
+                double max = words.isEmpty() ? 1 : Collections.max(words.values());
+                int i = 0;
+                for (Map.Entry<String, Double> word : words.entrySet()) {
+                    terms[i] = word.getKey();
+                    normalizedFrequencies[i] = (float) (word.getValue() / max);
+                    i++;
+                }
+                try {
+                    postingsInverter.add(document, terms, normalizedFrequencies);
+                } catch (IOException e) {
+                    throw new IndexException("No se pudieron escribir las listas de postings temporales.", e);
+                }
+            });
+
+            // El idf guardado usa la cantidad de documentos y el df de todo el índice, incluidos los documentos
+            // borrados; el lector lo recalcula cuando el índice tiene más de un segmento o documentos borrados.
+            double totalDocuments = this.indexWriter.getSegmentInfos().getDocumentCount() + textfiles.length;
+            double[] squaredWeights = new double[textfiles.length];
+            postingsInverter.forEachTerm((term, documents, normalizedFrequencies) -> {
+                double idf = this.inverseFrequency(term, documents.length, totalDocuments);
+                for (int i = 0; i < documents.length; i++) {
+                    float weight = (float) (idf * normalizedFrequencies[i]);
+                    squaredWeights[documents[i]] += Math.pow(weight, 2);
+                }
+            });
+            double[] norms = new double[textfiles.length];
+            for (int document = 0; document < norms.length; document++) {
+                norms[document] = Math.sqrt(squaredWeights[document]);
+            }
+
+            long start = System.nanoTime();
+            try (SegmentWriter segmentWriter = new SegmentWriter(segmentDirectory)) {
+                segmentWriter.writeDocuments(documentNames, IndexerController.loadUrls(this.urlsFile, textfiles),
+                        lastModified, norms);
+                postingsInverter.forEachTerm((term, documents, normalizedFrequencies) ->
+                        segmentWriter.addTerm(term, documents.length,
+                                this.inverseFrequency(term, documents.length, totalDocuments), documents,
+                                normalizedFrequencies));
+            }
+            Metrics.timer("index.writing").recordSince(start);
+        }
+        this.indexWriter.addSegment(segmentName, textfiles.length);
+    }
+
+    private double inverseFrequency(String term, int documentFrequency, double totalDocuments) throws IOException {
+        return Math.log10(totalDocuments / (documentFrequency + this.indexWriter.getDocumentFrequency(term)));
+    }
+
+    /**
+     * Espera a que terminen las fusiones y confirma los cambios pendientes.
+     */
+    @Override
+    public void close() throws IOException {
+        this.indexWriter.close();
+    }
+
+    /**
+     * @param args opcionalmente, la cantidad de hilos que se usan para parsear (por defecto se usa un hilo por
+     *             procesador) y la memoria para invertir las listas de postings en megabytes (por defecto 64)
+     */
+    public static void main(String args[]) throws IOException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long memoryBudget = args.length > 1 ? Long.parseLong(args[1]) * 1024 * 1024
+                : PostingsInverter.DEFAULT_MEMORY_BUDGET;
+        try (IncrementalIndexer incrementalIndexer = new IncrementalIndexer(threads, memoryBudget)) {
+            incrementalIndexer.update();
+        }
+    }
+}
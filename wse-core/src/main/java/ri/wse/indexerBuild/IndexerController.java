@@ -1,28 +1,53 @@
 package ri.wse.indexerBuild;
 
+import ri.wse.indexStorage.IndexWriter;
+import ri.wse.support.metrics.Metrics;
+
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Controlador de la indexación que maneja el flujo del programa y establece las estructuras de datos utilizadas
  * para indexar los documentos.
+ * Con varios shards, el índice de cada shard queda en el directorio base shard-k dentro del directorio del índice,
+ * con su propio directorio Results, una copia de los stopwords y el archivo Shard.txt con su número y la cantidad de
+ * shards, así que cada shard se puede servir por separado (ver {@link ri.wse.queryProcessor.ShardedSearcher}). El
+ * idf de todos los shards se calcula con la colección completa.
  */
 public class IndexerController {
 
     /**
      * Tiene el directorio base donde se tienen que buscar todos los archivos de la colección.
      */
-    private static final String BASE_DIRECTORY = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/Coleccion/";
+    static final String BASE_DIRECTORY = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/Coleccion/";
 
     /**
-     * Este mapa contiene:
-     * -Llave: Nombre del documento html.
-     * -Valor: Mapa <Palabra, Cantidad de veces que aparece esa palabra en el documento>.
+     * Directorio del índice, con los segmentos y sus confirmaciones.
+     */
+    static final String RESULTS_DIRECTORY = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/Results";
+
+    /**
+     * Archivo que contiene el url de cada documento de la colección.
+     */
+    static final String URLS_FILE_PATH = "./webSearchEngine-core/src/main/java/webSearchEngine/ri/resources/URLS.txt";
+
+    /**
+     * Prefijo del directorio base de cada shard dentro del directorio del índice, seguido del número de shard.
+     */
+    static final String SHARD_DIRECTORY_PREFIX = "shard-";
+
+    /**
+     * Archivo del directorio base de cada shard con el número del shard y la cantidad de shards separados por un
+     * espacio, que lee el buscador para ordenar los empates con el identificador global de los documentos.
      */
-    private Map<String,Map<String,Double>> documents;
+    static final String SHARD_FILE = "Shard.txt";
 
     /**
      * Este mapa contiene:
@@ -37,12 +62,14 @@ public class IndexerController {
     private HTMLParser htmlParser;
 
     /**
-     * Instancia del FileManaher que sirve para generar los archivos .tok y el de vocabulario.
+     * Instancia del FileManaher que sirve para generar el segmento del índice y, opcionalmente, los archivos .tok y
+     * .wtd.
      */
     private FileManager fileManager;
 
     /**
-     * Array que contiene todos los nombres de los archivos a parsear.
+     * Array que contiene todos los nombres de los archivos a parsear, ordenados; la posición de cada archivo es el
+     * identificador del documento.
      */
     private String[] textfiles;
 
@@ -51,65 +78,296 @@ public class IndexerController {
      */
     private double totalCollectionFiles;
 
+    /**
+     * Hilos que parsean los documentos y generan sus archivos.
+     */
+    private WorkerPool workerPool;
+
+    /**
+     * Memoria que se usa para invertir las listas de postings, en bytes.
+     */
+    private long memoryBudget;
+
+    /**
+     * Indica si se exportan los archivos .tok y .wtd de cada documento.
+     */
+    private boolean exportDocumentFiles;
+
+    /**
+     * Nombre (alias sin la extensión .html) y fecha de modificación de cada documento, según su identificador.
+     */
+    private String[] documentNames;
+    private long[] lastModified;
+
+    /**
+     * Directorios de la colección y del índice, y archivos con los urls de los documentos y con los stopwords.
+     */
+    private String collectionDirectory;
+    private String resultsDirectory;
+    private String urlsFile;
+    private String stopWordsFile;
+
+    /**
+     * Cantidad de shards entre los que se reparten los documentos.
+     */
+    private int shards;
+
     public IndexerController() {
-        this.documents = new TreeMap<String,Map<String,Double>>();
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads cantidad de hilos que se usan para indexar; con 1 hilo la indexación es secuencial. El índice
+     *                generado es el mismo con cualquier cantidad de hilos.
+     */
+    public IndexerController(int threads) {
+        this(threads, PostingsInverter.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param threads      cantidad de hilos que se usan para indexar
+     * @param memoryBudget memoria que se usa para invertir las listas de postings, en bytes; lo que no cabe se escribe
+     *                     en archivos temporales. El índice generado es el mismo con cualquier presupuesto.
+     */
+    public IndexerController(int threads, long memoryBudget) {
+        this(threads, memoryBudget, false);
+    }
+
+    /**
+     * @param threads             cantidad de hilos que se usan para indexar
+     * @param memoryBudget        memoria que se usa para invertir las listas de postings, en bytes
+     * @param exportDocumentFiles indica si se exportan los archivos .tok y .wtd de cada documento para depuración;
+     *                            el índice no los necesita
+     */
+    public IndexerController(int threads, long memoryBudget, boolean exportDocumentFiles) {
+        this(BASE_DIRECTORY, RESULTS_DIRECTORY, URLS_FILE_PATH, HTMLParser.STOPWORDS_FILE_PATH, threads,
+                memoryBudget, exportDocumentFiles, 1);
+    }
+
+    /**
+     * Indexa una colección que no está en los directorios por defecto, por ejemplo una colección de pruebas.
+     *
+     * @param collectionDirectory directorio con los archivos html de la colección, terminado en '/'
+     * @param resultsDirectory    directorio del índice
+     * @param urlsFile            archivo con el url de cada documento
+     * @param stopWordsFile       archivo con los "stopwords"
+     * @param threads             cantidad de hilos que se usan para indexar
+     * @param memoryBudget        memoria que se usa para invertir las listas de postings, en bytes
+     */
+    public IndexerController(String collectionDirectory, String resultsDirectory, String urlsFile,
+                             String stopWordsFile, int threads, long memoryBudget) {
+        this(collectionDirectory, resultsDirectory, urlsFile, stopWordsFile, threads, memoryBudget, false, 1);
+    }
+
+    /**
+     * Indexa una colección repartiendo los documentos entre varios shards.
+     *
+     * @param shards cantidad de shards; con 1 se genera un único índice en el directorio del índice
+     */
+    public IndexerController(String collectionDirectory, String resultsDirectory, String urlsFile,
+                             String stopWordsFile, int threads, long memoryBudget, int shards) {
+        this(collectionDirectory, resultsDirectory, urlsFile, stopWordsFile, threads, memoryBudget, false, shards);
+    }
+
+    private IndexerController(String collectionDirectory, String resultsDirectory, String urlsFile,
+                              String stopWordsFile, int threads, long memoryBudget, boolean exportDocumentFiles,
+                              int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("La cantidad de shards debe ser al menos 1.");
+        }
+        this.collectionDirectory = collectionDirectory;
+        this.resultsDirectory = resultsDirectory;
+        this.urlsFile = urlsFile;
+        this.stopWordsFile = stopWordsFile;
+        this.shards = shards;
         this.vocabulary = new TreeMap<String, Double>();
-        this.htmlParser = new HTMLParser(this.documents, this.vocabulary);
-        this.fileManager = new FileManager(this.documents, this.vocabulary);
+        this.htmlParser = new HTMLParser(stopWordsFile);
+        this.workerPool = new WorkerPool(threads);
+        this.memoryBudget = memoryBudget;
+        this.exportDocumentFiles = exportDocumentFiles;
     }
 
     /**
      * Encuentra cuáles son cada uno de los archivos que se deben parsear,
-     * y almacena sus nombre en un array.
+     * y almacena sus nombre en un array junto con el nombre y la fecha de modificación de cada documento.
      */
     private void findFiles(){
-        File file = new File(BASE_DIRECTORY);
+        long start = System.nanoTime();
+        File file = new File(this.collectionDirectory);
 
         FilenameFilter filter = (dir, fileName) -> fileName.endsWith(".html");
 
         this.textfiles = file.list(filter);
         if(this.textfiles == null){
-            System.out.println("No se encontraron archivos.");
+            // El directorio de la colección no existe o no se puede leer.
+            Metrics.counter("index.discovery.failures").increment();
+            this.textfiles = new String[0];
+        } else {
+            Arrays.sort(this.textfiles);
         }
+
+        this.documentNames = new String[this.textfiles.length];
+        this.lastModified = new long[this.textfiles.length];
+        for (int i = 0; i < this.textfiles.length; i++) {
+            this.documentNames[i] = this.textfiles[i].replace(".html", "");
+            this.lastModified[i] = new File(this.collectionDirectory, this.textfiles[i]).lastModified();
+        }
+        Metrics.timer("index.discovery").recordSince(start);
     }
 
     /**
-     * Itera sobre el array que contiene los nombres de los archivos a parsear y llama
-     * al método de parseo que contiene el searchEngine.indexer.HTMLParser.
+     * Carga el url de cada documento y lo acomoda en un array según el identificador del documento.
+     *
+     * @param urlsFile  archivo con el nombre del archivo y el url de cada documento, separados por un espacio
+     * @param textfiles nombres de los archivos de los documentos, la posición es el identificador del documento
+     * @return urls Array con el url de cada documento, o una hilera vacía si no se conoce
+     */
+    static String[] loadUrls(String urlsFile, String[] textfiles) {
+        Map<String, String> urlsByFile = new HashMap<>();
+        try (Stream<String> stream = Files.lines(Paths.get(urlsFile))) {
+            stream.forEach(line -> {
+                String[] currentLine = line.replace("\uFEFF", "").trim().split(" ");
+                if (currentLine.length > 1) {
+                    urlsByFile.put(currentLine[0].trim(), currentLine[1]);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        String[] urls = new String[textfiles.length];
+        for (int i = 0; i < textfiles.length; i++) {
+            urls[i] = urlsByFile.getOrDefault(textfiles[i], "");
+        }
+        return urls;
+    }
+
+    /**
+     * Reparte los archivos a parsear entre los hilos, que llaman al método de parseo que contiene el
+     * searchEngine.indexer.HTMLParser y agregan en seguida los términos del documento a las listas de postings, así
+     * que los términos de los documentos no se guardan en memoria. Cada hilo cuenta en un vocabulario parcial propio
+     * la cantidad de documentos en los que aparece cada palabra, y al final se suman los vocabularios parciales.
      */
     private void parseFiles (){
-        for (String textfile : this.textfiles) {
-            this.totalCollectionFiles++;
-            this.htmlParser.parseFile(textfile, IndexerController.BASE_DIRECTORY);
+        this.totalCollectionFiles = this.textfiles.length;
+
+        List<Map<String, Double>> partialVocabularies = this.workerPool.forEachDocument(this.textfiles.length,
+                HashMap::new, (partialVocabulary, document) -> {
+                    Map<String, Double> words = this.htmlParser.parseFile(this.textfiles[document],
+                            this.collectionDirectory);
+                    this.fileManager.addDocument(document, words);
+                    for (String term : words.keySet()) {
+                        partialVocabulary.merge(term, 1.0, Double::sum);
+                    }
+                });
+        for (Map<String, Double> partialVocabulary : partialVocabularies) {
+            partialVocabulary.forEach((term, count) -> this.vocabulary.merge(term, count, Double::sum));
         }
     }
 
     /**
-     * Genera los archivos .tok y el archivo de Vocabulario.
+     * Parsea la colección y genera un segmento binario con toda la colección en cada shard, que reemplaza a los
+     * segmentos anteriores del shard. Si se pidió, exporta también los archivos .tok y .wtd.
      */
-    private void generateFiles() {
-        this.fileManager.generateTokFiles();
-        this.fileManager.generateVocabularyFile(this.totalCollectionFiles);
+    private void indexFiles() {
+        IndexWriter[] indexWriters = new IndexWriter[this.shards];
         try {
-            this.fileManager.generateWtdPostingsIndexFiles();
-        } catch (FileNotFoundException e) {
+            String[] segmentNames = new String[this.shards];
+            String[] segmentDirectories = new String[this.shards];
+            for (int shard = 0; shard < this.shards; shard++) {
+                indexWriters[shard] = new IndexWriter(this.getShardDirectory(shard));
+                segmentNames[shard] = indexWriters[shard].newSegmentName();
+                segmentDirectories[shard] = indexWriters[shard].getSegmentDirectory(segmentNames[shard]);
+            }
+            if (this.exportDocumentFiles) {
+                Files.createDirectories(Paths.get(this.resultsDirectory, "tok"));
+                Files.createDirectories(Paths.get(this.resultsDirectory, "wtd"));
+            }
+            try (FileManager fileManager = new FileManager(this.vocabulary, this.documentNames,
+                    loadUrls(this.urlsFile, this.textfiles), this.lastModified, this.resultsDirectory,
+                    segmentDirectories, this.workerPool, this.memoryBudget, this.exportDocumentFiles)) {
+                this.fileManager = fileManager;
+                this.parseFiles();
+                this.fileManager.calculateInverseFrequencies(this.totalCollectionFiles);
+                this.fileManager.generateSegments();
+                if (this.exportDocumentFiles) {
+                    this.fileManager.generateWtdFiles();
+                }
+            }
+            for (int shard = 0; shard < this.shards; shard++) {
+                indexWriters[shard].deleteAll();
+                indexWriters[shard].addSegment(segmentNames[shard],
+                        FileManager.shardDocumentCount(this.textfiles.length, shard, this.shards));
+                indexWriters[shard].commit();
+                if (this.shards > 1) {
+                    Files.copy(Paths.get(this.stopWordsFile), Paths.get(this.getShardBaseDirectory(shard),
+                            "stopwords.txt"), StandardCopyOption.REPLACE_EXISTING);
+                    Files.write(Paths.get(this.getShardBaseDirectory(shard), SHARD_FILE),
+                            (shard + " " + this.shards).getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            for (IndexWriter indexWriter : indexWriters) {
+                if (indexWriter != null) {
+                    try {
+                        indexWriter.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
         }
     }
 
-    public static void main (String args[]){
-        IndexerController indexerController = new IndexerController();
-        indexerController.findFiles();
-        indexerController.parseFiles();
-        indexerController.generateFiles();
+    /**
+     * Directorio base de un shard, con su directorio Results y sus stopwords.
+     */
+    private String getShardBaseDirectory(int shard) {
+        return Paths.get(this.resultsDirectory, SHARD_DIRECTORY_PREFIX + shard).toString();
     }
 
-    public Map<String,Map<String, Double>> getDocuments() {
-        return documents;
+    /**
+     * Indica si el índice de un directorio está repartido en shards, es decir, si tiene directorios shard-k.
+     */
+    static boolean isSharded(String resultsDirectory) {
+        File[] shardDirectories = new File(resultsDirectory).listFiles((dir, fileName) ->
+                fileName.startsWith(SHARD_DIRECTORY_PREFIX) && new File(dir, fileName).isDirectory());
+        return shardDirectories != null && shardDirectories.length > 0;
     }
 
-    public void setDocuments(Map<String,Map<String, Double>> documents) {
-        this.documents = documents;
+    /**
+     * Directorio del índice de un shard; con un solo shard es el directorio del índice.
+     */
+    private String getShardDirectory(int shard) {
+        return this.shards == 1 ? this.resultsDirectory
+                : Paths.get(this.getShardBaseDirectory(shard), "Results").toString();
+    }
+
+    /**
+     * Busca los archivos de la colección y genera el índice.
+     */
+    public void index() {
+        this.findFiles();
+        this.indexFiles();
+    }
+
+    /**
+     * @param args opcionalmente, la cantidad de hilos que se usan para indexar (por defecto se usa un hilo por
+     *             procesador), la memoria para invertir las listas de postings en megabytes (por defecto 64),
+     *             "true" para exportar los archivos .tok y .wtd de cada documento y la cantidad de shards (por
+     *             defecto 1)
+     */
+    public static void main (String args[]){
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long memoryBudget = args.length > 1 ? Long.parseLong(args[1]) * 1024 * 1024
+                : PostingsInverter.DEFAULT_MEMORY_BUDGET;
+        boolean exportDocumentFiles = args.length > 2 && Boolean.parseBoolean(args[2]);
+        int shards = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        IndexerController indexerController = new IndexerController(BASE_DIRECTORY, RESULTS_DIRECTORY,
+                URLS_FILE_PATH, HTMLParser.STOPWORDS_FILE_PATH, threads, memoryBudget, exportDocumentFiles, shards);
+        indexerController.index();
     }
 
     public Map<String, Double> getVocabulary() {
@@ -0,0 +1,321 @@
+package ri.wse.indexerBuild;
+
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Invierte los términos de los documentos en listas de postings con una cantidad de memoria acotada. Las entradas
+ * (término, documento, frecuencia normalizada) se acumulan en memoria y, cuando su tamaño estimado llega al
+ * presupuesto, se escriben ordenadas por término en un archivo temporal (una corrida). Al final las corridas se
+ * mezclan entre sí (k-way merge) y se entregan las listas de postings completas de cada término en orden, sin tener
+ * nunca más de una lista en memoria. Si todas las entradas caben en el presupuesto no se escribe ningún archivo.
+ * Los documentos pueden llegar en cualquier orden; cada lista se entrega ordenada por identificador de documento.
+ * Ordenar y escribir una corrida se hace fuera del candado: el hilo que llena el buffer lo cambia por uno vacío y los
+ * demás siguen agregando documentos mientras lo escribe. Solo se escribe una corrida a la vez, así que en memoria hay
+ * a lo sumo dos buffers, y cada uno se escribe al llegar a la mitad del presupuesto.
+ */
+class PostingsInverter implements Closeable {
+
+    /**
+     * Presupuesto de memoria por defecto para las entradas acumuladas, en bytes.
+     */
+    static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Tamaño estimado de un término nuevo en memoria: la hilera, la entrada del mapa y sus arreglos iniciales.
+     */
+    private static final int TERM_OVERHEAD = 160;
+
+    private static final Timer INVERSION_TIMER = Metrics.timer("index.inversion");
+    private static final Timer SPILL_TIMER = Metrics.timer("index.spill");
+
+    /**
+     * Tamaño estimado de una entrada, contando el crecimiento de los arreglos.
+     */
+    private static final int POSTING_SIZE = 12;
+
+    private final String directory;
+    private final long spillThreshold;
+    private final List<Path> runs = new ArrayList<>();
+    private int runNumber;
+
+    private Map<String, TermPostings> buffer = new HashMap<>();
+    private long bufferedBytes;
+
+    /**
+     * Indica si un hilo está escribiendo una corrida fuera del candado.
+     */
+    private boolean spilling;
+
+    /**
+     * @param directory    directorio donde se escriben las corridas
+     * @param memoryBudget tamaño estimado máximo de las entradas en memoria, en bytes
+     */
+    PostingsInverter(String directory, long memoryBudget) {
+        this.directory = directory;
+        this.spillThreshold = memoryBudget / 2;
+    }
+
+    interface TermConsumer {
+        void accept(String term, int[] documents, float[] normalizedFrequencies) throws IOException;
+    }
+
+    /**
+     * Agrega los términos de un documento. Puede ser llamado por varios hilos a la vez.
+     */
+    void add(int document, String[] terms, float[] normalizedFrequencies) throws IOException {
+        Map<String, TermPostings> full;
+        Path run;
+        synchronized (this) {
+            long start = System.nanoTime();
+            for (int i = 0; i < terms.length; i++) {
+                TermPostings termPostings = this.buffer.get(terms[i]);
+                if (termPostings == null) {
+                    termPostings = new TermPostings();
+                    this.buffer.put(terms[i], termPostings);
+                    this.bufferedBytes += TERM_OVERHEAD + 2 * terms[i].length();
+                }
+                termPostings.add(document, normalizedFrequencies[i]);
+                this.bufferedBytes += POSTING_SIZE;
+            }
+            INVERSION_TIMER.recordSince(start);
+            // Si otra corrida se está escribiendo, se espera a que termine para no tener un tercer buffer en memoria.
+            while (this.spilling && this.bufferedBytes >= this.spillThreshold) {
+                this.awaitSpill();
+            }
+            if (this.bufferedBytes < this.spillThreshold) {
+                return;
+            }
+            full = this.buffer;
+            run = this.nextRun();
+            this.buffer = new HashMap<>();
+            this.bufferedBytes = 0;
+            this.spilling = true;
+        }
+
+        boolean written = false;
+        try {
+            writeRun(run, full);
+            written = true;
+        } finally {
+            synchronized (this) {
+                if (!written) {
+                    this.runs.remove(run);
+                }
+                this.spilling = false;
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Espera a que termine la corrida que se está escribiendo. Se llama con el candado tomado.
+     */
+    private void awaitSpill() throws IOException {
+        try {
+            while (this.spilling) {
+                this.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Se interrumpió la espera de una corrida de postings.");
+        }
+    }
+
+    /**
+     * Reserva el archivo de la siguiente corrida. Se llama con el candado tomado.
+     */
+    private Path nextRun() {
+        Path run = Paths.get(this.directory, "postings_" + this.runNumber++ + ".tmp");
+        this.runs.add(run);
+        return run;
+    }
+
+    /**
+     * Cantidad de corridas escritas en disco.
+     */
+    synchronized int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Escribe las entradas en memoria como una corrida, con el candado tomado. Solo se usa al recorrer los términos,
+     * cuando ya no se agregan documentos.
+     */
+    private void flush() throws IOException {
+        if (this.buffer.isEmpty()) {
+            return;
+        }
+        Path run = this.nextRun();
+        try {
+            writeRun(run, this.buffer);
+        } catch (IOException | RuntimeException e) {
+            this.runs.remove(run);
+            throw e;
+        }
+        this.buffer = new HashMap<>();
+        this.bufferedBytes = 0;
+    }
+
+    /**
+     * Escribe unas entradas como una corrida ordenada por término y por documento.
+     */
+    private static void writeRun(Path run, Map<String, TermPostings> entries) throws IOException {
+        long start = System.nanoTime();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run), 1 << 16))) {
+            for (String term : sortedTerms(entries)) {
+                TermPostings termPostings = entries.get(term);
+                int[] documents = termPostings.getDocuments();
+                float[] normalizedFrequencies = termPostings.getNormalizedFrequencies();
+                sortByDocument(documents, normalizedFrequencies);
+                output.writeUTF(term);
+                output.writeInt(documents.length);
+                for (int i = 0; i < documents.length; i++) {
+                    output.writeInt(documents[i]);
+                    output.writeFloat(normalizedFrequencies[i]);
+                }
+            }
+        }
+        SPILL_TIMER.recordSince(start);
+    }
+
+    /**
+     * Recorre en orden los términos con su lista de postings completa. Se puede llamar varias veces, por ejemplo
+     * para calcular las normas de los documentos antes de escribir las listas.
+     */
+    synchronized void forEachTerm(TermConsumer consumer) throws IOException {
+        this.awaitSpill();
+        if (this.runs.isEmpty()) {
+            for (String term : sortedTerms(this.buffer)) {
+                TermPostings termPostings = this.buffer.get(term);
+                int[] documents = termPostings.getDocuments();
+                float[] normalizedFrequencies = termPostings.getNormalizedFrequencies();
+                sortByDocument(documents, normalizedFrequencies);
+                consumer.accept(term, documents, normalizedFrequencies);
+            }
+            return;
+        }
+
+        this.flush();
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>();
+        List<RunCursor> cursors = new ArrayList<>();
+        try {
+            for (Path run : this.runs) {
+                RunCursor cursor = new RunCursor(run, cursors.size());
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+
+            TermPostings merged = new TermPostings();
+            while (!queue.isEmpty()) {
+                String term = queue.peek().term;
+                merged.clear();
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    RunCursor cursor = queue.poll();
+                    cursor.readPostings(merged);
+                    if (cursor.next()) {
+                        queue.add(cursor);
+                    }
+                }
+                int[] documents = merged.getDocuments();
+                float[] normalizedFrequencies = merged.getNormalizedFrequencies();
+                sortByDocument(documents, normalizedFrequencies);
+                consumer.accept(term, documents, normalizedFrequencies);
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.input.close();
+            }
+        }
+    }
+
+    private static List<String> sortedTerms(Map<String, TermPostings> buffer) {
+        List<String> terms = new ArrayList<>(buffer.keySet());
+        Collections.sort(terms);
+        return terms;
+    }
+
+    /**
+     * Ordena las entradas de una lista por identificador de documento, si no lo están.
+     */
+    private static void sortByDocument(int[] documents, float[] normalizedFrequencies) {
+        boolean sorted = true;
+        for (int i = 1; i < documents.length && sorted; i++) {
+            sorted = documents[i - 1] < documents[i];
+        }
+        if (sorted) {
+            return;
+        }
+        long[] entries = new long[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            entries[i] = ((long) documents[i] << 32)
+                    | (Float.floatToRawIntBits(normalizedFrequencies[i]) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(entries);
+        for (int i = 0; i < entries.length; i++) {
+            documents[i] = (int) (entries[i] >>> 32);
+            normalizedFrequencies[i] = Float.intBitsToFloat((int) entries[i]);
+        }
+    }
+
+    /**
+     * Borra las corridas.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.awaitSpill();
+        for (Path run : this.runs) {
+            Files.deleteIfExists(run);
+        }
+        this.runs.clear();
+        this.buffer = new HashMap<>();
+        this.bufferedBytes = 0;
+    }
+
+    /**
+     * Posición en una corrida. Los empates de término se resuelven por el número de corrida.
+     */
+    private static class RunCursor implements Comparable<RunCursor> {
+
+        private final DataInputStream input;
+        private final int run;
+        private String term;
+        private int size;
+
+        RunCursor(Path path, int run) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+            this.run = run;
+        }
+
+        boolean next() throws IOException {
+            try {
+                this.term = this.input.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+            this.size = this.input.readInt();
+            return true;
+        }
+
+        void readPostings(TermPostings termPostings) throws IOException {
+            for (int i = 0; i < this.size; i++) {
+                termPostings.add(this.input.readInt(), this.input.readFloat());
+            }
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            int comparison = this.term.compareTo(other.term);
+            return comparison != 0 ? comparison : this.run - other.run;
+        }
+    }
+}
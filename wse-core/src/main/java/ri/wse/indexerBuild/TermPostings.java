@@ -0,0 +1,44 @@
+package ri.wse.indexerBuild;
+
+import java.util.Arrays;
+
+/**
+ * Lista de postings de un término que se va llenando durante la indexación, guardada en arreglos de primitivos
+ * (identificador de documento y frecuencia normalizada) que crecen a medida que se agregan entradas.
+ */
+class TermPostings {
+
+    private int[] documents = new int[4];
+    private float[] normalizedFrequencies = new float[4];
+    private int size;
+
+    /**
+     * Agrega una entrada. Los documentos se agregan en orden creciente de identificador, salvo en el
+     * {@link PostingsInverter}, que ordena cada lista antes de entregarla.
+     */
+    void add(int document, float normalizedFrequency) {
+        if (this.size == this.documents.length) {
+            this.documents = Arrays.copyOf(this.documents, this.size * 2);
+            this.normalizedFrequencies = Arrays.copyOf(this.normalizedFrequencies, this.size * 2);
+        }
+        this.documents[this.size] = document;
+        this.normalizedFrequencies[this.size] = normalizedFrequency;
+        this.size++;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int[] getDocuments() {
+        return Arrays.copyOf(documents, size);
+    }
+
+    float[] getNormalizedFrequencies() {
+        return Arrays.copyOf(normalizedFrequencies, size);
+    }
+}
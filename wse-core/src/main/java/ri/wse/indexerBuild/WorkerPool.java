@@ -0,0 +1,70 @@
+package ri.wse.indexerBuild;
+
+import ri.wse.support.exceptions.IndexException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Reparte el procesamiento de los documentos de la colección entre varios hilos. Cada hilo toma el siguiente
+ * identificador de documento pendiente y trabaja sobre un estado parcial propio (por ejemplo, conteos de términos),
+ * de modo que los hilos no comparten estructuras mutables; los estados parciales se devuelven para unirlos al final.
+ */
+class WorkerPool {
+
+    private final int threads;
+
+    WorkerPool(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("La cantidad de hilos debe ser al menos 1: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Procesa los documentos 0..documentCount-1 en paralelo.
+     *
+     * @param documentCount cantidad de documentos
+     * @param partialState  crea el estado parcial de cada hilo
+     * @param task          procesa un documento con el estado parcial del hilo que lo toma
+     * @return los estados parciales de todos los hilos
+     */
+    <T> List<T> forEachDocument(int documentCount, Supplier<T> partialState, ObjIntConsumer<T> task) {
+        AtomicInteger nextDocument = new AtomicInteger();
+        List<Callable<T>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(this.threads, Math.max(documentCount, 1)); i++) {
+            workers.add(() -> {
+                T state = partialState.get();
+                int document;
+                while ((document = nextDocument.getAndIncrement()) < documentCount) {
+                    task.accept(state, document);
+                }
+                return state;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            List<T> states = new ArrayList<>();
+            for (Future<T> future : executor.invokeAll(workers)) {
+                states.add(future.get());
+            }
+            return states;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexException("Se interrumpió la indexación.", e);
+        } catch (ExecutionException e) {
+            throw new IndexException("Falló el procesamiento de un documento.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ri.wse.model;
+
+public class CacheStatistics {
+
+    private int size;
+
+    private int maxEntries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long expirations;
+
+    private long invalidations;
+
+    public CacheStatistics(int size, int maxEntries, long hits, long misses, long evictions, long expirations,
+                           long invalidations) {
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Proporción de las búsquedas que se respondieron desde el caché.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+}
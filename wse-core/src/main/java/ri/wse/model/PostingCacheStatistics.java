@@ -0,0 +1,58 @@
+package ri.wse.model;
+
+public class PostingCacheStatistics {
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private int residentBlocks;
+
+    private long residentBytes;
+
+    private long capacityBytes;
+
+    public PostingCacheStatistics(long hits, long misses, long evictions, int residentBlocks, long residentBytes,
+                                  long capacityBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.residentBlocks = residentBlocks;
+        this.residentBytes = residentBytes;
+        this.capacityBytes = capacityBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Proporción de los bloques que se obtuvieron del caché en lugar de decodificarse.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getResidentBlocks() {
+        return residentBlocks;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+}
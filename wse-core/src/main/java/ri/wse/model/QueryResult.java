@@ -1,22 +1,89 @@
 package ri.wse.model;
 
-import javafx.util.Pair;
-
 import java.util.List;
 
 public class QueryResult {
 
-    private List<Pair<String, String>> queryResults;
+    private List<ResultEntry> queryResults;
+
+    private int totalHits;
+
+    private boolean totalHitsExact;
+
+    private int offset;
+
+    private int limit;
+
+    private boolean partial;
+
+    public QueryResult(List<ResultEntry> queryResults) {
+        this.queryResults = queryResults;
+    }
 
-    public QueryResult(List<Pair<String, String>> queryResults) {
+    public QueryResult(List<ResultEntry> queryResults, int totalHits, boolean totalHitsExact, int offset,
+                       int limit) {
         this.queryResults = queryResults;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    public QueryResult(List<ResultEntry> queryResults, int totalHits, boolean totalHitsExact, int offset,
+                       int limit, boolean partial) {
+        this(queryResults, totalHits, totalHitsExact, offset, limit);
+        this.partial = partial;
     }
 
-    public List<Pair<String, String>> getQueryResults() {
+    public List<ResultEntry> getQueryResults() {
         return queryResults;
     }
 
-    public void setQueryResults(List<Pair<String, String>> queryResults) {
+    public void setQueryResults(List<ResultEntry> queryResults) {
         this.queryResults = queryResults;
     }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(int totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    public void setTotalHitsExact(boolean totalHitsExact) {
+        this.totalHitsExact = totalHitsExact;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Indica que el presupuesto de tiempo se agotó antes de terminar el cálculo de la similaridad, así que los
+     * resultados son los mejores documentos encontrados hasta ese momento.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
 }
@@ -0,0 +1,56 @@
+package ri.wse.model;
+
+import java.util.Objects;
+
+/**
+ * Documento de una página de resultados: su nombre, su url y su similaridad con la consulta.
+ */
+public class ResultEntry {
+
+    private final String name;
+
+    private final String url;
+
+    private final double score;
+
+    public ResultEntry(String name, String url, double score) {
+        this.name = name;
+        this.url = url;
+        this.score = score;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ResultEntry)) {
+            return false;
+        }
+        ResultEntry entry = (ResultEntry) other;
+        return Double.compare(this.score, entry.score) == 0 && Objects.equals(this.name, entry.name)
+                && Objects.equals(this.url, entry.url);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.name, this.url, this.score);
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "=" + this.url + " (" + this.score + ")";
+    }
+}
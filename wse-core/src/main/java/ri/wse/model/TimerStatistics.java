@@ -0,0 +1,70 @@
+package ri.wse.model;
+
+public class TimerStatistics {
+
+    private String name;
+
+    private long count;
+
+    private double mean;
+
+    private double p50;
+
+    private double p95;
+
+    private double p99;
+
+    private double max;
+
+    private double total;
+
+    /**
+     * Los tiempos se reciben en milisegundos.
+     */
+    public TimerStatistics(String name, long count, double mean, double p50, double p95, double p99, double max,
+                           double total) {
+        this.name = name;
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+        this.total = total;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Tiempo acumulado de la etapa, para comparar cuánto aporta cada una al total.
+     */
+    public double getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,89 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.support.exceptions.QueryTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Momento límite para responder una consulta, tomado con {@link System#nanoTime()}. El cálculo de la similaridad lo
+ * revisa con {@link #check()} cada cierta cantidad de documentos. Hay dos clases de límites:
+ * -Estricto ({@link #after(long, TimeUnit)}): al pasar, la consulta se detiene con una
+ * {@link QueryTimeoutException}, así que una consulta vencida deja de ocupar su hilo sin esperar a que termine.
+ * -Presupuesto de tiempo ({@link #budget(long, TimeUnit)}): al pasar, el cálculo se detiene y se devuelven los
+ * mejores documentos encontrados hasta ese momento, marcados como resultados parciales.
+ */
+public final class Deadline {
+
+    /**
+     * Sin límite: las consultas terminan siempre.
+     */
+    public static final Deadline NONE = new Deadline(0, false, false);
+
+    private final long nanos;
+    private final boolean bounded;
+    private final boolean partialResults;
+
+    private Deadline(long nanos, boolean bounded, boolean partialResults) {
+        this.nanos = nanos;
+        this.bounded = bounded;
+        this.partialResults = partialResults;
+    }
+
+    /**
+     * Límite estricto a partir del momento actual.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true, false);
+    }
+
+    /**
+     * Presupuesto de tiempo a partir del momento actual.
+     */
+    public static Deadline budget(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true, true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * Indica si al pasar el límite se devuelven resultados parciales en lugar de fallar.
+     */
+    public boolean allowsPartialResults() {
+        return partialResults;
+    }
+
+    public boolean isExpired() {
+        return this.bounded && System.nanoTime() - this.nanos >= 0;
+    }
+
+    /**
+     * Tiempo que falta para el límite, en nanosegundos; Long.MAX_VALUE si no hay límite y 0 si ya pasó.
+     */
+    public long remainingNanos() {
+        return this.bounded ? Math.max(0, this.nanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Revisa si la consulta se debe detener.
+     *
+     * @return true si ya pasó un presupuesto de tiempo: el cálculo se debe detener y conservar lo encontrado
+     * @throws QueryTimeoutException si ya pasó un límite estricto o si se interrumpió el hilo
+     */
+    public boolean check() {
+        if (!this.bounded) {
+            return false;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new QueryTimeoutException("Se interrumpió la consulta.");
+        }
+        if (System.nanoTime() - this.nanos < 0) {
+            return false;
+        }
+        if (this.partialResults) {
+            return true;
+        }
+        throw new QueryTimeoutException("La consulta superó su tiempo límite.");
+    }
+}
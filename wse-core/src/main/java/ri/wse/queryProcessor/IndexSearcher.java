@@ -0,0 +1,225 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.analysis.Analyzer;
+import ri.wse.analysis.StopWords;
+import ri.wse.indexStorage.IndexReader;
+import ri.wse.indexStorage.PostingBlockCache;
+import ri.wse.indexStorage.PostingList;
+import ri.wse.support.exceptions.IndexException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contiene el índice completo (analizador con los stopwords y segmentos binarios del índice) abierto una sola vez.
+ * Se crea como un bean único al iniciar la aplicación y todas las consultas lo comparten, por lo que
+ * después de construido es de solo lectura y puede ser usado por varios hilos a la vez. Los segmentos se mapean a
+ * memoria, así que abrirlos es casi instantáneo y su contenido no ocupa el heap.
+ * Una instancia ve siempre la misma confirmación del índice; los cambios del indexador incremental se ven con
+ * {@link #openIfChanged()}. Cuando se cambia de confirmación con un {@link SearcherManager}, cada consulta reserva el
+ * buscador con un contador de referencias, así que las consultas en curso terminan con la confirmación anterior.
+ */
+public class IndexSearcher {
+
+    /**
+     * Dirección base de los archivos del índice.
+     */
+    private static final String BASE_FILE_PATH = "..\\resources\\";
+
+    /**
+     * Archivo que el indexador escribe en el directorio base de cada shard con el número del shard y la cantidad de
+     * shards.
+     */
+    private static final String SHARD_FILE = "Shard.txt";
+
+    /**
+     * Analizador con el que se obtienen los términos de las consultas, con las mismas reglas que los documentos.
+     */
+    private final Analyzer analyzer;
+
+    /**
+     * Segmentos del índice, con los diccionarios de términos, los postings y las tablas de documentos.
+     */
+    private final IndexReader indexReader;
+
+    /**
+     * Número del shard y cantidad de shards del índice repartido; -1 y 0 si el índice no está repartido.
+     */
+    private final int shard;
+    private final int shardCount;
+
+    /**
+     * Referencias al buscador: la del {@link SearcherManager} que lo publica y una por cada consulta en curso.
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    public IndexSearcher() {
+        this(BASE_FILE_PATH);
+    }
+
+    public IndexSearcher(String basePath) {
+        this(basePath, null);
+    }
+
+    /**
+     * @param postingBlockCache caché de los bloques de postings decodificados, compartido con los buscadores que se
+     *                          abren después con {@link #openIfChanged()}; null para no usar caché
+     */
+    public IndexSearcher(String basePath, PostingBlockCache postingBlockCache) {
+        this.analyzer = new Analyzer(StopWords.load(basePath + "stopwords.txt"));
+        try {
+            this.indexReader = IndexReader.open(basePath + "Results", postingBlockCache);
+        } catch (IOException e) {
+            throw new IndexException("No se pudo abrir el índice en " + basePath + "Results", e);
+        }
+        int[] shardNumbers = readShard(basePath);
+        this.shard = shardNumbers[0];
+        this.shardCount = shardNumbers[1];
+    }
+
+    private IndexSearcher(Analyzer analyzer, IndexReader indexReader, int shard, int shardCount) {
+        this.analyzer = analyzer;
+        this.indexReader = indexReader;
+        this.shard = shard;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Lee el número del shard y la cantidad de shards del directorio base.
+     *
+     * @return {shard, cantidad de shards}, o {-1, 0} si el índice no está repartido
+     */
+    private static int[] readShard(String basePath) {
+        Path shardFile = Paths.get(basePath + SHARD_FILE);
+        if (!Files.exists(shardFile)) {
+            return new int[]{-1, 0};
+        }
+        try {
+            String[] values = new String(Files.readAllBytes(shardFile), StandardCharsets.US_ASCII).trim().split(" ");
+            return new int[]{Integer.parseInt(values[0]), Integer.parseInt(values[1])};
+        } catch (IOException | RuntimeException e) {
+            throw new IndexException("No se pudo leer el número del shard en " + shardFile, e);
+        }
+    }
+
+    /**
+     * Abre la última confirmación del índice si cambió, reutilizando el analizador y los segmentos que no cambiaron.
+     *
+     * @return el nuevo buscador, o null si el índice no cambió
+     */
+    public IndexSearcher openIfChanged() {
+        try {
+            IndexReader changed = this.indexReader.openIfChanged();
+            return changed == null ? null : new IndexSearcher(this.analyzer, changed, this.shard, this.shardCount);
+        } catch (IOException e) {
+            throw new IndexException("No se pudo abrir la nueva versión del índice", e);
+        }
+    }
+
+    public long getGeneration() {
+        return indexReader.getGeneration();
+    }
+
+    /**
+     * Agrega una referencia al buscador si todavía no fue liberado.
+     *
+     * @return false si el buscador ya fue liberado
+     */
+    boolean tryIncRef() {
+        int count;
+        while ((count = this.refCount.get()) > 0) {
+            if (this.refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Quita una referencia al buscador. Con la última se cierra su lector: ya no se puede reservar, libera la reserva
+     * de su confirmación y cierra los segmentos que no comparte con el buscador de la generación siguiente.
+     */
+    void decRef() {
+        int count = this.refCount.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("El buscador ya fue liberado.");
+        }
+        if (count == 0) {
+            try {
+                this.indexReader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Cantidad de referencias al buscador; 0 si ya fue liberado.
+     */
+    public int getRefCount() {
+        return refCount.get();
+    }
+
+    /**
+     * Número de este shard en el índice repartido, o -1 si el índice no está repartido.
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Cantidad de shards del índice repartido, o 0 si el índice no está repartido.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    /**
+     * Cantidad de documentos vivos en los que aparece el término, en todos los segmentos.
+     */
+    public int getDocumentFrequency(String term) {
+        return indexReader.getDocumentFrequency(term);
+    }
+
+    public Double getIdf(String term) {
+        return indexReader.getIdf(term);
+    }
+
+    public PostingList getPostingList(String term) {
+        return indexReader.getPostingList(term);
+    }
+
+    /**
+     * Cantidad de documentos del índice incluidos los borrados, que limita los identificadores de los documentos.
+     */
+    public int getDocumentCount() {
+        return indexReader.getDocumentCount();
+    }
+
+    /**
+     * Cantidad de documentos del índice sin los borrados, con la que se calcula el idf.
+     */
+    public int getLiveDocumentCount() {
+        return indexReader.getLiveDocumentCount();
+    }
+
+    public String getDocumentName(int document) {
+        return indexReader.getDocumentName(document);
+    }
+
+    public double getNorm(int document) {
+        return indexReader.getNorm(document);
+    }
+
+    public String getUrl(int document) {
+        return indexReader.getUrl(document);
+    }
+}
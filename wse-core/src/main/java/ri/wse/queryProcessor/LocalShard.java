@@ -0,0 +1,50 @@
+package ri.wse.queryProcessor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shard abierto en este proceso. Cada fase reserva el buscador actual del {@link SearcherManager}, así que si el índice
+ * cambia de generación entre las dos fases la búsqueda usa el idf calculado con la generación anterior.
+ */
+public class LocalShard implements Shard {
+
+    private final SearcherManager searcherManager;
+
+    public LocalShard(SearcherManager searcherManager) {
+        this.searcherManager = searcherManager;
+    }
+
+    @Override
+    public ShardStatistics getStatistics(Collection<String> terms) {
+        IndexSearcher indexSearcher = this.searcherManager.acquire();
+        try {
+            Map<String, Integer> documentFrequencies = new HashMap<>();
+            for (String term : terms) {
+                documentFrequencies.put(term, indexSearcher.getDocumentFrequency(term));
+            }
+            return new ShardStatistics(indexSearcher.getGeneration(), indexSearcher.getShard(),
+                    indexSearcher.getShardCount(), indexSearcher.getLiveDocumentCount(), documentFrequencies);
+        } finally {
+            this.searcherManager.release(indexSearcher);
+        }
+    }
+
+    @Override
+    public ShardResult search(String query, Map<String, Double> inverseFrequencies, int k, Deadline deadline) {
+        IndexSearcher indexSearcher = this.searcherManager.acquire();
+        try {
+            QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+            queryProcessor.setInverseFrequencies(inverseFrequencies);
+            queryProcessor.setDeadline(deadline);
+            return queryProcessor.manageShardQuery(k);
+        } finally {
+            this.searcherManager.release(indexSearcher);
+        }
+    }
+
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+}
@@ -0,0 +1,184 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.indexStorage.PostingList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Calcula la similaridad documento a documento aplicando la poda MaxScore: cada término tiene una cota superior de
+ * su contribución a la similaridad (su peso normalizado máximo por el peso del término en la consulta). Cuando el
+ * heap ya tiene k documentos, los términos cuya suma de cotas no alcanza el umbral del heap dejan de generar
+ * candidatos, y un candidato se descarta en cuanto su similaridad parcial más las cotas restantes no lo supera.
+ * Las listas que no generan candidatos solo se posicionan con {@link PostingList#advance(int)}, que se salta los
+ * bloques completos que no contienen el documento.
+ * Devuelve exactamente los mismos k documentos que el cálculo exhaustivo. Cada {@link #CHECK_INTERVAL} documentos
+ * revisa el {@link Deadline} de la consulta; si se acabó su presupuesto de tiempo, se detiene y el colector queda con
+ * los mejores documentos de los que alcanzó a recorrer.
+ */
+class MaxScoreScorer {
+
+    /**
+     * Holgura relativa que se agrega a las cotas para que los errores de redondeo (y la precisión con que se
+     * escriben los pesos en los archivos del índice) nunca descarten un documento que sí debía entrar.
+     */
+    private static final double UPPER_BOUND_SLACK = 1e-6;
+
+    /**
+     * Cantidad de documentos entre cada revisión del tiempo límite; debe ser una potencia de dos.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final IndexSearcher indexSearcher;
+    private final double queryNorm;
+    private final Deadline deadline;
+
+    /**
+     * Listas de postings de los términos, ordenadas de menor a mayor cota.
+     */
+    private final PostingList[] postingLists;
+    private final double[] queryWeights;
+
+    /**
+     * Posición original de cada término, para sumar las contribuciones siempre en el mismo orden que el cálculo
+     * exhaustivo y obtener exactamente la misma similaridad.
+     */
+    private final int[] termOrder;
+
+    /**
+     * Suma acumulada de las cotas de los términos 0..i.
+     */
+    private final double[] cumulativeUpperBounds;
+
+    private long postingsEvaluated;
+    private boolean partial;
+
+    /**
+     * @param indexSearcher índice sobre el que se calcula la similaridad
+     * @param postingLists  listas de postings de los términos de la consulta
+     * @param queryWeights  peso de cada término en la consulta
+     * @param queryNorm     norma del vector de la consulta
+     * @param deadline      tiempo límite de la consulta
+     */
+    MaxScoreScorer(IndexSearcher indexSearcher, PostingList[] postingLists, double[] queryWeights, double queryNorm,
+                   Deadline deadline) {
+        this.indexSearcher = indexSearcher;
+        this.queryNorm = queryNorm;
+        this.deadline = deadline;
+
+        Integer[] order = new Integer[postingLists.length];
+        double[] upperBounds = new double[postingLists.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            upperBounds[i] = postingLists[i].getMaxWeight() * queryWeights[i] / queryNorm * (1 + UPPER_BOUND_SLACK);
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> upperBounds[i]));
+
+        this.postingLists = new PostingList[order.length];
+        this.queryWeights = new double[order.length];
+        this.termOrder = new int[order.length];
+        this.cumulativeUpperBounds = new double[order.length];
+        double sum = 0;
+        for (int i = 0; i < order.length; i++) {
+            this.postingLists[i] = postingLists[order[i]];
+            this.queryWeights[i] = queryWeights[order[i]];
+            this.termOrder[i] = order[i];
+            sum += upperBounds[order[i]];
+            this.cumulativeUpperBounds[i] = sum;
+        }
+    }
+
+    /**
+     * Recorre los documentos en orden de identificador y agrega al colector los que pueden entrar en el top k.
+     */
+    void score(TopKCollector collector) {
+        this.score(collector, 0, PostingList.NO_MORE_DOCUMENTS);
+    }
+
+    /**
+     * Recorre solo los documentos de un rango de identificadores, con cursores que todavía no se han movido.
+     *
+     * @param from primer documento del rango
+     * @param to   documento donde termina el rango, sin incluirlo
+     */
+    void score(TopKCollector collector, int from, int to) {
+        int terms = this.postingLists.length;
+        double[] contributions = new double[terms];
+        int firstEssential = 0;
+        int scored = 0;
+        for (PostingList postingList : this.postingLists) {
+            postingList.advance(from);
+        }
+
+        while (firstEssential < terms) {
+            if ((++scored & (CHECK_INTERVAL - 1)) == 0 && this.deadline.check()) {
+                this.partial = true;
+                break;
+            }
+            int document = PostingList.NO_MORE_DOCUMENTS;
+            for (int i = firstEssential; i < terms; i++) {
+                document = Math.min(document, this.postingLists[i].document());
+            }
+            if (document >= to) {
+                break;
+            }
+
+            double partialSum = 0;
+            for (int i = firstEssential; i < terms; i++) {
+                PostingList postingList = this.postingLists[i];
+                if (postingList.document() == document) {
+                    contributions[this.termOrder[i]] = postingList.weight() * this.queryWeights[i];
+                    partialSum += contributions[this.termOrder[i]];
+                    postingList.next();
+                    this.postingsEvaluated++;
+                }
+            }
+
+            double normalization = this.indexSearcher.getNorm(document) * this.queryNorm;
+            boolean pruned = false;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (collector.isFull()
+                        && partialSum / normalization + this.cumulativeUpperBounds[i] <= collector.getThreshold()) {
+                    pruned = true;
+                    break;
+                }
+                PostingList postingList = this.postingLists[i];
+                if (postingList.advance(document) == document) {
+                    contributions[this.termOrder[i]] = postingList.weight() * this.queryWeights[i];
+                    partialSum += contributions[this.termOrder[i]];
+                    this.postingsEvaluated++;
+                }
+            }
+
+            if (!pruned) {
+                double firstSum = 0;
+                for (double contribution : contributions) {
+                    firstSum += contribution;
+                }
+                double similarity = firstSum / normalization;
+                if (similarity > 0) {
+                    collector.collect(document, similarity);
+                }
+                while (collector.isFull() && firstEssential < terms
+                        && this.cumulativeUpperBounds[firstEssential] <= collector.getThreshold()) {
+                    firstEssential++;
+                }
+            }
+            Arrays.fill(contributions, 0);
+        }
+    }
+
+    /**
+     * Cantidad de entradas de postings cuyo peso se llegó a leer.
+     */
+    long getPostingsEvaluated() {
+        return postingsEvaluated;
+    }
+
+    /**
+     * Indica si el cálculo se detuvo antes de recorrer todos los documentos porque se acabó el presupuesto de tiempo.
+     */
+    boolean isPartial() {
+        return partial;
+    }
+}
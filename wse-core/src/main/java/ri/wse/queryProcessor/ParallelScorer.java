@@ -0,0 +1,123 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.support.exceptions.IndexException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+/**
+ * Reparte el cálculo de la similaridad de una consulta pesada entre varios hilos: el espacio de identificadores de
+ * documentos se divide en rangos consecutivos, cada rango se calcula con sus propios cursores y su propio top k, y al
+ * final se mezclan los top k de los rangos. Los rangos se calculan en un {@link ForkJoinPool} compartido por todas
+ * las consultas; el primer rango se calcula en el hilo de la consulta.
+ * Es adaptativo: la cantidad de rangos depende de la cantidad de postings de los términos de la consulta, así que
+ * las consultas cortas se siguen calculando en un solo hilo sin pagar la coordinación, y si el pool ya tiene trabajo
+ * en espera las consultas nuevas tampoco se reparten. Cada consulta usa como máximo {@link #getMaxRangesPerQuery()}
+ * rangos, para que una sola consulta muy grande no acapare el pool.
+ * Se crea como un bean único.
+ */
+public class ParallelScorer {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Cantidad máxima de rangos (y de hilos, contando el de la consulta) que usa una consulta.
+     */
+    private int maxRangesPerQuery = 4;
+
+    /**
+     * Cantidad mínima de postings que debe tener cada rango para que valga la pena repartir la consulta.
+     */
+    private long minPostingsPerRange = 65536;
+
+    /**
+     * @param threads hilos del pool; 0 para usar uno por procesador
+     */
+    public ParallelScorer(int threads) {
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    public void destroy() {
+        this.pool.shutdownNow();
+    }
+
+    /**
+     * Decide en cuántos rangos se reparte una consulta.
+     *
+     * @param postings      cantidad total de postings de los términos de la consulta
+     * @param documentCount cantidad de documentos del índice
+     * @return la cantidad de rangos; 1 si la consulta se calcula en un solo hilo
+     */
+    int getRanges(long postings, int documentCount) {
+        if (this.maxRangesPerQuery <= 1 || this.pool.getQueuedSubmissionCount() > 0) {
+            return 1;
+        }
+        long ranges = Math.min(this.maxRangesPerQuery, postings / Math.max(1, this.minPostingsPerRange));
+        return (int) Math.max(1, Math.min(ranges, documentCount));
+    }
+
+    /**
+     * Primer documento de un rango; el rango termina donde empieza el siguiente.
+     */
+    static int rangeStart(int range, int ranges, int documentCount) {
+        return (int) ((long) range * documentCount / ranges);
+    }
+
+    /**
+     * Calcula una tarea por rango y espera todos los resultados. Si un rango falla, los que no han empezado ya no se
+     * calculan, pero se espera a que terminen los que están en curso: usan los segmentos del buscador, que se pueden
+     * cerrar en cuanto la consulta lo libere.
+     *
+     * @return el resultado de cada rango, en orden
+     */
+    <T> List<T> forEachRange(int ranges, IntFunction<T> task) {
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(ranges - 1);
+        for (int range = 1; range < ranges; range++) {
+            int currentRange = range;
+            tasks.add(this.pool.submit(() -> abandoned.get() ? null : task.apply(currentRange)));
+        }
+        List<T> results = new ArrayList<>(ranges);
+        try {
+            results.add(task.apply(0));
+            for (ForkJoinTask<T> currentTask : tasks) {
+                results.add(currentTask.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexException("Se interrumpió el cálculo de la similaridad.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IndexException(e.getCause());
+        } finally {
+            abandoned.set(true);
+            for (ForkJoinTask<T> currentTask : tasks) {
+                currentTask.quietlyJoin();
+            }
+        }
+    }
+
+    public int getMaxRangesPerQuery() {
+        return maxRangesPerQuery;
+    }
+
+    public void setMaxRangesPerQuery(int maxRangesPerQuery) {
+        this.maxRangesPerQuery = maxRangesPerQuery;
+    }
+
+    public long getMinPostingsPerRange() {
+        return minPostingsPerRange;
+    }
+
+    public void setMinPostingsPerRange(long minPostingsPerRange) {
+        this.minPostingsPerRange = minPostingsPerRange;
+    }
+}
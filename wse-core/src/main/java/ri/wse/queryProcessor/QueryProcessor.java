@@ -1,216 +1,400 @@
 package ri.wse.queryProcessor;
 
-import javafx.util.Pair;
+import ri.wse.indexStorage.PostingList;
+import ri.wse.model.ResultEntry;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Procesa una consulta sobre el índice compartido. Es liviano y se crea uno por consulta, ya que todos los
+ * archivos se leen una sola vez en el {@link IndexSearcher}.
+ * Registra en {@link Metrics} el tiempo de cada etapa: análisis de la consulta, búsqueda de los términos y sus listas
+ * de postings, cálculo de la similaridad, ordenamiento de los mejores documentos y obtención de sus nombres y urls.
+ */
 public class QueryProcessor {
 
+    private static final Timer ANALYSIS_TIMER = Metrics.timer("query.analysis");
+    private static final Timer POSTINGS_TIMER = Metrics.timer("query.postings");
+    private static final Timer SCORING_TIMER = Metrics.timer("query.scoring");
+    private static final Timer RANKING_TIMER = Metrics.timer("query.ranking");
+    private static final Timer URLS_TIMER = Metrics.timer("query.urls");
+    private static final LongAdder POSTINGS_EVALUATED = Metrics.counter("query.postingsEvaluated");
+    private static final LongAdder PARALLEL_QUERIES = Metrics.counter("query.parallel");
+
+    private final IndexSearcher indexSearcher;
+
+    private String query;
+    private Map<String, Query> queryTerms;
+    private List<ResultEntry> results;
+    private int totalHits;
+    private long postingsEvaluated;
+    private boolean parsed;
+    private boolean partial;
+
     /**
-     * Dirección del archivo que contiene los "stopwords".
+     * Tiempo que se tardó en buscar los términos y sus listas de postings, en nanosegundos.
      */
-    private static final String BASE_FILE_PATH = "..\\resources\\";
+    private long postingsTime;
 
     /**
-     * Contiene una lista de los "stopwords" que se recuperaron del archivo.
+     * Indica si se usa la poda MaxScore o el cálculo exhaustivo término a término.
      */
-    private List<String> stopWords;
+    private boolean pruning = true;
 
-    private String query;
-    private Map<String, Query> queryTerms;
-    private Map<String, Double> vocabulary;
-    private Map<String, Map<String, Double>> postings;
-    private Map<String, Double> similarityMap;
-    private Map<String, String> urls;
-    private List<Pair<String, String>> results;
+    /**
+     * Frecuencia inversa de los términos en todos los shards del índice; si es null se usa la del buscador.
+     */
+    private Map<String, Double> inverseFrequencies;
+
+    /**
+     * Reparte el cálculo con poda entre varios hilos si la consulta es pesada; si es null se usa un solo hilo.
+     */
+    private ParallelScorer parallelScorer;
 
-    public QueryProcessor(String query) {
+    /**
+     * Tiempo límite de la consulta; al pasar se detiene el cálculo de la similaridad, con un error si es estricto o
+     * conservando los mejores documentos encontrados si es un presupuesto de tiempo.
+     */
+    private Deadline deadline = Deadline.NONE;
+
+    public QueryProcessor(String query, IndexSearcher indexSearcher) {
         this.query = query;
+        this.indexSearcher = indexSearcher;
         this.queryTerms = new TreeMap<>();
-        this.stopWords = new LinkedList<>();
-        this.vocabulary = new TreeMap<>();
-        this.postings = new TreeMap<>();
-        this.similarityMap = new HashMap<>();
-        this.urls = new HashMap<>();
         this.results = new LinkedList<>();
-        this.loadStopWords();
     }
 
     /**
-     * Parsea la consulta, hace los calculos necesarios y obtiene los documentos
+     * Parsea la consulta, hace los calculos necesarios y obtiene todos los documentos
      */
-    public List<Pair<String, String>> manageQuery() {
-        double maxFreq = 1;
-        String[] text = this.query.split("-");
-        for (String term : text) {
-            term = term.trim();
-            if (!term.equals("") && !term.equals(" ") && term.length() <= 30 && !this.stopWords.contains(term)
-                    && !this.isSmallWord(term)) {
-                if (!queryTerms.containsKey(term)) {
-                    Query newQuery = new Query();
-                    newQuery.setFreq(1);
-                    queryTerms.put(term, newQuery);
-
-                } else {
-                    Query currentQuery = queryTerms.get(term);
-                    currentQuery.setFreq(currentQuery.getFreq() + 1);
-                    queryTerms.put(term, currentQuery);
-                    if (currentQuery.getFreq() > maxFreq) {
-                        maxFreq = currentQuery.getFreq();
-                    }
-                }
-            }
-        }
-        this.generateQueryValues(maxFreq);
-        this.loadPostingsFile();
-        this.loadUrlsFile();
-        this.getSimilarity();
-        System.out.println(results);
+    public List<ResultEntry> manageQuery() {
+        return this.manageQuery(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parsea la consulta con el mismo analizador de los documentos, hace los calculos necesarios y obtiene la
+     * página de documentos pedida
+     *
+     * @param offset cantidad de documentos que se saltan desde el inicio del ranking
+     * @param limit  cantidad máxima de documentos a devolver
+     */
+    public List<ResultEntry> manageQuery(int offset, int limit) {
+        this.prepareQuery();
+        this.getSimilarity(offset, limit);
         return this.results;
     }
 
     /**
-     * Asigna los valores de f y w a la consulta.
+     * Resuelve la consulta en uno de los shards del índice: obtiene los k documentos con mayor similaridad, con su
+     * nombre, url y similaridad, para mezclarlos con los de los demás shards. Para que las similaridades de todos los
+     * shards sean comparables se debe asignar antes el idf global con {@link #setInverseFrequencies(Map)}.
      */
-    private void generateQueryValues(double maxFreq) {
-        this.loadVocabularyFile();
-        for (Map.Entry<String, Query> word : this.queryTerms.entrySet()) {
-            Query currentQuery = word.getValue();
-            currentQuery.setF(currentQuery.getFreq() / maxFreq);
-            currentQuery.setW((0.5 + (0.5 * currentQuery.getFreq())) * vocabulary.get(word.getKey()));
+    public ShardResult manageShardQuery(int k) {
+        this.prepareQuery();
+        TopKCollector collector = this.collect(Math.min(k, this.indexSearcher.getDocumentCount()));
+        double[] scores = new double[collector.getSize()];
+        int[] topDocuments = collector.popSortedDocuments(scores);
+        List<ShardResult.Hit> hits = new ArrayList<>(topDocuments.length);
+        for (int i = 0; i < topDocuments.length; i++) {
+            hits.add(new ShardResult.Hit(topDocuments[i], this.indexSearcher.getDocumentName(topDocuments[i]),
+                    this.indexSearcher.getUrl(topDocuments[i]), scores[i]));
         }
+        return new ShardResult(hits, this.totalHits, this.isTotalHitsExact(), this.partial);
+    }
 
+    private void prepareQuery() {
+        this.parseQuery();
+        double maxFreq = 1;
+        for (Query currentQuery : queryTerms.values()) {
+            maxFreq = Math.max(maxFreq, currentQuery.getFreq());
+        }
+        this.generateQueryValues(maxFreq);
     }
 
     /**
-     * Verifica si una palabra tiene menos de 3 caracteres para no incluila como parte del vocabulario,
-     * pero si tiene 1 o 2 caracteres y es un número, entoces sí se incluyen.
-     *
-     * @param word
-     * @return
+     * Obtiene los términos de la consulta con el analizador y cuenta cuántas veces aparece cada uno. Se hace una sola
+     * vez por consulta.
      */
-    private boolean isSmallWord(String word) {
-        if (word.length() > 2) {
-            return false;
+    private void parseQuery() {
+        if (this.parsed) {
+            return;
         }
-        try {
-            Integer.parseInt(word);
-            return false;
-        } catch (NumberFormatException e) {
-            return true;
+        long start = System.nanoTime();
+        this.indexSearcher.getAnalyzer().analyzeQuery(this.query, term -> {
+            Query currentQuery = queryTerms.get(term);
+            if (currentQuery == null) {
+                currentQuery = new Query();
+                queryTerms.put(term, currentQuery);
+            }
+            currentQuery.setFreq(currentQuery.getFreq() + 1);
+        });
+        this.parsed = true;
+        ANALYSIS_TIMER.recordSince(start);
+    }
+
+    /**
+     * Representación de la consulta analizada: sus términos en orden, cada uno con su frecuencia. Las consultas con
+     * los mismos términos y frecuencias tienen la misma representación sin importar el orden de las palabras o los
+     * stopwords, así que obtienen los mismos resultados.
+     */
+    public String getNormalizedQuery() {
+        this.parseQuery();
+        StringBuilder normalizedQuery = new StringBuilder();
+        for (Map.Entry<String, Query> currentQuery : queryTerms.entrySet()) {
+            if (normalizedQuery.length() > 0) {
+                normalizedQuery.append(' ');
+            }
+            normalizedQuery.append(currentQuery.getKey()).append('^').append((int) currentQuery.getValue().getFreq());
         }
+        return normalizedQuery.toString();
+    }
+
+    /**
+     * Términos de la consulta analizada, en orden.
+     */
+    public Set<String> getTerms() {
+        this.parseQuery();
+        return Collections.unmodifiableSet(this.queryTerms.keySet());
     }
 
     /**
-     * Carga los "stopwords" del archivo correspondiente y los mete en una lista enlazada.
+     * Asigna los valores de f y w a la consulta.
      */
-    private void loadStopWords() {
-        try (Stream<String> stream = Files.lines(Paths.get(BASE_FILE_PATH + "stopwords.txt"))) {
-            stream.forEach(this.stopWords::add);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void generateQueryValues(double maxFreq) {
+        long start = System.nanoTime();
+        for (Map.Entry<String, Query> word : this.queryTerms.entrySet()) {
+            Query currentQuery = word.getValue();
+            currentQuery.setF(currentQuery.getFreq() / maxFreq);
+            Double idf = this.inverseFrequencies != null ? this.inverseFrequencies.get(word.getKey())
+                    : this.indexSearcher.getIdf(word.getKey());
+            currentQuery.setW(idf == null ? 0 : (0.5 + (0.5 * currentQuery.getFreq())) * idf);
         }
+        this.postingsTime += System.nanoTime() - start;
     }
 
     /**
-     * Carga los términos del archivo Vocabulary en un mapa junto con su frecuencia inversa/
-     **/
-    private void loadVocabularyFile() {
-        try (Stream<String> stream = Files.lines(Paths.get(BASE_FILE_PATH + "Results/Vocabulario.txt"))) {
-            stream.forEach(line -> {
-                this.vocabulary.put(line.substring(0, 30).trim(), Double.parseDouble(line.substring(43, line.length() - 1).trim()));
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+     * Calcula la similaridad entre la consulta y los documentos. Solo se conservan en un heap los offset + limit
+     * mejores documentos, y de ellos se devuelve la página pedida. Los documentos se manejan por identificador
+     * y solo se buscan el nombre y el url de los documentos de la página.
+     */
+    private void getSimilarity(int offset, int limit) {
+        TopKCollector collector = this.collect(
+                (int) Math.min((long) offset + limit, this.indexSearcher.getDocumentCount()));
+
+        long start = System.nanoTime();
+        double[] topScores = new double[collector.getSize()];
+        int[] topDocuments = collector.popSortedDocuments(topScores);
+        start = RANKING_TIMER.recordSince(start);
+        for (int i = offset; i < topDocuments.length; i++) {
+            this.results.add(new ResultEntry(this.indexSearcher.getDocumentName(topDocuments[i]),
+                    this.indexSearcher.getUrl(topDocuments[i]), topScores[i]));
         }
+        URLS_TIMER.recordSince(start);
     }
 
     /**
-     * Carga los documentos y terminos del archivo Postings en un mapa junto con su peso
-     **/
-    private void loadPostingsFile() {
-        try (Stream<String> stream = Files.lines(Paths.get(BASE_FILE_PATH + "Results/Postings.txt"))) {
-            stream.forEach(line -> {
-                String word = line.substring(0, 30).trim();
-                String documentName = line.substring(31, 62).trim();
-                double w = Double.parseDouble(line.substring(63, line.length() - 1).trim());
-                if (postings.containsKey(documentName)) {
-                    Map<String, Double> currentMap = postings.get(documentName);
-                    currentMap.put(word, w);
-                } else {
-                    Map<String, Double> values = new TreeMap<>();
-                    values.put(word, w);
-                    postings.put(documentName, values);
-                }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+     * Calcula la similaridad y conserva los k mejores documentos.
+     */
+    private TopKCollector collect(int k) {
+        // Un límite estricto que ya pasó detiene la consulta antes de empezar; con un presupuesto agotado se
+        // calcula hasta la primera revisión, para devolver al menos algunos documentos.
+        this.deadline.check();
+        TopKCollector collector = new TopKCollector(k);
+        if (this.pruning) {
+            this.scoreWithPruning(collector);
+        } else {
+            this.scoreExhaustively(collector);
         }
+        this.totalHits = collector.getTotalHits();
+        POSTINGS_TIMER.record(this.postingsTime);
+        POSTINGS_EVALUATED.add(this.postingsEvaluated);
+        return collector;
     }
 
     /**
-     * Calcula la similaridad entre la consulta y los documentos y los agrega a un mapa
+     * Calcula la similaridad de todos los documentos recorriendo completas las listas de postings de los términos
+     * de la consulta (término a término). Si se acaba el presupuesto de tiempo, las similaridades se calculan con
+     * los términos y postings que se alcanzaron a recorrer.
      */
-    private void getSimilarity() {
-        Map<String, Double> unsortedResults = new HashMap<>();
+    private void scoreExhaustively(TopKCollector collector) {
+        long start = System.nanoTime();
+        long postingsTime = 0;
+        double[] accumulators = new double[this.indexSearcher.getDocumentCount()];
+        List<Integer> touchedDocuments = new ArrayList<>();
 
-        for (Map.Entry<String, Map<String, Double>> currentDocument : this.postings.entrySet()) {
-            Map<String, Double> values = currentDocument.getValue();
-            double firstSum = 0.0;
-            double secondSum = 0.0;
-            double thirdSum = 0.0;
-            for (Map.Entry<String, Double> currentValue : values.entrySet()) {
-                secondSum += currentValue.getValue() * currentValue.getValue();
-                if (queryTerms.containsKey(currentValue.getKey())) {
-                    Query currentQuery = queryTerms.get(currentValue.getKey());
-                    firstSum += currentValue.getValue() * currentQuery.getW();
-                } else {
-                    firstSum += 0;
+        int remainingTerms = queryTerms.size();
+        terms:
+        for (Map.Entry<String, Query> currentQuery : queryTerms.entrySet()) {
+            remainingTerms--;
+            double queryWeight = currentQuery.getValue().getW();
+            long postingsStart = System.nanoTime();
+            PostingList postingList = this.indexSearcher.getPostingList(currentQuery.getKey());
+            postingsTime += System.nanoTime() - postingsStart;
+            if (postingList == null || queryWeight == 0) {
+                continue;
+            }
+            int scored = 0;
+            for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+                 document = postingList.next()) {
+                if ((++scored & 4095) == 0 && this.deadline.check()) {
+                    this.partial = true;
+                    this.postingsEvaluated += scored;
+                    break terms;
+                }
+                if (accumulators[document] == 0) {
+                    touchedDocuments.add(document);
                 }
+                accumulators[document] += postingList.weight() * queryWeight;
             }
-            for (Map.Entry<String, Query> currentQuery : queryTerms.entrySet()) {
-                thirdSum += currentQuery.getValue().getW() * currentQuery.getValue().getW();
+            this.postingsEvaluated += postingList.size();
+            if (remainingTerms > 0 && this.deadline.check()) {
+                this.partial = true;
+                break;
             }
-            double similarity = firstSum / (Math.sqrt(secondSum) * Math.sqrt(thirdSum));
+        }
+
+        double queryNorm = this.getQueryNorm();
+        for (int document : touchedDocuments) {
+            double similarity = accumulators[document] / (this.indexSearcher.getNorm(document) * queryNorm);
             if (similarity > 0) {
-                unsortedResults.put(currentDocument.getKey().trim(), similarity);
+                collector.collect(document, similarity);
+            }
+        }
+        this.postingsTime += postingsTime;
+        SCORING_TIMER.record(System.nanoTime() - start - postingsTime);
+    }
+
+    /**
+     * Calcula la similaridad documento a documento saltándose los documentos que no pueden entrar en el top k. Si
+     * hay un {@link ParallelScorer} y la consulta es pesada, los rangos de documentos se calculan en varios hilos y
+     * sus top k se mezclan en el colector.
+     */
+    private void scoreWithPruning(TopKCollector collector) {
+        long start = System.nanoTime();
+        List<String> terms = new ArrayList<>();
+        List<PostingList> postingLists = new ArrayList<>();
+        List<Double> queryWeights = new ArrayList<>();
+        long postings = 0;
+        for (Map.Entry<String, Query> currentQuery : queryTerms.entrySet()) {
+            PostingList postingList = this.indexSearcher.getPostingList(currentQuery.getKey());
+            if (postingList != null && currentQuery.getValue().getW() != 0) {
+                terms.add(currentQuery.getKey());
+                postingLists.add(postingList);
+                queryWeights.add(currentQuery.getValue().getW());
+                postings += postingList.size();
             }
-            this.similarityMap = unsortedResults.entrySet()
-                    .stream()
-                    .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
-                    .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue(), (e1, e2) -> e2, LinkedHashMap::new));
         }
+        long scoringStart = System.nanoTime();
+        this.postingsTime += scoringStart - start;
 
-        for (Map.Entry<String, Double> currentDocument : similarityMap.entrySet()) {
-            this.results.add(new Pair<>(currentDocument.getKey(), urls.get(currentDocument.getKey())));
+        double[] weights = queryWeights.stream().mapToDouble(Double::doubleValue).toArray();
+        double queryNorm = this.getQueryNorm();
+        int documentCount = this.indexSearcher.getDocumentCount();
+        int ranges = this.parallelScorer == null ? 1 : this.parallelScorer.getRanges(postings, documentCount);
+        if (ranges == 1) {
+            MaxScoreScorer scorer = new MaxScoreScorer(this.indexSearcher, postingLists.toArray(new PostingList[0]),
+                    weights, queryNorm, this.deadline);
+            scorer.score(collector);
+            this.postingsEvaluated = scorer.getPostingsEvaluated();
+            this.partial = scorer.isPartial();
+        } else {
+            int k = collector.getCapacity();
+            TopKCollector[] rangeCollectors = new TopKCollector[ranges];
+            List<MaxScoreScorer> scorers = this.parallelScorer.forEachRange(ranges, range -> {
+                // Cada rango recorre sus propios cursores; el primero reutiliza los que ya se obtuvieron.
+                PostingList[] rangePostingLists = new PostingList[terms.size()];
+                for (int i = 0; i < rangePostingLists.length; i++) {
+                    rangePostingLists[i] = range == 0 ? postingLists.get(i)
+                            : this.indexSearcher.getPostingList(terms.get(i));
+                }
+                MaxScoreScorer scorer = new MaxScoreScorer(this.indexSearcher, rangePostingLists, weights,
+                        queryNorm, this.deadline);
+                rangeCollectors[range] = new TopKCollector(k);
+                scorer.score(rangeCollectors[range], ParallelScorer.rangeStart(range, ranges, documentCount),
+                        ParallelScorer.rangeStart(range + 1, ranges, documentCount));
+                return scorer;
+            });
+            for (int range = 0; range < ranges; range++) {
+                collector.merge(rangeCollectors[range]);
+                this.postingsEvaluated += scorers.get(range).getPostingsEvaluated();
+                this.partial |= scorers.get(range).isPartial();
+            }
+            PARALLEL_QUERIES.increment();
         }
-        System.out.println(results);
+        SCORING_TIMER.recordSince(scoringStart);
     }
 
     /**
-     * Carga los urls de los archivos en un mapa
+     * Calcula la norma del vector de pesos de la consulta.
      */
-    private void loadUrlsFile() {
-        try (Stream<String> stream = Files.lines(Paths.get(BASE_FILE_PATH + "URLS.txt"))) {
-            stream.forEach(line -> {
-                String[] currentLine = line.split(" ");
-                currentLine[0] = currentLine[0].replace(".html", "").trim();
-                urls.put(currentLine[0], currentLine[1]);
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+    private double getQueryNorm() {
+        double thirdSum = 0.0;
+        for (Map.Entry<String, Query> currentQuery : queryTerms.entrySet()) {
+            thirdSum += currentQuery.getValue().getW() * currentQuery.getValue().getW();
         }
+        return Math.sqrt(thirdSum);
+    }
+
+    /**
+     * Cantidad total de documentos con similaridad mayor a cero, sin importar la página pedida. Con resultados
+     * parciales solo se cuentan los documentos recorridos.
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Indica si la cantidad total de documentos es exacta. Con la poda activa los documentos descartados no se
+     * cuentan, por lo que el total es solo una cota inferior.
+     */
+    public boolean isTotalHitsExact() {
+        return !pruning && !partial;
+    }
+
+    /**
+     * Indica si se acabó el presupuesto de tiempo antes de terminar el cálculo: los documentos son los mejores de
+     * los que se alcanzaron a recorrer, no necesariamente los mejores del índice.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Cantidad de entradas de postings que se leyeron para responder la consulta.
+     */
+    public long getPostingsEvaluated() {
+        return postingsEvaluated;
+    }
+
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Permite repartir el cálculo de las consultas pesadas entre varios hilos; solo se usa con la poda activa.
+     */
+    public void setParallelScorer(ParallelScorer parallelScorer) {
+        this.parallelScorer = parallelScorer;
     }
 
+    /**
+     * Asigna el tiempo límite de la consulta. Si pasa mientras se calcula la similaridad, el cálculo se detiene: con
+     * un límite estricto la consulta falla con una {@link ri.wse.support.exceptions.QueryTimeoutException}, y con un
+     * presupuesto de tiempo se devuelven los mejores documentos encontrados hasta ese momento (ver
+     * {@link #isPartial()}).
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
 
-    public static void main(String[] args) {
-        QueryProcessor q = new QueryProcessor("roger federer tennis");
-        q.manageQuery();
+    /**
+     * Asigna el idf de los términos calculado con las estadísticas de todos los shards del índice.
+     */
+    public void setInverseFrequencies(Map<String, Double> inverseFrequencies) {
+        this.inverseFrequencies = inverseFrequencies;
     }
 
 }
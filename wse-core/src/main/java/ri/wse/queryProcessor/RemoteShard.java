@@ -0,0 +1,138 @@
+package ri.wse.queryProcessor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.exceptions.ShardException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shard servido por otra instancia del servicio web (wse-ws), que se consulta por HTTP en /ws/shard/statistics y
+ * /ws/shard/search con cuerpos JSON.
+ */
+public class RemoteShard implements Shard {
+
+    /**
+     * Tiempos máximos para conectarse al shard y para recibir su respuesta, en milisegundos.
+     */
+    private static final int CONNECT_TIMEOUT = 2000;
+    private static final int READ_TIMEOUT = 10000;
+
+    private final String baseUrl;
+
+    /**
+     * @param baseUrl dirección de la instancia del shard, por ejemplo http://localhost:8081
+     */
+    public RemoteShard(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public ShardStatistics getStatistics(Collection<String> terms) {
+        JSONObject request = new JSONObject();
+        request.put("terms", new JSONArray(terms));
+        JSONObject response = this.post("/ws/shard/statistics", request, Deadline.NONE);
+
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        JSONObject frequencies = response.getJSONObject("documentFrequencies");
+        for (String term : frequencies.keySet()) {
+            documentFrequencies.put(term, frequencies.getInt(term));
+        }
+        // Las instancias que no conocen su número de shard no lo envían.
+        return new ShardStatistics(response.getLong("generation"), response.optInt("shard", -1),
+                response.optInt("shardCount", 0), response.getInt("documentCount"), documentFrequencies);
+    }
+
+    @Override
+    public ShardResult search(String query, Map<String, Double> inverseFrequencies, int k, Deadline deadline) {
+        JSONObject request = new JSONObject();
+        request.put("query", query);
+        request.put("inverseFrequencies", inverseFrequencies);
+        request.put("k", k);
+        if (deadline.isBounded()) {
+            request.put("timeout", Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos())));
+            request.put("partial", deadline.allowsPartialResults());
+        }
+        JSONObject response = this.post("/ws/shard/search", request, deadline);
+
+        JSONArray hitsArray = response.getJSONArray("hits");
+        List<ShardResult.Hit> hits = new ArrayList<>(hitsArray.length());
+        for (int i = 0; i < hitsArray.length(); i++) {
+            JSONObject hit = hitsArray.getJSONObject(i);
+            hits.add(new ShardResult.Hit(hit.getInt("document"), hit.getString("name"), hit.getString("url"),
+                    hit.getDouble("score")));
+        }
+        return new ShardResult(hits, response.getInt("totalHits"), response.getBoolean("totalHitsExact"),
+                response.optBoolean("partial"));
+    }
+
+    /**
+     * Envía una petición al shard; si la consulta tiene tiempo límite, la respuesta se espera a lo sumo hasta él (con
+     * un presupuesto de tiempo, un poco más, para recibir los resultados parciales del shard).
+     *
+     * @throws QueryTimeoutException si el shard no respondió antes del límite
+     */
+    private JSONObject post(String path, JSONObject request, Deadline deadline) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout((int) Math.max(1, Math.min(READ_TIMEOUT,
+                    TimeUnit.NANOSECONDS.toMillis(ShardedSearcher.getWaitNanos(deadline)))));
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                checkExpired(deadline);
+                throw new ShardException("El shard " + this.baseUrl + " respondió " + status + " a " + path);
+            }
+            try (InputStream input = connection.getInputStream()) {
+                return new JSONObject(read(input));
+            }
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            checkExpired(deadline);
+            throw new ShardException("No se pudo consultar el shard " + this.baseUrl, e);
+        }
+    }
+
+    private void checkExpired(Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw new QueryTimeoutException("El shard " + this.baseUrl + " no respondió a tiempo.");
+        }
+    }
+
+    private static String read(InputStream input) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            content.write(buffer, 0, read);
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+}
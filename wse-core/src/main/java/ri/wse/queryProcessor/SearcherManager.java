@@ -0,0 +1,123 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.indexStorage.PostingBlockCache;
+import ri.wse.support.exceptions.IndexException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica el {@link IndexSearcher} de la última confirmación del índice y lo cambia sin detener las consultas cuando
+ * el indexador confirma una generación nueva:
+ * -Cada consulta reserva el buscador actual con {@link #acquire()} y lo devuelve con {@link #release(IndexSearcher)}.
+ * -{@link #maybeRefresh()} abre la generación nueva reutilizando los segmentos que no cambiaron y la publica de una
+ * sola vez; las consultas en curso terminan con la generación anterior, que se libera al devolverse la última.
+ * Se crea como un bean único; al iniciar revisa el directorio del índice cada {@link #getRefreshInterval()}
+ * segundos y también se puede refrescar a pedido.
+ * Cada buscador reserva su confirmación del índice, así que el indexador no borra los segmentos que alguna consulta
+ * todavía usa; al liberarse el buscador se cierran sus segmentos y el indexador los borra en su siguiente
+ * confirmación.
+ */
+public class SearcherManager {
+
+    private volatile IndexSearcher current;
+
+    /**
+     * Segundos entre revisiones del directorio del índice; 0 para refrescar solo a pedido.
+     */
+    private long refreshInterval = 10;
+
+    private ScheduledExecutorService watcher;
+
+    public SearcherManager() {
+        this(new IndexSearcher());
+    }
+
+    /**
+     * @param basePath          dirección base de los archivos del índice
+     * @param postingBlockCache caché de bloques de postings que comparten todas las generaciones del índice
+     */
+    public SearcherManager(String basePath, PostingBlockCache postingBlockCache) {
+        this(new IndexSearcher(basePath, postingBlockCache));
+    }
+
+    public SearcherManager(IndexSearcher indexSearcher) {
+        this.current = indexSearcher;
+    }
+
+    /**
+     * Empieza a revisar el directorio del índice.
+     */
+    public void init() {
+        if (this.refreshInterval <= 0) {
+            return;
+        }
+        this.watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wse-index-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcher.scheduleWithFixedDelay(() -> {
+            try {
+                this.maybeRefresh();
+            } catch (IndexException e) {
+                // Se sigue respondiendo con la generación actual y se intenta de nuevo en la siguiente revisión.
+                e.printStackTrace();
+            }
+        }, this.refreshInterval, this.refreshInterval, TimeUnit.SECONDS);
+    }
+
+    public void destroy() {
+        if (this.watcher != null) {
+            this.watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Reserva el buscador actual. Siempre se debe devolver con {@link #release(IndexSearcher)}, aunque la consulta
+     * falle.
+     */
+    public IndexSearcher acquire() {
+        IndexSearcher indexSearcher;
+        do {
+            indexSearcher = this.current;
+        } while (!indexSearcher.tryIncRef());
+        return indexSearcher;
+    }
+
+    public void release(IndexSearcher indexSearcher) {
+        indexSearcher.decRef();
+    }
+
+    /**
+     * Publica la última confirmación del índice si cambió.
+     *
+     * @return true si se cambió de generación
+     */
+    public synchronized boolean maybeRefresh() {
+        IndexSearcher changed = this.current.openIfChanged();
+        if (changed == null) {
+            return false;
+        }
+        IndexSearcher previous = this.current;
+        this.current = changed;
+        previous.decRef();
+        return true;
+    }
+
+    /**
+     * Generación del índice que reciben las consultas nuevas.
+     */
+    public long getGeneration() {
+        return current.getGeneration();
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+}
@@ -0,0 +1,27 @@
+package ri.wse.queryProcessor;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Una parte del índice que responde consultas por sí sola, en este proceso o en otra instancia del servicio.
+ * Las consultas se resuelven en dos fases: primero se piden las estadísticas de los términos a todos los shards para
+ * calcular el idf global, y después se piden a todos los shards sus mejores documentos con ese idf.
+ */
+public interface Shard {
+
+    /**
+     * Obtiene la cantidad de documentos del shard y el df de los términos.
+     */
+    ShardStatistics getStatistics(Collection<String> terms);
+
+    /**
+     * Obtiene los k documentos del shard con mayor similaridad a la consulta.
+     *
+     * @param query              consulta, sin analizar
+     * @param inverseFrequencies idf global de los términos de la consulta
+     * @param k                  cantidad de documentos
+     * @param deadline           tiempo límite de la consulta
+     */
+    ShardResult search(String query, Map<String, Double> inverseFrequencies, int k, Deadline deadline);
+}
@@ -0,0 +1,77 @@
+package ri.wse.queryProcessor;
+
+import java.util.List;
+
+/**
+ * Mejores documentos de un shard para una consulta, ordenados de mayor a menor similaridad.
+ */
+public class ShardResult {
+
+    /**
+     * Documento encontrado en un shard.
+     */
+    public static class Hit {
+
+        private final int document;
+        private final String name;
+        private final String url;
+        private final double score;
+
+        /**
+         * @param document identificador del documento dentro del shard
+         */
+        public Hit(int document, String name, String url, double score) {
+            this.document = document;
+            this.name = name;
+            this.url = url;
+            this.score = score;
+        }
+
+        public int getDocument() {
+            return document;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private final List<Hit> hits;
+    private final int totalHits;
+    private final boolean totalHitsExact;
+    private final boolean partial;
+
+    public ShardResult(List<Hit> hits, int totalHits, boolean totalHitsExact, boolean partial) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.totalHitsExact = totalHitsExact;
+        this.partial = partial;
+    }
+
+    public List<Hit> getHits() {
+        return hits;
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * Indica si el shard agotó el presupuesto de tiempo antes de terminar el cálculo.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+}
@@ -0,0 +1,52 @@
+package ri.wse.queryProcessor;
+
+import java.util.Map;
+
+/**
+ * Estadísticas de un shard con las que se calcula el idf global de los términos de una consulta. También tienen el
+ * número del shard que le asignó el indexador, con el que se calcula el identificador global de sus documentos.
+ */
+public class ShardStatistics {
+
+    private final long generation;
+    private final int shard;
+    private final int shardCount;
+    private final int documentCount;
+    private final Map<String, Integer> documentFrequencies;
+
+    /**
+     * @param generation          generación del índice del shard
+     * @param shard               número del shard en el índice repartido, o -1 si no se conoce
+     * @param shardCount          cantidad de shards del índice repartido, o 0 si no se conoce
+     * @param documentCount       cantidad de documentos vivos del shard (igual que el idf local)
+     * @param documentFrequencies cantidad de documentos vivos del shard en los que aparece cada término
+     */
+    public ShardStatistics(long generation, int shard, int shardCount, int documentCount,
+                           Map<String, Integer> documentFrequencies) {
+        this.generation = generation;
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.documentCount = documentCount;
+        this.documentFrequencies = documentFrequencies;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public Map<String, Integer> getDocumentFrequencies() {
+        return documentFrequencies;
+    }
+}
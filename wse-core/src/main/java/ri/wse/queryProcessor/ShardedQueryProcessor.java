@@ -0,0 +1,192 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.model.ResultEntry;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import java.util.*;
+
+/**
+ * Procesa una consulta sobre un índice repartido en shards (ver {@link ShardedSearcher}). Se crea uno por consulta:
+ * -Analiza la consulta con el analizador de esta instancia, el mismo de todos los shards.
+ * -Pide a todos los shards la cantidad de documentos y el df de los términos y calcula el idf global con sus
+ * sumas, de modo que las similaridades son las mismas que con el índice sin repartir.
+ * -Pide a cada shard sus offset + limit mejores documentos con ese idf y los mezcla por similaridad; en caso de
+ * empate queda primero el documento con menor identificador global. El indexador pone el documento d en el shard
+ * d % shards con el identificador d / shards, así que el identificador global de un documento es
+ * local * shards + shard, con el número de shard que informa cada uno en sus estadísticas, y los empates se
+ * resuelven igual que en el índice sin repartir sin importar el orden en que se configuraron los shards.
+ */
+public class ShardedQueryProcessor {
+
+    private static final Timer STATISTICS_TIMER = Metrics.timer("query.shards.statistics");
+    private static final Timer SEARCH_TIMER = Metrics.timer("query.shards.search");
+    private static final Timer MERGE_TIMER = Metrics.timer("query.shards.merge");
+
+    private final String query;
+    private final ShardedSearcher shardedSearcher;
+
+    private String normalizedQuery;
+    private Set<String> terms;
+    private Map<String, Double> inverseFrequencies;
+    private int[] shardNumbers;
+    private int totalHits;
+    private boolean totalHitsExact;
+    private boolean partial;
+    private Deadline deadline = Deadline.NONE;
+
+    public ShardedQueryProcessor(String query, ShardedSearcher shardedSearcher) {
+        this.query = query;
+        this.shardedSearcher = shardedSearcher;
+    }
+
+    /**
+     * Representación de la consulta analizada, la misma de {@link QueryProcessor#getNormalizedQuery()}.
+     */
+    public String getNormalizedQuery() {
+        this.parseQuery();
+        return normalizedQuery;
+    }
+
+    /**
+     * Obtiene la página de documentos pedida de todos los shards.
+     *
+     * @param offset cantidad de documentos que se saltan desde el inicio del ranking
+     * @param limit  cantidad máxima de documentos a devolver
+     */
+    public List<ResultEntry> manageQuery(int offset, int limit) {
+        this.calculateInverseFrequencies();
+        int k = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        long start = System.nanoTime();
+        List<ShardResult> shardResults = this.shardedSearcher.forEachShard(
+                shard -> shard.search(this.query, this.inverseFrequencies, k, this.deadline), this.deadline);
+        start = SEARCH_TIMER.recordSince(start);
+
+        this.totalHits = 0;
+        this.totalHitsExact = true;
+        this.partial = false;
+        int shards = shardResults.size();
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((first, second) -> {
+            int comparison = Double.compare(hit(shardResults, second).getScore(), hit(shardResults, first).getScore());
+            return comparison != 0 ? comparison : Long.compare(this.globalDocument(shardResults, first, shards),
+                    this.globalDocument(shardResults, second, shards));
+        });
+        for (int shard = 0; shard < shardResults.size(); shard++) {
+            ShardResult shardResult = shardResults.get(shard);
+            if (shardResult == null) {
+                this.partial = true;
+                this.totalHitsExact = false;
+                continue;
+            }
+            this.partial |= shardResult.isPartial();
+            this.totalHits += shardResult.getTotalHits();
+            this.totalHitsExact &= shardResult.isTotalHitsExact();
+            if (!shardResult.getHits().isEmpty()) {
+                cursors.add(new int[]{shard, 0});
+            }
+        }
+
+        List<ResultEntry> results = new LinkedList<>();
+        for (int rank = 0; rank < k && !cursors.isEmpty(); rank++) {
+            int[] cursor = cursors.poll();
+            List<ShardResult.Hit> hits = shardResults.get(cursor[0]).getHits();
+            if (rank >= offset) {
+                ShardResult.Hit hit = hits.get(cursor[1]);
+                results.add(new ResultEntry(hit.getName(), hit.getUrl(), hit.getScore()));
+            }
+            if (++cursor[1] < hits.size()) {
+                cursors.add(cursor);
+            }
+        }
+        MERGE_TIMER.recordSince(start);
+        return results;
+    }
+
+    private static ShardResult.Hit hit(List<ShardResult> shardResults, int[] cursor) {
+        return shardResults.get(cursor[0]).getHits().get(cursor[1]);
+    }
+
+    /**
+     * Identificador del documento de un cursor en el índice sin repartir.
+     */
+    private long globalDocument(List<ShardResult> shardResults, int[] cursor, int shards) {
+        return (long) hit(shardResults, cursor).getDocument() * shards + this.shardNumbers[cursor[0]];
+    }
+
+    private void parseQuery() {
+        if (this.terms != null) {
+            return;
+        }
+        SearcherManager searcherManager = this.shardedSearcher.getSearcherManager();
+        IndexSearcher indexSearcher = searcherManager.acquire();
+        try {
+            QueryProcessor queryProcessor = new QueryProcessor(this.query, indexSearcher);
+            this.normalizedQuery = queryProcessor.getNormalizedQuery();
+            this.terms = new TreeSet<>(queryProcessor.getTerms());
+        } finally {
+            searcherManager.release(indexSearcher);
+        }
+    }
+
+    /**
+     * Calcula el idf global de los términos y el número de cada shard con las estadísticas de todos los shards. Se
+     * hace una sola vez por consulta.
+     */
+    private void calculateInverseFrequencies() {
+        if (this.inverseFrequencies != null) {
+            return;
+        }
+        this.parseQuery();
+        long start = System.nanoTime();
+        List<ShardStatistics> statistics = this.shardedSearcher.forEachShard(shard -> shard.getStatistics(this.terms),
+                this.deadline.allowsPartialResults() ? Deadline.NONE : this.deadline);
+        this.shardNumbers = ShardedSearcher.getShardNumbers(statistics);
+        long documentCount = 0;
+        Map<String, Long> documentFrequencies = new HashMap<>();
+        for (ShardStatistics shardStatistics : statistics) {
+            documentCount += shardStatistics.getDocumentCount();
+            shardStatistics.getDocumentFrequencies().forEach((term, documentFrequency) ->
+                    documentFrequencies.merge(term, (long) documentFrequency, Long::sum));
+        }
+        this.inverseFrequencies = new HashMap<>();
+        for (String term : this.terms) {
+            long documentFrequency = documentFrequencies.getOrDefault(term, 0L);
+            if (documentFrequency > 0) {
+                this.inverseFrequencies.put(term, Math.log10((double) documentCount / documentFrequency));
+            }
+        }
+        STATISTICS_TIMER.recordSince(start);
+    }
+
+    /**
+     * Asigna el tiempo límite de la consulta. Con un límite estricto, los shards que no respondan a tiempo se
+     * cancelan y la consulta falla con una {@link ri.wse.support.exceptions.QueryTimeoutException}. Con un
+     * presupuesto de tiempo cada shard devuelve lo que encontró al agotarlo y los que no responden se omiten (ver
+     * {@link #isPartial()}); las estadísticas de los términos se esperan siempre de todos los shards, ya que sin
+     * ellas el idf no sería el mismo.
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cantidad total de documentos con similaridad mayor a cero en todos los shards.
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Indica si la cantidad total de documentos es exacta en todos los shards.
+     */
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * Indica si algún shard agotó el presupuesto de tiempo o no respondió a tiempo.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+}
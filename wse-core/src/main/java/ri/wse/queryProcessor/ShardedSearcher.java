@@ -0,0 +1,274 @@
+package ri.wse.queryProcessor;
+
+import ri.wse.indexStorage.PostingBlockCache;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.exceptions.ShardException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Reparte las consultas entre los shards del índice y espera sus respuestas en paralelo (ver
+ * {@link ShardedQueryProcessor}). Los shards se configuran con una lista separada por comas donde cada elemento es:
+ * -"local": el índice de esta instancia, el mismo que publica el {@link SearcherManager} recibido.
+ * -Una dirección http:// o https://: otra instancia del servicio web que sirve un shard (ver {@link RemoteShard}).
+ * -Un directorio base (con stopwords.txt y Results): un shard que se abre en este proceso, con su propio
+ * {@link SearcherManager} que comparte el caché de bloques de postings.
+ * Con la lista vacía el índice no está repartido y las consultas se resuelven solo con el índice de esta instancia.
+ * Los shards se pueden configurar en cualquier orden: cada uno informa el número que le asignó el indexador (ver
+ * {@link #getShardNumbers(List)}).
+ * Se crea como un bean único; el primer shard se consulta en el hilo de la consulta y los demás en hilos propios.
+ * Al iniciar revisa la generación de los shards cada {@link SearcherManager#getRefreshInterval()} segundos, así
+ * las consultas no tienen que pedirla a todos los shards para buscar en la caché.
+ */
+public class ShardedSearcher {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Tiempo extra que se esperan los resultados parciales de los shards después de agotado el presupuesto de tiempo
+     * de la consulta, en nanosegundos.
+     */
+    private static final long BUDGET_GRACE = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final SearcherManager searcherManager;
+    private final List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Buscadores de los shards abiertos en este proceso, que se refrescan junto con el de esta instancia.
+     */
+    private final List<SearcherManager> openedSearcherManagers = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService watcher;
+
+    /**
+     * Última generación del índice repartido, o -1 si todavía no se obtuvo.
+     */
+    private volatile long generation = -1;
+
+    /**
+     * @param searcherManager   buscador del índice de esta instancia; su analizador se usa para las consultas
+     * @param shards            lista de shards separados por comas, o vacía si el índice no está repartido
+     * @param postingBlockCache caché de bloques de postings de los shards que se abren en este proceso
+     */
+    public ShardedSearcher(SearcherManager searcherManager, String shards, PostingBlockCache postingBlockCache) {
+        this.searcherManager = searcherManager;
+        for (String shard : shards.split(",")) {
+            shard = shard.trim();
+            if (shard.isEmpty()) {
+                continue;
+            }
+            if (shard.equals("local")) {
+                this.shards.add(new LocalShard(searcherManager));
+            } else if (shard.startsWith("http://") || shard.startsWith("https://")) {
+                this.shards.add(new RemoteShard(shard));
+            } else {
+                String basePath = shard.endsWith("/") || shard.endsWith("\\") ? shard : shard + File.separator;
+                SearcherManager shardSearcherManager = new SearcherManager(basePath, postingBlockCache);
+                shardSearcherManager.setRefreshInterval(searcherManager.getRefreshInterval());
+                this.openedSearcherManagers.add(shardSearcherManager);
+                this.shards.add(new LocalShard(shardSearcherManager));
+            }
+        }
+    }
+
+    public void init() {
+        for (SearcherManager openedSearcherManager : this.openedSearcherManagers) {
+            openedSearcherManager.init();
+        }
+        if (this.shards.size() > 1) {
+            this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "wse-shard-" + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long refreshInterval = this.searcherManager.getRefreshInterval();
+        if (this.isSharded() && refreshInterval > 0) {
+            this.watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wse-shard-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.watcher.scheduleWithFixedDelay(() -> {
+                try {
+                    this.refreshGeneration();
+                } catch (RuntimeException e) {
+                    // Se sigue usando la generación anterior y se intenta de nuevo en la siguiente revisión.
+                    e.printStackTrace();
+                }
+            }, 0, refreshInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    public void destroy() {
+        if (this.watcher != null) {
+            this.watcher.shutdownNow();
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+        for (SearcherManager openedSearcherManager : this.openedSearcherManagers) {
+            openedSearcherManager.destroy();
+        }
+    }
+
+    /**
+     * Indica si las consultas se reparten entre shards.
+     */
+    public boolean isSharded() {
+        return !this.shards.isEmpty();
+    }
+
+    public List<Shard> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * Buscador del índice de esta instancia, con el que se analizan las consultas.
+     */
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * Generación del índice repartido: la suma de las generaciones de los shards, que cambia cuando cambia
+     * cualquiera de ellos. Es la que se obtuvo en la última revisión, así que puede estar atrasada hasta
+     * {@link SearcherManager#getRefreshInterval()} segundos; si todavía no se obtuvo se pide a los shards.
+     */
+    public long getGeneration() {
+        long current = this.generation;
+        if (current < 0) {
+            this.refreshGeneration();
+            current = this.generation;
+        }
+        return current;
+    }
+
+    /**
+     * Pide la generación a todos los shards y verifica que sus números formen un índice repartido completo.
+     *
+     * @return true si la generación cambió
+     * @throws ShardException si los números de los shards no corresponden a un mismo índice repartido
+     */
+    public boolean refreshGeneration() {
+        List<ShardStatistics> statistics = this.forEachShard(
+                shard -> shard.getStatistics(Collections.emptySet()), Deadline.NONE);
+        getShardNumbers(statistics);
+        long current = 0;
+        for (ShardStatistics shardStatistics : statistics) {
+            current += shardStatistics.getGeneration();
+        }
+        long previous = this.generation;
+        this.generation = current;
+        return previous != current;
+    }
+
+    /**
+     * Número que el indexador asignó a cada shard, en el orden en que se configuraron. Si ningún shard conoce su
+     * número se usa el orden de la configuración.
+     *
+     * @param statistics estadísticas de todos los shards, en el orden de los shards
+     * @throws ShardException si solo algunos shards conocen su número, si los números se repiten o si no
+     *                        corresponden a la cantidad de shards configurados
+     */
+    static int[] getShardNumbers(List<ShardStatistics> statistics) {
+        int shards = statistics.size();
+        int[] shardNumbers = new int[shards];
+        boolean[] seen = new boolean[shards];
+        int known = 0;
+        for (int i = 0; i < shards; i++) {
+            ShardStatistics shardStatistics = statistics.get(i);
+            if (shardStatistics.getShard() < 0) {
+                shardNumbers[i] = i;
+                continue;
+            }
+            int shard = shardStatistics.getShard();
+            if (shardStatistics.getShardCount() != shards || shard >= shards || seen[shard]) {
+                throw new ShardException("El shard configurado en la posición " + i + " es el shard " + shard
+                        + " de " + shardStatistics.getShardCount() + ", pero se configuraron " + shards
+                        + " shards.");
+            }
+            seen[shard] = true;
+            shardNumbers[i] = shard;
+            known++;
+        }
+        if (known != 0 && known != shards) {
+            throw new ShardException("Solo " + known + " de los " + shards + " shards conocen su número.");
+        }
+        return shardNumbers;
+    }
+
+    /**
+     * Ejecuta una tarea en todos los shards a la vez y espera sus resultados. Si un shard falla o pasa un tiempo
+     * límite estricto, se cancelan las tareas de los demás y la consulta falla. Con un presupuesto de tiempo los
+     * shards que no responden a tiempo se omiten.
+     *
+     * @return el resultado de cada shard, en el orden de los shards; null en los shards omitidos
+     * @throws QueryTimeoutException si pasa un tiempo límite estricto antes de que respondan todos los shards
+     */
+    <T> List<T> forEachShard(Function<Shard, T> task, Deadline deadline) {
+        List<Future<T>> futures = new ArrayList<>(this.shards.size());
+        for (int i = 1; i < this.shards.size(); i++) {
+            Shard shard = this.shards.get(i);
+            futures.add(this.executor.submit(() -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(this.shards.size());
+        try {
+            results.add(task.apply(this.shards.get(0)));
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get(getWaitNanos(deadline), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    if (!deadline.allowsPartialResults()) {
+                        throw new QueryTimeoutException("La consulta superó su tiempo límite.", e);
+                    }
+                    results.add(null);
+                } catch (ExecutionException e) {
+                    if (!deadline.allowsPartialResults() || !(e.getCause() instanceof QueryTimeoutException)) {
+                        throw e;
+                    }
+                    results.add(null);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShardException("Se interrumpió la consulta a los shards.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ShardException(e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Tiempo que se espera la respuesta de un shard: lo que falta para el límite, más {@link #BUDGET_GRACE} con un
+     * presupuesto de tiempo, ya que los shards responden sus resultados parciales justo al agotarlo.
+     */
+    static long getWaitNanos(Deadline deadline) {
+        long remaining = deadline.remainingNanos();
+        if (!deadline.isBounded() || !deadline.allowsPartialResults()) {
+            return remaining;
+        }
+        return remaining + BUDGET_GRACE;
+    }
+}
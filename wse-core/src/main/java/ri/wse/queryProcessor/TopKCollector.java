@@ -0,0 +1,159 @@
+package ri.wse.queryProcessor;
+
+/**
+ * Mantiene únicamente los k documentos con mayor similaridad usando un min-heap de tamaño fijo, de modo que nunca
+ * se guarda ni se ordena la lista completa de documentos que coinciden con la consulta. También cuenta la cantidad
+ * total de documentos encontrados para poder paginar.
+ * En caso de empate queda primero el documento con menor identificador.
+ */
+public class TopKCollector {
+
+    private final int[] documents;
+    private final double[] scores;
+    private int size;
+    private int totalHits;
+
+    public TopKCollector(int k) {
+        this.documents = new int[k];
+        this.scores = new double[k];
+    }
+
+    /**
+     * Agrega un documento con su similaridad; si el heap está lleno solo entra si supera al peor documento.
+     *
+     * @param document identificador del documento
+     * @param score    similaridad del documento con la consulta
+     */
+    public void collect(int document, double score) {
+        this.totalHits++;
+        if (this.size < this.documents.length) {
+            this.documents[this.size] = document;
+            this.scores[this.size] = score;
+            this.siftUp(this.size++);
+        } else if (this.documents.length > 0 && this.isBetter(document, score, 0)) {
+            this.documents[0] = document;
+            this.scores[0] = score;
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * Agrega los documentos de otro colector, por ejemplo el de otro rango de documentos de la misma consulta, y suma
+     * su cantidad total de documentos. El otro colector queda vacío.
+     */
+    public void merge(TopKCollector other) {
+        int otherTotalHits = other.totalHits;
+        double[] otherScores = new double[other.size];
+        int[] otherDocuments = other.popSortedDocuments(otherScores);
+        for (int i = 0; i < otherDocuments.length; i++) {
+            this.collect(otherDocuments[i], otherScores[i]);
+        }
+        this.totalHits += otherTotalHits - otherDocuments.length;
+    }
+
+    /**
+     * Indica si el heap ya contiene k documentos.
+     */
+    public boolean isFull() {
+        return this.size == this.documents.length;
+    }
+
+    /**
+     * Similaridad mínima que debe superar un documento para entrar en el heap.
+     */
+    public double getThreshold() {
+        return this.isFull() && this.size > 0 ? this.scores[0] : 0;
+    }
+
+    public int getTotalHits() {
+        return this.totalHits;
+    }
+
+    /**
+     * Cantidad máxima de documentos que se conservan (k).
+     */
+    public int getCapacity() {
+        return this.documents.length;
+    }
+
+    /**
+     * Cantidad de documentos en el heap.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Vacía el heap y devuelve los identificadores de los documentos ordenados de mayor a menor similaridad.
+     */
+    public int[] popSortedDocuments() {
+        return this.popSortedDocuments(null);
+    }
+
+    /**
+     * Vacía el heap y devuelve los identificadores de los documentos ordenados de mayor a menor similaridad.
+     *
+     * @param sortedScores arreglo de al menos {@link #getSize()} posiciones donde se copia la similaridad de cada
+     *                     documento en el mismo orden, o null
+     */
+    public int[] popSortedDocuments(double[] sortedScores) {
+        int[] sorted = new int[this.size];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = this.documents[0];
+            if (sortedScores != null) {
+                sortedScores[i] = this.scores[0];
+            }
+            this.size--;
+            this.documents[0] = this.documents[this.size];
+            this.scores[0] = this.scores[this.size];
+            this.siftDown(0);
+        }
+        return sorted;
+    }
+
+    /**
+     * Indica si el documento recibido es mejor que el documento del heap en la posición dada.
+     */
+    private boolean isBetter(int document, double score, int position) {
+        return score > this.scores[position] || (score == this.scores[position] && document < this.documents[position]);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!this.isBetter(this.documents[parent], this.scores[parent], position)) {
+                break;
+            }
+            this.swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < this.size && this.isBetter(this.documents[smallest], this.scores[smallest], left)) {
+                smallest = left;
+            }
+            if (right < this.size && this.isBetter(this.documents[smallest], this.scores[smallest], right)) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            this.swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int document = this.documents[i];
+        this.documents[i] = this.documents[j];
+        this.documents[j] = document;
+        double score = this.scores[i];
+        this.scores[i] = this.scores[j];
+        this.scores[j] = score;
+    }
+}
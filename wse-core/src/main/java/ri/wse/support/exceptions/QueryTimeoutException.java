@@ -0,0 +1,38 @@
+package ri.wse.support.exceptions;
+
+public class QueryTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default constructor
+     */
+    public QueryTimeoutException() {
+    }
+
+    /**
+     * Creates a new exception with the specified message
+     * @param message the message to display
+     */
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new exception with the specified wrapped exception
+     * @param cause the cause of the exception
+     */
+    public QueryTimeoutException(Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Creates a new exception with the specified message and wrapped exception
+     * @param message the message to display
+     * @param cause the cause of the exception
+     */
+    public QueryTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
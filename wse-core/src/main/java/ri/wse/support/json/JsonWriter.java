@@ -0,0 +1,139 @@
+package ri.wse.support.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base de los escritores de JSON que escriben directamente en un flujo de salida, sin reflexión y sin armar el
+ * documento en un String: los caracteres se codifican a UTF-8 en un búfer de bytes que se vacía en el flujo cada vez
+ * que se llena. Cada subclase escribe un esquema fijo; se crea una por respuesta y no cierra el flujo.
+ */
+public abstract class JsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    protected JsonWriter(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Escribe una cadena entre comillas, con los caracteres de escape de JSON.
+     */
+    protected void writeString(String value) throws IOException {
+        if (value == null) {
+            this.writeAscii("null");
+            return;
+        }
+        this.writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                this.writeByte(c);
+            } else if (c < 0x80) {
+                this.writeEscape(c);
+            } else if (c < 0x800) {
+                this.writeByte(0xC0 | (c >> 6));
+                this.writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.writeByte(0xF0 | (codePoint >> 18));
+                this.writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                this.writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                this.writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Un sustituto sin pareja no se puede codificar en UTF-8; se escribe como escape.
+                this.writeEscape(c);
+            } else {
+                this.writeByte(0xE0 | (c >> 12));
+                this.writeByte(0x80 | ((c >> 6) & 0x3F));
+                this.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        this.writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        this.writeByte('\\');
+        switch (c) {
+            case '"':
+                this.writeByte('"');
+                break;
+            case '\\':
+                this.writeByte('\\');
+                break;
+            case '\n':
+                this.writeByte('n');
+                break;
+            case '\r':
+                this.writeByte('r');
+                break;
+            case '\t':
+                this.writeByte('t');
+                break;
+            case '\b':
+                this.writeByte('b');
+                break;
+            case '\f':
+                this.writeByte('f');
+                break;
+            default:
+                this.writeByte('u');
+                this.writeByte(HEX[(c >> 12) & 0xF]);
+                this.writeByte(HEX[(c >> 8) & 0xF]);
+                this.writeByte(HEX[(c >> 4) & 0xF]);
+                this.writeByte(HEX[c & 0xF]);
+        }
+    }
+
+    /**
+     * Escribe un número; JSON no admite NaN ni infinitos, que se escriben como 0.
+     */
+    protected void writeNumber(double value) throws IOException {
+        this.writeAscii(Double.isNaN(value) || Double.isInfinite(value) ? "0" : Double.toString(value));
+    }
+
+    protected void writeNumber(long value) throws IOException {
+        this.writeAscii(Long.toString(value));
+    }
+
+    protected void writeBoolean(boolean value) throws IOException {
+        this.writeAscii(value ? "true" : "false");
+    }
+
+    /**
+     * Escribe texto que ya es JSON válido y solo tiene caracteres ASCII, como la sintaxis y los nombres de campos.
+     */
+    protected void writeAscii(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            this.writeByte(value.charAt(i));
+        }
+    }
+
+    protected void writeByte(int value) throws IOException {
+        if (this.position == BUFFER_SIZE) {
+            this.output.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    /**
+     * Vacía el búfer en el flujo.
+     */
+    public void flush() throws IOException {
+        if (this.position > 0) {
+            this.output.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+        this.output.flush();
+    }
+}
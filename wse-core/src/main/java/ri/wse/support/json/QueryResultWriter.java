@@ -0,0 +1,52 @@
+package ri.wse.support.json;
+
+import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Escribe una página de resultados como JSON directamente en un flujo de salida. El esquema es fijo:
+ * {"queryResults":[{"name":"...","url":"...","score":0.42}],"totalHits":120,"totalHitsExact":false,"offset":0,
+ * "limit":10,"partial":false}
+ * Se crea uno por respuesta; no cierra el flujo.
+ */
+public class QueryResultWriter extends JsonWriter {
+
+    public QueryResultWriter(OutputStream output) {
+        super(output);
+    }
+
+    /**
+     * Escribe la página completa y vacía el búfer en el flujo.
+     */
+    public void write(QueryResult queryResult) throws IOException {
+        List<ResultEntry> queryResults = queryResult.getQueryResults();
+        this.writeAscii("{\"queryResults\":[");
+        boolean first = true;
+        for (ResultEntry result : queryResults) {
+            this.writeAscii(first ? "{\"name\":" : ",{\"name\":");
+            this.writeString(result.getName());
+            this.writeAscii(",\"url\":");
+            this.writeString(result.getUrl());
+            this.writeAscii(",\"score\":");
+            this.writeNumber(result.getScore());
+            this.writeByte('}');
+            first = false;
+        }
+        this.writeAscii("],\"totalHits\":");
+        this.writeNumber(queryResult.getTotalHits());
+        this.writeAscii(",\"totalHitsExact\":");
+        this.writeBoolean(queryResult.isTotalHitsExact());
+        this.writeAscii(",\"offset\":");
+        this.writeNumber(queryResult.getOffset());
+        this.writeAscii(",\"limit\":");
+        this.writeNumber(queryResult.getLimit());
+        this.writeAscii(",\"partial\":");
+        this.writeBoolean(queryResult.isPartial());
+        this.writeByte('}');
+        this.flush();
+    }
+}
@@ -0,0 +1,48 @@
+package ri.wse.support.json;
+
+import ri.wse.queryProcessor.ShardResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe los mejores documentos de un shard como JSON directamente en un flujo de salida, con el esquema que lee
+ * {@link ri.wse.queryProcessor.RemoteShard}:
+ * {"hits":[{"document":7,"name":"...","url":"...","score":0.42}],"totalHits":120,"totalHitsExact":false,
+ * "partial":false}
+ * Se crea uno por respuesta; no cierra el flujo.
+ */
+public class ShardResultWriter extends JsonWriter {
+
+    public ShardResultWriter(OutputStream output) {
+        super(output);
+    }
+
+    /**
+     * Escribe el resultado completo y vacía el búfer en el flujo.
+     */
+    public void write(ShardResult shardResult) throws IOException {
+        this.writeAscii("{\"hits\":[");
+        boolean first = true;
+        for (ShardResult.Hit hit : shardResult.getHits()) {
+            this.writeAscii(first ? "{\"document\":" : ",{\"document\":");
+            this.writeNumber(hit.getDocument());
+            this.writeAscii(",\"name\":");
+            this.writeString(hit.getName());
+            this.writeAscii(",\"url\":");
+            this.writeString(hit.getUrl());
+            this.writeAscii(",\"score\":");
+            this.writeNumber(hit.getScore());
+            this.writeByte('}');
+            first = false;
+        }
+        this.writeAscii("],\"totalHits\":");
+        this.writeNumber(shardResult.getTotalHits());
+        this.writeAscii(",\"totalHitsExact\":");
+        this.writeBoolean(shardResult.isTotalHitsExact());
+        this.writeAscii(",\"partial\":");
+        this.writeBoolean(shardResult.isPartial());
+        this.writeByte('}');
+        this.flush();
+    }
+}
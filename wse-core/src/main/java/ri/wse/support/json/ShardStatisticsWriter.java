@@ -0,0 +1,47 @@
+package ri.wse.support.json;
+
+import ri.wse.queryProcessor.ShardStatistics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Escribe las estadísticas de un shard como JSON directamente en un flujo de salida, con el esquema que lee
+ * {@link ri.wse.queryProcessor.RemoteShard}:
+ * {"generation":3,"shard":1,"shardCount":3,"documentCount":1200,"documentFrequencies":{"termino":15}}
+ * Se crea uno por respuesta; no cierra el flujo.
+ */
+public class ShardStatisticsWriter extends JsonWriter {
+
+    public ShardStatisticsWriter(OutputStream output) {
+        super(output);
+    }
+
+    /**
+     * Escribe las estadísticas completas y vacía el búfer en el flujo.
+     */
+    public void write(ShardStatistics shardStatistics) throws IOException {
+        this.writeAscii("{\"generation\":");
+        this.writeNumber(shardStatistics.getGeneration());
+        this.writeAscii(",\"shard\":");
+        this.writeNumber(shardStatistics.getShard());
+        this.writeAscii(",\"shardCount\":");
+        this.writeNumber(shardStatistics.getShardCount());
+        this.writeAscii(",\"documentCount\":");
+        this.writeNumber(shardStatistics.getDocumentCount());
+        this.writeAscii(",\"documentFrequencies\":{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> frequency : shardStatistics.getDocumentFrequencies().entrySet()) {
+            if (!first) {
+                this.writeByte(',');
+            }
+            this.writeString(frequency.getKey());
+            this.writeByte(':');
+            this.writeNumber(frequency.getValue());
+            first = false;
+        }
+        this.writeAscii("}}");
+        this.flush();
+    }
+}
@@ -0,0 +1,59 @@
+package ri.wse.support.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de los tiempos y contadores de las etapas de la indexación y de las consultas. Es global para que las
+ * clases que no son beans (el indexador, el procesador de consultas) registren sus etapas sin recibir el registro;
+ * cada etapa guarda su {@link Timer} en una constante, así que el registro solo se consulta al crearla.
+ * Los nombres de las etapas empiezan con "index." o "query.".
+ */
+public final class Metrics {
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Obtiene el tiempo de una etapa, creándolo si no existe.
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Obtiene un contador, creándolo si no existe.
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, counterName -> new LongAdder());
+    }
+
+    /**
+     * Tiempos de todas las etapas, ordenados por nombre.
+     */
+    public static Map<String, Timer> getTimers() {
+        return new TreeMap<>(TIMERS);
+    }
+
+    /**
+     * Valores de todos los contadores, ordenados por nombre.
+     */
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        return counters;
+    }
+
+    /**
+     * Borra los valores registrados, sin borrar las etapas ni los contadores.
+     */
+    public static void reset() {
+        TIMERS.values().forEach(Timer::reset);
+        COUNTERS.values().forEach(LongAdder::reset);
+    }
+}
@@ -0,0 +1,145 @@
+package ri.wse.support.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide la duración de una etapa. Las duraciones se cuentan en un histograma de cubetas logarítmicas: cada potencia
+ * de dos de nanosegundos se divide en {@link #SUB_BUCKETS} cubetas iguales, así que los percentiles tienen un error
+ * relativo de a lo sumo 1/{@link #SUB_BUCKETS} sin guardar cada valor. Registrar una duración solo incrementa
+ * contadores {@link LongAdder}, sin candados ni objetos nuevos, por lo que se puede usar en el camino de cada
+ * consulta desde varios hilos a la vez.
+ */
+public class Timer {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Timer(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra una duración.
+     *
+     * @param nanos duración en nanosegundos
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.buckets[bucket(nanos)].increment();
+        this.count.increment();
+        this.total.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    /**
+     * Registra el tiempo transcurrido desde un inicio tomado con {@link System#nanoTime()}.
+     *
+     * @return el momento actual, para usarlo como inicio de la siguiente etapa
+     */
+    public long recordSince(long start) {
+        long now = System.nanoTime();
+        this.record(now - start);
+        return now;
+    }
+
+    /**
+     * Cubeta de un valor: los valores menores a {@link #SUB_BUCKETS} tienen una cubeta cada uno; los demás se ubican
+     * por su bit más alto y los {@link #SUB_BUCKET_BITS} bits siguientes.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Mayor valor que cae en una cubeta.
+     */
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (1L << highestBit) + ((long) (bucket % SUB_BUCKETS) << (highestBit - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Suma de todas las duraciones, en nanosegundos.
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = this.getCount();
+        return count == 0 ? 0 : (double) this.getTotal() / count;
+    }
+
+    /**
+     * Estima un percentil de las duraciones.
+     *
+     * @param percentile percentil entre 0 y 100
+     * @return la duración en nanosegundos, como el límite superior de la cubeta del percentil
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Borra las duraciones registradas.
+     */
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.count.reset();
+        this.total.reset();
+        this.max.reset();
+    }
+}
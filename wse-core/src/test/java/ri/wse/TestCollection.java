@@ -0,0 +1,222 @@
+package ri.wse;
+
+import ri.wse.indexerBuild.IndexerController;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Colección pequeña de documentos html para las pruebas, escrita e indexada en un directorio temporal con la misma
+ * estructura que la colección real (Coleccion/, URLS.txt, stopwords.txt y Results/). Las palabras se escogen de un
+ * vocabulario inventado con una distribución de Zipf, así que hay términos en casi todos los documentos y términos
+ * en muy pocos. Con la misma semilla siempre se genera la misma colección.
+ */
+public class TestCollection implements Closeable {
+
+    private static final String[] STOP_WORDS = {"de", "la", "que", "el", "en", "los", "del", "las", "por", "con"};
+
+    private static final String[] CONSONANTS = {"b", "c", "d", "f", "g", "l", "m", "n", "p", "r", "s", "t", "v"};
+
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u"};
+
+    private final Path directory;
+    private final String[] vocabulary;
+    private final double[] cumulativeProbabilities;
+    private final Random random;
+
+    /**
+     * @param documents  cantidad de documentos
+     * @param vocabulary cantidad de palabras distintas
+     * @param seed       semilla de la colección
+     */
+    public TestCollection(int documents, int vocabulary, long seed) throws IOException {
+        this.directory = Files.createTempDirectory("wse-test");
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabulary];
+        this.cumulativeProbabilities = new double[vocabulary];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            this.vocabulary[rank] = word(rank);
+            total += 1.0 / (rank + 1);
+            this.cumulativeProbabilities[rank] = total;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) {
+            this.cumulativeProbabilities[rank] /= total;
+        }
+        this.write(documents);
+    }
+
+    /**
+     * Forma una palabra de al menos dos sílabas a partir de su lugar en el vocabulario; todas son distintas.
+     */
+    private static String word(int rank) {
+        int syllables = CONSONANTS.length * VOWELS.length;
+        StringBuilder word = new StringBuilder();
+        for (int value = rank + syllables; value > 0; value /= syllables) {
+            int syllable = value % syllables;
+            word.append(CONSONANTS[syllable / VOWELS.length]).append(VOWELS[syllable % VOWELS.length]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Palabras del vocabulario, de la más frecuente a la menos frecuente.
+     */
+    public List<String> getVocabulary() {
+        return Arrays.asList(this.vocabulary);
+    }
+
+    public String randomWord() {
+        int rank = Arrays.binarySearch(this.cumulativeProbabilities, this.random.nextDouble());
+        return this.vocabulary[rank >= 0 ? rank : Math.min(-rank - 1, this.vocabulary.length - 1)];
+    }
+
+    public static String fileName(int document) {
+        return String.format("doc_%04d.html", document);
+    }
+
+    public static String url(int document) {
+        return "http://www.ejemplo.com/" + document;
+    }
+
+    private void write(int documents) throws IOException {
+        Path collection = this.directory.resolve("Coleccion");
+        Files.createDirectories(collection);
+        try (Writer urls = Files.newBufferedWriter(this.directory.resolve("URLS.txt"), StandardCharsets.UTF_8)) {
+            for (int document = 0; document < documents; document++) {
+                this.writeDocument(document);
+                urls.write(fileName(document) + " " + url(document) + "\n");
+            }
+        }
+        Files.write(this.directory.resolve("stopwords.txt"), Arrays.asList(STOP_WORDS), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escribe (o reescribe) un documento de entre 20 y 120 palabras.
+     */
+    public void writeDocument(int document) throws IOException {
+        StringBuilder html = new StringBuilder("<html><head><title>").append(this.randomWord())
+                .append("</title></head><body><p>");
+        int words = 20 + this.random.nextInt(100);
+        for (int i = 0; i < words; i++) {
+            html.append(this.random.nextInt(5) == 0 ? STOP_WORDS[this.random.nextInt(STOP_WORDS.length)]
+                    : this.randomWord()).append(' ');
+        }
+        html.append("</p></body></html>\n");
+        Files.write(this.directory.resolve("Coleccion").resolve(fileName(document)),
+                html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Agrega un documento nuevo a la colección, con su url.
+     */
+    public void addDocument(int document) throws IOException {
+        this.writeDocument(document);
+        Files.write(this.directory.resolve("URLS.txt"), (fileName(document) + " " + url(document) + "\n")
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Reescribe un documento con otro contenido y una fecha de modificación posterior, para que el indexador
+     * incremental lo vea cambiado aunque se reescriba en el mismo milisegundo en que se indexó.
+     */
+    public void rewriteDocument(int document) throws IOException {
+        Path file = this.directory.resolve("Coleccion").resolve(fileName(document));
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        this.writeDocument(document);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified + 1000));
+    }
+
+    public void deleteDocument(int document) throws IOException {
+        Files.delete(this.directory.resolve("Coleccion").resolve(fileName(document)));
+    }
+
+    /**
+     * Genera consultas con la sintaxis del servicio (términos separados por '-').
+     */
+    public List<String> queries(int count, int terms) {
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int term = 0; term < terms; term++) {
+                query.append(term > 0 ? "-" : "").append(this.randomWord());
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Indexa la colección con un solo hilo.
+     *
+     * @param shards cantidad de shards entre los que se reparten los documentos
+     */
+    public void index(int shards) {
+        new IndexerController(this.getCollectionDirectory(), this.getResultsDirectory(),
+                this.getUrlsFile(), this.getStopWordsFile(), 1, 1024 * 1024, shards).index();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Directorio base de la colección, terminado en el separador, como lo espera el buscador.
+     */
+    public String getBaseDirectory() {
+        return this.directory.toString() + File.separator;
+    }
+
+    public String getCollectionDirectory() {
+        return this.directory.resolve("Coleccion").toString() + File.separator;
+    }
+
+    public String getResultsDirectory() {
+        return this.directory.resolve("Results").toString();
+    }
+
+    public String getUrlsFile() {
+        return this.directory.resolve("URLS.txt").toString();
+    }
+
+    public String getStopWordsFile() {
+        return this.directory.resolve("stopwords.txt").toString();
+    }
+
+    /**
+     * Borra el directorio con todo su contenido.
+     */
+    @Override
+    public void close() throws IOException {
+        delete(this.directory);
+    }
+
+    public static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
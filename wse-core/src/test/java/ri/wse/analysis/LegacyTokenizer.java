@@ -0,0 +1,58 @@
+package ri.wse.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reglas de normalización del indexador tal como se aplicaban antes del {@link Tokenizer}: una cadena de
+ * expresiones regulares sobre el texto completo en minúsculas, seguida de la separación por espacios. Solo se usa en
+ * las pruebas, como referencia de los términos que debe producir el {@link Tokenizer}.
+ */
+class LegacyTokenizer {
+
+    /**
+     * Expresiones regulares que permiten excluir contenido de los htmls.
+     */
+    private static final String URLS_REGEX = "(http|ftp|https)://([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:/~+#\\-]*[\\w@?^=%&/~+#\\-])?";
+    private static final String NUMBERS_WORDS_REGEX = "([a-z]+[\\d]+[\\w@]*|[\\d]+[a-z]+[\\w@]*)";
+    private static final String SPECIAL_SYMBOLS_REGEX = "[^a-z0-9ñáéíóú\\s]";
+    private static final String ACCUTE_LETER_A_REGEX = "&#225|&#193";
+    private static final String ACCUTE_LETER_E_REGEX = "&#233|&#201";
+    private static final String ACCUTE_LETER_I_REGEX = "&#237|&#205";
+    private static final String ACCUTE_LETER_O_REGEX = "&#243|&#211";
+    private static final String ACCUTE_LETER_U_REGEX = "&#250|&#218";
+    private static final String ACCUTE_LETER_N_REGEX = "&#241|&#209";
+    private static final String INVERTED_EXCLAMATION_MARK_REGEX = "&#161;";
+    private static final String SPACE_CODE_REGEX = "&nbsp;|&#160;|&#32;|&#x20";
+    private static final String SPECIAL_SPACES_REGEX = "[\n\r]";
+
+    /**
+     * Separa el texto en términos.
+     *
+     * @return los términos en el orden en que aparecen
+     */
+    static List<String> tokenize(String doc) {
+        doc = doc.toLowerCase();
+        doc = doc.replaceAll(URLS_REGEX, "");
+        doc = doc.replaceAll(SPACE_CODE_REGEX, " ");
+        doc = doc.replaceAll(ACCUTE_LETER_A_REGEX, "á");
+        doc = doc.replaceAll(ACCUTE_LETER_E_REGEX, "é");
+        doc = doc.replaceAll(ACCUTE_LETER_I_REGEX, "í");
+        doc = doc.replaceAll(ACCUTE_LETER_O_REGEX, "ó");
+        doc = doc.replaceAll(ACCUTE_LETER_U_REGEX, "ú");
+        doc = doc.replaceAll(ACCUTE_LETER_N_REGEX, "ñ");
+        doc = doc.replaceAll(INVERTED_EXCLAMATION_MARK_REGEX, "");
+        doc = doc.replaceAll(SPECIAL_SPACES_REGEX, " ");
+        doc = doc.replaceAll(SPECIAL_SYMBOLS_REGEX, " ");
+        doc = doc.replaceAll(NUMBERS_WORDS_REGEX, "");
+
+        List<String> terms = new ArrayList<>();
+        for (String term : doc.split(" ")) {
+            term = term.trim();
+            if (!term.equals("") && !term.equals(" ")) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,96 @@
+package ri.wse.analysis;
+
+import org.jsoup.Jsoup;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * El {@link Tokenizer} debe producir exactamente los mismos términos que la cadena de expresiones regulares que
+ * reemplazó ({@link LegacyTokenizer}).
+ */
+public class TokenizerTest {
+
+    /**
+     * Colección incluida en el proyecto, relativa al directorio del módulo.
+     */
+    private static final File COLLECTION = new File("src/main/java/ri/wse/resources/Coleccion");
+
+    private static final String[] EDGE_CASES = {
+            "",
+            "   \n\r\t  ",
+            "visite http://www.ucr.ac.cr/inicio.html?id=1&tipo=2, o https://ecci.ucr.ac.cr.",
+            "ftp://archivos.ejemplo.com/descargas/ (espejo) http://localhost/no-es-url http://.com",
+            "http://a.b-c.d/ruta:puerto,fin http://www.x.com/a/b.c.d... https://sitio.org/#ancla~+",
+            "texto-http://pegado.com/ruta y HTTP://MAYUSCULAS.COM/Ruta",
+            "&nbsp;espacio&#160;duro&#32;y&#x20hexadecimal &NBSP;mayúsculas",
+            "&#225rbol &#193RBOL cami&#243n &#209and&#250 ping&#252ino &#233xito &#237ndice",
+            "&#161;hola! &#161 &#16 &#1&#225 &&#225 &#x2 &nbsp &#",
+            "ÁRBOL Ñandú Éxito Índice Óvalo Úlcera pingüino ÇA",
+            "mp3 abc123 123abc 2018 a1b2@c 12.5 3,14 1er 2do 007 x 1 42",
+            "user@mail.com foo_bar 9_a a_9 año2018 2018año ñ1 1ñ",
+            "😀hola𝔘nicode \uD800suelto \uDC00 fin\uD83D",
+            "İstanbul ǅemal ΣΊΣΥΦΟΣ ﬁnal",
+            "tab\tdentro\u000Bvertical\fform salto\nlínea\rretorno",
+            "símbolos: ¿qué? ¡sí! «comillas» —raya— (paréntesis) [corchetes] {llaves} $100 50% #1",
+    };
+
+    private static final String[] FRAGMENTS = {"http://", "https://", "ftp://", "www", ".", ",", ":", "/", "?", "&",
+            "=", "#", "-", "_", "@", "ucr", "ac", "cr", "com", "&nbsp;", "&#160;", "&#32;", "&#x20", "&#225", "&#193",
+            "&#241", "&#209", "&#161;", "&#", "&#1", "&", ";", " ", "  ", "\n", "\r", "\t", "á", "Á", "ñ", "Ñ", "ü",
+            "abc", "ABC", "123", "9", "a1", "1a", "x", "é", "😀", "\uD800", "İ", "¡", "¿"};
+
+    @Test
+    public void edgeCases() {
+        for (String text : EDGE_CASES) {
+            assertSameTerms(text);
+        }
+    }
+
+    @Test
+    public void randomFragments() {
+        Random random = new Random(10);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder text = new StringBuilder();
+            int fragments = 1 + random.nextInt(12);
+            for (int j = 0; j < fragments; j++) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameTerms(text.toString());
+        }
+    }
+
+    /**
+     * Compara una muestra de la colección: el texto que obtiene el parser de uno de cada 5 documentos y el html sin
+     * parsear, que todavía tiene urls y códigos de caracteres, de uno de cada 25. Con las expresiones regulares la
+     * colección completa tarda demasiado para una prueba unitaria.
+     */
+    @Test
+    public void collectionDocuments() throws IOException {
+        File[] documents = COLLECTION.listFiles((dir, name) -> name.endsWith(".html"));
+        Assume.assumeTrue(documents != null && documents.length > 0);
+        Arrays.sort(documents);
+        for (int i = 0; i < documents.length; i += 5) {
+            assertSameTerms(Jsoup.parse(documents[i], "UTF-8").text());
+            if (i % 25 == 0) {
+                assertSameTerms(new String(Files.readAllBytes(documents[i].toPath()), StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    private static void assertSameTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        new Tokenizer().tokenize(text, terms::add);
+        assertEquals(text, LegacyTokenizer.tokenize(text), terms);
+    }
+}
@@ -0,0 +1,98 @@
+package ri.wse.core.result.cache;
+
+import org.junit.Test;
+import ri.wse.model.CacheStatistics;
+import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Llaves, generaciones, capacidad y vencimiento del caché de resultados.
+ */
+public class QueryResultCacheTest {
+
+    private static QueryResult result(String name) {
+        return new QueryResult(Collections.singletonList(new ResultEntry(name, "http://localhost/" + name, 1)), 1,
+                true, 0, 10);
+    }
+
+    @Test
+    public void hitsOnlyTheSamePage() {
+        QueryResultCache cache = new QueryResultCache(100, 0);
+        QueryResult result = result("a");
+        cache.put("federer:1 roger:1", 0, 10, 1, result);
+
+        assertSame(result, cache.get("federer:1 roger:1", 0, 10, 1));
+        assertNull(cache.get("federer:1 roger:1", 10, 10, 1));
+        assertNull(cache.get("federer:1 roger:1", 0, 20, 1));
+        assertNull(cache.get("federer:1", 0, 10, 1));
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(3, statistics.getMisses());
+        assertEquals(1, statistics.getSize());
+    }
+
+    @Test
+    public void newerGenerationInvalidates() {
+        QueryResultCache cache = new QueryResultCache(100, 0);
+        cache.put("a:1", 0, 10, 1, result("a"));
+        cache.put("b:1", 0, 10, 1, result("b"));
+
+        assertNull(cache.get("a:1", 0, 10, 2));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStatistics().getInvalidations());
+
+        // Una consulta que todavía usa la generación anterior no guarda sus resultados ni ve los nuevos.
+        cache.put("a:1", 0, 10, 1, result("a"));
+        assertEquals(0, cache.size());
+        QueryResult result = result("a");
+        cache.put("a:1", 0, 10, 2, result);
+        assertNull(cache.get("a:1", 0, 10, 1));
+        assertSame(result, cache.get("a:1", 0, 10, 2));
+        assertEquals(1, cache.getStatistics().getInvalidations());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        QueryResultCache cache = new QueryResultCache(64, 0);
+        QueryResult frequent = result("frecuente");
+        cache.put("frecuente:1", 0, 10, 1, frequent);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("consulta" + i + ":1", 0, 10, 1, result("r" + i));
+            assertSame(frequent, cache.get("frecuente:1", 0, 10, 1));
+        }
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertTrue(statistics.getSize() <= 64);
+        assertEquals(1001 - statistics.getSize(), statistics.getEvictions());
+        assertNull(cache.get("consulta0:1", 0, 10, 1));
+        assertNotNull(cache.get("consulta999:1", 0, 10, 1));
+    }
+
+    @Test
+    public void disabledCacheStoresNothing() {
+        QueryResultCache cache = new QueryResultCache(0, 0);
+        cache.put("a:1", 0, 10, 1, result("a"));
+        assertNull(cache.get("a:1", 0, 10, 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void entriesExpire() throws InterruptedException {
+        QueryResultCache cache = new QueryResultCache(100, 1);
+        cache.put("a:1", 0, 10, 1, result("a"));
+        assertNotNull(cache.get("a:1", 0, 10, 1));
+        Thread.sleep(1100);
+        assertNull(cache.get("a:1", 0, 10, 1));
+        assertEquals(1, cache.getStatistics().getExpirations());
+        assertEquals(0, cache.size());
+    }
+}
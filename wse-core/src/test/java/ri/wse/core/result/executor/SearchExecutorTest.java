@@ -0,0 +1,159 @@
+package ri.wse.core.result.executor;
+
+import org.junit.After;
+import org.junit.Test;
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.support.exceptions.QueryTimeoutException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Admisión, rechazo y tiempos límite de las consultas asíncronas. Cada prueba ocupa el único hilo del ejecutor con
+ * una tarea que espera un {@link CountDownLatch}, para controlar qué consultas quedan en la cola.
+ */
+public class SearchExecutorTest {
+
+    private SearchExecutor searchExecutor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        if (this.searchExecutor != null) {
+            this.searchExecutor.destroy();
+        }
+    }
+
+    /**
+     * Crea un ejecutor de un hilo y lo ocupa hasta que se libere {@link #release}.
+     */
+    private CompletableFuture<String> occupy(int maxQueued) throws InterruptedException {
+        this.searchExecutor = new SearchExecutor(1, maxQueued);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> blocker = this.searchExecutor.submit(Deadline.NONE, () -> {
+            started.countDown();
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ocupado";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    @Test
+    public void rejectsWhenTheQueueIsFull() throws Exception {
+        CompletableFuture<String> blocker = this.occupy(2);
+        CompletableFuture<String> first = this.searchExecutor.submit(Deadline.NONE, () -> "primera");
+        CompletableFuture<String> second = this.searchExecutor.submit(Deadline.NONE, () -> "segunda");
+        assertEquals(1, this.searchExecutor.getActive());
+        assertEquals(2, this.searchExecutor.getQueued());
+        try {
+            this.searchExecutor.submit(Deadline.NONE, () -> "tercera");
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertTrue(this.searchExecutor.getRetryAfter() >= 1);
+        }
+
+        this.release.countDown();
+        assertEquals("ocupado", blocker.get(5, TimeUnit.SECONDS));
+        assertEquals("primera", first.get(5, TimeUnit.SECONDS));
+        assertEquals("segunda", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void withoutQueueRejectsWhenBusy() throws Exception {
+        this.occupy(0);
+        try {
+            this.searchExecutor.submit(Deadline.NONE, () -> "rechazada");
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Esperado.
+        }
+    }
+
+    @Test
+    public void expiredInTheQueueIsNotComputed() throws Exception {
+        this.occupy(2);
+        AtomicBoolean computed = new AtomicBoolean();
+        CompletableFuture<String> hard = this.searchExecutor.submit(Deadline.after(10, TimeUnit.MILLISECONDS), () -> {
+            computed.set(true);
+            return "estricta";
+        });
+        CompletableFuture<String> budget = this.searchExecutor.submit(Deadline.budget(10, TimeUnit.MILLISECONDS),
+                () -> "presupuesto");
+        Thread.sleep(50);
+        this.release.countDown();
+
+        try {
+            hard.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof QueryTimeoutException);
+        }
+        assertFalse(computed.get());
+        // Con un presupuesto la consulta se calcula igual y devuelve lo que alcance a encontrar.
+        assertEquals("presupuesto", budget.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledInTheQueueIsNotComputed() throws Exception {
+        // La consulta cancelada ocupa su lugar en la cola hasta que un hilo la saca.
+        this.occupy(2);
+        AtomicBoolean computed = new AtomicBoolean();
+        CompletableFuture<String> cancelled = this.searchExecutor.submit(Deadline.NONE, () -> {
+            computed.set(true);
+            return "cancelada";
+        });
+        cancelled.cancel(false);
+        this.release.countDown();
+        assertEquals("siguiente", this.searchExecutor.submit(Deadline.NONE, () -> "siguiente")
+                .get(5, TimeUnit.SECONDS));
+        assertFalse(computed.get());
+    }
+
+    @Test
+    public void failuresCompleteTheFuture() throws Exception {
+        this.searchExecutor = new SearchExecutor(1, 1);
+        CompletableFuture<String> failed = this.searchExecutor.submit(Deadline.NONE, () -> {
+            throw new QueryTimeoutException("La consulta superó su tiempo límite.");
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof QueryTimeoutException);
+        }
+    }
+
+    @Test
+    public void requestedTimeoutsAreCapped() {
+        this.searchExecutor = new SearchExecutor(1, 1);
+        this.searchExecutor.setTimeout(2000);
+        this.searchExecutor.setMaxTimeout(5000);
+
+        Deadline byDefault = this.searchExecutor.getDeadline(0);
+        assertFalse(byDefault.allowsPartialResults());
+        assertTrue(byDefault.remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(2000));
+        assertTrue(byDefault.remainingNanos() > TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertTrue(this.searchExecutor.getDeadline(60000).remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(5000));
+        assertTrue(this.searchExecutor.getDeadline(100).remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(100));
+
+        Deadline budget = this.searchExecutor.getBudget(60000);
+        assertTrue(budget.allowsPartialResults());
+        assertTrue(budget.remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(5000));
+    }
+}
@@ -0,0 +1,83 @@
+package ri.wse.core.result.service.impl;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import ri.wse.TestCollection;
+import ri.wse.core.result.service.ResultService;
+import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+import ri.wse.queryProcessor.IndexSearcher;
+import ri.wse.queryProcessor.QueryProcessor;
+import ri.wse.queryProcessor.SearcherManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * El contexto de Spring de wse-core carga el índice una sola vez al iniciar y todas las consultas, también las
+ * concurrentes, usan el mismo {@link IndexSearcher}.
+ */
+public class ResultServiceImplTest {
+
+    private static TestCollection collection;
+    private static ClassPathXmlApplicationContext context;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = new TestCollection(300, 200, 41);
+        collection.index(1);
+        System.setProperty("wse.index.path", collection.getBaseDirectory());
+        context = new ClassPathXmlApplicationContext("wse-core.spring.xml");
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        context.close();
+        System.clearProperty("wse.index.path");
+        collection.close();
+    }
+
+    @Test
+    public void indexIsLoadedOnceAndShared() throws Exception {
+        SearcherManager searcherManager = context.getBean(SearcherManager.class);
+        assertSame(searcherManager, context.getBean(SearcherManager.class));
+        IndexSearcher indexSearcher = searcherManager.acquire();
+        searcherManager.release(indexSearcher);
+        assertEquals(300, indexSearcher.getDocumentCount());
+
+        ResultService resultService = context.getBean(ResultService.class);
+        assertSame(resultService, context.getBean(ResultService.class));
+        List<String> queries = collection.queries(50, 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<QueryResult>> futures = new ArrayList<>();
+            for (String query : queries) {
+                futures.add(executor.submit(() -> resultService.getResults(query, 0, 10)));
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                QueryProcessor expected = new QueryProcessor(queries.get(i), indexSearcher);
+                List<ResultEntry> results = expected.manageQuery(0, 10);
+                QueryResult queryResult = futures.get(i).get();
+                assertEquals(queries.get(i), results, queryResult.getQueryResults());
+                assertEquals(queries.get(i), expected.getTotalHits(), queryResult.getTotalHits());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        IndexSearcher afterQueries = searcherManager.acquire();
+        searcherManager.release(afterQueries);
+        assertSame(indexSearcher, afterQueries);
+        // Solo el administrador conserva una referencia al buscador: las consultas devolvieron las suyas.
+        assertEquals(1, indexSearcher.getRefCount());
+    }
+}
@@ -0,0 +1,102 @@
+package ri.wse.indexStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reservas de las confirmaciones y referencias a los segmentos de los {@link IndexReader}: el indexador no borra los
+ * segmentos de un lector abierto, y los segmentos se cierran con el último lector que los comparte.
+ */
+public class IndexReaderTest {
+
+    private Path directory;
+    private IndexWriter indexWriter;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-reader");
+        this.indexWriter = new IndexWriter(this.directory.toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.indexWriter.close();
+        TestCollection.delete(this.directory);
+    }
+
+    @Test
+    public void openReaderKeepsItsSegments() throws IOException {
+        String first = TestSegments.add(this.indexWriter, "a", 4);
+        this.indexWriter.commit();
+        long generation = this.indexWriter.getSegmentInfos().getGeneration();
+        IndexReader indexReader = IndexReader.open(this.directory.toString());
+
+        // Se reconstruye el índice completo mientras el lector sigue abierto.
+        this.indexWriter.deleteAll();
+        TestSegments.add(this.indexWriter, "b", 2);
+        this.indexWriter.commit();
+        assertTrue(Files.isDirectory(this.directory.resolve(first)));
+        assertTrue(Files.exists(this.directory.resolve(SegmentInfos.fileName(generation))));
+        assertEquals(TestSegments.names("a", 4), TestSegments.liveNames(indexReader));
+
+        indexReader.close();
+        TestSegments.add(this.indexWriter, "c", 2);
+        this.indexWriter.commit();
+        assertFalse(Files.exists(this.directory.resolve(first)));
+        assertFalse(Files.exists(this.directory.resolve(SegmentInfos.fileName(generation))));
+    }
+
+    @Test
+    public void sharedSegmentsCloseWithTheLastReader() throws IOException {
+        TestSegments.add(this.indexWriter, "a", 4);
+        this.indexWriter.commit();
+        IndexReader first = IndexReader.open(this.directory.toString());
+        SegmentReader shared = first.getSegmentReader(0);
+        assertEquals(1, shared.getRefCount());
+
+        TestSegments.add(this.indexWriter, "b", 3);
+        this.indexWriter.commit();
+        IndexReader second = first.openIfChanged();
+        assertSame(shared, second.getSegmentReader(0));
+        assertEquals(2, shared.getRefCount());
+        SegmentReader added = second.getSegmentReader(1);
+        assertEquals(1, added.getRefCount());
+
+        first.close();
+        assertEquals(1, shared.getRefCount());
+        assertEquals("a-0", second.getDocumentName(0));
+        assertEquals(7, second.getDocumentFrequency("comun"));
+
+        second.close();
+        assertEquals(0, shared.getRefCount());
+        assertEquals(0, added.getRefCount());
+    }
+
+    @Test
+    public void readersOfTheSameCommitShareItsLock() throws IOException {
+        TestSegments.add(this.indexWriter, "a", 2);
+        this.indexWriter.commit();
+        Path commit = this.directory.resolve(SegmentInfos.fileName(this.indexWriter.getSegmentInfos()
+                .getGeneration()));
+        IndexReader first = IndexReader.open(this.directory.toString());
+        IndexReader second = IndexReader.open(this.directory.toString());
+
+        assertFalse(CommitLock.deleteIfUnused(commit));
+        first.close();
+        assertFalse(CommitLock.deleteIfUnused(commit));
+        second.close();
+        assertTrue(CommitLock.deleteIfUnused(commit));
+        assertFalse(Files.exists(commit));
+    }
+}
@@ -0,0 +1,171 @@
+package ri.wse.indexStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Confirmaciones y fusiones del {@link IndexWriter}, en especial los documentos que se borran mientras se hace una
+ * fusión.
+ */
+public class IndexWriterTest {
+
+    private Path directory;
+    private IndexWriter indexWriter;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-writer");
+        this.indexWriter = new IndexWriter(this.directory.toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.indexWriter.close();
+        TestCollection.delete(this.directory);
+    }
+
+    @Test
+    public void commitMakesChangesVisible() throws IOException {
+        String first = this.addSegment("a", 5);
+        this.indexWriter.commit();
+        IndexReader indexReader = IndexReader.open(this.directory.toString());
+        assertEquals(5, indexReader.getDocumentCount());
+
+        this.addSegment("b", 3);
+        this.indexWriter.deleteDocument(first, 2);
+        assertEquals(liveNames("a", 5), this.liveNames());
+        assertTrue(indexReader.openIfChanged() == null);
+
+        this.indexWriter.commit();
+        IndexReader changed = indexReader.openIfChanged();
+        assertEquals(8, changed.getDocumentCount());
+        List<String> expected = new ArrayList<>(liveNames("a", 5, 2));
+        expected.addAll(liveNames("b", 3));
+        assertEquals(expected, liveNames(changed));
+        indexReader.close();
+        changed.close();
+    }
+
+    @Test
+    public void mergeCarriesOverDeletionsMadeDuringTheMerge() throws IOException {
+        String first = this.addSegment("a", 6);
+        String second = this.addSegment("b", 4);
+        String third = this.addSegment("c", 5);
+        this.indexWriter.deleteDocument(first, 1);
+        this.indexWriter.commit();
+
+        SegmentInfo[] sources = {segment(first), segment(second)};
+        SegmentMerger segmentMerger = this.indexWriter.createMerger(sources);
+        String merged = this.indexWriter.newSegmentName();
+        segmentMerger.merge(this.indexWriter.getSegmentDirectory(merged));
+
+        // Borrados que llegan después de que la fusión tomó su copia de los segmentos.
+        assertTrue(this.indexWriter.deleteDocument(first, 4));
+        assertTrue(this.indexWriter.deleteDocument(second, 0));
+        assertTrue(this.indexWriter.deleteDocument(third, 2));
+        assertTrue(this.indexWriter.commitMerge(sources, merged, segmentMerger));
+
+        List<SegmentInfo> segments = this.indexWriter.getSegmentInfos().getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(merged, segments.get(0).getName());
+        assertEquals(third, segments.get(1).getName());
+        // El documento borrado antes de la fusión ya no está en el segmento nuevo; los borrados después sí.
+        assertEquals(9, segments.get(0).getDocumentCount());
+        assertEquals(2, segments.get(0).getDeletedCount());
+
+        List<String> expected = new ArrayList<>(liveNames("a", 6, 1, 4));
+        expected.addAll(liveNames("b", 4, 0));
+        expected.addAll(liveNames("c", 5, 2));
+        assertEquals(expected, this.liveNames());
+        assertFalse(Files.exists(this.directory.resolve(first)));
+        assertFalse(Files.exists(this.directory.resolve(second)));
+    }
+
+    @Test
+    public void mergeIsDiscardedIfASourceWasRemoved() throws IOException {
+        String first = this.addSegment("a", 3);
+        String second = this.addSegment("b", 3);
+        this.indexWriter.commit();
+
+        SegmentInfo[] sources = {segment(first), segment(second)};
+        SegmentMerger segmentMerger = this.indexWriter.createMerger(sources);
+        String merged = this.indexWriter.newSegmentName();
+        segmentMerger.merge(this.indexWriter.getSegmentDirectory(merged));
+
+        this.indexWriter.deleteAll();
+        String rebuilt = this.addSegment("c", 2);
+        assertFalse(this.indexWriter.commitMerge(sources, merged, segmentMerger));
+        this.indexWriter.commit();
+
+        List<SegmentInfo> segments = this.indexWriter.getSegmentInfos().getSegments();
+        assertEquals(1, segments.size());
+        assertEquals(rebuilt, segments.get(0).getName());
+        assertEquals(liveNames("c", 2), this.liveNames());
+    }
+
+    @Test
+    public void backgroundMergesKeepTheLiveDocuments() throws IOException {
+        this.indexWriter.close();
+        this.indexWriter = new IndexWriter(this.directory.toString(), new MergePolicy(2, 2, 0.5));
+        List<String> expected = new ArrayList<>();
+        for (int segment = 0; segment < 6; segment++) {
+            String prefix = "s" + segment;
+            String name = this.addSegment(prefix, 4);
+            this.indexWriter.deleteDocument(name, segment % 4);
+            this.indexWriter.commit();
+            this.indexWriter.maybeMerge();
+            expected.addAll(liveNames(prefix, 4, segment % 4));
+        }
+        this.indexWriter.waitForMerges();
+
+        assertTrue(this.indexWriter.getSegmentInfos().getSegments().size() <= 2);
+        List<String> actual = this.liveNames();
+        Collections.sort(actual);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+    }
+
+    private SegmentInfo segment(String name) {
+        for (SegmentInfo segment : this.indexWriter.getSegmentInfos().getSegments()) {
+            if (segment.getName().equals(name)) {
+                return segment;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private String addSegment(String prefix, int documents) throws IOException {
+        return TestSegments.add(this.indexWriter, prefix, documents);
+    }
+
+    private static List<String> liveNames(String prefix, int documents, int... deleted) {
+        return TestSegments.names(prefix, documents, deleted);
+    }
+
+    private static List<String> liveNames(IndexReader indexReader) {
+        return TestSegments.liveNames(indexReader);
+    }
+
+    /**
+     * Documentos vivos de la última confirmación.
+     */
+    private List<String> liveNames() throws IOException {
+        IndexReader indexReader = IndexReader.open(this.directory.toString());
+        try {
+            return liveNames(indexReader);
+        } finally {
+            indexReader.close();
+        }
+    }
+}
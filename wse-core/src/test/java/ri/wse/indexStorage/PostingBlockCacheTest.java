@@ -0,0 +1,173 @@
+package ri.wse.indexStorage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Aciertos, capacidad y reemplazo del caché de bloques. El contenido de cada bloque se deriva de su llave, así que
+ * cualquier bloque encontrado se puede verificar.
+ */
+public class PostingBlockCacheTest {
+
+    private static final int SEGMENT = 3;
+
+    private static int length(int block) {
+        return 1 + block % PostingsCodec.BLOCK_SIZE;
+    }
+
+    private static void put(PostingBlockCache cache, int ordinal, int block) {
+        int length = length(block);
+        int[] documents = new int[PostingsCodec.BLOCK_SIZE];
+        float[] weights = new float[PostingsCodec.BLOCK_SIZE];
+        for (int i = 0; i < length; i++) {
+            documents[i] = ordinal * 100000 + block * 1000 + i;
+            weights[i] = ordinal + block / 1000f + i / 1000000f;
+        }
+        cache.put(PostingBlockCache.termKey(SEGMENT, ordinal), block, documents, weights, length);
+    }
+
+    /**
+     * Busca un bloque y verifica su contenido si está en el caché.
+     *
+     * @return si el bloque estaba en el caché
+     */
+    private static boolean get(PostingBlockCache cache, int ordinal, int block) {
+        int[] documents = new int[PostingsCodec.BLOCK_SIZE];
+        float[] weights = new float[PostingsCodec.BLOCK_SIZE];
+        int length = cache.get(PostingBlockCache.termKey(SEGMENT, ordinal), block, documents, weights);
+        if (length < 0) {
+            return false;
+        }
+        assertEquals(length(block), length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(ordinal * 100000 + block * 1000 + i, documents[i]);
+            assertEquals(ordinal + block / 1000f + i / 1000000f, weights[i], 0f);
+        }
+        return true;
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        PostingBlockCache cache = new PostingBlockCache(1 << 20);
+        put(cache, 1, 0);
+        put(cache, 1, 1);
+        put(cache, 2, 0);
+
+        assertTrue(get(cache, 1, 0));
+        assertTrue(get(cache, 1, 1));
+        assertTrue(get(cache, 2, 0));
+        assertFalse(get(cache, 1, 2));
+        assertFalse(get(cache, 3, 0));
+        int[] documents = new int[PostingsCodec.BLOCK_SIZE];
+        assertEquals(-1, cache.get(PostingBlockCache.termKey(SEGMENT + 1, 1), 0, documents,
+                new float[PostingsCodec.BLOCK_SIZE]));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+        assertEquals(3, cache.getResidentBlocks());
+        assertEquals((long) (length(0) * 2 + length(1)) * (Integer.BYTES + Float.BYTES), cache.getResidentBytes());
+    }
+
+    @Test
+    public void duplicatePutKeepsOneBlock() {
+        PostingBlockCache cache = new PostingBlockCache(1 << 20);
+        put(cache, 1, 5);
+        put(cache, 1, 5);
+        assertEquals(1, cache.getResidentBlocks());
+        assertTrue(get(cache, 1, 5));
+    }
+
+    /**
+     * Después de muchos reemplazos el caché no pasa de su capacidad y cada bloque que queda se encuentra con su
+     * contenido, lo que verifica que sacar bloques de la tabla no rompe las cadenas de colisiones.
+     */
+    @Test
+    public void staysWithinCapacity() {
+        long capacityBytes = 200 * 1024;
+        PostingBlockCache cache = new PostingBlockCache(capacityBytes);
+        int puts = 0;
+        for (int ordinal = 0; ordinal < 200; ordinal++) {
+            for (int block = 0; block < 20; block++) {
+                put(cache, ordinal, block);
+                puts++;
+            }
+        }
+
+        int residentBlocks = cache.getResidentBlocks();
+        assertTrue(residentBlocks > 0);
+        assertTrue((long) residentBlocks * PostingsCodec.BLOCK_SIZE * (Integer.BYTES + Float.BYTES) <= capacityBytes);
+        assertTrue(cache.getResidentBytes() <= capacityBytes);
+        assertEquals(puts - residentBlocks, cache.getEvictions());
+
+        int found = 0;
+        for (int ordinal = 0; ordinal < 200; ordinal++) {
+            for (int block = 0; block < 20; block++) {
+                if (get(cache, ordinal, block)) {
+                    found++;
+                }
+            }
+        }
+        assertEquals(residentBlocks, found);
+        // Los últimos bloques guardados todavía no se han sacado.
+        assertTrue(get(cache, 199, 19));
+    }
+
+    /**
+     * Los bloques que se consultan seguido sobreviven a un recorrido largo de bloques que se leen una sola vez.
+     */
+    @Test
+    public void frequentBlocksSurviveScans() {
+        PostingBlockCache cache = new PostingBlockCache(400 * 1024);
+        for (int block = 0; block < 4; block++) {
+            put(cache, 0, block);
+        }
+        for (int scanned = 0; scanned < 20000; scanned++) {
+            for (int block = 0; block < 4; block++) {
+                assertTrue("bloque " + block + " después de " + scanned, get(cache, 0, block));
+            }
+            put(cache, 1 + scanned / 10, scanned % 10);
+        }
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    public void concurrentAccess() throws InterruptedException {
+        PostingBlockCache cache = new PostingBlockCache(100 * 1024);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 50000; i++) {
+                        int ordinal = random.nextInt(50);
+                        int block = random.nextInt(10);
+                        if (!get(cache, ordinal, block)) {
+                            put(cache, ordinal, block);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(200000, cache.getHits() + cache.getMisses());
+        // Cada bloque se guarda después de un fallo; si dos hilos fallan con el mismo bloque se guarda una vez.
+        assertTrue(cache.getResidentBlocks() + cache.getEvictions() <= cache.getMisses());
+    }
+}
@@ -0,0 +1,219 @@
+package ri.wse.indexStorage;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Ida y vuelta de la codificación de las listas de postings: bytes variables, bloques de diferencias, entradas de
+ * salto y cuantización de los pesos.
+ */
+public class PostingsCodecTest {
+
+    private static final float SCALE = 0.8f;
+
+    /**
+     * Valores en los límites de cada cantidad de bytes variables, con la cantidad de bytes esperada.
+     */
+    private static final int[] VINT_VALUES = {0, 1, 127, 128, 16383, 16384, (1 << 21) - 1, 1 << 21, (1 << 28) - 1,
+            1 << 28, Integer.MAX_VALUE - 1};
+    private static final int[] VINT_LENGTHS = {1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5};
+
+    @Test
+    public void vIntBoundaries() {
+        for (int i = 0; i < VINT_VALUES.length; i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PostingsCodec.writeVInt(output, VINT_VALUES[i]);
+            byte[] bytes = output.toByteArray();
+            assertEquals(String.valueOf(VINT_VALUES[i]), VINT_LENGTHS[i], bytes.length);
+            for (int b = 0; b < bytes.length - 1; b++) {
+                assertEquals(0x80, bytes[b] & 0x80);
+            }
+            assertEquals(0, bytes[bytes.length - 1] & 0x80);
+        }
+    }
+
+    @Test
+    public void gapsAtVIntBoundaries() {
+        // Cada diferencia entre documentos cae en un límite de los bytes variables; el último documento queda justo
+        // antes de NO_MORE_DOCUMENTS.
+        int[] documents = {0, 1, 128, 256, 16639, 33023, 2130174, 4227326, 272662781, 541098237};
+        documents = append(documents, Integer.MAX_VALUE - 1);
+        assertList(documents, weights(documents.length, new Random(1)));
+    }
+
+    @Test
+    public void blockSizes() {
+        Random random = new Random(2);
+        for (int size : new int[]{1, 2, 127, 128, 129, 255, 256, 257, 1000}) {
+            int[] documents = documents(size, random);
+            assertList(documents, weights(size, random));
+        }
+    }
+
+    @Test
+    public void advanceAcrossSkipEntries() {
+        Random random = new Random(3);
+        int[] documents = documents(1000, random);
+        int[] weights = weights(documents.length, random);
+
+        // Al último documento de cada bloque, a uno en medio de un bloque posterior y entre dos documentos.
+        PostingList postingList = list(documents, weights, null);
+        int[] targets = {documents[127], documents[128], documents[300], documents[511] + 1, documents[900]};
+        int[] expected = {documents[127], documents[128], documents[300], documents[512], documents[900]};
+        for (int i = 0; i < targets.length; i++) {
+            assertEquals(expected[i], postingList.advance(targets[i]));
+            assertEquals(PostingsCodec.dequantize(weights[indexOf(documents, expected[i])], SCALE),
+                    postingList.weight(), 0);
+        }
+        // Un documento que ya se pasó no mueve el cursor, y next() sigue desde donde quedó advance().
+        assertEquals(documents[900], postingList.advance(documents[10]));
+        assertEquals(documents[901], postingList.next());
+
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, postingList.advance(documents[999] + 1));
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, postingList.next());
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, postingList.advance(documents[999] + 2));
+
+        PostingList fresh = list(documents, weights, null);
+        assertEquals(documents[0], fresh.advance(0));
+        assertEquals(documents[999], fresh.advance(documents[999]));
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, fresh.next());
+    }
+
+    @Test
+    public void advanceMatchesNext() {
+        Random random = new Random(4);
+        int[] documents = documents(700, random);
+        int[] weights = weights(documents.length, random);
+        for (int trial = 0; trial < 200; trial++) {
+            PostingList postingList = list(documents, weights, null);
+            int target = 0;
+            while (true) {
+                target += random.nextInt(2000);
+                int expected = PostingList.NO_MORE_DOCUMENTS;
+                for (int document : documents) {
+                    if (document >= target) {
+                        expected = document;
+                        break;
+                    }
+                }
+                int actual = postingList.advance(target);
+                assertEquals(expected, actual);
+                if (actual == PostingList.NO_MORE_DOCUMENTS) {
+                    break;
+                }
+                target = actual;
+            }
+        }
+    }
+
+    @Test
+    public void cachedBlocksAreTheSame() {
+        Random random = new Random(5);
+        int[] documents = documents(500, random);
+        int[] weights = weights(documents.length, random);
+        PostingBlockCache cache = new PostingBlockCache(1024 * 1024);
+        assertList(documents, weights, cache);
+        assertList(documents, weights, cache);
+        assertEquals(PostingsCodec.blockCount(documents.length), cache.getHits());
+    }
+
+    @Test
+    public void quantizationError() {
+        for (int i = 0; i <= 10000; i++) {
+            float weight = SCALE * i / 10000;
+            int quantized = PostingsCodec.quantize(weight, SCALE);
+            float error = Math.abs(PostingsCodec.dequantize(quantized, SCALE) - weight);
+            if (quantized > 1) {
+                assertEquals(weight, PostingsCodec.dequantize(quantized, SCALE), SCALE / 255 / 2 + 1e-6);
+            } else {
+                // Los pesos positivos que se redondearían a cero se suben a 1, así que el error solo queda
+                // acotado por un nivel completo.
+                assertEquals(String.valueOf(weight), 0, error, SCALE / 255 + 1e-6);
+            }
+        }
+        assertEquals(255, PostingsCodec.quantize(SCALE, SCALE));
+        assertEquals(SCALE, PostingsCodec.dequantize(255, SCALE), 0);
+    }
+
+    @Test
+    public void quantizationClamps() {
+        assertEquals(0, PostingsCodec.quantize(0, SCALE));
+        assertEquals(1, PostingsCodec.quantize(Float.MIN_VALUE, SCALE));
+        assertEquals(1, PostingsCodec.quantize(SCALE / 1000, SCALE));
+        assertEquals(255, PostingsCodec.quantize(SCALE * 2, SCALE));
+        assertEquals(0, PostingsCodec.quantize(0.5f, 0));
+    }
+
+    private static void assertList(int[] documents, int[] weights) {
+        assertList(documents, weights, null);
+    }
+
+    private static void assertList(int[] documents, int[] weights, PostingBlockCache cache) {
+        PostingList postingList = list(documents, weights, cache);
+        assertEquals(documents.length, postingList.size());
+        int[] decoded = new int[documents.length];
+        float[] decodedWeights = new float[documents.length];
+        float[] expectedWeights = new float[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            decoded[i] = postingList.next();
+            decodedWeights[i] = (float) postingList.weight();
+            expectedWeights[i] = PostingsCodec.dequantize(weights[i], SCALE);
+        }
+        assertArrayEquals(documents, decoded);
+        assertArrayEquals(expectedWeights, decodedWeights, 0);
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, postingList.next());
+        assertEquals(PostingList.NO_MORE_DOCUMENTS, postingList.next());
+    }
+
+    /**
+     * Codifica la lista y la abre detrás de unos bytes de relleno, como queda dentro del archivo de postings.
+     */
+    private static PostingList list(int[] documents, int[] weights, PostingBlockCache cache) {
+        byte[] encoded = PostingsCodec.encode(documents, weights);
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 7);
+        buffer.position(7);
+        buffer.put(encoded);
+        return new SegmentPostingList(buffer, 7, documents.length, SCALE, 1, SCALE, cache,
+                PostingBlockCache.termKey(0, 1));
+    }
+
+    private static int[] documents(int size, Random random) {
+        int[] documents = new int[size];
+        int document = random.nextInt(10);
+        for (int i = 0; i < size; i++) {
+            documents[i] = document;
+            document += 1 + random.nextInt(random.nextBoolean() ? 50 : 5000);
+        }
+        return documents;
+    }
+
+    private static int[] weights(int size, Random random) {
+        int[] weights = new int[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = 1 + random.nextInt(255);
+        }
+        return weights;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] appended = new int[values.length + 1];
+        System.arraycopy(values, 0, appended, 0, values.length);
+        appended[values.length] = value;
+        return appended;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
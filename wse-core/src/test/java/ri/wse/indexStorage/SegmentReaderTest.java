@@ -0,0 +1,197 @@
+package ri.wse.indexStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.support.exceptions.IndexException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Ida y vuelta de un segmento binario: lo que se escribe con {@link SegmentWriter} se lee igual con
+ * {@link SegmentReader}, también cuando el archivo de postings ocupa varios pedazos.
+ */
+public class SegmentReaderTest {
+
+    private static final int DOCUMENTS = 300;
+
+    private Path directory;
+
+    /**
+     * Términos del segmento con los documentos y las frecuencias normalizadas de su lista.
+     */
+    private TreeMap<String, int[]> documents;
+    private TreeMap<String, float[]> frequencies;
+    private double[] norms;
+    private long[] lastModified;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-segment");
+        Random random = new Random(17);
+        this.documents = new TreeMap<>();
+        this.frequencies = new TreeMap<>();
+        for (int term = 0; term < 200; term++) {
+            int size = 1 + (term % 10 == 0 ? random.nextInt(DOCUMENTS) : random.nextInt(20));
+            int[] termDocuments = random.ints(0, DOCUMENTS).distinct().limit(size).sorted().toArray();
+            float[] termFrequencies = new float[termDocuments.length];
+            for (int i = 0; i < termFrequencies.length; i++) {
+                termFrequencies[i] = 0.01f + random.nextFloat();
+            }
+            this.documents.put("termino" + term, termDocuments);
+            this.frequencies.put("termino" + term, termFrequencies);
+        }
+        this.norms = new double[DOCUMENTS];
+        this.lastModified = new long[DOCUMENTS];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            // Un documento sin norma no cuenta para el peso máximo.
+            this.norms[document] = document == 7 ? 0 : 0.5 + random.nextDouble() * 10;
+            this.lastModified[document] = random.nextLong();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestCollection.delete(this.directory);
+    }
+
+    private static double idf(String term) {
+        return 0.25 + term.length() / 10.0;
+    }
+
+    private void write(SegmentWriter segmentWriter) throws IOException {
+        String[] names = new String[DOCUMENTS];
+        String[] urls = new String[DOCUMENTS];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            names[document] = "doc" + document;
+            urls[document] = TestCollection.url(document);
+        }
+        try (SegmentWriter writer = segmentWriter) {
+            writer.writeDocuments(names, urls, this.lastModified, this.norms);
+            for (String term : this.documents.keySet()) {
+                writer.addTerm(term, this.documents.get(term).length, idf(term), this.documents.get(term),
+                        this.frequencies.get(term));
+            }
+        }
+    }
+
+    /**
+     * Compara todo el contenido del segmento leído con lo que se escribió.
+     */
+    private void assertSegment(SegmentReader segmentReader) {
+        assertEquals(this.documents.size(), segmentReader.getTermCount());
+        assertEquals(DOCUMENTS, segmentReader.getDocumentCount());
+        int expectedOrdinal = 0;
+        for (String term : this.documents.keySet()) {
+            int ordinal = segmentReader.findTerm(term);
+            assertEquals(term, expectedOrdinal++, ordinal);
+            assertEquals(term, segmentReader.getTerm(ordinal));
+            int[] termDocuments = this.documents.get(term);
+            float[] termFrequencies = this.frequencies.get(term);
+            assertEquals(term, termDocuments.length, segmentReader.getDocumentFrequency(ordinal));
+            assertEquals(term, idf(term), segmentReader.getIdf(ordinal), 0);
+
+            float scale = 0;
+            for (float frequency : termFrequencies) {
+                scale = Math.max(scale, frequency);
+            }
+            double maxWeight = 0;
+            PostingList postingList = segmentReader.getPostingList(ordinal);
+            assertEquals(term, termDocuments.length, postingList.size());
+            for (int i = 0; i < termDocuments.length; i++) {
+                assertEquals(term, termDocuments[i], postingList.next());
+                double weight = PostingsCodec.dequantize(PostingsCodec.quantize(termFrequencies[i], scale), scale)
+                        * idf(term);
+                assertEquals(term, weight, postingList.weight(), 0);
+                assertEquals(term, termFrequencies[i] * idf(term), postingList.weight(), scale * idf(term) / 255);
+                if (this.norms[termDocuments[i]] > 0) {
+                    maxWeight = Math.max(maxWeight, weight / this.norms[termDocuments[i]]);
+                }
+            }
+            assertEquals(term, PostingList.NO_MORE_DOCUMENTS, postingList.next());
+            assertEquals(term, maxWeight, segmentReader.getMaxWeight(ordinal), 0);
+            assertEquals(term, maxWeight, postingList.getMaxWeight(), 0);
+        }
+        assertEquals(-1, segmentReader.findTerm("termino"));
+        assertEquals(-1, segmentReader.findTerm("termino999"));
+        assertEquals(-1, segmentReader.findTerm("zzz"));
+        for (int document = 0; document < DOCUMENTS; document++) {
+            assertEquals(this.norms[document], segmentReader.getNorm(document), 0);
+            assertEquals("doc" + document, segmentReader.getDocumentName(document));
+            assertEquals(TestCollection.url(document), segmentReader.getUrl(document));
+            assertEquals(this.lastModified[document], segmentReader.getLastModified(document));
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        this.write(new SegmentWriter(this.directory.toString()));
+        SegmentReader segmentReader = new SegmentReader(this.directory.toString());
+        this.assertSegment(segmentReader);
+        segmentReader.decRef();
+    }
+
+    /**
+     * Con pedazos de pocos bytes el archivo de postings tiene muchos pedazos, y las listas que no caben en lo que
+     * queda de uno empiezan en el siguiente; si alguna cruzara el límite, leerla se saldría de su pedazo.
+     */
+    @Test
+    public void postingsSpanSeveralChunks() throws IOException {
+        int chunkSize = 1024;
+        this.write(new SegmentWriter(this.directory.toString(), chunkSize));
+        assertTrue(Files.size(this.directory.resolve(SegmentFormat.POSTINGS_FILE)) > 4 * chunkSize);
+        SegmentReader segmentReader = new SegmentReader(this.directory.toString());
+        this.assertSegment(segmentReader);
+        segmentReader.decRef();
+    }
+
+    @Test
+    public void listLargerThanAChunkIsRejected() throws IOException {
+        try {
+            this.write(new SegmentWriter(this.directory.toString(), 64));
+            fail();
+        } catch (IndexException e) {
+            // Esperado.
+        }
+    }
+
+    /**
+     * Los nombres y urls de la tabla de documentos se leen igual con cualquier carácter y largo.
+     */
+    @Test
+    public void documentTableRoundTrip() throws IOException {
+        String[] names = {"doc_0000", "", "canción_ñandú", "日本語", "emoji_\uD83D\uDE00", repeat('n', 3000)};
+        String[] urls = {"http://www.ejemplo.com/0", "", "http://www.ejemplo.com/canci%C3%B3n",
+                "http://例え.jp/", "http://www.ejemplo.com/?q=a&b=\"c\"", "http://www.ejemplo.com/" + repeat('u', 3000)};
+        long[] lastModified = {0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L, 42};
+        double[] norms = {1, 0, 2.5, Double.MIN_VALUE, 1e300, 3};
+        try (SegmentWriter segmentWriter = new SegmentWriter(this.directory.toString())) {
+            segmentWriter.writeDocuments(names, urls, lastModified, norms);
+        }
+        SegmentReader segmentReader = new SegmentReader(this.directory.toString());
+        assertEquals(names.length, segmentReader.getDocumentCount());
+        for (int document = 0; document < names.length; document++) {
+            assertEquals(names[document], segmentReader.getDocumentName(document));
+            assertEquals(urls[document], segmentReader.getUrl(document));
+            assertEquals(lastModified[document], segmentReader.getLastModified(document));
+            assertEquals(norms[document], segmentReader.getNorm(document), 0);
+        }
+        segmentReader.decRef();
+    }
+
+    private static String repeat(char character, int count) {
+        char[] characters = new char[count];
+        Arrays.fill(characters, character);
+        return new String(characters);
+    }
+}
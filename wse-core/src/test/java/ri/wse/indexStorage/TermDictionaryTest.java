@@ -0,0 +1,177 @@
+package ri.wse.indexStorage;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Búsquedas exactas y por prefijo en el diccionario de términos, comparadas con una búsqueda lineal sobre los
+ * términos ordenados. Los términos ocupan varios bloques de {@link TermDictionary#BLOCK_SIZE}, con familias de
+ * prefijos que cruzan los límites de los bloques y términos cuyos bytes UTF-8 son los mayores posibles.
+ */
+public class TermDictionaryTest {
+
+    /**
+     * Mayor carácter Unicode (U+10FFFF), cuyos bytes UTF-8 son F4 8F BF BF.
+     */
+    private static final String MAX_CHARACTER = "\uDBFF\uDFFF";
+
+    private static Path directory;
+    private static SegmentReader segmentReader;
+    private static TermDictionary termDictionary;
+    private static List<byte[]> terms;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        Set<String> words = new LinkedHashSet<>();
+        for (int i = 0; i < 40; i++) {
+            words.add("casa" + i);
+        }
+        for (int i = 0; i < 30; i++) {
+            words.add("perro" + (char) ('a' + i % 26) + i);
+        }
+        words.addAll(Arrays.asList("a", "ab", "abc", "cas", "casa", "casas", "casb", "zeta", "ámbar", "ñandú", "ñu",
+                "日本", "\uFFFF", "\uFFFF\uFFFF", MAX_CHARACTER, MAX_CHARACTER + "a", MAX_CHARACTER + MAX_CHARACTER));
+        terms = new ArrayList<>();
+        for (String word : words) {
+            terms.add(word.getBytes(StandardCharsets.UTF_8));
+        }
+        terms.sort(SegmentWriter::compare);
+
+        directory = Files.createTempDirectory("wse-dictionary");
+        try (SegmentWriter segmentWriter = new SegmentWriter(directory.toString())) {
+            segmentWriter.writeDocuments(new String[]{"doc0"}, new String[]{"http://www.ejemplo.com/0"},
+                    new long[]{0}, new double[]{1});
+            for (byte[] term : terms) {
+                segmentWriter.addTerm(new String(term, StandardCharsets.UTF_8), 1, 1, new int[]{0}, new float[]{1});
+            }
+        }
+        segmentReader = new SegmentReader(directory.toString());
+        termDictionary = segmentReader.getTermDictionary();
+        assertTrue(terms.size() > 5 * TermDictionary.BLOCK_SIZE);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        segmentReader.decRef();
+        TestCollection.delete(directory);
+    }
+
+    private static boolean startsWith(byte[] term, byte[] prefix) {
+        return term.length >= prefix.length && SegmentWriter.compare(Arrays.copyOf(term, prefix.length), prefix) == 0;
+    }
+
+    /**
+     * Rango esperado: los términos menores al prefijo quedan antes, y los que empiezan con él son continuos.
+     */
+    private static int[] expectedRange(byte[] prefix) {
+        int from = 0;
+        while (from < terms.size() && SegmentWriter.compare(terms.get(from), prefix) < 0) {
+            from++;
+        }
+        int to = from;
+        while (to < terms.size() && startsWith(terms.get(to), prefix)) {
+            to++;
+        }
+        return new int[]{from, to};
+    }
+
+    private static void assertRange(byte[] prefix) {
+        assertArrayEquals(Arrays.toString(prefix), expectedRange(prefix), termDictionary.findPrefixRange(prefix));
+    }
+
+    @Test
+    public void exactHits() {
+        assertEquals(terms.size(), termDictionary.size());
+        for (int ordinal = 0; ordinal < terms.size(); ordinal++) {
+            String term = new String(terms.get(ordinal), StandardCharsets.UTF_8);
+            assertEquals(term, ordinal, termDictionary.find(term));
+            assertEquals(term, termDictionary.getTerm(ordinal));
+        }
+    }
+
+    /**
+     * Términos que no están: antes del primero, después del último, y entre dos términos de un mismo bloque o de
+     * bloques consecutivos.
+     */
+    @Test
+    public void exactMisses() {
+        List<String> misses = new ArrayList<>(Arrays.asList("", "0", "aa", "ca", "casa00", "casa395", "casaa", "casc",
+                "perro", "perroa", "zz", "ñ", "\uFFFE", MAX_CHARACTER + "b", MAX_CHARACTER + MAX_CHARACTER + "a"));
+        for (int block = 0; block * TermDictionary.BLOCK_SIZE < terms.size(); block++) {
+            String first = new String(terms.get(block * TermDictionary.BLOCK_SIZE), StandardCharsets.UTF_8);
+            misses.add(first + "\u0000");
+            misses.add(first.substring(0, first.length() - 1) + "\u0000");
+        }
+        for (String miss : misses) {
+            if (!terms.stream().anyMatch(term -> Arrays.equals(term, miss.getBytes(StandardCharsets.UTF_8)))) {
+                assertEquals(miss, -1, termDictionary.find(miss));
+            }
+        }
+    }
+
+    /**
+     * Todos los prefijos de bytes de cada término, también los que cortan un carácter de varios bytes, más prefijos
+     * que no tiene ningún término.
+     */
+    @Test
+    public void prefixRanges() {
+        for (byte[] term : terms) {
+            for (int length = 0; length <= term.length; length++) {
+                assertRange(Arrays.copyOf(term, length));
+            }
+        }
+        for (String prefix : new String[]{"0", "aa", "b", "casa4", "casa40", "perroz", "zz", "\uFFFE", "日本語"}) {
+            assertRange(prefix.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void prefixRangeSpansBlocks() {
+        int[] range = termDictionary.findPrefixRange("casa");
+        assertArrayEquals(expectedRange("casa".getBytes(StandardCharsets.UTF_8)), range);
+        assertTrue(range[1] - range[0] > 2 * TermDictionary.BLOCK_SIZE);
+        assertTrue(range[0] / TermDictionary.BLOCK_SIZE < (range[1] - 1) / TermDictionary.BLOCK_SIZE - 1);
+    }
+
+    @Test
+    public void emptyPrefixRanges() {
+        for (String prefix : new String[]{"0", "casa9x", "perrozz", "zz", "\uFFFE"}) {
+            int[] range = termDictionary.findPrefixRange(prefix);
+            assertEquals(prefix, range[0], range[1]);
+        }
+        assertArrayEquals(new int[]{0, terms.size()}, termDictionary.findPrefixRange(""));
+    }
+
+    /**
+     * Un prefijo con los mayores bytes de UTF-8 termina en el último término, y uno que termina en bytes 0xFF (que
+     * ningún término tiene) no puede incrementarse en el último byte.
+     */
+    @Test
+    public void prefixRangesAtTheEnd() {
+        assertArrayEquals(new int[]{terms.size() - 3, terms.size()}, termDictionary.findPrefixRange(MAX_CHARACTER));
+        assertArrayEquals(new int[]{terms.size() - 1, terms.size()},
+                termDictionary.findPrefixRange(MAX_CHARACTER + MAX_CHARACTER));
+        byte[][] prefixes = {{(byte) 0xFF}, {(byte) 0xFF, (byte) 0xFF}, {'c', (byte) 0xFF}, {'c', 'a', (byte) 0xFF},
+                {(byte) 0xF4, (byte) 0xFF}, {(byte) 0xF4, (byte) 0x8F, (byte) 0xBF, (byte) 0xBF, (byte) 0xFF}};
+        for (byte[] prefix : prefixes) {
+            assertRange(prefix);
+        }
+        assertArrayEquals(new int[]{terms.size(), terms.size()}, termDictionary.findPrefixRange(new byte[]{-1}));
+    }
+}
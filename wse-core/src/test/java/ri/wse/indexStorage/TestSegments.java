@@ -0,0 +1,79 @@
+package ri.wse.indexStorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Escribe segmentos pequeños directamente con {@link SegmentWriter} para las pruebas del almacenamiento del índice.
+ */
+final class TestSegments {
+
+    private TestSegments() {
+    }
+
+    /**
+     * Escribe y agrega un segmento con documentos llamados prefijo-i, que tienen todos el término "comun" y cada
+     * uno un término propio.
+     *
+     * @return el nombre del segmento
+     */
+    static String add(IndexWriter indexWriter, String prefix, int documents) throws IOException {
+        String name = indexWriter.newSegmentName();
+        String[] names = new String[documents];
+        String[] urls = new String[documents];
+        long[] lastModified = new long[documents];
+        double[] norms = new double[documents];
+        int[] all = new int[documents];
+        float[] frequencies = new float[documents];
+        for (int i = 0; i < documents; i++) {
+            names[i] = prefix + "-" + i;
+            urls[i] = "http://www.ejemplo.com/" + names[i];
+            norms[i] = 1;
+            all[i] = i;
+            frequencies[i] = 1;
+        }
+        try (SegmentWriter segmentWriter = new SegmentWriter(indexWriter.getSegmentDirectory(name))) {
+            segmentWriter.writeDocuments(names, urls, lastModified, norms);
+            segmentWriter.addTerm("comun", documents, 1, all, frequencies);
+            for (int i = 0; i < documents; i++) {
+                segmentWriter.addTerm("propio" + prefix + "x" + (char) ('a' + i), 1, 1, new int[]{i},
+                        new float[]{1});
+            }
+        }
+        indexWriter.addSegment(name, documents);
+        return name;
+    }
+
+    /**
+     * Nombres de los documentos de un segmento escrito con {@link #add}, sin los borrados.
+     */
+    static List<String> names(String prefix, int documents, int... deleted) {
+        Set<Integer> deletedSet = new HashSet<>();
+        for (int document : deleted) {
+            deletedSet.add(document);
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            if (!deletedSet.contains(i)) {
+                names.add(prefix + "-" + i);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Nombres de los documentos vivos de un lector, en orden de identificador.
+     */
+    static List<String> liveNames(IndexReader indexReader) {
+        List<String> names = new ArrayList<>();
+        for (int document = 0; document < indexReader.getDocumentCount(); document++) {
+            if (!indexReader.isDeleted(document)) {
+                names.add(indexReader.getDocumentName(document));
+            }
+        }
+        return names;
+    }
+}
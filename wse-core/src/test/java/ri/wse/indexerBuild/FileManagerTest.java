@@ -0,0 +1,121 @@
+package ri.wse.indexerBuild;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Los archivos .wtd se generan en el directorio del índice a partir de las listas invertidas, con el peso de cada
+ * término de cada documento, sin importar en cuántas tandas se exporten.
+ */
+public class FileManagerTest {
+
+    private static final int DOCUMENTS = 60;
+    private static final int VOCABULARY = 80;
+
+    private Path directory;
+    private List<Map<String, Double>> documents;
+    private Map<String, Double> vocabulary;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-file-manager");
+        Files.createDirectories(this.directory.resolve("tok"));
+        Files.createDirectories(this.directory.resolve("wtd"));
+
+        Random random = new Random(11);
+        this.documents = new ArrayList<>();
+        this.vocabulary = new TreeMap<>();
+        for (int document = 0; document < DOCUMENTS; document++) {
+            Map<String, Double> words = new HashMap<>();
+            // El último documento no tiene términos.
+            int size = document == DOCUMENTS - 1 ? 0 : 1 + random.nextInt(30);
+            while (words.size() < size) {
+                words.put("termino" + random.nextInt(VOCABULARY), (double) (1 + random.nextInt(5)));
+            }
+            for (String word : words.keySet()) {
+                this.vocabulary.merge(word, 1.0, Double::sum);
+            }
+            this.documents.add(words);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestCollection.delete(this.directory);
+    }
+
+    @Test
+    public void wtdFilesInOneBatch() throws IOException {
+        this.export(PostingsInverter.DEFAULT_MEMORY_BUDGET, 1);
+        this.assertWtdFiles();
+    }
+
+    /**
+     * Con un presupuesto de unas pocas entradas cada tanda tiene uno o dos documentos, y las corridas de la inversión
+     * se escriben en disco.
+     */
+    @Test
+    public void wtdFilesInManyBatches() throws IOException {
+        this.export(256, 3);
+        this.assertWtdFiles();
+    }
+
+    private void export(long memoryBudget, int threads) throws IOException {
+        String[] documentNames = new String[DOCUMENTS];
+        String[] urls = new String[DOCUMENTS];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            documentNames[document] = "documento" + document;
+            urls[document] = "http://localhost/" + document;
+        }
+        Path segment = Files.createDirectories(this.directory.resolve("segmento"));
+        try (FileManager fileManager = new FileManager(this.vocabulary, documentNames, urls, new long[DOCUMENTS],
+                this.directory.toString(), new String[]{segment.toString()}, new WorkerPool(threads), memoryBudget,
+                true)) {
+            for (int document = DOCUMENTS - 1; document >= 0; document--) {
+                fileManager.addDocument(document, this.documents.get(document));
+            }
+            fileManager.calculateInverseFrequencies(DOCUMENTS);
+            fileManager.generateSegments();
+            fileManager.generateWtdFiles();
+        }
+    }
+
+    private void assertWtdFiles() throws IOException {
+        for (int document = 0; document < DOCUMENTS; document++) {
+            Map<String, Double> words = this.documents.get(document);
+            Map<String, Double> expected = new TreeMap<>();
+            double max = words.isEmpty() ? 1 : Collections.max(words.values());
+            for (Map.Entry<String, Double> word : words.entrySet()) {
+                double idf = Math.log10((double) DOCUMENTS / this.vocabulary.get(word.getKey()));
+                expected.put(word.getKey(), idf * (float) (word.getValue() / max));
+            }
+
+            assertTrue(Files.exists(this.directory.resolve("tok").resolve("documento" + document + ".tok")));
+            List<String> lines = Files.readAllLines(this.directory.resolve("wtd").resolve("documento" + document
+                    + ".wtd"), StandardCharsets.UTF_8);
+            Map<String, Double> actual = new TreeMap<>();
+            for (String line : lines) {
+                actual.put(line.substring(0, 30).trim(), Double.parseDouble(line.substring(31).trim()));
+            }
+            assertEquals("documento" + document, words.size(), lines.size());
+            assertEquals("documento" + document, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ri.wse.indexerBuild;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.indexStorage.IndexReader;
+import ri.wse.model.ResultEntry;
+import ri.wse.queryProcessor.IndexSearcher;
+import ri.wse.queryProcessor.QueryProcessor;
+import ri.wse.support.exceptions.IndexException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Después de una actualización incremental, y antes de que se fusionen los segmentos, las consultas dan los mismos
+ * resultados que con el índice reconstruido desde cero. Las similaridades solo difieren por la cuantización de las
+ * frecuencias, cuya escala es distinta en cada segmento.
+ */
+public class IncrementalIndexerTest {
+
+    private static final int DOCUMENTS = 400;
+    private static final int ADDED = 200;
+    private static final int K = 10;
+
+    /**
+     * Diferencia relativa aceptada entre las similaridades de los dos índices. Las frecuencias se cuantizan en 255
+     * niveles con la escala de cada segmento, así que las frecuencias bajas pueden diferir en algunos centésimos;
+     * con el idf y las normas calculados al escribir cada segmento las diferencias pasaban del 100 %.
+     */
+    private static final double EPSILON = 5e-2;
+
+    private TestCollection collection;
+    private Path rebuilt;
+
+    @Before
+    public void setUp() throws IOException {
+        this.collection = new TestCollection(DOCUMENTS, 300, 31);
+        this.collection.index(1);
+        this.rebuilt = Files.createTempDirectory("wse-rebuilt");
+        Files.copy(new File(this.collection.getStopWordsFile()).toPath(), this.rebuilt.resolve("stopwords.txt"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.collection.close();
+        TestCollection.delete(this.rebuilt);
+    }
+
+    private IncrementalIndexer incrementalIndexer(String resultsDirectory) throws IOException {
+        return new IncrementalIndexer(this.collection.getCollectionDirectory(), resultsDirectory,
+                this.collection.getUrlsFile(), this.collection.getStopWordsFile(), 1, 1024 * 1024);
+    }
+
+    @Test
+    public void incrementalUpdateMatchesRebuild() throws IOException {
+        for (int document = 0; document < DOCUMENTS; document += 9) {
+            this.collection.deleteDocument(document);
+        }
+        for (int document = 4; document < DOCUMENTS; document += 13) {
+            if (document % 9 != 0) {
+                this.collection.rewriteDocument(document);
+            }
+        }
+        for (int document = DOCUMENTS; document < DOCUMENTS + ADDED; document++) {
+            this.collection.addDocument(document);
+        }
+        try (IncrementalIndexer incrementalIndexer = this.incrementalIndexer(this.collection.getResultsDirectory())) {
+            incrementalIndexer.update();
+        }
+        new IndexerController(this.collection.getCollectionDirectory(), this.rebuilt.resolve("Results").toString(),
+                this.collection.getUrlsFile(), this.collection.getStopWordsFile(), 1, 1024 * 1024).index();
+
+        IndexReader indexReader = IndexReader.open(this.collection.getResultsDirectory());
+        assertEquals(2, indexReader.getSegmentCount());
+        indexReader.close();
+
+        IndexSearcher incremental = new IndexSearcher(this.collection.getBaseDirectory());
+        IndexSearcher rebuilt = new IndexSearcher(this.rebuilt.toString() + File.separator);
+        assertEquals(rebuilt.getLiveDocumentCount(), incremental.getLiveDocumentCount());
+
+        for (String query : this.collection.queries(40, 3)) {
+            QueryProcessor rebuiltQuery = new QueryProcessor(query, rebuilt);
+            for (String term : rebuiltQuery.getTerms()) {
+                assertEquals(query, rebuilt.getIdf(term), incremental.getIdf(term));
+            }
+            List<ResultEntry> ranking = rebuiltQuery.manageQuery(0, DOCUMENTS + ADDED);
+            Map<String, Double> rebuiltScores = new HashMap<>();
+            for (ResultEntry result : ranking) {
+                rebuiltScores.put(result.getName(), result.getScore());
+            }
+
+            QueryProcessor incrementalQuery = new QueryProcessor(query, incremental);
+            List<ResultEntry> results = incrementalQuery.manageQuery(0, K);
+            assertEquals(query, Math.min(K, ranking.size()), results.size());
+            if (incrementalQuery.isTotalHitsExact()) {
+                assertEquals(query, ranking.size(), incrementalQuery.getTotalHits());
+            }
+            double kthScore = ranking.get(results.size() - 1).getScore();
+            for (int i = 0; i < results.size(); i++) {
+                ResultEntry result = results.get(i);
+                String message = query + " " + result.getName();
+                Double rebuiltScore = rebuiltScores.get(result.getName());
+                assertNotNull(message, rebuiltScore);
+                assertEquals(message, rebuiltScore, result.getScore(), EPSILON * rebuiltScore);
+                double expectedScore = ranking.get(i).getScore();
+                assertEquals(message, expectedScore, result.getScore(), EPSILON * expectedScore);
+                assertTrue(message, rebuiltScore >= kthScore * (1 - EPSILON));
+            }
+        }
+    }
+
+    @Test
+    public void shardedIndexIsRejected() throws IOException {
+        TestCollection.delete(new File(this.collection.getResultsDirectory()).toPath());
+        this.collection.index(2);
+        try {
+            this.incrementalIndexer(this.collection.getResultsDirectory()).close();
+            fail();
+        } catch (IndexException e) {
+            // Esperado.
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ri.wse.indexerBuild;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * El índice que escribe el indexador no depende de la cantidad de hilos: los archivos de los segmentos son iguales
+ * byte a byte con un hilo y con varios.
+ */
+public class IndexerControllerTest {
+
+    private static final int DOCUMENTS = 1500;
+    private static final int THREADS = 4;
+
+    /**
+     * Presupuesto que obliga al inversor a escribir varias corridas.
+     */
+    private static final long SMALL_BUDGET = 64 * 1024;
+
+    private TestCollection collection;
+    private Path parallel;
+
+    @Before
+    public void setUp() throws IOException {
+        this.collection = new TestCollection(DOCUMENTS, 400, 37);
+        this.parallel = Files.createTempDirectory("wse-parallel");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.collection.close();
+        TestCollection.delete(this.parallel);
+    }
+
+    private void index(String resultsDirectory, int threads, int shards) {
+        new IndexerController(this.collection.getCollectionDirectory(), resultsDirectory,
+                this.collection.getUrlsFile(), this.collection.getStopWordsFile(), threads, SMALL_BUDGET,
+                shards).index();
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).map(directory::relativize).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void assertSameIndex(int shards) throws IOException {
+        Path sequential = this.collection.getDirectory().resolve("Results");
+        this.index(sequential.toString(), 1, shards);
+        this.index(this.parallel.toString(), THREADS, shards);
+
+        List<Path> files = files(sequential);
+        assertEquals(files, files(this.parallel));
+        for (String name : new String[]{"Terminos.dic", "Postings.pst", "Documentos.tbl"}) {
+            assertEquals(name, shards, files.stream().filter(file -> file.endsWith(name)).count());
+        }
+        for (Path file : files) {
+            assertArrayEquals(file.toString(), Files.readAllBytes(sequential.resolve(file)),
+                    Files.readAllBytes(this.parallel.resolve(file)));
+        }
+    }
+
+    @Test
+    public void threadsDoNotChangeTheIndex() throws IOException {
+        this.assertSameIndex(1);
+    }
+
+    @Test
+    public void threadsDoNotChangeTheShards() throws IOException {
+        this.assertSameIndex(2);
+    }
+}
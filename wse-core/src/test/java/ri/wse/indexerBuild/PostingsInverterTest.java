@@ -0,0 +1,184 @@
+package ri.wse.indexerBuild;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Las listas que entrega el inversor no dependen de cuántas corridas escriba, del orden en que lleguen los documentos
+ * ni de cuántos hilos los agreguen.
+ */
+public class PostingsInverterTest {
+
+    private static final int DOCUMENTS = 3000;
+    private static final int VOCABULARY = 400;
+    private static final int TERMS_PER_DOCUMENT = 25;
+
+    /**
+     * Presupuesto que obliga a escribir decenas de corridas.
+     */
+    private static final long SMALL_BUDGET = 64 * 1024;
+
+    private Path directory;
+    private String[][] terms;
+    private float[][] normalizedFrequencies;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("wse-inverter");
+        Random random = new Random(7);
+        this.terms = new String[DOCUMENTS][];
+        this.normalizedFrequencies = new float[DOCUMENTS][];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            List<String> vocabulary = new ArrayList<>();
+            for (int term = 0; term < VOCABULARY; term++) {
+                vocabulary.add("t" + term);
+            }
+            Collections.shuffle(vocabulary, random);
+            this.terms[document] = vocabulary.subList(0, TERMS_PER_DOCUMENT).toArray(new String[0]);
+            this.normalizedFrequencies[document] = new float[TERMS_PER_DOCUMENT];
+            for (int i = 0; i < TERMS_PER_DOCUMENT; i++) {
+                this.normalizedFrequencies[document][i] = random.nextFloat();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestCollection.delete(this.directory);
+    }
+
+    @Test
+    public void spilledRunsMatchInMemory() throws IOException {
+        Map<String, Postings> expected = this.invert(Long.MAX_VALUE, this.documentOrder(false), 1, 0);
+        Map<String, Postings> spilled = this.invert(SMALL_BUDGET, this.documentOrder(false), 1, 10);
+        assertPostingsEqual(expected, spilled);
+    }
+
+    @Test
+    public void outOfOrderDocumentsAreSorted() throws IOException {
+        Map<String, Postings> expected = this.invert(Long.MAX_VALUE, this.documentOrder(false), 1, 0);
+        assertPostingsEqual(expected, this.invert(Long.MAX_VALUE, this.documentOrder(true), 1, 0));
+        assertPostingsEqual(expected, this.invert(SMALL_BUDGET, this.documentOrder(true), 1, 10));
+    }
+
+    @Test
+    public void concurrentAddsWhileSpilling() throws IOException {
+        Map<String, Postings> expected = this.invert(Long.MAX_VALUE, this.documentOrder(false), 1, 0);
+        for (int round = 0; round < 5; round++) {
+            assertPostingsEqual(expected, this.invert(SMALL_BUDGET, this.documentOrder(true), 4, 10));
+        }
+    }
+
+    @Test
+    public void closeDeletesRuns() throws IOException {
+        PostingsInverter postingsInverter = new PostingsInverter(this.directory.toString(), SMALL_BUDGET);
+        for (int document = 0; document < DOCUMENTS; document++) {
+            postingsInverter.add(document, this.terms[document], this.normalizedFrequencies[document]);
+        }
+        assertTrue(postingsInverter.getRunCount() > 0);
+        postingsInverter.close();
+        try (Stream<Path> files = Files.list(this.directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private int[] documentOrder(boolean shuffled) {
+        List<Integer> order = new ArrayList<>();
+        for (int document = 0; document < DOCUMENTS; document++) {
+            order.add(document);
+        }
+        if (shuffled) {
+            Collections.shuffle(order, new Random(order.size()));
+        }
+        return order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Invierte los documentos en el orden dado, repartidos entre varios hilos, y recorre los términos dos veces para
+     * verificar que el recorrido se puede repetir.
+     *
+     * @param minimumRuns cantidad mínima de corridas que se espera escribir
+     */
+    private Map<String, Postings> invert(long memoryBudget, int[] order, int threads, int minimumRuns)
+            throws IOException {
+        try (PostingsInverter postingsInverter = new PostingsInverter(this.directory.toString(), memoryBudget)) {
+            AtomicInteger next = new AtomicInteger();
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        for (int i = next.getAndIncrement(); i < order.length; i = next.getAndIncrement()) {
+                            int document = order[i];
+                            postingsInverter.add(document, this.terms[document], this.normalizedFrequencies[document]);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            assertEquals(Collections.emptyList(), failures);
+
+            Map<String, Postings> postings = collect(postingsInverter);
+            assertTrue(postingsInverter.getRunCount() >= minimumRuns);
+            assertPostingsEqual(postings, collect(postingsInverter));
+            return postings;
+        }
+    }
+
+    private static Map<String, Postings> collect(PostingsInverter postingsInverter) throws IOException {
+        Map<String, Postings> postings = new LinkedHashMap<>();
+        postingsInverter.forEachTerm((term, documents, normalizedFrequencies) ->
+                postings.put(term, new Postings(documents.clone(), normalizedFrequencies.clone())));
+        return postings;
+    }
+
+    private static void assertPostingsEqual(Map<String, Postings> expected, Map<String, Postings> actual) {
+        // Los términos se entregan en orden lexicográfico.
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (Map.Entry<String, Postings> entry : expected.entrySet()) {
+            Postings postings = actual.get(entry.getKey());
+            assertArrayEquals(entry.getKey(), entry.getValue().documents, postings.documents);
+            assertArrayEquals(entry.getKey(), entry.getValue().normalizedFrequencies, postings.normalizedFrequencies,
+                    0f);
+        }
+    }
+
+    private static class Postings {
+
+        private final int[] documents;
+        private final float[] normalizedFrequencies;
+
+        Postings(int[] documents, float[] normalizedFrequencies) {
+            this.documents = documents;
+            this.normalizedFrequencies = normalizedFrequencies;
+        }
+    }
+}
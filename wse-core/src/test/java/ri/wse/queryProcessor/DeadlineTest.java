@@ -0,0 +1,82 @@
+package ri.wse.queryProcessor;
+
+import org.junit.Test;
+import ri.wse.support.exceptions.QueryTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Límites estrictos, presupuestos de tiempo y consultas sin límite.
+ */
+public class DeadlineTest {
+
+    @Test
+    public void noneNeverExpires() {
+        assertFalse(Deadline.NONE.isBounded());
+        assertFalse(Deadline.NONE.isExpired());
+        assertFalse(Deadline.NONE.check());
+        assertEquals(Long.MAX_VALUE, Deadline.NONE.remainingNanos());
+    }
+
+    @Test
+    public void hardDeadlineThrowsOnceExpired() {
+        Deadline pending = Deadline.after(1, TimeUnit.HOURS);
+        assertTrue(pending.isBounded());
+        assertFalse(pending.allowsPartialResults());
+        assertFalse(pending.isExpired());
+        assertFalse(pending.check());
+        assertTrue(pending.remainingNanos() > TimeUnit.MINUTES.toNanos(59));
+
+        Deadline expired = Deadline.after(0, TimeUnit.MILLISECONDS);
+        assertTrue(expired.isExpired());
+        assertEquals(0, expired.remainingNanos());
+        try {
+            expired.check();
+            fail();
+        } catch (QueryTimeoutException e) {
+            // Esperado.
+        }
+    }
+
+    @Test
+    public void budgetStopsWithoutThrowing() {
+        Deadline pending = Deadline.budget(1, TimeUnit.HOURS);
+        assertTrue(pending.allowsPartialResults());
+        assertFalse(pending.check());
+
+        Deadline expired = Deadline.budget(0, TimeUnit.MILLISECONDS);
+        assertTrue(expired.isExpired());
+        assertTrue(expired.check());
+    }
+
+    /**
+     * Un hilo interrumpido (por ejemplo, una consulta cancelada) se detiene con cualquier límite, incluso con un
+     * presupuesto de tiempo.
+     */
+    @Test
+    public void interruptionStopsAnyBoundedQuery() {
+        for (Deadline deadline : new Deadline[]{Deadline.after(1, TimeUnit.HOURS),
+                Deadline.budget(1, TimeUnit.HOURS)}) {
+            Thread.currentThread().interrupt();
+            try {
+                deadline.check();
+                fail();
+            } catch (QueryTimeoutException e) {
+                // Esperado.
+            } finally {
+                Thread.interrupted();
+            }
+        }
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(Deadline.NONE.check());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ri.wse.queryProcessor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.model.ResultEntry;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * La poda MaxScore debe devolver exactamente los mismos documentos, en el mismo orden y con la misma similaridad,
+ * que el cálculo exhaustivo término a término.
+ */
+public class MaxScoreScorerTest {
+
+    private static final int[] K = {1, 5, 10, 50, 1000};
+
+    private static TestCollection collection;
+    private static IndexSearcher indexSearcher;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = new TestCollection(400, 300, 4L);
+        collection.index(1);
+        indexSearcher = new IndexSearcher(collection.getBaseDirectory());
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        collection.close();
+    }
+
+    @Test
+    public void pruningReturnsTheSameTopK() {
+        for (int terms = 1; terms <= 4; terms++) {
+            for (String query : collection.queries(50, terms)) {
+                for (int k : K) {
+                    List<ResultEntry> expected = query(query, false).manageQuery(0, k);
+                    List<ResultEntry> actual = query(query, true).manageQuery(0, k);
+                    assertEquals(query + " k=" + k, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pruningReturnsTheSamePage() {
+        for (String query : collection.queries(50, 3)) {
+            List<ResultEntry> expected = query(query, false).manageQuery(10, 10);
+            assertEquals(query, expected, query(query, true).manageQuery(10, 10));
+        }
+    }
+
+    @Test
+    public void pruningEvaluatesFewerPostings() {
+        long exhaustivePostings = 0;
+        long prunedPostings = 0;
+        for (String query : collection.queries(50, 3)) {
+            QueryProcessor exhaustive = query(query, false);
+            exhaustive.manageQuery(0, 10);
+            exhaustivePostings += exhaustive.getPostingsEvaluated();
+            QueryProcessor pruned = query(query, true);
+            pruned.manageQuery(0, 10);
+            prunedPostings += pruned.getPostingsEvaluated();
+            assertTrue(query, pruned.getPostingsEvaluated() <= exhaustive.getPostingsEvaluated());
+        }
+        assertTrue(prunedPostings < exhaustivePostings);
+    }
+
+    @Test
+    public void totalHitsAreExactOnlyWithoutPruning() {
+        String query = collection.queries(1, 2).get(0);
+        QueryProcessor exhaustive = query(query, false);
+        exhaustive.manageQuery(0, 10);
+        assertTrue(exhaustive.isTotalHitsExact());
+        QueryProcessor pruned = query(query, true);
+        pruned.manageQuery(0, 10);
+        assertTrue(!pruned.isTotalHitsExact());
+        assertTrue(pruned.getTotalHits() <= exhaustive.getTotalHits());
+    }
+
+    private static QueryProcessor query(String query, boolean pruning) {
+        QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+        queryProcessor.setPruning(pruning);
+        return queryProcessor;
+    }
+}
@@ -0,0 +1,151 @@
+package ri.wse.queryProcessor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.model.ResultEntry;
+import ri.wse.support.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Repartir una consulta en rangos de documentos debe devolver los mismos documentos, en el mismo orden y con la misma
+ * similaridad, que calcularla en un solo hilo. La colección tiene documentos repetidos en rangos distintos, así que
+ * la mezcla de los top k de los rangos también tiene que resolver empates.
+ */
+public class ParallelScorerTest {
+
+    private static final int DOCUMENTS = 400;
+    private static final int[] K = {1, 10, 100, DOCUMENTS};
+
+    private static TestCollection collection;
+    private static IndexSearcher indexSearcher;
+    private static ParallelScorer parallelScorer;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = new TestCollection(DOCUMENTS, 1000, 23);
+        Path directory = Paths.get(collection.getCollectionDirectory());
+        for (int document = 0; document < 30; document++) {
+            Files.copy(directory.resolve(TestCollection.fileName(document)),
+                    directory.resolve(TestCollection.fileName(document + 250)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        collection.index(1);
+        indexSearcher = new IndexSearcher(collection.getBaseDirectory());
+        parallelScorer = new ParallelScorer(3);
+        parallelScorer.setMinPostingsPerRange(1);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        parallelScorer.destroy();
+        collection.close();
+    }
+
+    @Test
+    public void rangesMatchSingleThread() {
+        long parallelQueries = Metrics.getCounters().getOrDefault("query.parallel", 0L);
+        for (int maxRanges : new int[]{2, 4, 7}) {
+            parallelScorer.setMaxRangesPerQuery(maxRanges);
+            for (int terms = 1; terms <= 3; terms++) {
+                for (String query : collection.queries(20, terms)) {
+                    for (int k : K) {
+                        QueryProcessor single = new QueryProcessor(query, indexSearcher);
+                        List<ResultEntry> expected = single.manageQuery(0, k);
+                        QueryProcessor parallel = new QueryProcessor(query, indexSearcher);
+                        parallel.setParallelScorer(parallelScorer);
+                        List<ResultEntry> actual = parallel.manageQuery(0, k);
+
+                        String message = query + " rangos=" + maxRanges + " k=" + k;
+                        assertEquals(message, expected, actual);
+                        if (single.isTotalHitsExact() && parallel.isTotalHitsExact()) {
+                            assertEquals(message, single.getTotalHits(), parallel.getTotalHits());
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(Metrics.getCounters().get("query.parallel") > parallelQueries);
+    }
+
+    @Test
+    public void rangesCoverAllDocuments() {
+        for (int documentCount : new int[]{1, 7, 400, 1000003}) {
+            for (int ranges = 1; ranges <= Math.min(8, documentCount); ranges++) {
+                assertEquals(0, ParallelScorer.rangeStart(0, ranges, documentCount));
+                assertEquals(documentCount, ParallelScorer.rangeStart(ranges, ranges, documentCount));
+                for (int range = 0; range < ranges; range++) {
+                    int size = ParallelScorer.rangeStart(range + 1, ranges, documentCount)
+                            - ParallelScorer.rangeStart(range, ranges, documentCount);
+                    assertTrue(size >= documentCount / ranges && size <= documentCount / ranges + 1);
+                }
+            }
+        }
+        // Sin desbordar con índices grandes.
+        assertEquals(Integer.MAX_VALUE / 2, ParallelScorer.rangeStart(1, 2, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void adaptiveRangeCount() {
+        ParallelScorer scorer = new ParallelScorer(2);
+        try {
+            scorer.setMaxRangesPerQuery(4);
+            scorer.setMinPostingsPerRange(1000);
+            assertEquals(1, scorer.getRanges(999, 100000));
+            assertEquals(2, scorer.getRanges(2500, 100000));
+            assertEquals(4, scorer.getRanges(1000000, 100000));
+            assertEquals(3, scorer.getRanges(1000000, 3));
+            scorer.setMaxRangesPerQuery(1);
+            assertEquals(1, scorer.getRanges(1000000, 100000));
+        } finally {
+            scorer.destroy();
+        }
+    }
+
+    /**
+     * Si un rango falla, la excepción llega al hilo de la consulta y ningún otro rango sigue corriendo después.
+     */
+    @Test
+    public void failedRangeWaitsForTheOthers() {
+        ParallelScorer scorer = new ParallelScorer(4);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            try {
+                scorer.forEachRange(6, range -> {
+                    running.incrementAndGet();
+                    try {
+                        if (range == 1) {
+                            throw new IllegalStateException("rango " + range);
+                        }
+                        Thread.sleep(50);
+                        return range;
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                // El pool puede lanzar una copia de la excepción que tiene a la original como causa.
+                assertTrue(e.getMessage(), e.getMessage().endsWith("rango 1"));
+            }
+            assertEquals(0, running.get());
+            assertEquals(Arrays.asList(0, 1, 2), scorer.forEachRange(3, range -> range));
+        } finally {
+            scorer.destroy();
+        }
+    }
+}
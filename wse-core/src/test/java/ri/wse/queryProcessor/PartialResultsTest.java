@@ -0,0 +1,119 @@
+package ri.wse.queryProcessor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.model.ResultEntry;
+import ri.wse.support.exceptions.QueryTimeoutException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Consultas con presupuesto de tiempo: con un presupuesto amplio los resultados son los mismos que sin límite, y con
+ * un presupuesto agotado se devuelven resultados parciales que son coherentes con el ranking completo. Un límite
+ * estricto agotado detiene la consulta.
+ */
+public class PartialResultsTest {
+
+    private static final int DOCUMENTS = 3000;
+
+    private static TestCollection collection;
+    private static IndexSearcher indexSearcher;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = new TestCollection(DOCUMENTS, 300, 29);
+        collection.index(1);
+        indexSearcher = new IndexSearcher(collection.getBaseDirectory());
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        collection.close();
+    }
+
+    private static QueryProcessor query(String query, boolean pruning, Deadline deadline) {
+        QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+        queryProcessor.setPruning(pruning);
+        queryProcessor.setDeadline(deadline);
+        return queryProcessor;
+    }
+
+    @Test
+    public void generousBudgetIsComplete() {
+        for (boolean pruning : new boolean[]{true, false}) {
+            for (String query : collection.queries(30, 3)) {
+                QueryProcessor unbounded = query(query, pruning, Deadline.NONE);
+                List<ResultEntry> expected = unbounded.manageQuery(0, 10);
+                QueryProcessor budgeted = query(query, pruning, Deadline.budget(1, TimeUnit.HOURS));
+                assertEquals(query, expected, budgeted.manageQuery(0, 10));
+                assertFalse(query, budgeted.isPartial());
+            }
+        }
+    }
+
+    /**
+     * Con la poda, el cálculo se detiene entre documentos: los documentos devueltos tienen su similaridad exacta.
+     * Sin la poda, se detiene entre términos o dentro de una lista, así que las similaridades son sumas parciales
+     * que no pasan de la exacta.
+     */
+    @Test
+    public void spentBudgetReturnsConsistentPartialResults() {
+        int partial = 0;
+        for (boolean pruning : new boolean[]{true, false}) {
+            for (String query : collection.queries(30, 3)) {
+                QueryProcessor complete = query(query, false, Deadline.NONE);
+                List<ResultEntry> ranking = complete.manageQuery(0, DOCUMENTS);
+                Map<String, Double> exactScores = new HashMap<>();
+                for (ResultEntry result : ranking) {
+                    exactScores.put(result.getName(), result.getScore());
+                }
+
+                QueryProcessor budgeted = query(query, pruning, Deadline.budget(0, TimeUnit.MILLISECONDS));
+                List<ResultEntry> results = budgeted.manageQuery(0, 10);
+                assertFalse(query, budgeted.isTotalHitsExact() && budgeted.isPartial());
+                for (int i = 0; i < results.size(); i++) {
+                    double score = results.get(i).getScore();
+                    String message = query + " " + results.get(i).getName();
+                    assertTrue(message, i == 0 || results.get(i - 1).getScore() >= score);
+                    double exact = exactScores.get(results.get(i).getName());
+                    if (pruning) {
+                        assertEquals(message, exact, score, 0);
+                    } else {
+                        assertTrue(message, score <= exact + 1e-12);
+                    }
+                }
+                if (budgeted.isPartial()) {
+                    partial++;
+                } else {
+                    assertEquals(query, ranking.subList(0, Math.min(10, ranking.size())), results);
+                }
+            }
+        }
+        assertTrue("Ninguna consulta agotó el presupuesto", partial > 0);
+    }
+
+    @Test
+    public void spentHardDeadlineStopsTheQuery() {
+        for (boolean pruning : new boolean[]{true, false}) {
+            QueryProcessor queryProcessor = query(collection.queries(1, 2).get(0), pruning,
+                    Deadline.after(0, TimeUnit.MILLISECONDS));
+            try {
+                queryProcessor.manageQuery(0, 10);
+                fail();
+            } catch (QueryTimeoutException e) {
+                // Esperado.
+            }
+        }
+    }
+}
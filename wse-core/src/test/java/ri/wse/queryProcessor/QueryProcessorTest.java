@@ -0,0 +1,152 @@
+package ri.wse.queryProcessor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.indexStorage.PostingList;
+import ri.wse.model.ResultEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * El cálculo término a término sobre el índice invertido da las mismas similaridades que el cálculo original, que
+ * recorría todos los documentos con todos sus términos, y las páginas pedidas con offset y limit son pedazos del
+ * ranking completo.
+ */
+public class QueryProcessorTest {
+
+    private static final int DOCUMENTS = 500;
+
+    /**
+     * Diferencia relativa aceptada: el índice guarda los pesos cuantizados, pero las normas se calculan al indexar
+     * con los pesos sin cuantizar.
+     */
+    private static final double EPSILON = 1e-2;
+
+    private static TestCollection collection;
+    private static IndexSearcher indexSearcher;
+
+    /**
+     * Pesos de todos los términos de cada documento, como los tenía el cálculo original.
+     */
+    private static Map<String, Map<String, Double>> documentWeights;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = new TestCollection(DOCUMENTS, 300, 23);
+        collection.index(1);
+        indexSearcher = new IndexSearcher(collection.getBaseDirectory());
+        documentWeights = new HashMap<>();
+        for (String term : collection.getVocabulary()) {
+            PostingList postingList = indexSearcher.getPostingList(term);
+            if (postingList == null) {
+                continue;
+            }
+            for (int document = postingList.next(); document != PostingList.NO_MORE_DOCUMENTS;
+                 document = postingList.next()) {
+                documentWeights.computeIfAbsent(indexSearcher.getDocumentName(document), name -> new HashMap<>())
+                        .put(term, postingList.weight());
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        collection.close();
+    }
+
+    /**
+     * Similaridad de cada documento como la calculaba el QueryProcessor original: recorre todos los documentos y
+     * todos sus términos, y la norma del documento se calcula con todos sus pesos.
+     */
+    private static Map<String, Double> baselineScores(String query) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : query.split("-")) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        Map<String, Double> queryWeights = new HashMap<>();
+        double thirdSum = 0.0;
+        for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+            Double idf = indexSearcher.getIdf(term.getKey());
+            double weight = idf == null ? 0 : (0.5 + 0.5 * term.getValue()) * idf;
+            queryWeights.put(term.getKey(), weight);
+            thirdSum += weight * weight;
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Map<String, Double>> document : documentWeights.entrySet()) {
+            double firstSum = 0.0;
+            double secondSum = 0.0;
+            for (Map.Entry<String, Double> value : document.getValue().entrySet()) {
+                secondSum += value.getValue() * value.getValue();
+                firstSum += value.getValue() * queryWeights.getOrDefault(value.getKey(), 0.0);
+            }
+            double similarity = firstSum / (Math.sqrt(secondSum) * Math.sqrt(thirdSum));
+            if (similarity > 0) {
+                scores.put(document.getKey(), similarity);
+            }
+        }
+        return scores;
+    }
+
+    private static QueryProcessor query(String query, boolean pruning) {
+        QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+        queryProcessor.setPruning(pruning);
+        return queryProcessor;
+    }
+
+    @Test
+    public void scoresMatchTheBaseline() {
+        for (boolean pruning : new boolean[]{false, true}) {
+            for (int terms = 1; terms <= 4; terms++) {
+                for (String query : collection.queries(20, terms)) {
+                    Map<String, Double> expected = baselineScores(query);
+                    QueryProcessor queryProcessor = query(query, pruning);
+                    List<ResultEntry> results = queryProcessor.manageQuery(0, DOCUMENTS);
+                    assertEquals(query, expected.size(), results.size());
+                    assertEquals(query, expected.size(), queryProcessor.getTotalHits());
+                    for (int i = 0; i < results.size(); i++) {
+                        String message = query + " " + results.get(i).getName();
+                        Double score = expected.get(results.get(i).getName());
+                        assertNotNull(message, score);
+                        int document = Integer.parseInt(results.get(i).getName().substring("doc_".length()));
+                        assertEquals(message, TestCollection.url(document), results.get(i).getUrl());
+                        assertEquals(message, score, results.get(i).getScore(), EPSILON * score);
+                        assertTrue(message, i == 0 || results.get(i - 1).getScore() >= results.get(i).getScore());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pagesAreSlicesOfTheRanking() {
+        for (String query : collection.queries(20, 2)) {
+            List<ResultEntry> ranking = query(query, false).manageQuery(0, DOCUMENTS);
+            for (int limit : new int[]{1, 7, 10}) {
+                List<ResultEntry> pages = new ArrayList<>();
+                for (int offset = 0; offset < ranking.size(); offset += limit) {
+                    List<ResultEntry> results = query(query, true).manageQuery(offset, limit);
+                    assertEquals(query, Math.min(limit, ranking.size() - offset), results.size());
+                    pages.addAll(results);
+                }
+                assertEquals(query + " limit=" + limit, ranking, pages);
+            }
+
+            QueryProcessor pastTheEnd = query(query, false);
+            assertTrue(query, pastTheEnd.manageQuery(ranking.size(), 10).isEmpty());
+            assertEquals(query, ranking.size(), pastTheEnd.getTotalHits());
+            QueryProcessor empty = query(query, false);
+            assertTrue(query, empty.manageQuery(0, 0).isEmpty());
+            assertEquals(query, ranking.size(), empty.getTotalHits());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ri.wse.queryProcessor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.model.ResultEntry;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cambio de generación con el {@link SearcherManager}: una consulta en curso sigue usando su generación aunque el
+ * índice se reconstruya, y la generación vieja se cierra y se borra cuando se libera la última referencia.
+ */
+public class SearcherManagerTest {
+
+    private TestCollection collection;
+    private SearcherManager searcherManager;
+
+    @Before
+    public void setUp() throws IOException {
+        this.collection = new TestCollection(60, 100, 13L);
+        this.collection.index(1);
+        this.searcherManager = new SearcherManager(new IndexSearcher(this.collection.getBaseDirectory()));
+        this.searcherManager.setRefreshInterval(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.collection.close();
+    }
+
+    @Test
+    public void querySurvivesRefreshAndOldGenerationIsReleased() throws IOException {
+        String query = this.collection.queries(1, 2).get(0);
+        IndexSearcher previous = this.searcherManager.acquire();
+        List<ResultEntry> expected = new QueryProcessor(query, previous).manageQuery(0, 10);
+        List<String> previousSegments = this.segments();
+
+        for (int document = 0; document < 60; document += 2) {
+            this.collection.writeDocument(document);
+        }
+        this.collection.index(1);
+        assertTrue(this.searcherManager.maybeRefresh());
+        assertFalse(this.searcherManager.maybeRefresh());
+        assertNotEquals(previous.getGeneration(), this.searcherManager.getGeneration());
+
+        // La consulta en curso todavía tiene la generación anterior, con sus segmentos en disco.
+        assertEquals(1, previous.getRefCount());
+        assertTrue(this.segments().containsAll(previousSegments));
+        assertEquals(expected, new QueryProcessor(query, previous).manageQuery(0, 10));
+
+        this.searcherManager.release(previous);
+        assertEquals(0, previous.getRefCount());
+        assertFalse(previous.tryIncRef());
+
+        // La siguiente confirmación del indexador ya puede borrar los segmentos de la generación anterior.
+        this.collection.index(1);
+        for (String segment : previousSegments) {
+            assertFalse(segment, this.segments().contains(segment));
+        }
+
+        IndexSearcher current = this.searcherManager.acquire();
+        assertEquals(2, current.getRefCount());
+        this.searcherManager.release(current);
+        assertEquals(1, current.getRefCount());
+    }
+
+    private List<String> segments() throws IOException {
+        List<String> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                this.collection.getDirectory().resolve("Results"), "_*")) {
+            for (Path file : files) {
+                segments.add(file.getFileName().toString());
+            }
+        }
+        return segments;
+    }
+}
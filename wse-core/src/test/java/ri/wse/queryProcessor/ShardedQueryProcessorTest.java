@@ -0,0 +1,187 @@
+package ri.wse.queryProcessor;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ri.wse.TestCollection;
+import ri.wse.model.ResultEntry;
+import ri.wse.support.exceptions.ShardException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Una consulta sobre el índice repartido en shards devuelve los mismos documentos, en el mismo orden y con las
+ * mismas similaridades que sobre el índice sin repartir. La colección tiene documentos repetidos en shards distintos,
+ * así que hay empates que se deben resolver por el identificador global del documento.
+ */
+public class ShardedQueryProcessorTest {
+
+    private static final int DOCUMENTS = 400;
+    private static final int SHARDS = 3;
+
+    /**
+     * Documentos que se copian sobre el documento DUPLICATE_DISTANCE posiciones después, que queda en otro shard.
+     */
+    private static final int DUPLICATES = 40;
+    private static final int DUPLICATE_DISTANCE = 200;
+
+    private static TestCollection collection;
+    private static TestCollection shardedCollection;
+    private static SearcherManager searcherManager;
+    private static ShardedSearcher shardedSearcher;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        collection = createCollection();
+        collection.index(1);
+        shardedCollection = createCollection();
+        shardedCollection.index(SHARDS);
+
+        searcherManager = new SearcherManager(new IndexSearcher(collection.getBaseDirectory()));
+        shardedSearcher = createShardedSearcher(0, 1, 2);
+    }
+
+    /**
+     * Buscador con los shards configurados en el orden indicado.
+     */
+    private static ShardedSearcher createShardedSearcher(int... order) {
+        StringBuilder shards = new StringBuilder();
+        for (int shard : order) {
+            shards.append(shards.length() > 0 ? "," : "")
+                    .append(Paths.get(shardedCollection.getResultsDirectory(), "shard-" + shard));
+        }
+        ShardedSearcher searcher = new ShardedSearcher(searcherManager, shards.toString(), null);
+        searcher.init();
+        return searcher;
+    }
+
+    private static TestCollection createCollection() throws IOException {
+        TestCollection testCollection = new TestCollection(DOCUMENTS, 1500, 19);
+        Path directory = Paths.get(testCollection.getCollectionDirectory());
+        for (int document = 0; document < DUPLICATES; document++) {
+            Files.copy(directory.resolve(TestCollection.fileName(document)),
+                    directory.resolve(TestCollection.fileName(document + DUPLICATE_DISTANCE)),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        return testCollection;
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        shardedSearcher.destroy();
+        searcherManager.destroy();
+        collection.close();
+        shardedCollection.close();
+    }
+
+    @Test
+    public void fullRankingMatchesUnsharded() {
+        int ties = 0;
+        for (int terms = 1; terms <= 3; terms++) {
+            for (String query : collection.queries(40, terms)) {
+                ties += this.assertSameResults(query, 0, DOCUMENTS);
+            }
+        }
+        assertTrue("La colección no produjo empates entre shards", ties > 0);
+    }
+
+    @Test
+    public void pagesMatchUnsharded() {
+        for (String query : collection.queries(40, 2)) {
+            this.assertSameResults(query, 0, 10);
+            this.assertSameResults(query, 7, 10);
+            this.assertSameResults(query, 30, 25);
+        }
+    }
+
+    /**
+     * Los empates se resuelven con el número que el indexador asignó a cada shard, no con el orden de la
+     * configuración.
+     */
+    @Test
+    public void shardOrderDoesNotMatter() {
+        ShardedSearcher shuffled = createShardedSearcher(2, 0, 1);
+        try {
+            assertEquals(shardedSearcher.getGeneration(), shuffled.getGeneration());
+            int ties = 0;
+            for (String query : collection.queries(40, 1)) {
+                ties += this.assertSameResults(shuffled, query, 0, DOCUMENTS);
+            }
+            assertTrue("La colección no produjo empates entre shards", ties > 0);
+        } finally {
+            shuffled.destroy();
+        }
+    }
+
+    /**
+     * Los shards configurados tienen que ser todos los de un mismo índice repartido.
+     */
+    @Test
+    public void incompleteShardsFail() {
+        ShardedSearcher[] searchers = {createShardedSearcher(0, 1), createShardedSearcher(0, 1, 1)};
+        for (ShardedSearcher searcher : searchers) {
+            try {
+                searcher.refreshGeneration();
+                fail();
+            } catch (ShardException e) {
+                // Esperado.
+            } finally {
+                searcher.destroy();
+            }
+        }
+    }
+
+    /**
+     * Compara una página de la consulta en los dos índices.
+     *
+     * @return cantidad de empates en la página entre documentos de shards distintos
+     */
+    private int assertSameResults(String query, int offset, int limit) {
+        return this.assertSameResults(shardedSearcher, query, offset, limit);
+    }
+
+    private int assertSameResults(ShardedSearcher searcher, String query, int offset, int limit) {
+        IndexSearcher indexSearcher = searcherManager.acquire();
+        try {
+            QueryProcessor queryProcessor = new QueryProcessor(query, indexSearcher);
+            List<ResultEntry> expected = queryProcessor.manageQuery(offset, limit);
+
+            ShardedQueryProcessor shardedQueryProcessor = new ShardedQueryProcessor(query, searcher);
+            List<ResultEntry> actual = shardedQueryProcessor.manageQuery(offset, limit);
+
+            assertEquals(query, new ArrayList<>(expected), new ArrayList<>(actual));
+            // Con la poda la cantidad total es una cota inferior que depende de cada índice.
+            if (queryProcessor.isTotalHitsExact() && shardedQueryProcessor.isTotalHitsExact()) {
+                assertEquals(query, queryProcessor.getTotalHits(), shardedQueryProcessor.getTotalHits());
+            }
+
+            int ties = 0;
+            for (int i = 1; i < actual.size(); i++) {
+                if (actual.get(i).getScore() == actual.get(i - 1).getScore()
+                        && shard(actual.get(i)) != shard(actual.get(i - 1))) {
+                    ties++;
+                }
+            }
+            return ties;
+        } finally {
+            searcherManager.release(indexSearcher);
+        }
+    }
+
+    /**
+     * Shard de un documento de la colección de pruebas, a partir del número en su nombre.
+     */
+    private static int shard(ResultEntry result) {
+        return Integer.parseInt(result.getName().replaceAll("\\D", "")) % SHARDS;
+    }
+}
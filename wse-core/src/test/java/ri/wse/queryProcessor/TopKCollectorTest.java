@@ -0,0 +1,153 @@
+package ri.wse.queryProcessor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * El heap conserva los mismos k documentos que ordenar la lista completa por similaridad, con los empates ordenados
+ * por identificador, y las páginas que se obtienen con offset y limit son pedazos de ese mismo ranking.
+ */
+public class TopKCollectorTest {
+
+    private static final int DOCUMENTS = 500;
+
+    /**
+     * Similaridades con muchos empates: solo hay 20 valores distintos.
+     */
+    private static double[] scores(long seed) {
+        Random random = new Random(seed);
+        double[] scores = new double[DOCUMENTS];
+        for (int document = 0; document < DOCUMENTS; document++) {
+            scores[document] = (1 + random.nextInt(20)) / 20.0;
+        }
+        return scores;
+    }
+
+    /**
+     * Orden de un documento en el ranking completo: mayor similaridad primero y, en caso de empate, menor
+     * identificador primero.
+     */
+    private static int[] ranking(double[] scores) {
+        return IntStream.range(0, scores.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer document) -> -scores[document])
+                        .thenComparingInt(document -> document))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Agrega los documentos en un orden al azar, para que el resultado no dependa del orden de llegada.
+     */
+    private static TopKCollector collect(double[] scores, int k, long seed) {
+        int[] order = IntStream.range(0, scores.length).toArray();
+        Random random = new Random(seed);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int document = order[i];
+            order[i] = order[j];
+            order[j] = document;
+        }
+        TopKCollector collector = new TopKCollector(k);
+        for (int document : order) {
+            collector.collect(document, scores[document]);
+        }
+        return collector;
+    }
+
+    /**
+     * Página como la arma {@link QueryProcessor}: los offset + limit mejores y de ellos los que siguen al offset.
+     */
+    private static int[] page(double[] scores, int offset, int limit, long seed) {
+        int[] top = collect(scores, (int) Math.min((long) offset + limit, DOCUMENTS), seed).popSortedDocuments();
+        return offset < top.length ? Arrays.copyOfRange(top, offset, top.length) : new int[0];
+    }
+
+    @Test
+    public void keepsTheTopKWithTiesByDocument() {
+        for (long seed = 0; seed < 5; seed++) {
+            double[] scores = scores(seed);
+            int[] ranking = ranking(scores);
+            for (int k : new int[]{1, 2, 7, 19, 100, DOCUMENTS - 1, DOCUMENTS}) {
+                TopKCollector collector = collect(scores, k, seed);
+                assertTrue(collector.isFull());
+                assertEquals(scores[ranking[k - 1]], collector.getThreshold(), 0);
+                double[] topScores = new double[k];
+                int[] top = collector.popSortedDocuments(topScores);
+                assertArrayEquals("k=" + k, Arrays.copyOf(ranking, k), top);
+                for (int i = 0; i < k; i++) {
+                    assertEquals(scores[top[i]], topScores[i], 0);
+                }
+                assertEquals(DOCUMENTS, collector.getTotalHits());
+                assertEquals(0, collector.getSize());
+            }
+        }
+    }
+
+    @Test
+    public void capacityLargerThanTheHits() {
+        double[] scores = scores(11);
+        TopKCollector collector = collect(scores, 2 * DOCUMENTS, 11);
+        assertFalse(collector.isFull());
+        assertEquals(0, collector.getThreshold(), 0);
+        assertArrayEquals(ranking(scores), collector.popSortedDocuments());
+    }
+
+    @Test
+    public void emptyCollectorCountsHits() {
+        TopKCollector collector = collect(scores(3), 0, 3);
+        assertTrue(collector.isFull());
+        assertEquals(0, collector.getThreshold(), 0);
+        assertEquals(DOCUMENTS, collector.getTotalHits());
+        assertEquals(0, collector.popSortedDocuments().length);
+    }
+
+    @Test
+    public void pagesAreSlicesOfTheRanking() {
+        double[] scores = scores(5);
+        int[] ranking = ranking(scores);
+        for (int limit : new int[]{1, 3, 10, 64}) {
+            int[] pages = new int[0];
+            for (int offset = 0; offset < DOCUMENTS; offset += limit) {
+                int[] page = page(scores, offset, limit, offset);
+                assertEquals(Math.min(limit, DOCUMENTS - offset), page.length);
+                int[] joined = Arrays.copyOf(pages, pages.length + page.length);
+                System.arraycopy(page, 0, joined, pages.length, page.length);
+                pages = joined;
+            }
+            assertArrayEquals("limit=" + limit, ranking, pages);
+        }
+        assertEquals(0, page(scores, DOCUMENTS, 10, 0).length);
+        assertEquals(0, page(scores, DOCUMENTS + 5, 10, 0).length);
+        assertEquals(0, page(scores, 0, 0, 0).length);
+        assertEquals(0, page(scores, 10, 0, 0).length);
+    }
+
+    /**
+     * Mezclar los colectores de varios rangos de documentos da el mismo top k que un solo colector.
+     */
+    @Test
+    public void mergeKeepsTheTopK() {
+        double[] scores = scores(7);
+        int[] ranking = ranking(scores);
+        for (int k : new int[]{0, 1, 10, DOCUMENTS}) {
+            TopKCollector collector = new TopKCollector(k);
+            for (int range = 0; range < 4; range++) {
+                TopKCollector rangeCollector = new TopKCollector(k);
+                for (int document = range * DOCUMENTS / 4; document < (range + 1) * DOCUMENTS / 4; document++) {
+                    rangeCollector.collect(document, scores[document]);
+                }
+                collector.merge(rangeCollector);
+            }
+            assertEquals(DOCUMENTS, collector.getTotalHits());
+            assertArrayEquals("k=" + k, Arrays.copyOf(ranking, k), collector.popSortedDocuments());
+        }
+    }
+}
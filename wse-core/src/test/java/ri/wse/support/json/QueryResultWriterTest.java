@@ -0,0 +1,115 @@
+package ri.wse.support.json;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import ri.wse.model.QueryResult;
+import ri.wse.model.ResultEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * El JSON escrito por {@link QueryResultWriter} es válido, está codificado en UTF-8 y conserva los nombres, las
+ * direcciones y las similaridades de los resultados.
+ */
+public class QueryResultWriterTest {
+
+    private static String write(QueryResult queryResult) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new QueryResultWriter(output).write(queryResult);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static QueryResult page(String name, String url, double score) {
+        return new QueryResult(Collections.singletonList(new ResultEntry(name, url, score)), 1, true, 0, 10, false);
+    }
+
+    @Test
+    public void schema() throws IOException {
+        List<ResultEntry> results = new ArrayList<>();
+        results.add(new ResultEntry("a.html", "http://localhost/a", 0.5));
+        results.add(new ResultEntry("b.html", "http://localhost/b", 0.25));
+        assertEquals("{\"queryResults\":[{\"name\":\"a.html\",\"url\":\"http://localhost/a\",\"score\":0.5},"
+                        + "{\"name\":\"b.html\",\"url\":\"http://localhost/b\",\"score\":0.25}],\"totalHits\":120,"
+                        + "\"totalHitsExact\":false,\"offset\":10,\"limit\":2,\"partial\":true}",
+                write(new QueryResult(results, 120, false, 10, 2, true)));
+        assertEquals("{\"queryResults\":[],\"totalHits\":0,\"totalHitsExact\":true,\"offset\":0,\"limit\":10,"
+                + "\"partial\":false}", write(new QueryResult(Collections.emptyList(), 0, true, 0, 10)));
+    }
+
+    @Test
+    public void escaping() throws IOException {
+        String name = "comillas \" barra \\ / salto \n retorno \r tab \t retroceso \b página \f nulo \u0000 \u001f";
+        String json = write(page(name, null, 1));
+        assertTrue(json, json.contains("\"comillas \\\" barra \\\\ / salto \\n retorno \\r tab \\t retroceso \\b "
+                + "página \\f nulo \\u0000 \\u001f\""));
+        assertTrue(json, json.contains("\"url\":null"));
+        JSONObject result = new JSONObject(json).getJSONArray("queryResults").getJSONObject(0);
+        assertEquals(name, result.getString("name"));
+        assertTrue(result.isNull("url"));
+    }
+
+    @Test
+    public void utf8() throws IOException {
+        // Caracteres de uno, dos, tres y cuatro bytes.
+        String name = "a ñ € 中文 \uD83D\uDE00";
+        String json = write(page(name, "http://localhost/" + name, 1));
+        assertTrue(json, json.contains("\"" + name + "\""));
+        assertEquals(name, new JSONObject(json).getJSONArray("queryResults").getJSONObject(0).getString("name"));
+    }
+
+    @Test
+    public void unpairedSurrogates() throws IOException {
+        String name = "alto \uD83D fin";
+        String json = write(page(name + "\uDE00", "\uDE00\uD83D", 1));
+        assertTrue(json, json.contains("\"alto \\ud83d fin\\ude00\""));
+        assertTrue(json, json.contains("\"\\ude00\\ud83d\""));
+        assertFalse(json, json.contains("\uFFFD"));
+        JSONObject result = new JSONObject(json).getJSONArray("queryResults").getJSONObject(0);
+        assertEquals(name + "\uDE00", result.getString("name"));
+        assertEquals("\uDE00\uD83D", result.getString("url"));
+    }
+
+    @Test
+    public void nonFiniteScores() throws IOException {
+        double[] scores = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        List<ResultEntry> results = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            results.add(new ResultEntry("d" + i, "u" + i, scores[i]));
+        }
+        String json = write(new QueryResult(results, scores.length, true, 0, 10, false));
+        JSONArray queryResults = new JSONObject(json).getJSONArray("queryResults");
+        for (int i = 0; i < scores.length; i++) {
+            assertEquals(0, queryResults.getJSONObject(i).getDouble("score"), 0);
+        }
+    }
+
+    /**
+     * Una página más grande que el búfer se escribe en varias partes sin perder ni repetir bytes.
+     */
+    @Test
+    public void largerThanTheBuffer() throws IOException {
+        List<ResultEntry> results = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            results.add(new ResultEntry("documento-ñ-" + i, "http://localhost/€/" + i, 1.0 / (i + 1)));
+        }
+        JSONArray queryResults = new JSONObject(write(new QueryResult(results, results.size(), true, 0,
+                results.size(), false))).getJSONArray("queryResults");
+        assertEquals(results.size(), queryResults.length());
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = queryResults.getJSONObject(i);
+            assertEquals(results.get(i).getName(), result.getString("name"));
+            assertEquals(results.get(i).getUrl(), result.getString("url"));
+            assertEquals(results.get(i).getScore(), result.getDouble("score"), 0);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ri.wse.support.json;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import ri.wse.queryProcessor.ShardResult;
+import ri.wse.queryProcessor.ShardStatistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Las respuestas de un shard escritas por {@link ShardResultWriter} y {@link ShardStatisticsWriter} tienen los campos
+ * que lee {@link ri.wse.queryProcessor.RemoteShard}.
+ */
+public class ShardResultWriterTest {
+
+    @Test
+    public void shardResult() throws IOException {
+        List<ShardResult.Hit> hits = new ArrayList<>();
+        hits.add(new ShardResult.Hit(7, "a.html", "http://localhost/a", 0.5));
+        hits.add(new ShardResult.Hit(3, "ñ \"€\" \uD83D\uDE00.html", "http://localhost/b", Double.NaN));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ShardResultWriter(output).write(new ShardResult(hits, 120, false, true));
+        String json = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(json, json.startsWith("{\"hits\":[{\"document\":7,\"name\":\"a.html\","
+                + "\"url\":\"http://localhost/a\",\"score\":0.5},"));
+        JSONObject response = new JSONObject(json);
+        JSONArray hitsArray = response.getJSONArray("hits");
+        assertEquals(hits.size(), hitsArray.length());
+        for (int i = 0; i < hits.size(); i++) {
+            JSONObject hit = hitsArray.getJSONObject(i);
+            assertEquals(hits.get(i).getDocument(), hit.getInt("document"));
+            assertEquals(hits.get(i).getName(), hit.getString("name"));
+            assertEquals(hits.get(i).getUrl(), hit.getString("url"));
+        }
+        assertEquals(0, hitsArray.getJSONObject(1).getDouble("score"), 0);
+        assertEquals(120, response.getInt("totalHits"));
+        assertFalse(response.getBoolean("totalHitsExact"));
+        assertTrue(response.getBoolean("partial"));
+
+        output.reset();
+        new ShardResultWriter(output).write(new ShardResult(Collections.emptyList(), 0, true, false));
+        assertEquals("{\"hits\":[],\"totalHits\":0,\"totalHitsExact\":true,\"partial\":false}",
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shardStatistics() throws IOException {
+        Map<String, Integer> documentFrequencies = new LinkedHashMap<>();
+        documentFrequencies.put("casa", 15);
+        documentFrequencies.put("año", 0);
+        documentFrequencies.put("\"raro\"", 3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ShardStatisticsWriter(output).write(new ShardStatistics(5000000000L, 1, 3, 1200,
+                documentFrequencies));
+        String json = new String(output.toByteArray(), StandardCharsets.UTF_8);
+
+        assertEquals("{\"generation\":5000000000,\"shard\":1,\"shardCount\":3,\"documentCount\":1200,"
+                + "\"documentFrequencies\":{\"casa\":15,\"año\":0,\"\\\"raro\\\"\":3}}", json);
+        JSONObject response = new JSONObject(json);
+        assertEquals(5000000000L, response.getLong("generation"));
+        assertEquals(1, response.getInt("shard"));
+        assertEquals(3, response.getInt("shardCount"));
+        assertEquals(1200, response.getInt("documentCount"));
+        JSONObject frequencies = response.getJSONObject("documentFrequencies");
+        assertEquals(documentFrequencies.keySet(), frequencies.keySet());
+        for (Map.Entry<String, Integer> frequency : documentFrequencies.entrySet()) {
+            assertEquals((int) frequency.getValue(), frequencies.getInt(frequency.getKey()));
+        }
+
+        output.reset();
+        new ShardStatisticsWriter(output).write(new ShardStatistics(0, -1, 0, 0, Collections.emptyMap()));
+        assertEquals("{\"generation\":0,\"shard\":-1,\"shardCount\":0,\"documentCount\":0,"
+                + "\"documentFrequencies\":{}}",
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
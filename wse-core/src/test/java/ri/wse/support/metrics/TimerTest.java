@@ -0,0 +1,125 @@
+package ri.wse.support.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Percentiles del histograma de {@link Timer} contra los percentiles exactos, y el registro global de
+ * {@link Metrics}.
+ */
+public class TimerTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        Timer timer = new Timer("pequeños");
+        for (int value = 0; value < 8; value++) {
+            timer.record(value);
+        }
+        assertEquals(0, timer.getPercentile(0));
+        assertEquals(3, timer.getPercentile(50));
+        assertEquals(6, timer.getPercentile(80));
+        assertEquals(7, timer.getPercentile(100));
+        assertEquals(8, timer.getCount());
+        assertEquals(28, timer.getTotal());
+        assertEquals(3.5, timer.getMean(), 0);
+    }
+
+    /**
+     * Cada percentil estimado es el límite superior de una cubeta, así que no es menor al exacto y lo pasa a lo sumo
+     * en 1/8.
+     */
+    @Test
+    public void percentilesWithinRelativeError() {
+        Timer timer = new Timer("aleatorios");
+        Random random = new Random(5);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // Distribución con cola larga, de nanosegundos a segundos.
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            timer.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimated = timer.getPercentile(percentile);
+            assertTrue(percentile + ": " + estimated + " < " + exact, estimated >= exact);
+            assertTrue(percentile + ": " + estimated + " > " + exact, estimated <= exact + exact / 8);
+        }
+        assertEquals(values[values.length - 1], timer.getMax());
+        assertEquals(timer.getMax(), timer.getPercentile(100));
+        assertEquals(Arrays.stream(values).sum(), timer.getTotal());
+    }
+
+    @Test
+    public void extremeValues() {
+        Timer timer = new Timer("extremos");
+        timer.record(-5);
+        timer.record(Long.MAX_VALUE);
+        assertEquals(0, timer.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, timer.getPercentile(100));
+        assertEquals(Long.MAX_VALUE, timer.getMax());
+    }
+
+    @Test
+    public void emptyAndReset() {
+        Timer timer = new Timer("vacío");
+        assertEquals(0, timer.getPercentile(99));
+        assertEquals(0, timer.getMean(), 0);
+        timer.record(1000);
+        timer.reset();
+        assertEquals(0, timer.getCount());
+        assertEquals(0, timer.getTotal());
+        assertEquals(0, timer.getMax());
+        assertEquals(0, timer.getPercentile(50));
+    }
+
+    @Test
+    public void concurrentRecords() throws InterruptedException {
+        Timer timer = new Timer("concurrente");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 100000; i++) {
+                    timer.record(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, timer.getCount());
+        assertEquals(4 * 100000L * 100001 / 2, timer.getTotal());
+        assertEquals(100000, timer.getMax());
+        assertEquals(100000, timer.getPercentile(100));
+    }
+
+    @Test
+    public void registry() {
+        Timer timer = Metrics.timer("test.timer");
+        assertSame(timer, Metrics.timer("test.timer"));
+        LongAdder counter = Metrics.counter("test.counter");
+        assertSame(counter, Metrics.counter("test.counter"));
+
+        timer.record(10);
+        counter.add(3);
+        assertSame(timer, Metrics.getTimers().get("test.timer"));
+        assertEquals(Long.valueOf(3), Metrics.getCounters().get("test.counter"));
+
+        Metrics.reset();
+        assertEquals(0, timer.getCount());
+        assertEquals(Long.valueOf(0), Metrics.getCounters().get("test.counter"));
+        assertSame(timer, Metrics.timer("test.timer"));
+    }
+}
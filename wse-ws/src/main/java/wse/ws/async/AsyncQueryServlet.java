@@ -0,0 +1,193 @@
+package wse.ws.async;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+import ri.wse.core.result.executor.SearchExecutor;
+import ri.wse.core.result.service.ResultService;
+import ri.wse.model.QueryResult;
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.json.QueryResultWriter;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Versión asíncrona de /ws/query/result, en /ws/query/async, con los mismos parámetros (incluido el "budget"
+ * opcional) y un "timeout" opcional en milisegundos. El hilo del servidor solo valida la petición y la entrega al
+ * {@link SearchExecutor}, así que los hilos del contenedor nunca se bloquean leyendo el índice ni calculando la
+ * similaridad.
+ * Respuestas:
+ * -200 con el mismo JSON de /ws/query/result; con un presupuesto de tiempo los resultados pueden ser parciales.
+ * -503 con el encabezado Retry-After cuando la cola del ejecutor está llena (se descarta carga).
+ * -504 cuando pasa el tiempo límite, en la cola o durante el cálculo, que se detiene. Un presupuesto de tiempo
+ * reemplaza al tiempo límite y nunca responde 504, salvo que el contenedor mismo deje de esperar.
+ * El JSON se escribe con {@link QueryResultWriter} y se comprime con gzip si el cliente lo acepta. Los encabezados
+ * CORS los agrega {@link wse.ws.rest.support.CORSFilter}, configurado como filtro del servlet en web.xml.
+ * Jersey 1.x no tiene recursos asíncronos, por eso es un servlet asíncrono de Servlet 3.0.
+ */
+public class AsyncQueryServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Cantidad máxima de resultados que se pueden pedir en una página.
+     */
+    private static final int MAX_LIMIT = 100;
+
+    /**
+     * Tiempo extra que el contenedor espera después del tiempo límite antes de responder por su cuenta, en
+     * milisegundos.
+     */
+    private static final long CONTAINER_GRACE = 1000;
+
+    private static final Timer SERIALIZATION_TIMER = Metrics.timer("query.serialization");
+
+    private transient ResultService resultService;
+    private transient SearchExecutor searchExecutor;
+
+    @Override
+    public void init() {
+        WebApplicationContext context = WebApplicationContextUtils.getRequiredWebApplicationContext(
+                this.getServletContext());
+        this.resultService = context.getBean(ResultService.class);
+        this.searchExecutor = context.getBean(SearchExecutor.class);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getParameter("query");
+        int offset;
+        int limit;
+        long timeout;
+        long budget;
+        try {
+            offset = parse(request.getParameter("offset"), 0);
+            limit = parse(request.getParameter("limit"), 10);
+            timeout = parseLong(request.getParameter("timeout"), 0);
+            budget = parseLong(request.getParameter("budget"), 0);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (StringUtils.isEmpty(query) || offset < 0 || limit <= 0 || limit > MAX_LIMIT || timeout < 0 || budget < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        boolean gzip = acceptsGzip(request);
+
+        Deadline deadline = budget > 0 ? this.searchExecutor.getBudget(budget)
+                : this.searchExecutor.getDeadline(timeout);
+        CompletableFuture<QueryResult> future;
+        try {
+            future = this.searchExecutor.submit(deadline,
+                    () -> this.resultService.getResults(query, offset, limit, deadline));
+        } catch (RejectedExecutionException e) {
+            response.setHeader("Retry-After", String.valueOf(this.searchExecutor.getRetryAfter()));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()) + CONTAINER_GRACE);
+        AtomicBoolean responded = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                future.cancel(false);
+                if (responded.compareAndSet(false, true)) {
+                    ((HttpServletResponse) event.getSuppliedResponse()).setStatus(
+                            HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                    asyncContext.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                future.cancel(false);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        future.whenComplete((queryResult, error) -> {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.respond((HttpServletResponse) asyncContext.getResponse(), queryResult, error, gzip);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    /**
+     * Escribe el resultado desde el hilo del ejecutor. Los errores solo asignan el código de estado, sin pasar por las
+     * páginas de error del contenedor.
+     */
+    private void respond(HttpServletResponse response, QueryResult queryResult, Throwable error, boolean gzip)
+            throws IOException {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof QueryTimeoutException) {
+            response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        } else if (error != null) {
+            this.log("Falló la consulta", error);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } else if (queryResult == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            long start = System.nanoTime();
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            response.addHeader("Vary", "Accept-Encoding");
+            OutputStream output = response.getOutputStream();
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+                output = new GZIPOutputStream(output);
+            }
+            new QueryResultWriter(output).write(queryResult);
+            if (gzip) {
+                ((GZIPOutputStream) output).finish();
+            }
+            SERIALIZATION_TIMER.recordSince(start);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static int parse(String value, int defaultValue) {
+        return StringUtils.isEmpty(value) ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        return StringUtils.isEmpty(value) ? defaultValue : Long.parseLong(value);
+    }
+}
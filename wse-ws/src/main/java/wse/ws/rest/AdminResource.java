@@ -0,0 +1,109 @@
+package wse.ws.rest;
+
+import flexjson.JSONSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import ri.wse.core.index.service.IndexService;
+import ri.wse.core.metrics.service.MetricsService;
+import ri.wse.core.result.service.ResultService;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Scope("request")
+@Path("/admin")
+public class AdminResource {
+
+    @Autowired
+    IndexService service;
+
+    @Autowired
+    ResultService resultService;
+
+    @Autowired
+    MetricsService metricsService;
+
+    /**
+     * Generación del índice con el que se responden las consultas nuevas.
+     */
+    @GET
+    @Path("/index")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getIndex() {
+        return this.status(false);
+    }
+
+    /**
+     * Cambia a la última generación confirmada del índice, si hay una nueva. Las consultas en curso terminan con la
+     * generación anterior.
+     */
+    @POST
+    @Path("/index/refresh")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response refreshIndex() {
+        return this.status(this.service.refresh());
+    }
+
+    /**
+     * Tamaño y contadores de aciertos, fallos, desalojos, vencimientos e invalidaciones de la caché de resultados.
+     */
+    @GET
+    @Path("/cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCache() {
+        return Response.ok().entity(new JSONSerializer().exclude("*.class")
+                .serialize(this.resultService.getCacheStatistics())).build();
+    }
+
+    /**
+     * Tasa de aciertos, desalojos y bytes ocupados de la caché de bloques de postings decodificados.
+     */
+    @GET
+    @Path("/cache/postings")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPostingCache() {
+        return Response.ok().entity(new JSONSerializer().exclude("*.class")
+                .serialize(this.service.getPostingCacheStatistics())).build();
+    }
+
+    /**
+     * Cantidad, promedio, p50, p95, p99, máximo y tiempo total en milisegundos de cada etapa de las consultas y de la
+     * indexación, y los contadores de las etapas, desde que inició el servicio o desde el último reinicio.
+     */
+    @GET
+    @Path("/metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("timers", this.metricsService.getTimers());
+        metrics.put("counters", this.metricsService.getCounters());
+        return Response.ok().entity(new JSONSerializer().exclude("*.class").deepSerialize(metrics)).build();
+    }
+
+    /**
+     * Borra los tiempos y contadores registrados, por ejemplo antes de una prueba de carga.
+     */
+    @POST
+    @Path("/metrics/reset")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resetMetrics() {
+        this.metricsService.reset();
+        return this.getMetrics();
+    }
+
+    private Response status(boolean refreshed) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("generation", this.service.getGeneration());
+        status.put("refreshed", refreshed);
+        return Response.ok().entity(new JSONSerializer().serialize(status)).build();
+    }
+
+}
@@ -0,0 +1,109 @@
+package wse.ws.rest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import ri.wse.core.shard.service.ShardService;
+import ri.wse.queryProcessor.ShardResult;
+import ri.wse.queryProcessor.ShardStatistics;
+import ri.wse.support.exceptions.QueryTimeoutException;
+import ri.wse.support.json.ShardResultWriter;
+import ri.wse.support.json.ShardStatisticsWriter;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servicios que usa la instancia que reparte las consultas entre los shards; esta instancia responde con su índice.
+ * {@link ShardStatisticsWriter} y {@link ShardResultWriter} escriben el JSON directamente en la respuesta.
+ */
+@Component
+@Scope("request")
+@Path("/shard")
+public class ShardResource {
+
+    /**
+     * 504 Gateway Timeout, que no está en {@link Response.Status} en JAX-RS 1.1.
+     */
+    private static final int GATEWAY_TIMEOUT = 504;
+
+    @Autowired
+    ShardService service;
+
+    /**
+     * Cantidad de documentos, generación, número de shard y df de los términos pedidos: {"terms": ["..."]}.
+     */
+    @POST
+    @Path("/statistics")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getStatistics(String body) {
+        List<String> terms = new ArrayList<>();
+        try {
+            JSONArray termsArray = new JSONObject(body).getJSONArray("terms");
+            for (int i = 0; i < termsArray.length(); i++) {
+                terms.add(termsArray.getString(i));
+            }
+        } catch (JSONException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        ShardStatistics statistics = this.service.getStatistics(terms);
+        StreamingOutput json = output -> new ShardStatisticsWriter(output).write(statistics);
+        return Response.ok().entity(json).build();
+    }
+
+    /**
+     * Los k mejores documentos de este shard con sus similaridades, calculadas con el idf global de los términos:
+     * {"query": "...", "inverseFrequencies": {"termino": idf}, "k": 10}. Un "timeout" opcional en milisegundos
+     * detiene el cálculo al pasar y responde 504; con "partial": true es un presupuesto de tiempo y se devuelven los
+     * mejores documentos encontrados al agotarlo, con "partial": true.
+     */
+    @POST
+    @Path("/search")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response search(String body) {
+        String query;
+        int k;
+        long timeout;
+        boolean partialResults;
+        Map<String, Double> inverseFrequencies = new HashMap<>();
+        try {
+            JSONObject request = new JSONObject(body);
+            query = request.getString("query");
+            k = request.getInt("k");
+            timeout = request.optLong("timeout", 0);
+            partialResults = request.optBoolean("partial");
+            JSONObject frequencies = request.getJSONObject("inverseFrequencies");
+            for (String term : frequencies.keySet()) {
+                inverseFrequencies.put(term, frequencies.getDouble(term));
+            }
+        } catch (JSONException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        if (k <= 0) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        ShardResult result;
+        try {
+            result = this.service.search(query, inverseFrequencies, k, timeout, partialResults);
+        } catch (QueryTimeoutException e) {
+            return Response.status(GATEWAY_TIMEOUT).build();
+        }
+        StreamingOutput json = output -> new ShardResultWriter(output).write(result);
+        return Response.ok().entity(json).build();
+    }
+
+}
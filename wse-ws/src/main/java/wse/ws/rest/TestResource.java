@@ -1,43 +1,69 @@
 package wse.ws.rest;
 
-import flexjson.JSONSerializer;
 import org.springframework.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import ri.wse.core.result.service.ResultService;
 import ri.wse.model.QueryResult;
+import ri.wse.queryProcessor.Deadline;
+import ri.wse.support.json.QueryResultWriter;
+import ri.wse.support.metrics.Metrics;
+import ri.wse.support.metrics.Timer;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Scope("request")
 @Path("/query")
 public class TestResource {
 
+    /**
+     * Cantidad máxima de resultados que se pueden pedir en una página.
+     */
+    private static final int MAX_LIMIT = 100;
+
+    private static final Timer SERIALIZATION_TIMER = Metrics.timer("query.serialization");
+
     @Autowired
     ResultService service;
 
+    /**
+     * Página de resultados de una consulta. Con un "budget" positivo en milisegundos el cálculo se detiene al
+     * agotarlo y se devuelven los mejores documentos encontrados hasta ese momento con "partial": true.
+     * {@link QueryResultWriter} escribe el JSON directamente en la respuesta, y el filtro gzip de Jersey lo comprime
+     * cuando el cliente lo acepta.
+     */
     @GET
     @Path("/result")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response testService(@QueryParam("query") String query) {
-        System.out.println("entre");
-
-        if (StringUtils.isEmpty(query)) {
+    public Response testService(@QueryParam("query") String query,
+                                @QueryParam("offset") @DefaultValue("0") int offset,
+                                @QueryParam("limit") @DefaultValue("10") int limit,
+                                @QueryParam("budget") @DefaultValue("0") long budget) {
+        if (StringUtils.isEmpty(query) || offset < 0 || limit <= 0 || limit > MAX_LIMIT || budget < 0) {
             return Response.status(Response.Status.BAD_REQUEST).build();
         }
-        QueryResult queryResult = this.service.getResults(query);
+        Deadline deadline = budget > 0 ? Deadline.budget(budget, TimeUnit.MILLISECONDS) : Deadline.NONE;
+        QueryResult queryResult = this.service.getResults(query, offset, limit, deadline);
         if (queryResult == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
-        return Response.ok().entity(new JSONSerializer().include("queryResults").serialize(queryResult)).build();
+        StreamingOutput json = output -> {
+            long start = System.nanoTime();
+            new QueryResultWriter(output).write(queryResult);
+            SERIALIZATION_TIMER.recordSince(start);
+        };
+        return Response.ok().entity(json).build();
     }
 
 }
@@ -4,23 +4,65 @@ import com.sun.jersey.spi.container.ContainerRequest;
 import com.sun.jersey.spi.container.ContainerResponse;
 import com.sun.jersey.spi.container.ContainerResponseFilter;
 
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
 /**
  * CORS (Cross-Origin Resource Sharing) filter configuration.
+ * Es un filtro de respuestas de Jersey para los recursos REST y también un filtro de servlets para los servlets que
+ * no pasan por Jersey, como la búsqueda asíncrona; ambos agregan los mismos encabezados.
  *
  *@author María José Cubero.
  */
-public class CORSFilter implements ContainerResponseFilter {
+public class CORSFilter implements ContainerResponseFilter, Filter {
+
+    private static final String[][] HEADERS = {
+            {"Access-Control-Allow-Credentials", "true"},
+            {"Access-Control-Allow-Headers", "content-length, content-type, origin, authorization"},
+            {"Access-Control-Allow-Methods", "GET, POST, DELETE, PUT, OPTIONS, ACCEPT"}};
 
     @Override
     public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
         String containerResponseOrigin = request.getHeaderValue("Origin");
         if(containerResponseOrigin != null){
             response.getHttpHeaders().add("Access-Control-Allow-Origin", containerResponseOrigin);
-            response.getHttpHeaders().add("Access-Control-Allow-Credentials", "true");
-            response.getHttpHeaders().add("Access-Control-Allow-Headers", "content-length, content-type, origin, authorization");
-            response.getHttpHeaders().add("Access-Control-Allow-Methods","GET, POST, DELETE, PUT, OPTIONS, ACCEPT");
-
+            for (String[] header : HEADERS) {
+                response.getHttpHeaders().add(header[0], header[1]);
+            }
         }
         return response;
     }
+
+    /**
+     * Agrega los encabezados antes de pasar la petición al servlet, ya que un servlet asíncrono puede confirmar la
+     * respuesta desde otro hilo.
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String origin = ((HttpServletRequest) request).getHeader("Origin");
+        if (origin != null) {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.addHeader("Access-Control-Allow-Origin", origin);
+            for (String[] header : HEADERS) {
+                httpResponse.addHeader(header[0], header[1]);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void destroy() {
+    }
 }